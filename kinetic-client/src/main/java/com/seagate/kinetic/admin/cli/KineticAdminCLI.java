@@ -832,6 +832,8 @@ public class KineticAdminCLI {
         Limits limits = kineticLog.getLimits();
         if (limits != null) {
             StringBuffer sb = new StringBuffer();
+            sb.append("MaxCommandsPerBatch: " + limits.getMaxCommandsPerBatch()
+                    + "\n");
             sb.append("MaxConnections: " + limits.getMaxConnections() + "\n");
             sb.append("MaxIdentityCount: " + limits.getMaxIdentityCount()
                     + "\n");
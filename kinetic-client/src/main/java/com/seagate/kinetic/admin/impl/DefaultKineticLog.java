@@ -540,6 +540,11 @@ public class DefaultKineticLog implements KineticLog {
             LimitsInfo.setMaxIdentityCount(limits.getMaxIdentityCount());
         }
 
+        if (limits.hasMaxOperationCountPerBatch()) {
+            LimitsInfo.setMaxCommandsPerBatch(limits
+                    .getMaxOperationCountPerBatch());
+        }
+
         return LimitsInfo;
     }
 }
@@ -0,0 +1,228 @@
+/**
+ * Copyright (C) 2014 Seagate Technology.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package com.seagate.kinetic.client.internal;
+
+import java.util.List;
+
+import kinetic.client.BatchOperation;
+import kinetic.client.BulkResult;
+import kinetic.client.Entry;
+import kinetic.client.KineticClient;
+import kinetic.client.KineticException;
+
+/**
+ * Bulk operations over the asynchronous API of a client.
+ * <p>
+ * The requests of a bulk operation are sent without waiting for the
+ * responses. The number of requests in flight is limited by the asynchronous
+ * request window of the connection. Writes may be grouped in batches of up to
+ * the max number of commands per batch.
+ * <p>
+ * Batches are committed one after the other. The commands of a batch are sent
+ * without waiting, but {@link BatchOperation#commit()} waits for the drive to
+ * apply the batch before the next batch is started (the batch API has no
+ * asynchronous commit). A batched bulk operation takes at least two round trips
+ * (start and commit) per batch.
+ *
+ * @see KineticClient#getAll(List)
+ * @see DefaultBulkResult
+ */
+final class BulkOperations {
+
+	/**
+	 * Max commands per batch if not reported by the drive, same as the
+	 * simulator default.
+	 */
+	static final int DEFAULT_COMMANDS_PER_BATCH = 15;
+
+	private BulkOperations() {
+		;
+	}
+
+	/**
+	 * Get the entries of the specified keys.
+	 */
+	static BulkResult<Entry> getAll(KineticClient client, List<byte[]> keys,
+			long timeout) throws KineticException {
+
+		DefaultBulkResult<Entry> result = new DefaultBulkResult<Entry>(
+				keys.size());
+
+		for (int i = 0; i < keys.size(); i++) {
+			try {
+				client.getAsync(keys.get(i), result.handler(i));
+			} catch (KineticException e) {
+				result.setError(i, e);
+			}
+		}
+
+		result.await(timeout);
+
+		return result;
+	}
+
+	/**
+	 * Put the specified entries, forced.
+	 */
+	static BulkResult<Entry> putAll(KineticClient client, List<Entry> entries,
+			long timeout) throws KineticException {
+
+		DefaultBulkResult<Entry> result = new DefaultBulkResult<Entry>(
+				entries.size());
+
+		for (int i = 0; i < entries.size(); i++) {
+			try {
+				client.putForcedAsync(entries.get(i), result.handler(i));
+			} catch (KineticException e) {
+				result.setError(i, e);
+			}
+		}
+
+		result.await(timeout);
+
+		return result;
+	}
+
+	/**
+	 * Delete the specified keys, forced.
+	 */
+	static BulkResult<Boolean> deleteAll(KineticClient client,
+			List<byte[]> keys, long timeout) throws KineticException {
+
+		DefaultBulkResult<Boolean> result = new DefaultBulkResult<Boolean>(
+				keys.size());
+
+		for (int i = 0; i < keys.size(); i++) {
+			try {
+				client.deleteForcedAsync(keys.get(i), result.handler(i));
+			} catch (KineticException e) {
+				result.setError(i, e);
+			}
+		}
+
+		result.await(timeout);
+
+		return result;
+	}
+
+	/**
+	 * Put the specified entries, forced, in batches committed one after the
+	 * other. If a batch fails, all entries of the batch fail and the next
+	 * batches are still committed.
+	 */
+	static BulkResult<Entry> putAllBatched(KineticClient client,
+			List<Entry> entries, int batchSize, long timeout)
+			throws KineticException {
+
+		DefaultBulkResult<Entry> result = new DefaultBulkResult<Entry>(
+				entries.size());
+
+		for (int start = 0; start < entries.size(); start += batchSize) {
+
+			int end = Math.min(start + batchSize, entries.size());
+
+			BatchOperation batch = null;
+
+			try {
+				batch = client.createBatchOperation();
+
+				for (int i = start; i < end; i++) {
+					batch.putForcedAsync(entries.get(i),
+							result.errorHandler(i));
+				}
+
+				// waits for the drive, batches are not overlapped
+				batch.commit();
+
+				for (int i = start; i < end; i++) {
+					result.set(i, entries.get(i));
+				}
+			} catch (KineticException e) {
+				abort(batch);
+
+				for (int i = start; i < end; i++) {
+					result.setError(i, e);
+				}
+			}
+		}
+
+		result.await(timeout);
+
+		return result;
+	}
+
+	/**
+	 * Delete the specified keys, forced, in batches committed one after the
+	 * other. If a batch fails, all deletes of the batch fail and the next
+	 * batches are still committed.
+	 */
+	static BulkResult<Boolean> deleteAllBatched(KineticClient client,
+			List<byte[]> keys, int batchSize, long timeout)
+			throws KineticException {
+
+		DefaultBulkResult<Boolean> result = new DefaultBulkResult<Boolean>(
+				keys.size());
+
+		for (int start = 0; start < keys.size(); start += batchSize) {
+
+			int end = Math.min(start + batchSize, keys.size());
+
+			BatchOperation batch = null;
+
+			try {
+				batch = client.createBatchOperation();
+
+				for (int i = start; i < end; i++) {
+					batch.deleteForcedAsync(keys.get(i),
+							result.errorHandler(i));
+				}
+
+				// waits for the drive, batches are not overlapped
+				batch.commit();
+
+				for (int i = start; i < end; i++) {
+					result.set(i, Boolean.TRUE);
+				}
+			} catch (KineticException e) {
+				abort(batch);
+
+				for (int i = start; i < end; i++) {
+					result.setError(i, e);
+				}
+			}
+		}
+
+		result.await(timeout);
+
+		return result;
+	}
+
+	private static void abort(BatchOperation batch) {
+
+		if (batch == null) {
+			return;
+		}
+
+		try {
+			batch.abort();
+		} catch (KineticException e) {
+			// batch is closed by the drive if the commit failed
+			;
+		}
+	}
+}
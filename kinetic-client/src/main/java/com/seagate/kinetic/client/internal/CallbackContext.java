@@ -48,6 +48,9 @@ public class CallbackContext<T> {
 	// response message
 	private KineticMessage response = null;
 
+	// time the request was sent, in nano seconds
+	private long requestTime = 0;
+
 	/**
 	 * Construct a callback context with the specified callback handler.
 	 *
@@ -98,6 +101,25 @@ public class CallbackContext<T> {
 		return this.response;
 	}
 
+	/**
+	 * Set the time the request was sent.
+	 *
+	 * @param requestTime
+	 *            <code>System.nanoTime()</code> when the request was sent.
+	 */
+	public void setRequestTime(long requestTime) {
+		this.requestTime = requestTime;
+	}
+
+	/**
+	 * Get the time the request was sent.
+	 *
+	 * @return <code>System.nanoTime()</code> when the request was sent.
+	 */
+	public long getRequestTime() {
+		return this.requestTime;
+	}
+
 	/**
 	 * Get callback handler.
 	 *
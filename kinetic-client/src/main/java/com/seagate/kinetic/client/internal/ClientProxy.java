@@ -24,6 +24,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -76,7 +77,7 @@ public class ClientProxy {
     private long connectionID = 1234;
 
     // sequence
-    private long sequence = 1;
+    private final AtomicLong sequence = new AtomicLong(1);
 
     // cluster version
     private long clusterVersion = 43;
@@ -205,6 +206,15 @@ public class ClientProxy {
         return this.config;
     }
 
+    /**
+     * Get the current window size of asynchronous requests.
+     *
+     * @return max number of asynchronous requests in flight.
+     */
+    public int getAsyncWindowSize() {
+        return this.iohandler.getMessageHandler().getAsyncWindowSize();
+    }
+
     /**
      * build client acl instance.
      *
@@ -573,7 +583,7 @@ public class ClientProxy {
 
         try {
             //Hmac.check(message, this.myKey);
-            byte[] bytes = message.getMessage().getCommandBytes().toByteArray();
+            ByteString bytes = message.getMessage().getCommandBytes();
             Hmac.check(bytes, this.myKey, message.getMessage().getHmacAuth().getHmac());
             
             flag = true;
@@ -629,18 +639,15 @@ public class ClientProxy {
          * calculate and set hmac value for this message
          */
         
-        // get command byte string
+        // get command byte string, used for hmac calculation without copy
         ByteString commandByteString = commandBuilder.build().toByteString();
         
-        // get command bytes for hmac calculation
-        byte[] commandBytes = commandByteString.toByteArray();
-        
         // calculate HMAC
         try {
 
             if (messageBuilder.getAuthType() == AuthType.HMACAUTH) {
                 // calculate hmac
-                ByteString hmac = Hmac.calc(commandBytes, myKey);
+                ByteString hmac = Hmac.calc(commandByteString, myKey);
                 // set identity
                 messageBuilder.getHmacAuthBuilder().setIdentity(user);
                 // set hmac
@@ -648,7 +655,7 @@ public class ClientProxy {
             }
 
             // set command bytes to message
-            messageBuilder.setCommandBytes(ByteString.copyFrom(commandBytes));
+            messageBuilder.setCommandBytes(commandByteString);
 
         } catch (HmacException e) {
             logger.log(Level.WARNING, e.getMessage(), e);
@@ -660,8 +667,8 @@ public class ClientProxy {
      *
      * @return next unique number for this client instance.
      */
-    private synchronized long getNextSequence() {
-        return sequence++;
+    private long getNextSequence() {
+        return sequence.getAndIncrement();
     }
 
     /**
@@ -0,0 +1,1539 @@
+/**
+ * Copyright (C) 2014 Seagate Technology.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package com.seagate.kinetic.client.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import kinetic.client.AsyncKineticException;
+import kinetic.client.BatchOperation;
+import kinetic.client.BulkResult;
+import kinetic.client.CallbackHandler;
+import kinetic.client.CallbackResult;
+import kinetic.client.ClientConfiguration;
+import kinetic.client.Entry;
+import kinetic.client.EntryMetadata;
+import kinetic.client.KineticClientFactory;
+import kinetic.client.KineticException;
+import kinetic.client.KineticFuture;
+import kinetic.client.VersionMismatchException;
+import kinetic.client.advanced.AdvancedKineticClient;
+import kinetic.client.advanced.PersistOption;
+
+import com.seagate.kinetic.client.lib.ClientLogger;
+import com.seagate.kinetic.common.lib.KineticMessage;
+import com.seagate.kinetic.proto.Kinetic.CommandOrBuilder;
+
+/**
+ * Kinetic client API implementation over a cluster of drives.
+ * <p>
+ * Keys are placed on the drives with a consistent hash ring with virtual
+ * nodes. Requests with a key are sent to the drive that owns the key. Key
+ * range and get next/previous requests are sent to all drives in parallel and
+ * the results are merged in key order.
+ * <p>
+ * When a drive is added or removed, only the keys of the ring arcs that
+ * change owner are moved, and only the drives that own those arcs are
+ * scanned. Requests are served while the keys are moved. A key that is not
+ * yet moved is moved before a request of the key is sent to its new owner.
+ * Membership changes must not be made while other cluster clients write to
+ * the same drives.
+ * <p>
+ * Batch operations are not supported, since a batch may span drives. Batched
+ * bulk writes are grouped by drive and batched on each drive.
+ *
+ * @see ConsistentHashRing
+ * @see KineticClientFactory#createInstance(List)
+ */
+public class ClusterKineticClient implements AdvancedKineticClient {
+
+    // client logger
+    private final static Logger LOG = ClientLogger.get();
+
+    /**
+     * Default number of virtual nodes of each drive on the ring.
+     */
+    public static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    // max key size of the kinetic protocol, used as the end of a full scan
+    private static final int MAX_KEY_SIZE = 4096;
+
+    // number of key locks used while keys are moved
+    private static final int KEY_LOCKS = 64;
+
+    // end key of a full scan
+    private static final byte[] LAST_KEY = new byte[MAX_KEY_SIZE];
+
+    static {
+        Arrays.fill(LAST_KEY, (byte) 0xff);
+    }
+
+    /**
+     * A drive in the cluster.
+     */
+    private static class Drive {
+
+        private final String name;
+
+        private final ClientConfiguration config;
+
+        private final AdvancedKineticClient client;
+
+        Drive(ClientConfiguration config) throws KineticException {
+            this.name = nameOf(config);
+            this.config = config;
+            this.client = (AdvancedKineticClient) KineticClientFactory
+                    .createInstance(config);
+        }
+
+        void close() {
+            try {
+                this.client.close();
+            } catch (KineticException e) {
+                LOG.log(Level.WARNING, e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * A membership change in progress.
+     */
+    private static class Migration {
+
+        // ring before the change
+        private final ConsistentHashRing<Drive> previous;
+
+        // drives that may hold keys owned by other drives
+        private final Set<Drive> sources;
+
+        // removed drive to be closed when its keys are moved, may be null
+        private final Drive removed;
+
+        Migration(ConsistentHashRing<Drive> previous, Set<Drive> sources,
+                Drive removed) {
+            this.previous = previous;
+            this.sources = sources;
+            this.removed = removed;
+        }
+    }
+
+    // current ring
+    private volatile ConsistentHashRing<Drive> ring;
+
+    // membership change in progress, null if none
+    private volatile Migration migration = null;
+
+    // read locked to send a request, write locked to replace the ring
+    private final ReadWriteLock ringLock = new ReentrantReadWriteLock();
+
+    // serializes the membership changes
+    private final Object membershipLock = new Object();
+
+    // serializes the moves of the same key
+    private final Object[] keyLocks = new Object[KEY_LOCKS];
+
+    // max time to wait for the next completion of a bulk operation
+    private final long requestTimeout;
+
+    /**
+     * Construct a cluster client with the default number of virtual nodes.
+     *
+     * @param configs
+     *            configuration of each drive.
+     * @throws KineticException
+     *             if any of the drives cannot be connected.
+     */
+    public ClusterKineticClient(List<ClientConfiguration> configs)
+            throws KineticException {
+        this(configs, DEFAULT_VIRTUAL_NODES);
+    }
+
+    /**
+     * Construct a cluster client.
+     *
+     * @param configs
+     *            configuration of each drive.
+     * @param virtualNodes
+     *            number of virtual nodes of each drive on the ring.
+     * @throws KineticException
+     *             if any of the drives cannot be connected.
+     */
+    public ClusterKineticClient(List<ClientConfiguration> configs,
+            int virtualNodes) throws KineticException {
+
+        if (configs.isEmpty()) {
+            throw new KineticException("no drive in the cluster");
+        }
+
+        for (int i = 0; i < KEY_LOCKS; i++) {
+            this.keyLocks[i] = new Object();
+        }
+
+        this.requestTimeout = configs.get(0).getRequestTimeoutMillis();
+
+        ConsistentHashRing<Drive> initial = new ConsistentHashRing<Drive>(
+                virtualNodes);
+
+        try {
+            for (ClientConfiguration config : configs) {
+
+                if (initial.getNode(nameOf(config)) != null) {
+                    throw new KineticException("duplicate drive: "
+                            + nameOf(config));
+                }
+
+                Drive drive = new Drive(config);
+                initial.add(drive.name, drive);
+            }
+        } catch (KineticException e) {
+            for (Drive drive : initial.getNodes()) {
+                drive.close();
+            }
+
+            throw e;
+        }
+
+        this.ring = initial;
+
+        LOG.fine("cluster kinetic client initialized, drives="
+                + initial.size() + ", virtual nodes=" + virtualNodes);
+    }
+
+    /**
+     * Wait for the result of a scatter-gather request, up to the request
+     * timeout.
+     */
+    private <T> T await(DefaultKineticFuture<T> future)
+            throws KineticException {
+
+        try {
+            return future.get(this.requestTimeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new KineticException(e.getMessage(), e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof KineticException) {
+                throw (KineticException) e.getCause();
+            }
+
+            throw new KineticException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new KineticException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Get the name of the drive of the specified configuration.
+     */
+    private static String nameOf(ClientConfiguration config) {
+        return config.getHost() + ":" + config.getPort();
+    }
+
+    /**
+     * Get the number of drives of the cluster.
+     *
+     * @return number of drives.
+     */
+    public int getDriveCount() {
+        return this.ring.size();
+    }
+
+    /**
+     * Add a drive to the cluster. The keys of the ring arcs taken by the new
+     * drive are moved to it before this method returns.
+     *
+     * @param config
+     *            configuration of the new drive.
+     * @throws KineticException
+     *             if the drive cannot be connected, is already in the
+     *             cluster, or the keys cannot be moved. Keys not moved are
+     *             moved on demand and by the next membership change or
+     *             {@link #rebalance()}.
+     */
+    public void addDrive(ClientConfiguration config) throws KineticException {
+
+        synchronized (this.membershipLock) {
+
+            this.rebalance();
+
+            ConsistentHashRing<Drive> current = this.ring;
+
+            if (current.getNode(nameOf(config)) != null) {
+                throw new KineticException("drive already in the cluster: "
+                        + nameOf(config));
+            }
+
+            Drive drive = new Drive(config);
+
+            Set<Drive> affected = current.getAffectedNodes(drive.name);
+
+            ConsistentHashRing<Drive> next = current.copy();
+            next.add(drive.name, drive);
+
+            this.replaceRing(next, new Migration(current, affected, null));
+
+            this.rebalance();
+
+            LOG.info("drive added: " + drive.name + ", drives=" + next.size());
+        }
+    }
+
+    /**
+     * Remove a drive from the cluster. The keys of the drive are moved to the
+     * remaining drives and the drive is disconnected before this method
+     * returns.
+     *
+     * @param config
+     *            configuration of the drive to be removed.
+     * @throws KineticException
+     *             if the drive is not in the cluster, is the last drive, or
+     *             the keys cannot be moved. Keys not moved are moved on
+     *             demand and by the next membership change or
+     *             {@link #rebalance()}.
+     */
+    public void removeDrive(ClientConfiguration config)
+            throws KineticException {
+
+        synchronized (this.membershipLock) {
+
+            this.rebalance();
+
+            ConsistentHashRing<Drive> current = this.ring;
+
+            Drive drive = current.getNode(nameOf(config));
+
+            if (drive == null) {
+                throw new KineticException("drive not in the cluster: "
+                        + nameOf(config));
+            }
+
+            if (current.size() == 1) {
+                throw new KineticException("cannot remove the last drive: "
+                        + drive.name);
+            }
+
+            ConsistentHashRing<Drive> next = current.copy();
+            next.remove(drive.name);
+
+            this.replaceRing(next,
+                    new Migration(current, Collections.singleton(drive), drive));
+
+            this.rebalance();
+
+            LOG.info("drive removed: " + drive.name + ", drives="
+                    + next.size());
+        }
+    }
+
+    /**
+     * Move the keys of an incomplete membership change to their owners. This
+     * is a no-op if there is no membership change in progress.
+     *
+     * @throws KineticException
+     *             if the keys cannot be moved.
+     */
+    public void rebalance() throws KineticException {
+
+        synchronized (this.membershipLock) {
+
+            Migration current = this.migration;
+
+            if (current == null) {
+                return;
+            }
+
+            for (Drive source : current.sources) {
+                this.moveKeys(source);
+            }
+
+            this.migration = null;
+
+            if (current.removed != null) {
+                current.removed.close();
+            }
+        }
+    }
+
+    /**
+     * Publish a new ring and the migration from the current ring.
+     */
+    private void replaceRing(ConsistentHashRing<Drive> next,
+            Migration change) {
+
+        // wait for the requests routed with the current ring to be sent
+        this.ringLock.writeLock().lock();
+        try {
+            this.migration = change;
+            this.ring = next;
+        } finally {
+            this.ringLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Move the keys of the source drive that are owned by other drives.
+     */
+    private void moveKeys(Drive source) throws KineticException {
+
+        int pageSize = source.config.getRangePageSize();
+
+        byte[] startKey = new byte[0];
+        boolean startKeyInclusive = true;
+
+        int moved = 0;
+
+        while (true) {
+
+            List<byte[]> keys = source.client.getKeyRange(startKey,
+                    startKeyInclusive, LAST_KEY, true, pageSize);
+
+            for (byte[] key : keys) {
+
+                Drive owner = this.ring.get(key);
+
+                if (owner != source) {
+                    synchronized (this.keyLock(key)) {
+                        this.moveKey(key, source, owner);
+                    }
+
+                    moved++;
+                }
+            }
+
+            if (keys.size() < pageSize) {
+                break;
+            }
+
+            startKey = keys.get(keys.size() - 1);
+            startKeyInclusive = false;
+        }
+
+        LOG.fine("keys moved from drive " + source.name + ", count=" + moved);
+    }
+
+    /**
+     * Move a key to its owner. A newer entry of the key at the owner is kept.
+     * Must be called while holding the lock of the key.
+     */
+    private void moveKey(byte[] key, Drive from, Drive to)
+            throws KineticException {
+
+        Entry entry = from.client.get(key);
+
+        if (entry == null) {
+            return;
+        }
+
+        byte[] version = entry.getEntryMetadata().getVersion();
+
+        // expect the key to be absent at the owner
+        entry.getEntryMetadata().setVersion(null);
+
+        try {
+            to.client.put(entry, version, PersistOption.SYNC);
+        } catch (VersionMismatchException e) {
+            // written at the owner after the membership change
+            LOG.fine("newer entry at the owner, key moved: " + to.name);
+        }
+
+        from.client.deleteForced(key, PersistOption.SYNC);
+    }
+
+    private Object keyLock(byte[] key) {
+        return this.keyLocks[(int) (ConsistentHashRing.hash(key) >>> 1)
+                % KEY_LOCKS];
+    }
+
+    /**
+     * Get the drive that owns the specified key. If the key may not be moved
+     * yet, it is moved before the owner is returned. Must be called while
+     * holding the ring read lock.
+     */
+    private Drive route(byte[] key) throws KineticException {
+
+        Drive owner = this.ring.get(key);
+
+        Migration current = this.migration;
+
+        if (current != null) {
+
+            Drive from = current.previous.get(key);
+
+            if (from != owner) {
+                synchronized (this.keyLock(key)) {
+                    this.moveKey(key, from, owner);
+                }
+            }
+        }
+
+        return owner;
+    }
+
+    /**
+     * Get all drives that may hold keys, including a drive being removed.
+     */
+    private List<Drive> getDrives() {
+
+        Migration current = this.migration;
+
+        if (current == null) {
+            return this.ring.getNodes();
+        }
+
+        Set<Drive> drives = new LinkedHashSet<Drive>(this.ring.getNodes());
+        drives.addAll(current.previous.getNodes());
+
+        return new ArrayList<Drive>(drives);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * A no-op is sent to each drive. The longest round trip time is
+     * returned.
+     */
+    @Override
+    public long noop() throws KineticException {
+
+        this.ringLock.readLock().lock();
+        try {
+            long max = 0;
+
+            for (Drive drive : this.getDrives()) {
+                max = Math.max(max, drive.client.noop());
+            }
+
+            return max;
+        } finally {
+            this.ringLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * All drives are flushed.
+     */
+    @Override
+    public void flush() throws KineticException {
+
+        this.ringLock.readLock().lock();
+        try {
+            for (Drive drive : this.getDrives()) {
+                drive.client.flush();
+            }
+        } finally {
+            this.ringLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Entry put(Entry entry, byte[] newVersion) throws KineticException {
+        return this.put(entry, newVersion, PersistOption.SYNC);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Entry put(Entry entry, byte[] newVersion, PersistOption option)
+            throws KineticException {
+        this.ringLock.readLock().lock();
+        try {
+            return this.route(entry.getKey()).client.put(entry, newVersion,
+                    option);
+        } finally {
+            this.ringLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Entry putForced(Entry entry) throws KineticException {
+        return this.putForced(entry, PersistOption.SYNC);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Entry putForced(Entry entry, PersistOption option)
+            throws KineticException {
+        this.ringLock.readLock().lock();
+        try {
+            return this.route(entry.getKey()).client.putForced(entry, option);
+        } finally {
+            this.ringLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void putAsync(Entry entry, byte[] newVersion,
+            CallbackHandler<Entry> handler) throws KineticException {
+        this.putAsync(entry, newVersion, PersistOption.SYNC, handler);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public KineticFuture<Entry> putAsync(Entry entry, byte[] newVersion)
+            throws KineticException {
+
+        DefaultKineticFuture<Entry> future = new DefaultKineticFuture<Entry>(
+                this.requestTimeout);
+
+        this.putAsync(entry, newVersion, future);
+
+        return future;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void putAsync(Entry entry, byte[] newVersion, PersistOption option,
+            CallbackHandler<Entry> handler) throws KineticException {
+        this.ringLock.readLock().lock();
+        try {
+            this.route(entry.getKey()).client.putAsync(entry, newVersion,
+                    option, handler);
+        } finally {
+            this.ringLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void putForcedAsync(Entry entry, CallbackHandler<Entry> handler)
+            throws KineticException {
+        this.putForcedAsync(entry, PersistOption.SYNC, handler);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public KineticFuture<Entry> putForcedAsync(Entry entry)
+            throws KineticException {
+
+        DefaultKineticFuture<Entry> future = new DefaultKineticFuture<Entry>(
+                this.requestTimeout);
+
+        this.putForcedAsync(entry, future);
+
+        return future;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void putForcedAsync(Entry entry, PersistOption option,
+            CallbackHandler<Entry> handler) throws KineticException {
+        this.ringLock.readLock().lock();
+        try {
+            this.route(entry.getKey()).client.putForcedAsync(entry, option,
+                    handler);
+        } finally {
+            this.ringLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Entry get(byte[] key) throws KineticException {
+        this.ringLock.readLock().lock();
+        try {
+            return this.route(key).client.get(key);
+        } finally {
+            this.ringLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public byte[] getVersion(byte[] key) throws KineticException {
+        this.ringLock.readLock().lock();
+        try {
+            return this.route(key).client.getVersion(key);
+        } finally {
+            this.ringLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void getAsync(byte[] key, CallbackHandler<Entry> handler)
+            throws KineticException {
+        this.ringLock.readLock().lock();
+        try {
+            this.route(key).client.getAsync(key, handler);
+        } finally {
+            this.ringLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public KineticFuture<Entry> getAsync(byte[] key) throws KineticException {
+
+        DefaultKineticFuture<Entry> future = new DefaultKineticFuture<Entry>(
+                this.requestTimeout);
+
+        this.getAsync(key, future);
+
+        return future;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean delete(Entry entry) throws KineticException {
+        return this.delete(entry, PersistOption.SYNC);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean delete(Entry entry, PersistOption option)
+            throws KineticException {
+        this.ringLock.readLock().lock();
+        try {
+            return this.route(entry.getKey()).client.delete(entry, option);
+        } finally {
+            this.ringLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean deleteForced(byte[] key) throws KineticException {
+        return this.deleteForced(key, PersistOption.SYNC);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean deleteForced(byte[] key, PersistOption option)
+            throws KineticException {
+        this.ringLock.readLock().lock();
+        try {
+            return this.route(key).client.deleteForced(key, option);
+        } finally {
+            this.ringLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void deleteAsync(Entry entry, CallbackHandler<Boolean> handler)
+            throws KineticException {
+        this.deleteAsync(entry, PersistOption.SYNC, handler);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public KineticFuture<Boolean> deleteAsync(Entry entry)
+            throws KineticException {
+
+        DefaultKineticFuture<Boolean> future = new DefaultKineticFuture<Boolean>(
+                this.requestTimeout);
+
+        this.deleteAsync(entry, future);
+
+        return future;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void deleteAsync(Entry entry, PersistOption option,
+            CallbackHandler<Boolean> handler) throws KineticException {
+        this.ringLock.readLock().lock();
+        try {
+            this.route(entry.getKey()).client.deleteAsync(entry, option,
+                    handler);
+        } finally {
+            this.ringLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void deleteForcedAsync(byte[] key, CallbackHandler<Boolean> handler)
+            throws KineticException {
+        this.deleteForcedAsync(key, PersistOption.SYNC, handler);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public KineticFuture<Boolean> deleteForcedAsync(byte[] key)
+            throws KineticException {
+
+        DefaultKineticFuture<Boolean> future = new DefaultKineticFuture<Boolean>(
+                this.requestTimeout);
+
+        this.deleteForcedAsync(key, future);
+
+        return future;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void deleteForcedAsync(byte[] key, PersistOption option,
+            CallbackHandler<Boolean> handler) throws KineticException {
+        this.ringLock.readLock().lock();
+        try {
+            this.route(key).client.deleteForcedAsync(key, option, handler);
+        } finally {
+            this.ringLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public EntryMetadata getMetadata(byte[] key) throws KineticException {
+        this.ringLock.readLock().lock();
+        try {
+            return this.route(key).client.getMetadata(key);
+        } finally {
+            this.ringLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void getMetadataAsync(byte[] key,
+            CallbackHandler<EntryMetadata> handler) throws KineticException {
+        this.ringLock.readLock().lock();
+        try {
+            this.route(key).client.getMetadataAsync(key, handler);
+        } finally {
+            this.ringLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public KineticFuture<EntryMetadata> getMetadataAsync(byte[] key)
+            throws KineticException {
+
+        DefaultKineticFuture<EntryMetadata> future = new DefaultKineticFuture<EntryMetadata>(
+                this.requestTimeout);
+
+        this.getMetadataAsync(key, future);
+
+        return future;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The request is sent to all drives in parallel. The entry with the
+     * lowest next key is returned.
+     */
+    @Override
+    public Entry getNext(byte[] key) throws KineticException {
+
+        DefaultKineticFuture<Entry> future = new DefaultKineticFuture<Entry>(
+                this.requestTimeout);
+
+        this.getNextAsync(key, future);
+
+        return this.await(future);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void getNextAsync(byte[] key, CallbackHandler<Entry> handler)
+            throws KineticException {
+
+        this.ringLock.readLock().lock();
+        try {
+            List<Drive> drives = this.getDrives();
+
+            EntryGather gather = new EntryGather(drives.size(), false, handler);
+
+            for (int i = 0; i < drives.size(); i++) {
+                drives.get(i).client.getNextAsync(key, gather.handler(i));
+            }
+        } finally {
+            this.ringLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The request is sent to all drives in parallel. The entry with the
+     * highest previous key is returned.
+     */
+    @Override
+    public Entry getPrevious(byte[] key) throws KineticException {
+
+        DefaultKineticFuture<Entry> future = new DefaultKineticFuture<Entry>(
+                this.requestTimeout);
+
+        this.getPreviousAsync(key, future);
+
+        return this.await(future);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void getPreviousAsync(byte[] key, CallbackHandler<Entry> handler)
+            throws KineticException {
+
+        this.ringLock.readLock().lock();
+        try {
+            List<Drive> drives = this.getDrives();
+
+            EntryGather gather = new EntryGather(drives.size(), true, handler);
+
+            for (int i = 0; i < drives.size(); i++) {
+                drives.get(i).client.getPreviousAsync(key, gather.handler(i));
+            }
+        } finally {
+            this.ringLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The request is sent to all drives in parallel and the returned keys are
+     * merged in key order.
+     */
+    @Override
+    public List<byte[]> getKeyRange(byte[] startKey, boolean startKeyInclusive,
+            byte[] endKey, boolean endKeyInclusive, int maxReturned)
+                    throws KineticException {
+
+        DefaultKineticFuture<List<byte[]>> future = new DefaultKineticFuture<List<byte[]>>(
+                this.requestTimeout);
+
+        this.getKeyRangeAsync(startKey, startKeyInclusive, endKey,
+                endKeyInclusive, maxReturned, future);
+
+        return this.await(future);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void getKeyRangeAsync(byte[] startKey, boolean startKeyInclusive,
+            byte[] endKey, boolean endKeyInclusive, int maxKeys,
+            CallbackHandler<List<byte[]>> handler) throws KineticException {
+
+        this.ringLock.readLock().lock();
+        try {
+            List<Drive> drives = this.getDrives();
+
+            KeyRangeGather gather = new KeyRangeGather(drives.size(), maxKeys,
+                    false, handler);
+
+            for (int i = 0; i < drives.size(); i++) {
+                drives.get(i).client.getKeyRangeAsync(startKey,
+                        startKeyInclusive, endKey, endKeyInclusive, maxKeys,
+                        gather.handler(i));
+            }
+        } finally {
+            this.ringLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public KineticFuture<List<byte[]>> getKeyRangeAsync(byte[] startKey,
+            boolean startKeyInclusive, byte[] endKey, boolean endKeyInclusive,
+            int maxKeys) throws KineticException {
+
+        DefaultKineticFuture<List<byte[]>> future = new DefaultKineticFuture<List<byte[]>>(
+                this.requestTimeout);
+
+        this.getKeyRangeAsync(startKey, startKeyInclusive, endKey,
+                endKeyInclusive, maxKeys, future);
+
+        return future;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The request is sent to all drives in parallel and the returned keys are
+     * merged in reversed key order.
+     */
+    @Override
+    public List<byte[]> getKeyRangeReversed(byte[] startKey,
+            boolean startKeyInclusive, byte[] endKey, boolean endKeyInclusive,
+            int maxKeys) throws KineticException {
+
+        DefaultKineticFuture<List<byte[]>> future = new DefaultKineticFuture<List<byte[]>>(
+                this.requestTimeout);
+
+        this.getKeyRangeReversedAsync(startKey, startKeyInclusive, endKey,
+                endKeyInclusive, maxKeys, future);
+
+        return this.await(future);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void getKeyRangeReversedAsync(byte[] startKey,
+            boolean startKeyInclusive, byte[] endKey, boolean endKeyInclusive,
+            int maxKeys, CallbackHandler<List<byte[]>> handler)
+                    throws KineticException {
+
+        this.ringLock.readLock().lock();
+        try {
+            List<Drive> drives = this.getDrives();
+
+            KeyRangeGather gather = new KeyRangeGather(drives.size(), maxKeys,
+                    true, handler);
+
+            for (int i = 0; i < drives.size(); i++) {
+                drives.get(i).client.getKeyRangeReversedAsync(startKey,
+                        startKeyInclusive, endKey, endKeyInclusive, maxKeys,
+                        gather.handler(i));
+            }
+        } finally {
+            this.ringLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BulkResult<Entry> getAll(List<byte[]> keys)
+            throws KineticException {
+        return BulkOperations.getAll(this, keys, this.requestTimeout);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BulkResult<Entry> putAll(List<Entry> entries)
+            throws KineticException {
+        return this.putAll(entries, false);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * If batched, the entries are grouped by drive, and each group is put in
+     * batches on its drive.
+     */
+    @Override
+    public BulkResult<Entry> putAll(List<Entry> entries, boolean isBatched)
+            throws KineticException {
+
+        if (isBatched == false) {
+            return BulkOperations.putAll(this, entries, this.requestTimeout);
+        }
+
+        DefaultBulkResult<Entry> result = new DefaultBulkResult<Entry>(
+                entries.size());
+
+        this.ringLock.readLock().lock();
+        try {
+            Map<Drive, List<Integer>> groups = new LinkedHashMap<Drive, List<Integer>>();
+
+            for (int i = 0; i < entries.size(); i++) {
+                try {
+                    group(groups, this.route(entries.get(i).getKey()), i);
+                } catch (KineticException e) {
+                    result.setError(i, e);
+                }
+            }
+
+            for (Map.Entry<Drive, List<Integer>> group : groups.entrySet()) {
+
+                List<Entry> part = new ArrayList<Entry>();
+
+                for (int i : group.getValue()) {
+                    part.add(entries.get(i));
+                }
+
+                result.copy(group.getKey().client.putAll(part, true),
+                        group.getValue());
+            }
+        } finally {
+            this.ringLock.readLock().unlock();
+        }
+
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BulkResult<Boolean> deleteAll(List<byte[]> keys)
+            throws KineticException {
+        return this.deleteAll(keys, false);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * If batched, the keys are grouped by drive, and each group is deleted in
+     * batches on its drive.
+     */
+    @Override
+    public BulkResult<Boolean> deleteAll(List<byte[]> keys, boolean isBatched)
+            throws KineticException {
+
+        if (isBatched == false) {
+            return BulkOperations.deleteAll(this, keys, this.requestTimeout);
+        }
+
+        DefaultBulkResult<Boolean> result = new DefaultBulkResult<Boolean>(
+                keys.size());
+
+        this.ringLock.readLock().lock();
+        try {
+            Map<Drive, List<Integer>> groups = new LinkedHashMap<Drive, List<Integer>>();
+
+            for (int i = 0; i < keys.size(); i++) {
+                try {
+                    group(groups, this.route(keys.get(i)), i);
+                } catch (KineticException e) {
+                    result.setError(i, e);
+                }
+            }
+
+            for (Map.Entry<Drive, List<Integer>> group : groups.entrySet()) {
+
+                List<byte[]> part = new ArrayList<byte[]>();
+
+                for (int i : group.getValue()) {
+                    part.add(keys.get(i));
+                }
+
+                result.copy(group.getKey().client.deleteAll(part, true),
+                        group.getValue());
+            }
+        } finally {
+            this.ringLock.readLock().unlock();
+        }
+
+        return result;
+    }
+
+    private static void group(Map<Drive, List<Integer>> groups, Drive drive,
+            int index) {
+
+        List<Integer> indexes = groups.get(drive);
+
+        if (indexes == null) {
+            indexes = new ArrayList<Integer>();
+            groups.put(drive, indexes);
+        }
+
+        indexes.add(index);
+    }
+
+    /**
+     * Not supported. A batch may span drives.
+     *
+     * @throws KineticException
+     *             always.
+     */
+    @Override
+    public BatchOperation createBatchOperation() throws KineticException {
+        throw new KineticException(
+                "batch operation is not supported by the cluster client");
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The request is sent to the drive that owns the key of the request.
+     *
+     * @throws KineticException
+     *             if the request has no key.
+     */
+    @Override
+    public KineticMessage request(KineticMessage requestMessage)
+            throws KineticException {
+        this.ringLock.readLock().lock();
+        try {
+            return this.route(keyOf(requestMessage)).client
+                    .request(requestMessage);
+        } finally {
+            this.ringLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The request is sent to the drive that owns the key of the request.
+     *
+     * @throws KineticException
+     *             if the request has no key.
+     */
+    @Override
+    public <T> void requestAsync(KineticMessage requestMessage,
+            CallbackHandler<T> callback) throws KineticException {
+        this.ringLock.readLock().lock();
+        try {
+            this.route(keyOf(requestMessage)).client.requestAsync(
+                    requestMessage, callback);
+        } finally {
+            this.ringLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the key of the specified request message.
+     *
+     * @throws KineticException
+     *             if the request has no key.
+     */
+    private static byte[] keyOf(KineticMessage message)
+            throws KineticException {
+
+        CommandOrBuilder command = message.getCommand();
+
+        if (command != null && command.hasBody()
+                && command.getBody().hasKeyValue()
+                && command.getBody().getKeyValue().hasKey()) {
+            return command.getBody().getKeyValue().getKey().toByteArray();
+        }
+
+        throw new KineticException(
+                "request without a key cannot be routed to a drive");
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * All drives are disconnected.
+     */
+    @Override
+    public void close() throws KineticException {
+
+        synchronized (this.membershipLock) {
+
+            Set<Drive> drives = new HashSet<Drive>(this.getDrives());
+
+            for (Drive drive : drives) {
+                drive.close();
+            }
+        }
+    }
+
+    /**
+     * Compare two keys in the unsigned lexicographical order of the drive.
+     */
+    static int compare(byte[] k1, byte[] k2) {
+
+        int len = Math.min(k1.length, k2.length);
+
+        for (int i = 0; i < len; i++) {
+
+            int diff = (k1[i] & 0xff) - (k2[i] & 0xff);
+
+            if (diff != 0) {
+                return diff;
+            }
+        }
+
+        return k1.length - k2.length;
+    }
+
+    /**
+     * Gathers the results of a request sent to all drives and invokes the
+     * application handler once with the reduced result.
+     *
+     * @param <T>
+     *            result type of each drive and of the reduced result.
+     */
+    private static abstract class Gather<T> {
+
+        // result of each drive
+        private final List<T> results;
+
+        // number of drives not yet responded
+        private final AtomicInteger remaining;
+
+        private final CallbackHandler<T> handler;
+
+        // first error, if any
+        private volatile AsyncKineticException error = null;
+
+        Gather(int size, CallbackHandler<T> handler) {
+
+            this.results = new ArrayList<T>(Collections.<T> nCopies(size,
+                    null));
+            this.remaining = new AtomicInteger(size);
+            this.handler = handler;
+        }
+
+        /**
+         * Get the handler of the specified drive index.
+         */
+        CallbackHandler<T> handler(final int index) {
+
+            return new CallbackHandler<T>() {
+
+                @Override
+                public void onSuccess(CallbackResult<T> result) {
+
+                    synchronized (results) {
+                        results.set(index, result.getResult());
+                    }
+
+                    arrive();
+                }
+
+                @Override
+                public void onError(AsyncKineticException exception) {
+
+                    if (error == null) {
+                        error = exception;
+                    }
+
+                    arrive();
+                }
+            };
+        }
+
+        private void arrive() {
+            if (this.remaining.decrementAndGet() == 0) {
+                this.done();
+            }
+        }
+
+        private void done() {
+
+            if (this.error != null) {
+                this.handler.onError(this.error);
+                return;
+            }
+
+            T reduced = null;
+
+            synchronized (this.results) {
+                reduced = this.reduce(this.results);
+            }
+
+            this.handler.onSuccess(new AsyncCallbackResult<T>(null, null,
+                    reduced));
+        }
+
+        /**
+         * Reduce the results of all drives.
+         */
+        abstract T reduce(List<T> results);
+    }
+
+    /**
+     * Selects the entry with the lowest (or highest if reversed) key.
+     */
+    private static class EntryGather extends Gather<Entry> {
+
+        private final boolean isReversed;
+
+        EntryGather(int size, boolean isReversed, CallbackHandler<Entry> handler) {
+            super(size, handler);
+            this.isReversed = isReversed;
+        }
+
+        @Override
+        Entry reduce(List<Entry> results) {
+
+            Entry selected = null;
+
+            for (Entry entry : results) {
+
+                if (entry == null) {
+                    continue;
+                }
+
+                if (selected == null) {
+                    selected = entry;
+                    continue;
+                }
+
+                int c = compare(entry.getKey(), selected.getKey());
+
+                if ((this.isReversed && c > 0) || (!this.isReversed && c < 0)) {
+                    selected = entry;
+                }
+            }
+
+            return selected;
+        }
+    }
+
+    /**
+     * Merges the sorted key lists of all drives with a k-way merge.
+     */
+    private static class KeyRangeGather extends Gather<List<byte[]>> {
+
+        private final int maxKeys;
+
+        private final boolean isReversed;
+
+        KeyRangeGather(int size, int maxKeys, boolean isReversed,
+                CallbackHandler<List<byte[]>> handler) {
+            super(size, handler);
+            this.maxKeys = maxKeys;
+            this.isReversed = isReversed;
+        }
+
+        @Override
+        List<byte[]> reduce(List<List<byte[]>> results) {
+
+            PriorityQueue<KeyCursor> heap = new PriorityQueue<KeyCursor>(
+                    Math.max(1, results.size()));
+
+            for (List<byte[]> keys : results) {
+                if (keys != null && keys.isEmpty() == false) {
+                    heap.add(new KeyCursor(keys, this.isReversed));
+                }
+            }
+
+            List<byte[]> merged = new ArrayList<byte[]>();
+
+            byte[] last = null;
+
+            while (heap.isEmpty() == false && merged.size() < this.maxKeys) {
+
+                KeyCursor cursor = heap.poll();
+
+                byte[] key = cursor.current();
+
+                // a key being moved may be on two drives
+                if (last == null || compare(last, key) != 0) {
+                    merged.add(key);
+                    last = key;
+                }
+
+                if (cursor.advance()) {
+                    heap.add(cursor);
+                }
+            }
+
+            return merged;
+        }
+    }
+
+    /**
+     * Position in the sorted key list of a drive.
+     */
+    private static class KeyCursor implements Comparable<KeyCursor> {
+
+        private final List<byte[]> keys;
+
+        private final boolean isReversed;
+
+        private int position = 0;
+
+        KeyCursor(List<byte[]> keys, boolean isReversed) {
+            this.keys = keys;
+            this.isReversed = isReversed;
+        }
+
+        byte[] current() {
+            return this.keys.get(this.position);
+        }
+
+        boolean advance() {
+            return ++this.position < this.keys.size();
+        }
+
+        @Override
+        public int compareTo(KeyCursor other) {
+
+            int c = compare(this.current(), other.current());
+
+            return this.isReversed ? -c : c;
+        }
+    }
+}
@@ -0,0 +1,242 @@
+/**
+ * Copyright (C) 2014 Seagate Technology.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package com.seagate.kinetic.client.internal;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Consistent hash ring with virtual nodes.
+ * <p>
+ * Each node is placed on the ring at a number of positions (virtual nodes)
+ * derived from the node name. A key is owned by the node at the first position
+ * at or after the hash of the key, wrapping around at the end of the ring.
+ * Adding or removing a node only moves the keys of the ring arcs of its
+ * virtual nodes.
+ * <p>
+ * A ring is not thread safe. Callers publish a modified copy instead of
+ * modifying a ring in use.
+ *
+ * @param <T>
+ *            node type.
+ *
+ * @see ClusterKineticClient
+ */
+class ConsistentHashRing<T> {
+
+	// position -> node
+	private final TreeMap<Long, T> ring = new TreeMap<Long, T>();
+
+	// node name -> node
+	private final Map<String, T> nodes = new TreeMap<String, T>();
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	// number of virtual nodes per node
+	private final int virtualNodes;
+
+	/**
+	 * Construct an empty ring.
+	 * 
+	 * @param virtualNodes
+	 *            number of positions of each node on the ring.
+	 */
+	ConsistentHashRing(int virtualNodes) {
+		this.virtualNodes = virtualNodes;
+	}
+
+	/**
+	 * Get a copy of this ring.
+	 */
+	ConsistentHashRing<T> copy() {
+
+		ConsistentHashRing<T> copy = new ConsistentHashRing<T>(
+				this.virtualNodes);
+
+		copy.ring.putAll(this.ring);
+		copy.nodes.putAll(this.nodes);
+
+		return copy;
+	}
+
+	/**
+	 * Add a node to the ring.
+	 * 
+	 * @param name
+	 *            unique name of the node, used to place the node.
+	 * @param node
+	 *            the node.
+	 */
+	void add(String name, T node) {
+
+		if (this.nodes.containsKey(name)) {
+			throw new IllegalArgumentException("node already exists: " + name);
+		}
+
+		this.nodes.put(name, node);
+
+		for (long position : this.positions(name)) {
+			// the first node placed at a position keeps it
+			if (this.ring.containsKey(position) == false) {
+				this.ring.put(position, node);
+			}
+		}
+	}
+
+	/**
+	 * Remove a node from the ring.
+	 * 
+	 * @param name
+	 *            name of the node.
+	 * @return the removed node, or null if not found.
+	 */
+	T remove(String name) {
+
+		T node = this.nodes.remove(name);
+
+		if (node == null) {
+			return null;
+		}
+
+		Iterator<T> it = this.ring.values().iterator();
+		while (it.hasNext()) {
+			if (it.next() == node) {
+				it.remove();
+			}
+		}
+
+		return node;
+	}
+
+	/**
+	 * Get a node by name.
+	 * 
+	 * @return the node, or null if not found.
+	 */
+	T getNode(String name) {
+		return this.nodes.get(name);
+	}
+
+	/**
+	 * Get all nodes of the ring, ordered by name.
+	 */
+	List<T> getNodes() {
+		return new ArrayList<T>(this.nodes.values());
+	}
+
+	/**
+	 * Get the number of nodes of the ring.
+	 */
+	int size() {
+		return this.nodes.size();
+	}
+
+	/**
+	 * Get the owner of the specified key.
+	 * 
+	 * @return the owner, or null if the ring is empty.
+	 */
+	T get(byte[] key) {
+		return this.getAt(hash(key));
+	}
+
+	/**
+	 * Get the owners of the ring arcs that the named node would take if it
+	 * was added to this ring. These are the only nodes that move keys to the
+	 * added node.
+	 * 
+	 * @param name
+	 *            name of the node to be added.
+	 * @return owners of the affected arcs.
+	 */
+	Set<T> getAffectedNodes(String name) {
+
+		Set<T> affected = new HashSet<T>();
+
+		if (this.ring.isEmpty()) {
+			return affected;
+		}
+
+		for (long position : this.positions(name)) {
+			affected.add(this.getAt(position));
+		}
+
+		return affected;
+	}
+
+	/**
+	 * Get the owner of the specified ring position.
+	 */
+	private T getAt(long position) {
+
+		if (this.ring.isEmpty()) {
+			return null;
+		}
+
+		Map.Entry<Long, T> entry = this.ring.ceilingEntry(position);
+
+		if (entry == null) {
+			// wrap around
+			entry = this.ring.firstEntry();
+		}
+
+		return entry.getValue();
+	}
+
+	/**
+	 * Get the ring positions of the named node.
+	 */
+	private long[] positions(String name) {
+
+		long[] positions = new long[this.virtualNodes];
+
+		for (int i = 0; i < this.virtualNodes; i++) {
+			positions[i] = hash((name + "#" + i).getBytes(UTF8));
+		}
+
+		return positions;
+	}
+
+	/**
+	 * 64 bit FNV-1a hash followed by the MurmurHash3 finalizer, so that keys
+	 * with a common prefix are spread over the ring.
+	 */
+	static long hash(byte[] bytes) {
+
+		long h = 0xcbf29ce484222325L;
+
+		for (byte b : bytes) {
+			h ^= (b & 0xff);
+			h *= 0x100000001b3L;
+		}
+
+		h ^= (h >>> 33);
+		h *= 0xff51afd7ed558ccdL;
+		h ^= (h >>> 33);
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= (h >>> 33);
+
+		return h;
+	}
+}
@@ -0,0 +1,249 @@
+/**
+ * Copyright (C) 2014 Seagate Technology.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package com.seagate.kinetic.client.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import kinetic.client.AsyncKineticException;
+import kinetic.client.BulkResult;
+import kinetic.client.CallbackHandler;
+import kinetic.client.CallbackResult;
+import kinetic.client.KineticException;
+
+/**
+ * Default bulk result implementation. The result of each request is set by
+ * the callback handler of the request.
+ *
+ * @param <T>
+ *            result type.
+ *
+ * @see BulkOperations
+ */
+public class DefaultBulkResult<T> implements BulkResult<T> {
+
+	private final Object[] results;
+
+	private final KineticException[] errors;
+
+	private final boolean[] isDone;
+
+	// number of requests not yet completed
+	private int remaining;
+
+	/**
+	 * Construct a bulk result of the specified number of requests.
+	 *
+	 * @param size
+	 *            number of requests.
+	 */
+	public DefaultBulkResult(int size) {
+		this.results = new Object[size];
+		this.errors = new KineticException[size];
+		this.isDone = new boolean[size];
+		this.remaining = size;
+	}
+
+	/**
+	 * Get the callback handler of the request at the specified index.
+	 */
+	CallbackHandler<T> handler(final int index) {
+
+		return new CallbackHandler<T>() {
+
+			@Override
+			public void onSuccess(CallbackResult<T> result) {
+				set(index, result.getResult());
+			}
+
+			@Override
+			public void onError(AsyncKineticException exception) {
+				setError(index, exception);
+			}
+		};
+	}
+
+	/**
+	 * Get a callback handler of the request at the specified index that only
+	 * records a failure. Used for the commands of a batch, which complete when
+	 * the batch is committed.
+	 */
+	CallbackHandler<T> errorHandler(final int index) {
+
+		return new CallbackHandler<T>() {
+
+			@Override
+			public void onSuccess(CallbackResult<T> result) {
+				;
+			}
+
+			@Override
+			public void onError(AsyncKineticException exception) {
+				setError(index, exception);
+			}
+		};
+	}
+
+	/**
+	 * Copy the results of a part of the bulk operation.
+	 *
+	 * @param part
+	 *            results of the part.
+	 * @param indexes
+	 *            index in this bulk operation of each request of the part.
+	 */
+	void copy(BulkResult<T> part, List<Integer> indexes) {
+
+		for (int i = 0; i < indexes.size(); i++) {
+
+			KineticException error = part.getError(i);
+
+			if (error != null) {
+				this.setError(indexes.get(i), error);
+			} else {
+				this.set(indexes.get(i), part.get(i));
+			}
+		}
+	}
+
+	/**
+	 * Check if the request at the specified index is completed.
+	 */
+	synchronized boolean isDone(int index) {
+		return this.isDone[index];
+	}
+
+	/**
+	 * Set the result of the request at the specified index. Ignored if the
+	 * request is already completed.
+	 */
+	synchronized void set(int index, T result) {
+
+		if (this.isDone[index]) {
+			return;
+		}
+
+		this.results[index] = result;
+		this.complete(index);
+	}
+
+	/**
+	 * Set the failure of the request at the specified index. Ignored if the
+	 * request is already completed.
+	 */
+	synchronized void setError(int index, KineticException error) {
+
+		if (this.isDone[index]) {
+			return;
+		}
+
+		this.errors[index] = error;
+		this.complete(index);
+	}
+
+	private void complete(int index) {
+
+		this.isDone[index] = true;
+
+		--this.remaining;
+
+		this.notifyAll();
+	}
+
+	/**
+	 * Wait for all requests to complete. Requests are failed if none completes
+	 * within the timeout.
+	 *
+	 * @param timeout
+	 *            max time to wait for the next completion in milli seconds.
+	 * @throws KineticException
+	 *             if interrupted.
+	 */
+	synchronized void await(long timeout) throws KineticException {
+
+		long deadline = System.currentTimeMillis() + timeout;
+		long wait = timeout;
+
+		int lastRemaining = this.remaining;
+
+		try {
+			while (this.remaining > 0 && wait > 0) {
+
+				this.wait(wait);
+
+				// extend the deadline while requests complete
+				if (this.remaining < lastRemaining) {
+					lastRemaining = this.remaining;
+					deadline = System.currentTimeMillis() + timeout;
+				}
+
+				wait = deadline - System.currentTimeMillis();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new KineticException(e.getMessage(), e);
+		}
+
+		for (int i = 0; i < this.isDone.length; i++) {
+			if (this.isDone[i] == false) {
+				this.setError(i, new KineticException("request timeout"));
+			}
+		}
+	}
+
+	@Override
+	public int size() {
+		return this.results.length;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public synchronized T get(int index) {
+		return (T) this.results[index];
+	}
+
+	@Override
+	public synchronized KineticException getError(int index) {
+		return this.errors[index];
+	}
+
+	@Override
+	public synchronized boolean hasErrors() {
+
+		for (KineticException error : this.errors) {
+			if (error != null) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public synchronized List<T> getResults() {
+
+		List<T> list = new ArrayList<T>(this.results.length);
+
+		for (Object result : this.results) {
+			list.add((T) result);
+		}
+
+		return list;
+	}
+}
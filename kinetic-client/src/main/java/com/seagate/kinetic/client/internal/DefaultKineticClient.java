@@ -19,15 +19,18 @@ package com.seagate.kinetic.client.internal;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import kinetic.client.BatchOperation;
+import kinetic.client.BulkResult;
 import kinetic.client.CallbackHandler;
 import kinetic.client.ClientConfiguration;
 import kinetic.client.Entry;
 import kinetic.client.EntryMetadata;
 import kinetic.client.EntryNotFoundException;
 import kinetic.client.KineticException;
+import kinetic.client.KineticFuture;
 import kinetic.client.advanced.AdvancedKineticClient;
 import kinetic.client.advanced.PersistOption;
 
@@ -37,6 +40,7 @@ import com.seagate.kinetic.client.internal.ClientProxy.LCException;
 import com.seagate.kinetic.client.lib.ClientLogger;
 import com.seagate.kinetic.common.lib.KineticMessage;
 import com.seagate.kinetic.proto.Kinetic.Command;
+import com.seagate.kinetic.proto.Kinetic.Command.GetLog;
 import com.seagate.kinetic.proto.Kinetic.Command.MessageType;
 import com.seagate.kinetic.proto.Kinetic.Command.Synchronization;
 
@@ -60,6 +64,9 @@ public class DefaultKineticClient implements AdvancedKineticClient {
     // client proxy -- perform ops for apps.
     private ClientProxy client = null;
 
+    // max commands per batch of the drive, 0 if not yet read
+    private volatile int maxCommandsPerBatch = 0;
+
     /**
      * Constructor to instantiate a new instance of kinetic client.
      *
@@ -537,6 +544,21 @@ public class DefaultKineticClient implements AdvancedKineticClient {
         this.putAsync(entry, newVersion, PersistOption.SYNC, handler);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public KineticFuture<Entry> putAsync(Entry entry, byte[] newVersion)
+            throws KineticException {
+
+        DefaultKineticFuture<Entry> future = new DefaultKineticFuture<Entry>(
+                config.getRequestTimeoutMillis());
+
+        this.putAsync(entry, newVersion, future);
+
+        return future;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -590,6 +612,20 @@ public class DefaultKineticClient implements AdvancedKineticClient {
         this.client.requestAsync(message, handler);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public KineticFuture<Entry> getAsync(byte[] key) throws KineticException {
+
+        DefaultKineticFuture<Entry> future = new DefaultKineticFuture<Entry>(
+                config.getRequestTimeoutMillis());
+
+        this.getAsync(key, future);
+
+        return future;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -599,6 +635,21 @@ public class DefaultKineticClient implements AdvancedKineticClient {
         this.deleteAsync(entry, PersistOption.SYNC, handler);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public KineticFuture<Boolean> deleteAsync(Entry entry)
+            throws KineticException {
+
+        DefaultKineticFuture<Boolean> future = new DefaultKineticFuture<Boolean>(
+                config.getRequestTimeoutMillis());
+
+        this.deleteAsync(entry, future);
+
+        return future;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -673,6 +724,23 @@ public class DefaultKineticClient implements AdvancedKineticClient {
         this.client.requestAsync(message, handler);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public KineticFuture<List<byte[]>> getKeyRangeAsync(byte[] startKey,
+            boolean startKeyInclusive, byte[] endKey, boolean endKeyInclusive,
+            int maxKeys) throws KineticException {
+
+        DefaultKineticFuture<List<byte[]>> future = new DefaultKineticFuture<List<byte[]>>(
+                config.getRequestTimeoutMillis());
+
+        this.getKeyRangeAsync(startKey, startKeyInclusive, endKey,
+                endKeyInclusive, maxKeys, future);
+
+        return future;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -722,6 +790,21 @@ public class DefaultKineticClient implements AdvancedKineticClient {
         this.client.requestAsync(message, handler);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public KineticFuture<EntryMetadata> getMetadataAsync(byte[] key)
+            throws KineticException {
+
+        DefaultKineticFuture<EntryMetadata> future = new DefaultKineticFuture<EntryMetadata>(
+                config.getRequestTimeoutMillis());
+
+        this.getMetadataAsync(key, future);
+
+        return future;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -792,6 +875,21 @@ public class DefaultKineticClient implements AdvancedKineticClient {
         this.putForcedAsync(entry, PersistOption.SYNC, handler);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public KineticFuture<Entry> putForcedAsync(Entry entry)
+            throws KineticException {
+
+        DefaultKineticFuture<Entry> future = new DefaultKineticFuture<Entry>(
+                config.getRequestTimeoutMillis());
+
+        this.putForcedAsync(entry, future);
+
+        return future;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -883,6 +981,21 @@ public class DefaultKineticClient implements AdvancedKineticClient {
         this.deleteForcedAsync(key, PersistOption.SYNC, handler);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public KineticFuture<Boolean> deleteForcedAsync(byte[] key)
+            throws KineticException {
+
+        DefaultKineticFuture<Boolean> future = new DefaultKineticFuture<Boolean>(
+                config.getRequestTimeoutMillis());
+
+        this.deleteForcedAsync(key, future);
+
+        return future;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -1104,4 +1217,130 @@ public class DefaultKineticClient implements AdvancedKineticClient {
         return new DefaultBatchOperation(this);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BulkResult<Entry> getAll(List<byte[]> keys)
+            throws KineticException {
+        return BulkOperations.getAll(this, keys,
+                config.getRequestTimeoutMillis());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BulkResult<Entry> putAll(List<Entry> entries)
+            throws KineticException {
+        return this.putAll(entries, false);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BulkResult<Entry> putAll(List<Entry> entries, boolean isBatched)
+            throws KineticException {
+
+        if (isBatched) {
+            return BulkOperations.putAllBatched(this, entries,
+                    this.getMaxCommandsPerBatch(),
+                    config.getRequestTimeoutMillis());
+        }
+
+        return BulkOperations.putAll(this, entries,
+                config.getRequestTimeoutMillis());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BulkResult<Boolean> deleteAll(List<byte[]> keys)
+            throws KineticException {
+        return this.deleteAll(keys, false);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BulkResult<Boolean> deleteAll(List<byte[]> keys, boolean isBatched)
+            throws KineticException {
+
+        if (isBatched) {
+            return BulkOperations.deleteAllBatched(this, keys,
+                    this.getMaxCommandsPerBatch(),
+                    config.getRequestTimeoutMillis());
+        }
+
+        return BulkOperations.deleteAll(this, keys,
+                config.getRequestTimeoutMillis());
+    }
+
+    /**
+     * Get the max number of commands per batch of the drive. The limit is
+     * read from the drive limits log once. The simulator default is used if
+     * the drive does not report the limit.
+     *
+     * @return max number of commands per batch.
+     */
+    int getMaxCommandsPerBatch() {
+
+        if (this.maxCommandsPerBatch > 0) {
+            return this.maxCommandsPerBatch;
+        }
+
+        int max = BulkOperations.DEFAULT_COMMANDS_PER_BATCH;
+
+        try {
+            KineticMessage request = MessageFactory
+                    .createKineticMessageWithBuilder();
+
+            Command.Builder command = (Command.Builder) request.getCommand();
+
+            command.getHeaderBuilder().setMessageType(MessageType.GETLOG);
+            command.getBodyBuilder().getGetLogBuilder()
+                    .addTypes(GetLog.Type.LIMITS);
+
+            GetLog.Limits limits = this.request(request).getCommand()
+                    .getBody().getGetLog().getLimits();
+
+            if (limits.hasMaxOperationCountPerBatch()
+                    && limits.getMaxOperationCountPerBatch() > 0) {
+                max = limits.getMaxOperationCountPerBatch();
+            }
+        } catch (KineticException e) {
+            LOG.log(Level.WARNING, "unable to read drive limits, using max "
+                    + max + " commands per batch", e);
+        }
+
+        this.maxCommandsPerBatch = max;
+
+        return max;
+    }
+
+    /**
+     * Get the configuration of this client instance.
+     *
+     * @return the client configuration.
+     */
+    ClientConfiguration getConfiguration() {
+        return this.config;
+    }
+
+    /**
+     * Get the current window size of asynchronous requests. If the window is
+     * adaptive, it is adjusted from the observed response latency and busy
+     * responses.
+     *
+     * @return max number of asynchronous requests in flight.
+     *
+     * @see ClientConfiguration#setAsyncMaxQueueSize(int)
+     */
+    public int getAsyncWindowSize() {
+        return this.client.getAsyncWindowSize();
+    }
+
 }
@@ -0,0 +1,257 @@
+/**
+ * Copyright (C) 2014 Seagate Technology.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package com.seagate.kinetic.client.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import kinetic.client.AsyncKineticException;
+import kinetic.client.CallbackHandler;
+import kinetic.client.CallbackResult;
+import kinetic.client.KineticException;
+import kinetic.client.KineticFuture;
+
+/**
+ * Default kinetic future implementation. The future is the callback handler
+ * of the asynchronous request it is returned for.
+ *
+ * @param <T>
+ *            result type.
+ *
+ * @see DefaultKineticClient
+ */
+public class DefaultKineticFuture<T> implements KineticFuture<T>,
+		CallbackHandler<T> {
+
+	private final static Logger logger = Logger
+			.getLogger(DefaultKineticFuture.class.getName());
+
+	// max time in milli-seconds get() and getResult() wait for the response
+	private final long timeout;
+
+	private boolean isDone = false;
+
+	// result if succeeded
+	private CallbackResult<T> result = null;
+
+	// error if failed
+	private AsyncKineticException error = null;
+
+	// handlers to be invoked when done
+	private List<CallbackHandler<T>> handlers = null;
+
+	/**
+	 * Construct a future with the specified response timeout.
+	 *
+	 * @param timeout
+	 *            max time in milli-seconds {@link #get()} and
+	 *            {@link #getResult()} wait for the response.
+	 */
+	public DefaultKineticFuture(long timeout) {
+		this.timeout = timeout;
+	}
+
+	@Override
+	public void onSuccess(CallbackResult<T> result) {
+
+		List<CallbackHandler<T>> list = null;
+
+		synchronized (this) {
+			this.result = result;
+			list = this.complete();
+		}
+
+		for (CallbackHandler<T> handler : list) {
+			invokeOnSuccess(handler, result);
+		}
+	}
+
+	@Override
+	public void onError(AsyncKineticException exception) {
+
+		List<CallbackHandler<T>> list = null;
+
+		synchronized (this) {
+			this.error = exception;
+			list = this.complete();
+		}
+
+		for (CallbackHandler<T> handler : list) {
+			invokeOnError(handler, exception);
+		}
+	}
+
+	@Override
+	public void addCallback(CallbackHandler<T> handler) {
+
+		synchronized (this) {
+			if (this.isDone == false) {
+
+				if (this.handlers == null) {
+					this.handlers = new ArrayList<CallbackHandler<T>>(1);
+				}
+
+				this.handlers.add(handler);
+				return;
+			}
+		}
+
+		// already done, invoked by the calling thread
+		if (this.error != null) {
+			invokeOnError(handler, this.error);
+		} else {
+			invokeOnSuccess(handler, this.result);
+		}
+	}
+
+	@Override
+	public T getResult() throws KineticException {
+
+		try {
+			this.await(this.timeout);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new KineticException(e.getMessage(), e);
+		} catch (TimeoutException e) {
+			throw new KineticException(e.getMessage(), e);
+		}
+
+		return this.getDoneResult();
+	}
+
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		// the request is already sent
+		return false;
+	}
+
+	@Override
+	public boolean isCancelled() {
+		return false;
+	}
+
+	@Override
+	public synchronized boolean isDone() {
+		return this.isDone;
+	}
+
+	@Override
+	public T get() throws InterruptedException, ExecutionException {
+
+		try {
+			this.await(this.timeout);
+		} catch (TimeoutException e) {
+			throw new ExecutionException(new KineticException(e.getMessage(),
+					e));
+		}
+
+		try {
+			return this.getDoneResult();
+		} catch (KineticException e) {
+			throw new ExecutionException(e);
+		}
+	}
+
+	@Override
+	public T get(long timeout, TimeUnit unit) throws InterruptedException,
+			ExecutionException, TimeoutException {
+
+		this.await(unit.toMillis(timeout));
+
+		try {
+			return this.getDoneResult();
+		} catch (KineticException e) {
+			throw new ExecutionException(e);
+		}
+	}
+
+	/**
+	 * Mark the future done and wake up the waiting threads. Called with the
+	 * lock held.
+	 *
+	 * @return the handlers to be invoked.
+	 */
+	private List<CallbackHandler<T>> complete() {
+
+		this.isDone = true;
+		this.notifyAll();
+
+		List<CallbackHandler<T>> list = this.handlers;
+		this.handlers = null;
+
+		if (list == null) {
+			list = new ArrayList<CallbackHandler<T>>(0);
+		}
+
+		return list;
+	}
+
+	/**
+	 * Wait until the future is done or the timeout elapsed.
+	 */
+	private synchronized void await(long timeout) throws InterruptedException,
+			TimeoutException {
+
+		long remaining = timeout;
+		long deadline = System.currentTimeMillis() + remaining;
+
+		while (this.isDone == false) {
+
+			if (remaining <= 0) {
+				throw new TimeoutException(
+						"Timeout - unable to receive response message within "
+								+ timeout + " ms");
+			}
+
+			this.wait(remaining);
+			remaining = deadline - System.currentTimeMillis();
+		}
+	}
+
+	private synchronized T getDoneResult() throws KineticException {
+
+		if (this.error != null) {
+			throw this.error;
+		}
+
+		return this.result.getResult();
+	}
+
+	private void invokeOnSuccess(CallbackHandler<T> handler,
+			CallbackResult<T> result) {
+		try {
+			handler.onSuccess(result);
+		} catch (Exception e) {
+			logger.log(Level.WARNING, e.getMessage(), e);
+		}
+	}
+
+	private void invokeOnError(CallbackHandler<T> handler,
+			AsyncKineticException exception) {
+		try {
+			handler.onError(exception);
+		} catch (Exception e) {
+			logger.log(Level.WARNING, e.getMessage(), e);
+		}
+	}
+}
@@ -27,6 +27,12 @@ import kinetic.client.KineticException;
 /**
  * 
  * kinetic iterator implementation.
+ * <p>
+ * Keys are fetched in pages of the configured range page size. While the
+ * current page is consumed, the next page is fetched in the background with
+ * an asynchronous key range request.
+ * 
+ * @see kinetic.client.ClientConfiguration#setRangePageSize(int)
  * 
  * @author James Hughes.
  * @author Chiaming Yang
@@ -50,8 +56,11 @@ public abstract class KineticIterator implements Iterator {
 	// list of batched key range
 	protected List<byte[]> keyRange = null;
 
-	// default max returned size for the batched key range
-	protected final int MAX_RETURNED = 10;
+	// max returned size for the batched key range
+	protected final int pageSize;
+
+	// max time to wait for a background request
+	protected final long timeout;
 
 	// current index for the batched key range cached in client runtime
 	protected int currentPosition = -1;
@@ -59,6 +68,9 @@ public abstract class KineticIterator implements Iterator {
 	// flag to indicate if more batched key range to read into client cache.
 	protected boolean hasMoreBatch = false;
 
+	// next batched key range requested in the background
+	private PendingResult<List<byte[]>> nextBatch = null;
+
 	/**
 	 * Constructs a new instance of kinetic iterator.
 	 * 
@@ -85,6 +97,10 @@ public abstract class KineticIterator implements Iterator {
 
 		this.endKeyInclusive = endKeyInclusive;
 
+		this.pageSize = kinetic.getConfiguration().getRangePageSize();
+
+		this.timeout = kinetic.getConfiguration().getRequestTimeoutMillis();
+
 		// read first batched key range into cache
 		this.getNextBatch(startKey, startKeyInclusive);
 	}
@@ -96,10 +112,6 @@ public abstract class KineticIterator implements Iterator {
 	 *            the start key in the specified key range.
 	 * @param startKeyInclusive
 	 *            true if the start key is inclusive.
-	 * @param endKey
-	 *            the end key in the specified key range.
-	 * @param endKeyInclusive
-	 *            true if the start key is inclusive.
 	 * @throws KineticException
 	 *             if any internal error occurred.
 	 */
@@ -107,8 +119,22 @@ public abstract class KineticIterator implements Iterator {
 			throws KineticException {
 
 		// get key range
-		this.keyRange = this.kinetic.getKeyRange(startKey,
-				startKeyInclusive, endKey, endKeyInclusive, MAX_RETURNED);
+		List<byte[]> keys = this.kinetic.getKeyRange(startKey,
+				startKeyInclusive, endKey, endKeyInclusive, pageSize);
+
+		this.setBatch(keys);
+	}
+
+	/**
+	 * Set the current batched key range and request the next batched key
+	 * range in the background if there may be more keys.
+	 * 
+	 * @param keys
+	 *            the new current batched key range.
+	 */
+	private void setBatch(List<byte[]> keys) {
+
+		this.keyRange = keys;
 
 		if (keyRange.size() > 0) {
 			// set current read position of the batch
@@ -118,12 +144,25 @@ public abstract class KineticIterator implements Iterator {
 			this.currentPosition = -1;
 		}
 
-		if (this.keyRange.size() == this.MAX_RETURNED) {
-			// has more batch
-			this.hasMoreBatch = true;
-		} else {
-			// no more batch
-			this.hasMoreBatch = false;
+		// has more batch if the batch is full
+		this.hasMoreBatch = (this.keyRange.size() == this.pageSize);
+
+		if (this.hasMoreBatch == false) {
+			this.nextBatch = null;
+			return;
+		}
+
+		// prefetch next batched key range
+		byte[] startKey = this.keyRange.get(this.keyRange.size() - 1);
+
+		this.nextBatch = new PendingResult<List<byte[]>>(timeout);
+
+		try {
+			this.kinetic.getKeyRangeAsync(startKey, false, endKey,
+					endKeyInclusive, pageSize, nextBatch);
+		} catch (KineticException e) {
+			// reported when the next batch is consumed
+			this.nextBatch.setError(e);
 		}
 	}
 
@@ -144,11 +183,10 @@ public abstract class KineticIterator implements Iterator {
 				hasNext = true;
 			} else if (this.hasMoreBatch) {
 
-				// next batched key range
-				byte[] startKey = this.keyRange.get(MAX_RETURNED - 1);
+				// wait for the prefetched batched key range
+				List<byte[]> keys = this.nextBatch.get();
 
-				// get next batched key range
-				this.getNextBatch(startKey, false);
+				this.setBatch(keys);
 
 				// check if there are matched keys in the next batch
 				hasNext = (this.keyRange.size() > 0);
@@ -0,0 +1,111 @@
+/**
+ * Copyright (C) 2014 Seagate Technology.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package com.seagate.kinetic.client.internal;
+
+import kinetic.client.AsyncKineticException;
+import kinetic.client.CallbackHandler;
+import kinetic.client.CallbackResult;
+import kinetic.client.KineticException;
+
+/**
+ * Callback handler that holds the result of an asynchronous request until
+ * the caller is ready to consume it.
+ * <p>
+ * Used by the range iterator to fetch the next page of keys (and the values
+ * of the current page) in the background.
+ *
+ * @see KineticIterator
+ */
+class PendingResult<T> implements CallbackHandler<T> {
+
+	// max time to wait for the result
+	private final long timeout;
+
+	private boolean isDone = false;
+
+	private T result = null;
+
+	private KineticException error = null;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param timeout
+	 *            max time in milli seconds to wait for the result.
+	 */
+	PendingResult(long timeout) {
+		this.timeout = timeout;
+	}
+
+	@Override
+	public synchronized void onSuccess(CallbackResult<T> result) {
+		this.result = result.getResult();
+		this.isDone = true;
+		this.notifyAll();
+	}
+
+	@Override
+	public synchronized void onError(AsyncKineticException exception) {
+		this.error = exception;
+		this.isDone = true;
+		this.notifyAll();
+	}
+
+	/**
+	 * Set the error if the request could not be sent.
+	 */
+	synchronized void setError(KineticException error) {
+		this.error = error;
+		this.isDone = true;
+		this.notifyAll();
+	}
+
+	/**
+	 * Wait for and get the result.
+	 *
+	 * @return the result of the request.
+	 * @throws KineticException
+	 *             if the request failed or timed out.
+	 */
+	synchronized T get() throws KineticException {
+
+		long deadline = System.currentTimeMillis() + timeout;
+		long remaining = timeout;
+
+		try {
+			while (this.isDone == false && remaining > 0) {
+				this.wait(remaining);
+				remaining = deadline - System.currentTimeMillis();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new KineticException(e.getMessage(), e);
+		}
+
+		if (this.isDone == false) {
+			throw new KineticException("Timed out waiting for response, timeout="
+					+ timeout);
+		}
+
+		if (this.error != null) {
+			throw this.error;
+		}
+
+		return this.result;
+	}
+}
@@ -0,0 +1,1012 @@
+/**
+ * Copyright (C) 2014 Seagate Technology.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package com.seagate.kinetic.client.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import kinetic.client.AsyncKineticException;
+import kinetic.client.BatchOperation;
+import kinetic.client.BulkResult;
+import kinetic.client.CallbackHandler;
+import kinetic.client.CallbackResult;
+import kinetic.client.ClientConfiguration;
+import kinetic.client.Entry;
+import kinetic.client.EntryMetadata;
+import kinetic.client.KineticException;
+import kinetic.client.KineticFuture;
+import kinetic.client.advanced.AdvancedKineticClient;
+import kinetic.client.advanced.PersistOption;
+
+import com.google.protobuf.ByteString;
+import com.seagate.kinetic.client.lib.ClientLogger;
+import com.seagate.kinetic.common.lib.KineticMessage;
+import com.seagate.kinetic.proto.Kinetic.CommandOrBuilder;
+
+/**
+ * Kinetic client API implementation over a pool of connections to the same
+ * drive.
+ * <p>
+ * Each connection is a {@link DefaultKineticClient} created with the same
+ * client configuration, so that all connections share the same user identity
+ * and HMAC key. Requests with a key are sent on the connection selected by the
+ * hash of the key, so that requests of the same key are processed in order.
+ * Requests without a key are sent on the connection with the least
+ * outstanding requests.
+ * <p>
+ * A batch operation is bound to one connection for its lifetime.
+ *
+ * @see ClientConfiguration#setConnectionPoolSize(int)
+ */
+public class PooledKineticClient implements AdvancedKineticClient {
+
+    // client logger
+    private final static Logger LOG = ClientLogger.get();
+
+    // pooled connections
+    private final DefaultKineticClient[] connections;
+
+    // number of outstanding requests of each connection
+    private final AtomicInteger[] outstanding;
+
+    // start index of the least outstanding scan
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * Constructor to instantiate a new instance of pooled kinetic client.
+     *
+     * @param config
+     *            configuration for the new instance. All connections are
+     *            created with this configuration.
+     * @throws KineticException
+     *             if any of the connections cannot be created.
+     */
+    public PooledKineticClient(ClientConfiguration config)
+            throws KineticException {
+
+        int size = config.getConnectionPoolSize();
+
+        this.connections = new DefaultKineticClient[size];
+        this.outstanding = new AtomicInteger[size];
+
+        try {
+            for (int i = 0; i < size; i++) {
+                this.connections[i] = new DefaultKineticClient(config);
+                this.outstanding[i] = new AtomicInteger();
+            }
+        } catch (KineticException e) {
+            this.closeConnections();
+            throw e;
+        }
+
+        LOG.fine("pooled kinetic client initialized, server="
+                + config.getHost() + ", port=" + config.getPort()
+                + ", connections=" + size);
+    }
+
+    /**
+     * Get the number of connections of this client.
+     *
+     * @return number of pooled connections.
+     */
+    public int getConnectionCount() {
+        return this.connections.length;
+    }
+
+    /**
+     * Get the sum of the current asynchronous request window sizes of the
+     * pooled connections.
+     *
+     * @return max number of asynchronous requests in flight.
+     *
+     * @see DefaultKineticClient#getAsyncWindowSize()
+     */
+    public int getAsyncWindowSize() {
+
+        int size = 0;
+
+        for (DefaultKineticClient connection : this.connections) {
+            size += connection.getAsyncWindowSize();
+        }
+
+        return size;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long noop() throws KineticException {
+        int i = this.select();
+        this.outstanding[i].incrementAndGet();
+        try {
+            return this.connections[i].noop();
+        } finally {
+            this.outstanding[i].decrementAndGet();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * All connections are flushed.
+     */
+    @Override
+    public void flush() throws KineticException {
+        for (DefaultKineticClient connection : this.connections) {
+            connection.flush();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Entry put(Entry entry, byte[] newVersion) throws KineticException {
+        return this.put(entry, newVersion, PersistOption.SYNC);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Entry put(Entry entry, byte[] newVersion, PersistOption option)
+            throws KineticException {
+        int i = this.select(entry.getKey());
+        this.outstanding[i].incrementAndGet();
+        try {
+            return this.connections[i].put(entry, newVersion, option);
+        } finally {
+            this.outstanding[i].decrementAndGet();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Entry putForced(Entry entry) throws KineticException {
+        return this.putForced(entry, PersistOption.SYNC);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Entry putForced(Entry entry, PersistOption option)
+            throws KineticException {
+        int i = this.select(entry.getKey());
+        this.outstanding[i].incrementAndGet();
+        try {
+            return this.connections[i].putForced(entry, option);
+        } finally {
+            this.outstanding[i].decrementAndGet();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void putAsync(Entry entry, byte[] newVersion,
+            CallbackHandler<Entry> handler) throws KineticException {
+        this.putAsync(entry, newVersion, PersistOption.SYNC, handler);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public KineticFuture<Entry> putAsync(Entry entry, byte[] newVersion)
+            throws KineticException {
+
+        DefaultKineticFuture<Entry> future = new DefaultKineticFuture<Entry>(
+                this.getRequestTimeout());
+
+        this.putAsync(entry, newVersion, future);
+
+        return future;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void putAsync(Entry entry, byte[] newVersion, PersistOption option,
+            CallbackHandler<Entry> handler) throws KineticException {
+        int i = this.select(entry.getKey());
+        TrackingHandler<Entry> tracker = this.track(i, handler);
+        try {
+            this.connections[i].putAsync(entry, newVersion, option, tracker);
+        } catch (KineticException e) {
+            tracker.release();
+            throw e;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void putForcedAsync(Entry entry, CallbackHandler<Entry> handler)
+            throws KineticException {
+        this.putForcedAsync(entry, PersistOption.SYNC, handler);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public KineticFuture<Entry> putForcedAsync(Entry entry)
+            throws KineticException {
+
+        DefaultKineticFuture<Entry> future = new DefaultKineticFuture<Entry>(
+                this.getRequestTimeout());
+
+        this.putForcedAsync(entry, future);
+
+        return future;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void putForcedAsync(Entry entry, PersistOption option,
+            CallbackHandler<Entry> handler) throws KineticException {
+        int i = this.select(entry.getKey());
+        TrackingHandler<Entry> tracker = this.track(i, handler);
+        try {
+            this.connections[i].putForcedAsync(entry, option, tracker);
+        } catch (KineticException e) {
+            tracker.release();
+            throw e;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Entry get(byte[] key) throws KineticException {
+        int i = this.select(key);
+        this.outstanding[i].incrementAndGet();
+        try {
+            return this.connections[i].get(key);
+        } finally {
+            this.outstanding[i].decrementAndGet();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public byte[] getVersion(byte[] key) throws KineticException {
+        int i = this.select(key);
+        this.outstanding[i].incrementAndGet();
+        try {
+            return this.connections[i].getVersion(key);
+        } finally {
+            this.outstanding[i].decrementAndGet();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void getAsync(byte[] key, CallbackHandler<Entry> handler)
+            throws KineticException {
+        int i = this.select(key);
+        TrackingHandler<Entry> tracker = this.track(i, handler);
+        try {
+            this.connections[i].getAsync(key, tracker);
+        } catch (KineticException e) {
+            tracker.release();
+            throw e;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public KineticFuture<Entry> getAsync(byte[] key) throws KineticException {
+
+        DefaultKineticFuture<Entry> future = new DefaultKineticFuture<Entry>(
+                this.getRequestTimeout());
+
+        this.getAsync(key, future);
+
+        return future;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean delete(Entry entry) throws KineticException {
+        return this.delete(entry, PersistOption.SYNC);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean delete(Entry entry, PersistOption option)
+            throws KineticException {
+        int i = this.select(entry.getKey());
+        this.outstanding[i].incrementAndGet();
+        try {
+            return this.connections[i].delete(entry, option);
+        } finally {
+            this.outstanding[i].decrementAndGet();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean deleteForced(byte[] key) throws KineticException {
+        return this.deleteForced(key, PersistOption.SYNC);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean deleteForced(byte[] key, PersistOption option)
+            throws KineticException {
+        int i = this.select(key);
+        this.outstanding[i].incrementAndGet();
+        try {
+            return this.connections[i].deleteForced(key, option);
+        } finally {
+            this.outstanding[i].decrementAndGet();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void deleteAsync(Entry entry, CallbackHandler<Boolean> handler)
+            throws KineticException {
+        this.deleteAsync(entry, PersistOption.SYNC, handler);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public KineticFuture<Boolean> deleteAsync(Entry entry)
+            throws KineticException {
+
+        DefaultKineticFuture<Boolean> future = new DefaultKineticFuture<Boolean>(
+                this.getRequestTimeout());
+
+        this.deleteAsync(entry, future);
+
+        return future;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void deleteAsync(Entry entry, PersistOption option,
+            CallbackHandler<Boolean> handler) throws KineticException {
+        int i = this.select(entry.getKey());
+        TrackingHandler<Boolean> tracker = this.track(i, handler);
+        try {
+            this.connections[i].deleteAsync(entry, option, tracker);
+        } catch (KineticException e) {
+            tracker.release();
+            throw e;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void deleteForcedAsync(byte[] key, CallbackHandler<Boolean> handler)
+            throws KineticException {
+        this.deleteForcedAsync(key, PersistOption.SYNC, handler);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public KineticFuture<Boolean> deleteForcedAsync(byte[] key)
+            throws KineticException {
+
+        DefaultKineticFuture<Boolean> future = new DefaultKineticFuture<Boolean>(
+                this.getRequestTimeout());
+
+        this.deleteForcedAsync(key, future);
+
+        return future;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void deleteForcedAsync(byte[] key, PersistOption option,
+            CallbackHandler<Boolean> handler) throws KineticException {
+        int i = this.select(key);
+        TrackingHandler<Boolean> tracker = this.track(i, handler);
+        try {
+            this.connections[i].deleteForcedAsync(key, option, tracker);
+        } catch (KineticException e) {
+            tracker.release();
+            throw e;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Entry getNext(byte[] key) throws KineticException {
+        int i = this.select(key);
+        this.outstanding[i].incrementAndGet();
+        try {
+            return this.connections[i].getNext(key);
+        } finally {
+            this.outstanding[i].decrementAndGet();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void getNextAsync(byte[] key, CallbackHandler<Entry> handler)
+            throws KineticException {
+        int i = this.select(key);
+        TrackingHandler<Entry> tracker = this.track(i, handler);
+        try {
+            this.connections[i].getNextAsync(key, tracker);
+        } catch (KineticException e) {
+            tracker.release();
+            throw e;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Entry getPrevious(byte[] key) throws KineticException {
+        int i = this.select(key);
+        this.outstanding[i].incrementAndGet();
+        try {
+            return this.connections[i].getPrevious(key);
+        } finally {
+            this.outstanding[i].decrementAndGet();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void getPreviousAsync(byte[] key, CallbackHandler<Entry> handler)
+            throws KineticException {
+        int i = this.select(key);
+        TrackingHandler<Entry> tracker = this.track(i, handler);
+        try {
+            this.connections[i].getPreviousAsync(key, tracker);
+        } catch (KineticException e) {
+            tracker.release();
+            throw e;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<byte[]> getKeyRange(byte[] startKey, boolean startKeyInclusive,
+            byte[] endKey, boolean endKeyInclusive, int maxReturned)
+                    throws KineticException {
+        int i = this.select();
+        this.outstanding[i].incrementAndGet();
+        try {
+            return this.connections[i].getKeyRange(startKey,
+                    startKeyInclusive, endKey, endKeyInclusive, maxReturned);
+        } finally {
+            this.outstanding[i].decrementAndGet();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void getKeyRangeAsync(byte[] startKey, boolean startKeyInclusive,
+            byte[] endKey, boolean endKeyInclusive, int maxKeys,
+            CallbackHandler<List<byte[]>> handler) throws KineticException {
+        int i = this.select();
+        TrackingHandler<List<byte[]>> tracker = this.track(i, handler);
+        try {
+            this.connections[i].getKeyRangeAsync(startKey, startKeyInclusive,
+                    endKey, endKeyInclusive, maxKeys, tracker);
+        } catch (KineticException e) {
+            tracker.release();
+            throw e;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public KineticFuture<List<byte[]>> getKeyRangeAsync(byte[] startKey,
+            boolean startKeyInclusive, byte[] endKey, boolean endKeyInclusive,
+            int maxKeys) throws KineticException {
+
+        DefaultKineticFuture<List<byte[]>> future = new DefaultKineticFuture<List<byte[]>>(
+                this.getRequestTimeout());
+
+        this.getKeyRangeAsync(startKey, startKeyInclusive, endKey,
+                endKeyInclusive, maxKeys, future);
+
+        return future;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<byte[]> getKeyRangeReversed(byte[] startKey,
+            boolean startKeyInclusive, byte[] endKey, boolean endKeyInclusive,
+            int maxKeys) throws KineticException {
+        int i = this.select();
+        this.outstanding[i].incrementAndGet();
+        try {
+            return this.connections[i].getKeyRangeReversed(startKey,
+                    startKeyInclusive, endKey, endKeyInclusive, maxKeys);
+        } finally {
+            this.outstanding[i].decrementAndGet();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void getKeyRangeReversedAsync(byte[] startKey,
+            boolean startKeyInclusive, byte[] endKey, boolean endKeyInclusive,
+            int maxKeys, CallbackHandler<List<byte[]>> handler)
+                    throws KineticException {
+        int i = this.select();
+        TrackingHandler<List<byte[]>> tracker = this.track(i, handler);
+        try {
+            this.connections[i].getKeyRangeReversedAsync(startKey,
+                    startKeyInclusive, endKey, endKeyInclusive, maxKeys,
+                    tracker);
+        } catch (KineticException e) {
+            tracker.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Get an iterable of the entries in the specified key range. The range is
+     * read on the connection with the least outstanding requests.
+     *
+     * @see DefaultKineticClient#getRange(byte[], boolean, byte[], boolean)
+     */
+    public Iterable<Entry> getRange(byte[] startKey, boolean startKeyInclusive,
+            byte[] endKey, boolean endKeyInclusive) throws KineticException {
+        return this.connections[this.select()].getRange(startKey,
+                startKeyInclusive, endKey, endKeyInclusive);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public EntryMetadata getMetadata(byte[] key) throws KineticException {
+        int i = this.select(key);
+        this.outstanding[i].incrementAndGet();
+        try {
+            return this.connections[i].getMetadata(key);
+        } finally {
+            this.outstanding[i].decrementAndGet();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void getMetadataAsync(byte[] key,
+            CallbackHandler<EntryMetadata> handler) throws KineticException {
+        int i = this.select(key);
+        TrackingHandler<EntryMetadata> tracker = this.track(i, handler);
+        try {
+            this.connections[i].getMetadataAsync(key, tracker);
+        } catch (KineticException e) {
+            tracker.release();
+            throw e;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public KineticFuture<EntryMetadata> getMetadataAsync(byte[] key)
+            throws KineticException {
+
+        DefaultKineticFuture<EntryMetadata> future = new DefaultKineticFuture<EntryMetadata>(
+                this.getRequestTimeout());
+
+        this.getMetadataAsync(key, future);
+
+        return future;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BulkResult<Entry> getAll(List<byte[]> keys)
+            throws KineticException {
+        return BulkOperations.getAll(this, keys, this.getRequestTimeout());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BulkResult<Entry> putAll(List<Entry> entries)
+            throws KineticException {
+        return this.putAll(entries, false);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * If batched, the entries are grouped by connection, and each group is
+     * put in batches on its connection.
+     */
+    @Override
+    public BulkResult<Entry> putAll(List<Entry> entries, boolean isBatched)
+            throws KineticException {
+
+        if (isBatched == false) {
+            return BulkOperations.putAll(this, entries,
+                    this.getRequestTimeout());
+        }
+
+        int size = this.connections.length;
+
+        List<List<Entry>> groups = new ArrayList<List<Entry>>(size);
+        List<List<Integer>> indexes = new ArrayList<List<Integer>>(size);
+
+        for (int i = 0; i < size; i++) {
+            groups.add(new ArrayList<Entry>());
+            indexes.add(new ArrayList<Integer>());
+        }
+
+        for (int i = 0; i < entries.size(); i++) {
+            int c = this.select(entries.get(i).getKey());
+            groups.get(c).add(entries.get(i));
+            indexes.get(c).add(i);
+        }
+
+        DefaultBulkResult<Entry> result = new DefaultBulkResult<Entry>(
+                entries.size());
+
+        for (int i = 0; i < size; i++) {
+            if (groups.get(i).isEmpty() == false) {
+                result.copy(this.connections[i].putAll(groups.get(i), true),
+                        indexes.get(i));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BulkResult<Boolean> deleteAll(List<byte[]> keys)
+            throws KineticException {
+        return this.deleteAll(keys, false);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * If batched, the keys are grouped by connection, and each group is
+     * deleted in batches on its connection.
+     */
+    @Override
+    public BulkResult<Boolean> deleteAll(List<byte[]> keys, boolean isBatched)
+            throws KineticException {
+
+        if (isBatched == false) {
+            return BulkOperations.deleteAll(this, keys,
+                    this.getRequestTimeout());
+        }
+
+        int size = this.connections.length;
+
+        List<List<byte[]>> groups = new ArrayList<List<byte[]>>(size);
+        List<List<Integer>> indexes = new ArrayList<List<Integer>>(size);
+
+        for (int i = 0; i < size; i++) {
+            groups.add(new ArrayList<byte[]>());
+            indexes.add(new ArrayList<Integer>());
+        }
+
+        for (int i = 0; i < keys.size(); i++) {
+            int c = this.select(keys.get(i));
+            groups.get(c).add(keys.get(i));
+            indexes.get(c).add(i);
+        }
+
+        DefaultBulkResult<Boolean> result = new DefaultBulkResult<Boolean>(
+                keys.size());
+
+        for (int i = 0; i < size; i++) {
+            if (groups.get(i).isEmpty() == false) {
+                result.copy(this.connections[i].deleteAll(groups.get(i), true),
+                        indexes.get(i));
+            }
+        }
+
+        return result;
+    }
+
+    private long getRequestTimeout() {
+        return this.connections[0].getConfiguration()
+                .getRequestTimeoutMillis();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The batch operation is bound to the connection with the least
+     * outstanding requests.
+     */
+    @Override
+    public BatchOperation createBatchOperation() throws KineticException {
+        return this.connections[this.select()].createBatchOperation();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The request is sent on the connection selected by the key of the
+     * request, if any.
+     */
+    @Override
+    public KineticMessage request(KineticMessage requestMessage)
+            throws KineticException {
+        int i = this.select(requestMessage);
+        this.outstanding[i].incrementAndGet();
+        try {
+            return this.connections[i].request(requestMessage);
+        } finally {
+            this.outstanding[i].decrementAndGet();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The request is sent on the connection selected by the key of the
+     * request, if any.
+     */
+    @Override
+    public <T> void requestAsync(KineticMessage requestMessage,
+            CallbackHandler<T> callback) throws KineticException {
+        int i = this.select(requestMessage);
+        TrackingHandler<T> tracker = this.track(i, callback);
+        try {
+            this.connections[i].requestAsync(requestMessage, tracker);
+        } catch (KineticException e) {
+            tracker.release();
+            throw e;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * All pooled connections are closed.
+     */
+    @Override
+    public void close() throws KineticException {
+
+        KineticException error = this.closeConnections();
+
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Close all created connections.
+     *
+     * @return the first error, or null if all connections are closed.
+     */
+    private KineticException closeConnections() {
+
+        KineticException error = null;
+
+        for (DefaultKineticClient connection : this.connections) {
+
+            if (connection == null) {
+                continue;
+            }
+
+            try {
+                connection.close();
+            } catch (KineticException e) {
+                LOG.log(Level.WARNING, e.getMessage(), e);
+
+                if (error == null) {
+                    error = e;
+                }
+            }
+        }
+
+        return error;
+    }
+
+    /**
+     * Select the connection of the specified key. Requests of the same key
+     * are always sent on the same connection.
+     *
+     * @param key
+     *            the key of the request, may be null.
+     * @return index of the selected connection.
+     */
+    private int select(byte[] key) {
+
+        if (key == null) {
+            return this.select();
+        }
+
+        int h = 1;
+        for (byte b : key) {
+            h = 31 * h + b;
+        }
+
+        // spread the low bits of short or similar keys
+        h ^= (h >>> 16);
+        h *= 0x85ebca6b;
+        h ^= (h >>> 13);
+
+        return (h & 0x7fffffff) % this.connections.length;
+    }
+
+    /**
+     * Select the connection of the key of the specified request message.
+     *
+     * @return index of the selected connection.
+     */
+    private int select(KineticMessage message) {
+
+        CommandOrBuilder command = message.getCommand();
+
+        if (command != null && command.hasBody()
+                && command.getBody().hasKeyValue()
+                && command.getBody().getKeyValue().hasKey()) {
+
+            ByteString key = command.getBody().getKeyValue().getKey();
+
+            return this.select(key.toByteArray());
+        }
+
+        return this.select();
+    }
+
+    /**
+     * Select the connection with the least outstanding requests. The scan
+     * starts at a rotating index so that idle connections are used in turn.
+     *
+     * @return index of the selected connection.
+     */
+    private int select() {
+
+        int size = this.connections.length;
+
+        int start = (this.next.getAndIncrement() & 0x7fffffff) % size;
+
+        int selected = start;
+        int min = this.outstanding[start].get();
+
+        for (int n = 1; n < size && min > 0; n++) {
+
+            int i = (start + n) % size;
+            int count = this.outstanding[i].get();
+
+            if (count < min) {
+                min = count;
+                selected = i;
+            }
+        }
+
+        return selected;
+    }
+
+    /**
+     * Count an asynchronous request as outstanding on the specified
+     * connection until its handler is invoked.
+     */
+    private <T> TrackingHandler<T> track(int index, CallbackHandler<T> handler) {
+        this.outstanding[index].incrementAndGet();
+        return new TrackingHandler<T>(this.outstanding[index], handler);
+    }
+
+    /**
+     * Callback handler that releases the outstanding count of the connection
+     * before the application handler is invoked.
+     */
+    private static class TrackingHandler<T> implements CallbackHandler<T> {
+
+        private final AtomicInteger counter;
+
+        private final CallbackHandler<T> handler;
+
+        private final AtomicBoolean isReleased = new AtomicBoolean(false);
+
+        TrackingHandler(AtomicInteger counter, CallbackHandler<T> handler) {
+            this.counter = counter;
+            this.handler = handler;
+        }
+
+        /**
+         * Release the outstanding count, at most once.
+         */
+        void release() {
+            if (this.isReleased.compareAndSet(false, true)) {
+                this.counter.decrementAndGet();
+            }
+        }
+
+        @Override
+        public void onSuccess(CallbackResult<T> result) {
+            this.release();
+            this.handler.onSuccess(result);
+        }
+
+        @Override
+        public void onError(AsyncKineticException exception) {
+            this.release();
+            this.handler.onError(exception);
+        }
+    }
+}
@@ -17,6 +17,8 @@
  */
 package com.seagate.kinetic.client.internal;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -37,6 +39,15 @@ public class VersionedIterator extends KineticIterator {
 	private final static Logger logger = Logger
 			.getLogger(VersionedIterator.class.getName());
 
+	// true if values of each batch are fetched with pipelined GETs
+	private final boolean prefetchValues;
+
+	// batch for which the values are being prefetched
+	private List<byte[]> prefetchedBatch = null;
+
+	// prefetched entries, indexed by the position in the batch
+	private List<PendingResult<Entry>> prefetchedEntries = null;
+
 	/**
 	 * Constructs a new instance of kinetic iterator.
 	 * 
@@ -57,6 +68,9 @@ public class VersionedIterator extends KineticIterator {
 			boolean startKeyInclusive, byte[] endKey, boolean endKeyInclusive)
 					throws KineticException {
 		super(kinetic, startKey, startKeyInclusive, endKey, endKeyInclusive);
+
+		this.prefetchValues = kinetic.getConfiguration()
+				.getRangePrefetchValues();
 	}
 
 	/**
@@ -104,11 +118,62 @@ public class VersionedIterator extends KineticIterator {
 	 */
 	private Entry doGet() throws KineticException {
 
-		Entry versioned = this.kinetic.get(this.keyRange
-				.get(currentPosition));
+		Entry versioned = null;
+
+		if (this.prefetchValues) {
+
+			if (this.prefetchedBatch != this.keyRange) {
+				// new batch, pipeline GETs for the rest of the batch
+				this.prefetch();
+			}
 
-		this.currentPosition++;
+			// wait for the prefetched entry
+			PendingResult<Entry> pending = this.prefetchedEntries
+					.set(currentPosition, null);
+
+			this.currentPosition++;
+
+			versioned = pending.get();
+		} else {
+
+			versioned = this.kinetic.get(this.keyRange.get(currentPosition));
+
+			this.currentPosition++;
+		}
 
 		return versioned;
 	}
+
+	/**
+	 * Send asynchronous GETs for the keys of the current batch starting at
+	 * the current position. The number of GETs in flight is bounded by the
+	 * client asynchronous queue size.
+	 */
+	private void prefetch() {
+
+		int size = this.keyRange.size();
+
+		this.prefetchedEntries = new ArrayList<PendingResult<Entry>>(size);
+
+		for (int i = 0; i < size; i++) {
+
+			PendingResult<Entry> pending = null;
+
+			if (i >= currentPosition) {
+
+				pending = new PendingResult<Entry>(timeout);
+
+				try {
+					this.kinetic.getAsync(this.keyRange.get(i), pending);
+				} catch (KineticException e) {
+					// reported when the entry is consumed
+					pending.setError(e);
+				}
+			}
+
+			this.prefetchedEntries.add(pending);
+		}
+
+		this.prefetchedBatch = this.keyRange;
+	}
 }
@@ -19,9 +19,11 @@ package com.seagate.kinetic.client.internal.util.bigobject;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Random;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -33,10 +35,23 @@ import kinetic.client.advanced.AdvancedKineticClient;
 import kinetic.client.advanced.AdvancedKineticClientFactory;
 import kinetic.client.advanced.PersistOption;
 
+import com.seagate.kinetic.client.internal.util.bigobject.PutxCallbackHandler.ChunkCallbackHandler;
+
 /**
  * 
  * An example to use Kinetic API to put/get/delete arbitrary large objects on
  * one Kinetic storage.
+ * <p>
+ * Chunks are written and read with the asynchronous API, up to the max number
+ * of chunks in flight. Chunk buffers for putx are reused from a bounded pool
+ * and chunk values received by getx are written to the output stream in
+ * sequence.
+ * <p>
+ * Chunks may be striped across several Kinetic storages (connections). The
+ * chunk with sequence <code>n</code> is stored in storage
+ * <code>n % number of storages</code> and the master entry is stored in the
+ * first storage. An object must be read and deleted with the same list of
+ * storages, in the same order, that was used to store it.
  * 
  * @author chiaming
  * 
@@ -46,20 +61,35 @@ public class BigObject {
 	private final Logger logger = Logger.getLogger(BigObject.class
 			.getName());
 
-	// chunk value size
-	private static final int CHUNK_SIZE = 1024 * 1024;
+	// default chunk value size
+	public static final int CHUNK_SIZE = 1024 * 1024;
 
 	// integer size
 	private static int ISIZE = 4;
 
-	// kinetic client instance
+	// kinetic client instance, stores the master entry
 	private AdvancedKineticClient client = null;
 
-	// put callback
-	private final PutxCallbackHandler putCallback = new PutxCallbackHandler();
+	// kinetic client instances the chunks are striped across
+	private final AdvancedKineticClient[] clients;
+
+	// chunk value size
+	private final int chunkSize;
+
+	// max number of chunks in flight
+	private final int maxInFlight;
+
+	// chunk buffer pool for putx
+	private final ChunkBufferPool bufferPool;
+
+	// max time in milli-seconds to wait for a chunk or a chunk buffer
+	private final long requestTimeout;
 
 	/**
 	 * constructor for a new instance
+	 * <p>
+	 * Objects are divided into 1M chunks and the max number of chunks in
+	 * flight is the asynchronous queue size of the configuration.
 	 * 
 	 * @param config
 	 * @throws KineticException
@@ -67,8 +97,57 @@ public class BigObject {
 	public BigObject(ClientConfiguration config)
 			throws KineticException {
 
-		client = AdvancedKineticClientFactory
-				.createAdvancedClientInstance(config);
+		this(new ClientConfiguration[] { config }, CHUNK_SIZE, config
+				.getAsyncQueueSize());
+	}
+
+	/**
+	 * constructor for a new instance that stripes chunks across the specified
+	 * storages.
+	 * 
+	 * @param configs
+	 *            configurations of the storages the chunks are striped across.
+	 *            The master entry is stored in the first storage.
+	 * @param chunkSize
+	 *            chunk value size in bytes. Must not exceed the max value size
+	 *            supported by the storages.
+	 * @param maxInFlight
+	 *            max number of chunk puts or gets in flight for each putx or
+	 *            getx operation.
+	 * @throws KineticException
+	 *             if any internal error occurred.
+	 */
+	public BigObject(ClientConfiguration[] configs, int chunkSize,
+			int maxInFlight) throws KineticException {
+
+		if (configs.length == 0 || chunkSize <= 0 || maxInFlight <= 0) {
+			throw new IllegalArgumentException("invalid configs size "
+					+ configs.length + ", chunk size " + chunkSize
+					+ " or max in flight " + maxInFlight);
+		}
+
+		this.chunkSize = chunkSize;
+
+		this.maxInFlight = maxInFlight;
+
+		this.requestTimeout = configs[0].getRequestTimeoutMillis();
+
+		// one more buffer for the chunk being read from the input stream
+		this.bufferPool = new ChunkBufferPool(chunkSize, maxInFlight + 1);
+
+		this.clients = new AdvancedKineticClient[configs.length];
+
+		try {
+			for (int i = 0; i < configs.length; i++) {
+				clients[i] = AdvancedKineticClientFactory
+						.createAdvancedClientInstance(configs[i]);
+			}
+		} catch (KineticException e) {
+			this.close();
+			throw e;
+		}
+
+		client = clients[0];
 	}
 
 	/**
@@ -79,8 +158,9 @@ public class BigObject {
 	 * Application that uses this API must ensure that the key space is an
 	 * unique key space on the specified configuration storage (drive).
 	 * <p>
-	 * A big object is divided into 1M Key/Value chunks. Each key for a chunk is
-	 * in sequence based on the specified base key.
+	 * A big object is divided into Key/Value chunks of the chunk size (1M by
+	 * default). Each key for a chunk is in sequence based on the specified
+	 * base key.
 	 * <p>
 	 * 
 	 * 
@@ -105,6 +185,10 @@ public class BigObject {
 
 		boolean done = false;
 
+		// put callback
+		PutxCallbackHandler putCallback = new PutxCallbackHandler(
+				this.bufferPool);
+
 		try {
 
 			// write master entry
@@ -113,33 +197,45 @@ public class BigObject {
 			// perform put in chunks
 			while (done == false) {
 
-				// value holder
-				byte[] value = new byte[CHUNK_SIZE];
+				// value holder, waits if max chunks are in flight
+				byte[] buffer = this.bufferPool.take(this.requestTimeout);
 
 				// read value
-				int vlen = dis.read(value);
+				int vlen = 0;
+
+				// true once the buffer is owned by a chunk put
+				boolean isHandedOff = false;
+
+				try {
+					vlen = readChunk(dis, buffer);
 
-				// more data
-				if (vlen > 0) {
+					// more data
+					if (vlen > 0) {
 
-					// total bytes written
-					total += vlen;
+						// total bytes written
+						total += vlen;
 
-					// write entry in sequence
-					this.writeEntryInSequence(client, kseq, key,
-							value,
-							vlen);
+						// write entry in sequence, owns the buffer
+						isHandedOff = true;
 
-					// increase key sequence for next key
-					kseq++;
-				} else {
-					// reached end of stream
-					done = true;
+						this.writeEntryInSequence(this.getClient(kseq), kseq,
+								key, buffer, vlen, putCallback);
+
+						// increase key sequence for next key
+						kseq++;
+					}
+				} finally {
+					if (isHandedOff == false) {
+						this.bufferPool.release(buffer);
+					}
 				}
+
+				// reached end of stream
+				done = (vlen < this.chunkSize);
 			}
 
 			// wait for all ops to confirm
-			putCallback.waitForFinish();
+			putCallback.waitForFinish(this.requestTimeout);
 
 			// finalize entry
 			this.finalizeEntry(key, kseq);
@@ -186,7 +282,8 @@ public class BigObject {
 	}
 
 	/**
-	 * Write entry in sequence.
+	 * Write entry in sequence. The pooled value buffer is released when the
+	 * put is done, or before this method returns if the put is not sent.
 	 * 
 	 * @param client
 	 *            the client instance used to write the entry.
@@ -198,41 +295,51 @@ public class BigObject {
 	 *            value in chunk
 	 * @param vlen
 	 *            value length
+	 * @param putCallback
+	 *            callback handler of the putx operation
 	 * @throws KineticException
 	 *             if any internal error occurred
 	 */
 	private void writeEntryInSequence(AdvancedKineticClient client, int kseq,
-			byte[] key, byte[] value, int vlen) throws KineticException {
+			byte[] key, byte[] value, int vlen,
+			PutxCallbackHandler putCallback) throws KineticException {
 
-		// generate key and do put with 1M
-		ByteBuffer kByteBuffer = ByteBuffer.allocate(key.length + ISIZE);
+		// add callback counter, the chunk handler owns the pooled buffer
+		ChunkCallbackHandler chunkCallback = putCallback.newChunk(value);
 
-		// key + index
-		byte[] kbytes = kByteBuffer.put(key).putInt(kseq).array();
+		// true once the put is sent
+		boolean isSent = false;
 
-		// make entry in sequence
-		Entry entry = new Entry();
-		entry.setKey(kbytes);
-
-		// set entry value
-		if (vlen == CHUNK_SIZE) {
-			// full chunk entry
-			entry.setValue(value);
-		} else {
-			// not full chunk entry in sequence
-			ByteBuffer vByteBuffer = ByteBuffer.allocate(vlen);
-			vByteBuffer.put(value, 0, vlen);
-			entry.setValue(vByteBuffer.array());
-		}
+		try {
+			// key + index
+			byte[] kbytes = getKeyInSequence(key, kseq);
+
+			// make entry in sequence
+			Entry entry = new Entry();
+			entry.setKey(kbytes);
+
+			// set entry value
+			if (vlen == this.chunkSize) {
+				// full chunk entry
+				entry.setValue(value);
+			} else {
+				// not full (last) chunk entry in sequence
+				entry.setValue(Arrays.copyOf(value, vlen));
+			}
 
-		// set tag in sequence
-		entry.getEntryMetadata().setTag(new byte[1]);
+			// set tag in sequence
+			entry.getEntryMetadata().setTag(new byte[1]);
 
-		// add callback counter
-		this.putCallback.increaseCounter();
+			// do put chunk
+			client.putForcedAsync(entry, PersistOption.ASYNC, chunkCallback);
 
-		// do put chunk
-		client.putForcedAsync(entry, PersistOption.ASYNC, this.putCallback);
+			isSent = true;
+		} finally {
+			if (isSent == false) {
+				// not sent, release buffer
+				chunkCallback.notSent();
+			}
+		}
 	}
 
 	/**
@@ -295,37 +402,43 @@ public class BigObject {
 			ByteBuffer vbb = ByteBuffer.wrap(entry.getValue());
 			totalEntries = vbb.getInt();
 
-			GetxCallbackHandler callback = new GetxCallbackHandler(
-					dos);
+			GetxCallbackHandler callback = new GetxCallbackHandler();
 
-			// perform get in chunks
-			for (int kseq=0; kseq < totalEntries; kseq++) {
+			// next chunk to request
+			int nextToGet = 0;
 
-				// generate key and do put with 1M
-				ByteBuffer kByteBuffer = ByteBuffer
-						.allocate(key.length + ISIZE);
+			// perform get in chunks, write chunks in sequence
+			for (int kseq = 0; kseq < totalEntries; kseq++) {
 
-				// key + index
-				byte[] keyInSeq = kByteBuffer.put(key).putInt(kseq).array();
+				// keep max chunks in flight
+				while (nextToGet < totalEntries
+						&& nextToGet - kseq < this.maxInFlight) {
 
-				// async get entry
-				this.client.getAsync(keyInSeq, callback);
+					// key + index
+					byte[] keyInSeq = getKeyInSequence(key, nextToGet);
 
-				// increase read counter
-				callback.increaseCounter();
-			}
+					// async get entry
+					this.getClient(nextToGet).getAsync(keyInSeq, callback);
 
-			// wait for async read and write (to output stream) to finish
-			callback.waitForFinish();
+					nextToGet++;
+				}
 
-			// get total read length
-			total = callback.getTotalRead();
+				// wait for the chunk in sequence
+				byte[] value = callback.take(kseq, this.requestTimeout);
+
+				dos.write(value);
+
+				total += value.length;
+			}
 
 			logger.info("finished streaming, tatal=" + total);
 
+		} catch (KineticException e) {
+			logger.log(Level.SEVERE, e.getMessage(), e);
+			throw e;
 		} catch (Exception e) {
-			// do clean up
-			e.printStackTrace();
+			logger.log(Level.SEVERE, e.getMessage(), e);
+			throw new KineticException(e);
 		} finally {
 			try {
 				dos.close();
@@ -370,15 +483,12 @@ public class BigObject {
 			// perform get in chunks
 			for (int kseq = 0; kseq < totalEntries; kseq++) {
 
-				// generate key and do put with 1M
-				ByteBuffer kByteBuffer = ByteBuffer
-						.allocate(key.length + ISIZE);
-
 				// key + index
-				byte[] keyInSeq = kByteBuffer.put(key).putInt(kseq).array();
+				byte[] keyInSeq = getKeyInSequence(key, kseq);
 
 				// async get entry
-				this.client.deleteForcedAsync(keyInSeq, deleteCallback);
+				this.getClient(kseq).deleteForcedAsync(keyInSeq,
+						deleteCallback);
 
 				// increase read counter
 				deleteCallback.increaseCount();
@@ -406,7 +516,86 @@ public class BigObject {
 	 *             if any internal error occurred.
 	 */
 	public void close() throws KineticException {
-		this.client.close();
+
+		KineticException error = null;
+
+		for (AdvancedKineticClient c : this.clients) {
+
+			if (c == null) {
+				continue;
+			}
+
+			try {
+				c.close();
+			} catch (KineticException e) {
+				error = e;
+			}
+		}
+
+		if (error != null) {
+			throw error;
+		}
+	}
+
+	/**
+	 * Get the client instance that stores the chunk of the specified
+	 * sequence.
+	 */
+	private AdvancedKineticClient getClient(int kseq) {
+		return this.clients[kseq % this.clients.length];
+	}
+
+	/**
+	 * Read a chunk from the input stream. The buffer is filled unless the end
+	 * of stream is reached.
+	 * 
+	 * @return number of bytes read.
+	 */
+	private static int readChunk(InputStream is, byte[] buffer)
+			throws IOException {
+
+		int len = 0;
+
+		while (len < buffer.length) {
+
+			int n = is.read(buffer, len, buffer.length - len);
+
+			if (n < 0) {
+				break;
+			}
+
+			len += n;
+		}
+
+		return len;
+	}
+
+	/**
+	 * Get the key of the chunk with the specified sequence.
+	 * 
+	 * @param key
+	 *            the base key
+	 * @param kseq
+	 *            sequence for the chunk
+	 * @return base key + sequence
+	 */
+	static byte[] getKeyInSequence(byte[] key, int kseq) {
+
+		ByteBuffer kByteBuffer = ByteBuffer.allocate(key.length + ISIZE);
+
+		return kByteBuffer.put(key).putInt(kseq).array();
+	}
+
+	/**
+	 * Get the sequence of the chunk from the chunk key.
+	 * 
+	 * @param keyInSeq
+	 *            chunk key (base key + sequence)
+	 * @return the chunk sequence
+	 */
+	static int getSequence(byte[] keyInSeq) {
+		return ByteBuffer.wrap(keyInSeq, keyInSeq.length - ISIZE, ISIZE)
+				.getInt();
 	}
 
 }
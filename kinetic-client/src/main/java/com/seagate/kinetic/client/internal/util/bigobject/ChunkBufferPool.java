@@ -0,0 +1,125 @@
+/**
+ * Copyright (C) 2014 Seagate Technology.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package com.seagate.kinetic.client.internal.util.bigobject;
+
+import java.util.LinkedList;
+
+import kinetic.client.KineticException;
+
+/**
+ * A bounded pool of chunk buffers.
+ * <p>
+ * Buffers are allocated on demand up to the pool capacity and are reused
+ * after they are released. A caller blocks in {@link #take(long)} while all the
+ * buffers are in use, which bounds the number of chunks in flight.
+ * 
+ * @see BigObject
+ */
+public class ChunkBufferPool {
+
+	// size of each buffer
+	private final int chunkSize;
+
+	// max number of buffers
+	private final int capacity;
+
+	// released buffers
+	private final LinkedList<byte[]> free = new LinkedList<byte[]>();
+
+	// number of buffers allocated
+	private int allocated = 0;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param chunkSize
+	 *            size of each buffer.
+	 * @param capacity
+	 *            max number of buffers.
+	 */
+	public ChunkBufferPool(int chunkSize, int capacity) {
+
+		if (chunkSize <= 0 || capacity <= 0) {
+			throw new IllegalArgumentException("invalid chunk size "
+					+ chunkSize + " or capacity " + capacity);
+		}
+
+		this.chunkSize = chunkSize;
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Take a buffer from the pool. Wait until a buffer is released if all the
+	 * buffers are in use.
+	 * 
+	 * @param timeout
+	 *            max time to wait in milli-seconds.
+	 * @return a buffer of the pool chunk size.
+	 * 
+	 * @throws InterruptedException
+	 *             if interrupted while waiting.
+	 * @throws KineticException
+	 *             if no buffer was released within the timeout.
+	 */
+	public synchronized byte[] take(long timeout) throws InterruptedException,
+			KineticException {
+
+		long deadline = System.currentTimeMillis() + timeout;
+
+		while (free.isEmpty() && allocated >= capacity) {
+
+			long remaining = deadline - System.currentTimeMillis();
+
+			if (remaining <= 0) {
+				throw new KineticException(
+						"Timeout - no chunk buffer released within " + timeout
+								+ " ms");
+			}
+
+			this.wait(remaining);
+		}
+
+		if (free.isEmpty() == false) {
+			return free.removeFirst();
+		}
+
+		allocated++;
+
+		return new byte[chunkSize];
+	}
+
+	/**
+	 * Return a buffer to the pool.
+	 * 
+	 * @param buffer
+	 *            buffer obtained from {@link #take(long)}.
+	 */
+	public synchronized void release(byte[] buffer) {
+		free.addFirst(buffer);
+		this.notifyAll();
+	}
+
+	/**
+	 * Get the size of the pooled buffers.
+	 * 
+	 * @return the chunk size.
+	 */
+	public int getChunkSize() {
+		return this.chunkSize;
+	}
+}
@@ -17,7 +17,8 @@
  */
 package com.seagate.kinetic.client.internal.util.bigobject;
 
-import java.io.DataOutputStream;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -25,75 +26,110 @@ import kinetic.client.AsyncKineticException;
 import kinetic.client.CallbackHandler;
 import kinetic.client.CallbackResult;
 import kinetic.client.Entry;
+import kinetic.client.KineticException;
 
+/**
+ * Callback handler for the chunk gets of a getx operation.
+ * <p>
+ * Chunk values may be received in any order. They are held until the caller
+ * takes them in sequence with {@link #take(int, long)} and writes them to the
+ * output stream.
+ * 
+ * @see BigObject#getx(byte[], java.io.OutputStream)
+ */
 public class GetxCallbackHandler implements
 CallbackHandler<Entry> {
 
 	private final Logger logger = Logger
 			.getLogger(GetxCallbackHandler.class.getName());
 
-	private long counter = 0;
-
-	private DataOutputStream dos = null;
+	// chunk sequence -> received chunk value
+	private final Map<Integer, byte[]> received = new HashMap<Integer, byte[]>();
 
-	private long total = 0;
+	// first error occurred
+	private KineticException error = null;
 
-	public GetxCallbackHandler(DataOutputStream dos) {
-		this.dos = dos;
+	public GetxCallbackHandler() {
+		;
 	}
 
 	@Override
 	public void onSuccess(CallbackResult<Entry> result) {
-		try {
 
-			byte[] value = result.getResult().getValue();
+		Entry entry = result.getResult();
 
-			dos.write(value);
+		synchronized (this) {
 
-			total += value.length;
+			if (entry == null) {
+				this.setError(new KineticException("chunk not found, seq="
+						+ BigObject.getSequence(result.getRequestKey())));
+			} else {
+				this.received.put(BigObject.getSequence(entry.getKey()),
+						entry.getValue());
+			}
 
-		} catch (Exception e) {
-			logger.log(Level.WARNING, e.getMessage(), e);
-		} finally {
-			this.decreaseCounter();
+			this.notifyAll();
 		}
 	}
 
 	@Override
 	public void onError(AsyncKineticException exception) {
 		logger.log(Level.WARNING, exception.getMessage(), exception);
+
+		synchronized (this) {
+			this.setError(exception);
+			this.notifyAll();
+		}
 	}
 
-	public synchronized void waitForFinish() {
-		while (this.counter > 0) {
-			try {
-				this.wait(500);
+	/**
+	 * Wait for and take the value of the specified chunk.
+	 * 
+	 * @param kseq
+	 *            sequence of the chunk.
+	 * @param timeout
+	 *            max time to wait in milli-seconds.
+	 * @return the chunk value.
+	 * 
+	 * @throws KineticException
+	 *             if any of the chunk gets failed or the timeout elapsed.
+	 */
+	public synchronized byte[] take(int kseq, long timeout)
+			throws KineticException {
+
+		long deadline = System.currentTimeMillis() + timeout;
+
+		byte[] value = null;
+
+		while ((value = this.received.remove(kseq)) == null) {
+
+			if (this.error != null) {
+				throw this.error;
+			}
 
-				if (this.counter > 0) {
-					System.out.println("waiting for finish, counter="
-							+ this.counter);
-				}
+			long remaining = deadline - System.currentTimeMillis();
+
+			if (remaining <= 0) {
+				throw new KineticException(
+						"Timeout - chunk not received within " + timeout
+								+ " ms, seq=" + kseq);
+			}
+
+			try {
+				this.wait(remaining);
 			} catch (InterruptedException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
+				Thread.currentThread().interrupt();
+				throw new KineticException(e);
 			}
 		}
-	}
 
-	public synchronized void increaseCounter() {
-		this.counter++;
+		return value;
 	}
 
-	public synchronized void decreaseCounter() {
-		this.counter--;
-
-		if (this.counter == 0) {
-			this.notifyAll();
+	private void setError(KineticException e) {
+		if (this.error == null) {
+			this.error = e;
 		}
 	}
 
-	public long getTotalRead() {
-		return this.total;
-	}
-
 }
@@ -24,49 +24,99 @@ import kinetic.client.AsyncKineticException;
 import kinetic.client.CallbackHandler;
 import kinetic.client.CallbackResult;
 import kinetic.client.Entry;
+import kinetic.client.KineticException;
 
-public class PutxCallbackHandler implements
-CallbackHandler<Entry> {
+/**
+ * Tracks the chunk puts of a putx operation.
+ * <p>
+ * Each chunk put has its own callback handler, which holds the pooled buffer
+ * of the chunk. The buffer is returned to the buffer pool exactly once, when
+ * the put of the chunk is confirmed, failed, or could not be sent.
+ * 
+ * @see BigObject#putx(byte[], java.io.InputStream)
+ */
+public class PutxCallbackHandler {
 
 	private final Logger logger = Logger
 			.getLogger(PutxCallbackHandler.class.getName());
 
+	private final ChunkBufferPool pool;
+
 	private long counter = 0;
 
-	public PutxCallbackHandler() {
-		;
-	}
+	// first error occurred
+	private AsyncKineticException error = null;
 
-	@Override
-	public void onSuccess(CallbackResult<Entry> result) {
-		this.decreaseCounter();
+	public PutxCallbackHandler(ChunkBufferPool pool) {
+		this.pool = pool;
 	}
 
-	@Override
-	public void onError(AsyncKineticException exception) {
-		logger.log(Level.WARNING, exception.getMessage(), exception);
+	/**
+	 * Register a chunk put in flight.
+	 * 
+	 * @param buffer
+	 *            pooled buffer of the chunk value, or null if the value is
+	 *            not pooled.
+	 * @return the callback handler of the chunk put.
+	 */
+	public synchronized ChunkCallbackHandler newChunk(byte[] buffer) {
+
+		this.counter++;
+
+		return new ChunkCallbackHandler(buffer);
 	}
 
-	public synchronized void waitForFinish() {
+	/**
+	 * Wait for all the chunk puts to be confirmed.
+	 * 
+	 * @param timeout
+	 *            max time to wait in milli-seconds.
+	 * 
+	 * @throws KineticException
+	 *             if any of the chunk puts failed or the timeout elapsed.
+	 */
+	public synchronized void waitForFinish(long timeout)
+			throws KineticException {
+
+		long deadline = System.currentTimeMillis() + timeout;
+
 		while (this.counter > 0) {
+
+			long remaining = deadline - System.currentTimeMillis();
+
+			if (remaining <= 0) {
+				throw new KineticException(
+						"Timeout - chunk puts not confirmed within " + timeout
+								+ " ms, pending=" + this.counter);
+			}
+
 			try {
-				this.wait(500);
+				this.wait(Math.min(remaining, 500));
 
 				if (this.counter > 0) {
-					System.out.println("waiting for finish, counter="
+					logger.fine("waiting for finish, counter="
 							+ this.counter);
 				}
 			} catch (InterruptedException e) {
-				logger.log(Level.WARNING, e.getMessage(), e);
+				Thread.currentThread().interrupt();
+				throw new KineticException(e);
 			}
 		}
-	}
 
-	public synchronized void increaseCounter() {
-		this.counter++;
+		if (this.error != null) {
+			throw new KineticException(this.error.getMessage(), this.error);
+		}
 	}
 
-	public synchronized void decreaseCounter() {
+	/**
+	 * Unregister a chunk put and record its error, if any.
+	 */
+	private synchronized void finished(AsyncKineticException exception) {
+
+		if (exception != null && this.error == null) {
+			this.error = exception;
+		}
+
 		this.counter--;
 
 		if (this.counter == 0) {
@@ -74,4 +124,63 @@ CallbackHandler<Entry> {
 		}
 	}
 
+	/**
+	 * Callback handler of one chunk put. Holds the pooled buffer of the chunk
+	 * until the put is done.
+	 */
+	public class ChunkCallbackHandler implements CallbackHandler<Entry> {
+
+		// pooled buffer, null once released or if not pooled
+		private byte[] buffer;
+
+		private boolean isDone = false;
+
+		private ChunkCallbackHandler(byte[] buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public void onSuccess(CallbackResult<Entry> result) {
+			this.done(null);
+		}
+
+		@Override
+		public void onError(AsyncKineticException exception) {
+			logger.log(Level.WARNING, exception.getMessage(), exception);
+
+			this.done(exception);
+		}
+
+		/**
+		 * Release the chunk after its put could not be sent.
+		 */
+		public void notSent() {
+			this.done(null);
+		}
+
+		private void done(AsyncKineticException exception) {
+
+			byte[] toRelease = null;
+
+			synchronized (this) {
+				if (this.isDone) {
+					return;
+				}
+
+				this.isDone = true;
+
+				toRelease = this.buffer;
+				this.buffer = null;
+			}
+
+			try {
+				if (toRelease != null) {
+					pool.release(toRelease);
+				}
+			} finally {
+				finished(exception);
+			}
+		}
+	}
+
 }
@@ -0,0 +1,129 @@
+/**
+ * Copyright (C) 2014 Seagate Technology.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package com.seagate.kinetic.client.io;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Thread pool that invokes the asynchronous callback handlers of a client
+ * instance.
+ * <p>
+ * If the callbacks are ordered by key, each thread has its own queue and
+ * the callbacks of a key are always run by the same thread, in the order
+ * they are submitted. Otherwise, all threads share one queue and a slow
+ * callback only holds its own thread.
+ *
+ * @see MessageHandler
+ */
+class CallbackExecutor {
+
+	private final static Logger logger = Logger
+			.getLogger(CallbackExecutor.class.getName());
+
+	// one executor per thread if ordered by key, one shared otherwise
+	private final ExecutorService[] executors;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param name
+	 *            thread name prefix.
+	 * @param nThreads
+	 *            number of callback threads.
+	 * @param isOrderedByKey
+	 *            true if the callbacks of a key must run in order.
+	 */
+	CallbackExecutor(String name, int nThreads, boolean isOrderedByKey) {
+
+		ThreadFactory factory = new CallbackThreadFactory(name);
+
+		if (isOrderedByKey) {
+			this.executors = new ExecutorService[nThreads];
+
+			for (int i = 0; i < nThreads; i++) {
+				this.executors[i] = Executors.newSingleThreadExecutor(factory);
+			}
+		} else {
+			this.executors = new ExecutorService[] { Executors
+					.newFixedThreadPool(nThreads, factory) };
+		}
+	}
+
+	/**
+	 * Run the callback task.
+	 *
+	 * @param task
+	 *            the callback task.
+	 * @param keyHash
+	 *            hash code of the request key, used to select the thread if
+	 *            the callbacks are ordered by key.
+	 */
+	void execute(Runnable task, int keyHash) {
+
+		// spread the hash bits
+		int h = keyHash ^ (keyHash >>> 16);
+
+		int index = (h & Integer.MAX_VALUE) % this.executors.length;
+
+		try {
+			this.executors[index].execute(task);
+		} catch (RejectedExecutionException e) {
+			// client is closed
+			logger.fine("callback dropped, client is closed");
+		}
+	}
+
+	/**
+	 * Stop the callback threads. Callbacks already queued are still run.
+	 */
+	void shutdown() {
+		for (ExecutorService executor : this.executors) {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Creates named daemon callback threads.
+	 */
+	private static class CallbackThreadFactory implements ThreadFactory {
+
+		private final String name;
+
+		private final AtomicInteger count = new AtomicInteger(0);
+
+		CallbackThreadFactory(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public Thread newThread(Runnable r) {
+
+			Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+
+			// does not prevent the application from exiting
+			thread.setDaemon(true);
+
+			return thread;
+		}
+	}
+}
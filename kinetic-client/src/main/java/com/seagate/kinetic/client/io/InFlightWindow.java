@@ -0,0 +1,256 @@
+/**
+ * Copyright (C) 2014 Seagate Technology.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package com.seagate.kinetic.client.io;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Window of asynchronous requests in flight on a connection.
+ * <p>
+ * A request takes a permit before it is sent and returns it when its
+ * response is delivered. Taking and returning a permit does not take any
+ * lock.
+ * <p>
+ * If the window is adaptive, its size is adjusted with additive increase and
+ * multiplicative decrease (AIMD). The window grows by one after a full
+ * window of requests completed without congestion, up to the max size. The
+ * window is halved, at most once per round trip, down to one when the
+ * service responds busy or when the smoothed response latency is more than
+ * twice the base latency. The base latency is the min latency observed in
+ * the previous period of completions.
+ *
+ * @see MessageHandler
+ */
+class InFlightWindow {
+
+	private final static Logger logger = Logger.getLogger(InFlightWindow.class
+			.getName());
+
+	// latency above base * factor is considered congestion
+	private static final int LATENCY_FACTOR = 2;
+
+	// completions per base latency period
+	private static final int BASE_LATENCY_PERIOD = 1000;
+
+	/**
+	 * Semaphore whose number of permits can be reduced.
+	 */
+	@SuppressWarnings("serial")
+	private static class WindowSemaphore extends Semaphore {
+
+		WindowSemaphore(int permits) {
+			super(permits);
+		}
+
+		void reduce(int reduction) {
+			super.reducePermits(reduction);
+		}
+	}
+
+	private final WindowSemaphore permits;
+
+	private final int maxSize;
+
+	private final boolean isAdaptive;
+
+	// current window size
+	private volatile int size;
+
+	// adjustments are skipped if another thread is adjusting
+	private final ReentrantLock adjustLock = new ReentrantLock();
+
+	// states below are guarded by the adjust lock
+
+	private int completedInWindow = 0;
+
+	private long baseLatency = 0;
+
+	private long periodMinLatency = Long.MAX_VALUE;
+
+	private int periodCount = 0;
+
+	private long smoothedLatency = 0;
+
+	private long lastDecrease = 0;
+
+	private boolean isClosed = false;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param initialSize
+	 *            initial window size.
+	 * @param maxSize
+	 *            max window size. The window is fixed to the initial size
+	 *            if not larger than the initial size.
+	 */
+	InFlightWindow(int initialSize, int maxSize) {
+
+		this.size = Math.max(1, initialSize);
+		this.maxSize = Math.max(this.size, maxSize);
+		this.isAdaptive = (this.maxSize > this.size);
+
+		this.permits = new WindowSemaphore(this.size);
+	}
+
+	/**
+	 * Take a permit, wait until one is available.
+	 *
+	 * @throws InterruptedException
+	 *             if interrupted while waiting.
+	 */
+	void acquire() throws InterruptedException {
+		this.permits.acquire();
+	}
+
+	/**
+	 * Return the permit of a request that could not be sent.
+	 */
+	void release() {
+		this.permits.release();
+	}
+
+	/**
+	 * Return the permit of a completed request and adjust the window.
+	 *
+	 * @param latency
+	 *            response latency in nano seconds.
+	 * @param isBusy
+	 *            true if the service responded busy.
+	 */
+	void onComplete(long latency, boolean isBusy) {
+
+		this.permits.release();
+
+		if (this.isAdaptive == false || this.adjustLock.tryLock() == false) {
+			return;
+		}
+
+		try {
+			this.adjust(latency, isBusy);
+		} finally {
+			this.adjustLock.unlock();
+		}
+	}
+
+	/**
+	 * Get the current window size.
+	 *
+	 * @return max number of requests in flight.
+	 */
+	int getSize() {
+		return this.size;
+	}
+
+	/**
+	 * Release all the requests waiting for a permit.
+	 */
+	void close() {
+
+		this.adjustLock.lock();
+
+		try {
+			if (this.isClosed == false) {
+				this.isClosed = true;
+				this.permits.release(Integer.MAX_VALUE / 2);
+			}
+		} finally {
+			this.adjustLock.unlock();
+		}
+	}
+
+	/**
+	 * Adjust the window size. Called with the adjust lock held.
+	 */
+	private void adjust(long latency, boolean isBusy) {
+
+		if (this.isClosed) {
+			return;
+		}
+
+		this.updateLatency(latency);
+
+		boolean isCongested = isBusy
+				|| this.smoothedLatency > this.baseLatency * LATENCY_FACTOR;
+
+		if (isCongested) {
+
+			long now = System.nanoTime();
+
+			// at most once per round trip
+			if (this.lastDecrease != 0
+					&& now - this.lastDecrease < this.smoothedLatency) {
+				return;
+			}
+
+			this.lastDecrease = now;
+			this.completedInWindow = 0;
+
+			int newSize = Math.max(1, this.size / 2);
+
+			if (newSize < this.size) {
+				this.permits.reduce(this.size - newSize);
+				this.setSize(newSize, isBusy);
+			}
+
+			return;
+		}
+
+		// one more permit per window of completions
+		if (++this.completedInWindow >= this.size && this.size < this.maxSize) {
+			this.completedInWindow = 0;
+			this.permits.release();
+			this.setSize(this.size + 1, false);
+		}
+	}
+
+	private void updateLatency(long latency) {
+
+		if (this.smoothedLatency == 0) {
+			this.smoothedLatency = latency;
+			this.baseLatency = latency;
+		} else {
+			this.smoothedLatency += (latency - this.smoothedLatency) / 8;
+		}
+
+		this.periodMinLatency = Math.min(this.periodMinLatency, latency);
+
+		// base latency follows changes of the link
+		if (++this.periodCount >= BASE_LATENCY_PERIOD) {
+			this.baseLatency = this.periodMinLatency;
+			this.periodMinLatency = Long.MAX_VALUE;
+			this.periodCount = 0;
+		} else if (latency < this.baseLatency) {
+			this.baseLatency = latency;
+		}
+	}
+
+	private void setSize(int newSize, boolean isBusy) {
+
+		if (logger.isLoggable(Level.FINE)) {
+			logger.fine("async window size=" + newSize + ", previous="
+					+ this.size + ", busy=" + isBusy + ", latency(ns)="
+					+ this.smoothedLatency + ", base(ns)=" + this.baseLatency);
+		}
+
+		this.size = newSize;
+	}
+}
@@ -18,6 +18,8 @@
 package com.seagate.kinetic.client.io;
 
 import java.io.IOException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -52,6 +54,12 @@ public class IoHandler {
 
 	private ClientProxy client = null;
 
+	// messages to be written to the transport
+	private final ConcurrentLinkedQueue<KineticMessage> sendQueue = new ConcurrentLinkedQueue<KineticMessage>();
+
+	// true while a thread is writing the send queue to the transport
+	private final AtomicBoolean isWriting = new AtomicBoolean(false);
+
 	private final boolean useHttp = Boolean.getBoolean("kinetic.io.http");
 
 	private final boolean useHttps = Boolean.getBoolean("kinetic.io.https");
@@ -73,6 +81,8 @@ public class IoHandler {
 
 	private static final String TCP_TRANSPORT = "com.seagate.kinetic.client.io.provider.tcp.TcpTransportProvider";
 
+	private static final String TCP_SELECTOR_TRANSPORT = "com.seagate.kinetic.client.io.provider.tcp.TcpSelectorTransportProvider";
+
 	private static final String TCP_NIO_TRANSPORT = "com.seagate.kinetic.client.io.provider.nio.tcp.TcpNioTransportProvider";
 
 	private static final String SSL_NIO_TRANSPORT = "com.seagate.kinetic.client.io.provider.nio.ssl.SslNioTransportProvider";
@@ -135,6 +145,12 @@ public class IoHandler {
 
 	/**
 	 * Write message to the binded transport.
+	 * <p>
+	 * Messages are queued, and only one thread at a time writes the queued
+	 * messages to the transport. A calling thread that finds no thread
+	 * writing writes all the queued messages, including the ones queued by
+	 * other threads in the meantime. Otherwise, the message is written by
+	 * the writing thread and this method returns without waiting.
 	 *
 	 * @param message
 	 *            out bound message.
@@ -142,13 +158,64 @@ public class IoHandler {
 	 * @throws IOException
 	 *             if I/O failed.
 	 */
-	public synchronized void write(KineticMessage message) throws IOException {
+	public void write(KineticMessage message) throws IOException {
+
+		this.sendQueue.add(message);
+
+		IOException error = null;
+
+		// re-check after release so that no queued message is left behind
+		while (this.sendQueue.isEmpty() == false
+				&& this.isWriting.compareAndSet(false, true)) {
+			try {
+				error = this.drain(message, error);
+			} finally {
+				this.isWriting.set(false);
+			}
+		}
+
+		if (error != null) {
+			throw error;
+		}
+	}
 
-		if (logger.isLoggable(Level.FINEST)) {
-			logger.finest("writing message: " + message.getMessage());
+	/**
+	 * Write the queued messages to the transport until the queue is empty.
+	 *
+	 * @param own
+	 *            the message of the calling thread.
+	 * @param error
+	 *            the write error of the calling thread's message, if any.
+	 * @return the write error of the calling thread's message, if any.
+	 */
+	private IOException drain(KineticMessage own, IOException error) {
+
+		KineticMessage message = null;
+
+		while ((message = this.sendQueue.poll()) != null) {
+
+			if (logger.isLoggable(Level.FINEST)) {
+				logger.finest("writing message: " + message.getMessage());
+			}
+
+			try {
+				this.transport.write(message);
+			} catch (IOException e) {
+
+				if (message == own) {
+					error = e;
+				} else {
+					// the caller is not here to receive the error, the
+					// connection can no longer be used
+					logger.log(Level.WARNING,
+							"write failed, closing message handler", e);
+
+					this.messageHandler.close();
+				}
+			}
 		}
 
-		this.transport.write(message);
+		return error;
 	}
 
 	/**
@@ -189,6 +256,9 @@ public class IoHandler {
 			} else if (useHttps) {
 				logger.info("using https transport ....");
 				transport = this.loadTransportProvider(HTTP_TRANSPORT);
+			} else if (config.getUseSelectorTransport()) {
+				logger.info("using selector TCP transport ....");
+				transport = this.loadTransportProvider(TCP_SELECTOR_TRANSPORT);
 			} else if (config.getUseNio()) {
 				logger.info("using Java NIO TCP transport ....");
 				transport = this.loadTransportProvider(TCP_NIO_TRANSPORT);
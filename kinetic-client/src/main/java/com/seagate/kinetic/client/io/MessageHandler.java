@@ -44,6 +44,7 @@ import com.seagate.kinetic.client.internal.async.PutAsyncCallbackHandler;
 import com.seagate.kinetic.client.io.provider.spi.ClientMessageService;
 import com.seagate.kinetic.common.lib.KineticMessage;
 import com.seagate.kinetic.proto.Kinetic.Command.MessageType;
+import com.seagate.kinetic.proto.Kinetic.Command.Status.StatusCode;
 import com.seagate.kinetic.proto.Kinetic.Message.AuthType;
 
 /**
@@ -67,8 +68,12 @@ public class MessageHandler implements ClientMessageService, Runnable {
 	// my message queue
 	private final LinkedBlockingQueue<KineticMessage> asyncQueue = new LinkedBlockingQueue<KineticMessage>();
 
+	// async request sequence -> callback context
 	private final Map<Long, Object> ackmap = new ConcurrentHashMap<Long, Object>();
 
+	// sync request sequence -> response slot
+	private final SyncSlotTable syncSlots = new SyncSlotTable();
+
 	// flag running flag
 	private volatile boolean isRunning = false;
 
@@ -79,7 +84,8 @@ public class MessageHandler implements ClientMessageService, Runnable {
 	// io handler
 	private IoHandler iohandler = null;
 
-	private int asyncQueuedSize = 10;
+	// async requests in flight
+	private final InFlightWindow window;
 
 	// request timeout
 	private long requestTimeout = 30000;
@@ -88,6 +94,9 @@ public class MessageHandler implements ClientMessageService, Runnable {
 	
 	private boolean isStatusMessageReceived = false;
 
+	// callback threads, null if callbacks are invoked by my thread
+	private CallbackExecutor callbackExecutor = null;
+
 	/**
 	 * Constructor.
 	 *
@@ -100,11 +109,21 @@ public class MessageHandler implements ClientMessageService, Runnable {
 
 		this.client = iohandler.getClient();
 
-		this.asyncQueuedSize = this.client.getConfiguration()
-				.getAsyncQueueSize();
+		this.window = new InFlightWindow(this.client.getConfiguration()
+				.getAsyncQueueSize(), this.client.getConfiguration()
+				.getAsyncMaxQueueSize());
 
 		this.requestTimeout = this.client.getConfiguration()
 				.getRequestTimeoutMillis();
+
+		ClientConfiguration config = this.client.getConfiguration();
+
+		if (config.getCallbackThreads() > 1) {
+			this.callbackExecutor = new CallbackExecutor("ClientCallback-"
+					+ config.getHost() + "-" + config.getPort(),
+					config.getCallbackThreads(),
+					config.getCallbackOrderedByKey());
+		}
 	}
 	
 
@@ -118,7 +137,6 @@ public class MessageHandler implements ClientMessageService, Runnable {
 	 *             if interrupted.
 	 */
 	@Override
-	@SuppressWarnings("unchecked")
 	public void routeMessage(KineticMessage message)
 			throws InterruptedException {
 
@@ -147,15 +165,21 @@ public class MessageHandler implements ClientMessageService, Runnable {
 		    }
 		}
 
-		Long seq = Long.valueOf(message.getCommand().getHeader()
-				.getAckSequence());
-
-		Object obj = this.ackmap.get(seq);
+		long ackSequence = message.getCommand().getHeader().getAckSequence();
 
 		// check if sync request
-		if (obj != null && (obj instanceof LinkedBlockingQueue)) {
-			// sync request
-			((LinkedBlockingQueue<KineticMessage>) obj).put(message);
+		SyncSlot slot = this.syncSlots.get(ackSequence);
+
+		if (slot != null && slot.deliver(this, ackSequence, message)) {
+			// sync request delivered
+			return;
+		}
+
+		Object obj = this.ackmap.get(Long.valueOf(ackSequence));
+
+		if (this.callbackExecutor != null) {
+			// async request, invoked by the callback threads
+			this.dispatch(message, obj);
 		} else {
 			// async request
 			// this.asyncQueue.put(message);
@@ -220,6 +244,16 @@ public class MessageHandler implements ClientMessageService, Runnable {
 		Object context = this.ackmap.get(seq);
 
 		if (context != null) {
+
+			long latency = 0;
+
+			if (context instanceof CallbackContext) {
+				latency = System.nanoTime()
+						- ((CallbackContext<?>) context).getRequestTime();
+			}
+
+			boolean isBusy = message.getCommand().getStatus().getCode() == StatusCode.SERVICE_BUSY;
+
 			try {
 				if (context instanceof CallbackContext) {
 					// invoke callback handler
@@ -229,7 +263,7 @@ public class MessageHandler implements ClientMessageService, Runnable {
 				}
 			} finally {
 				// this.ackmap.remove(seq);
-				this.asyncDelivered(seq);
+				this.asyncDelivered(seq, latency, isBusy);
 			}
 		} else {
 
@@ -272,26 +306,30 @@ public class MessageHandler implements ClientMessageService, Runnable {
 	public KineticMessage write(KineticMessage message) throws IOException,
 	InterruptedException {
 
-		LinkedBlockingQueue<KineticMessage> lbq = new LinkedBlockingQueue<KineticMessage>(
-				1);
+		if (this.isClosed) {
+			throw new IOException("Connection is closed.");
+		}
 
-		Long seq = Long.valueOf(message.getCommand().getHeader()
-				.getSequence());
+		long seq = message.getCommand().getHeader().getSequence();
 
-		this.ackmap.put(seq, lbq);
+		// the calling thread's own mailbox, reused for each request
+		SyncSlot slot = SyncSlot.get();
+		slot.reset(this, seq);
+
+		this.syncSlots.put(seq, slot);
 
 		KineticMessage respond = null;
 
 		try {
 			// this.iohandler.write(message);
 			this.doWrite(message);
-			respond = lbq.poll(this.requestTimeout, TimeUnit.MILLISECONDS);
+			respond = slot.await(this.requestTimeout);
 
 			if (this.isClosed) {
 				throw new IOException("Connection is closed.");
 			}
 		} finally {
-			this.ackmap.remove(seq);
+			this.syncSlots.remove(seq);
 		}
 
 		return respond;
@@ -304,16 +342,48 @@ public class MessageHandler implements ClientMessageService, Runnable {
 		Long seq = Long.valueOf(message.getCommand().getHeader()
 				.getSequence());
 
-		synchronized (this) {
-			while (this.ackmap.size() >= this.asyncQueuedSize && this.isRunning) {
-				this.wait();
-			}
+		// wait for a slot in the window
+		this.window.acquire();
+
+		if (this.isClosed) {
+			this.window.release();
+			throw new IOException("Connection is closed.");
+		}
+
+		if (context instanceof CallbackContext) {
+			((CallbackContext<?>) context).setRequestTime(System.nanoTime());
 		}
 
 		this.ackmap.put(seq, context);
 
-		// this.iohandler.write(message);
-		this.doWrite(message);
+		if (this.isClosed) {
+
+			if (this.ackmap.remove(seq) == null) {
+				// already failed by close()
+				return;
+			}
+
+			this.window.release();
+			throw new IOException("Connection is closed.");
+		}
+
+		try {
+			// this.iohandler.write(message);
+			this.doWrite(message);
+		} catch (IOException e) {
+			this.ackmap.remove(seq);
+			this.window.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Get the current window size of asynchronous requests.
+	 *
+	 * @return max number of asynchronous requests in flight.
+	 */
+	public int getAsyncWindowSize() {
+		return this.window.getSize();
 	}
 
 	@SuppressWarnings("rawtypes")
@@ -522,39 +592,69 @@ public class MessageHandler implements ClientMessageService, Runnable {
 			this.myThread.interrupt();
 		}
 
+		if (this.callbackExecutor != null) {
+			this.callbackExecutor.shutdown();
+		}
+
 		// wake up sync callers
 		this.wakeupSyncCallers();
 
-		// wakes up all wait threads for this instance.
-		synchronized (this) {
-			this.notifyAll();
+		// fail async requests still waiting for a response
+		this.failPendingCallbacks();
+
+		// wakes up all async writers waiting for the window.
+		this.window.close();
+
+	}
+
+	/**
+	 * Fail the callbacks of the async requests still waiting for a
+	 * response. Invoked by the closing thread, as the callback threads may
+	 * have been shut down.
+	 */
+	private void failPendingCallbacks() {
+
+		for (Long seq : this.ackmap.keySet()) {
+			this.failPendingCallback(seq);
+		}
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private void failPendingCallback(Long seq) {
+
+		Object context = this.ackmap.remove(seq);
+
+		if ((context instanceof CallbackContext) == false) {
+			return;
 		}
 
+		CallbackContext cbContext = (CallbackContext) context;
+
+		AsyncKineticException exception = new AsyncKineticException(
+				"Connection is closed.");
+		exception.setRequestMessage(cbContext.getRequestMessage());
+
+		try {
+			cbContext.getCallbackHandler().onError(exception);
+		} catch (Exception e) {
+			logger.log(Level.WARNING, e.getMessage(), e);
+		}
 	}
 
-	@SuppressWarnings("unchecked")
 	private void wakeupSyncCallers() {
 
 		// logger.info("waking up sync callers ...");
 
-		for (Long id : this.ackmap.keySet().toArray(new Long[0])) {
-
-			Object obj = this.ackmap.get(id);
-
-			try {
-				if (obj instanceof LinkedBlockingQueue) {
-					// the connection is closed, unblock callers
-				    ((LinkedBlockingQueue<KineticMessage>) obj).put(new KineticMessage());
-				}
-			} catch (Exception e) {
-				logger.log(Level.WARNING, e.getMessage(), e);
-			}
+		for (SyncSlot slot : this.syncSlots.values()) {
+			// the connection is closed, unblock callers
+			slot.deliver(this, slot.getSequence(), new KineticMessage());
 		}
 	}
 
-	private synchronized void asyncDelivered(Long key) {
-		this.ackmap.remove(key);
-		this.notifyAll();
+	private void asyncDelivered(Long key, long latency, boolean isBusy) {
+		if (this.ackmap.remove(key) != null) {
+			this.window.onComplete(latency, isBusy);
+		}
 	}
 
 	/**
@@ -600,6 +700,42 @@ public class MessageHandler implements ClientMessageService, Runnable {
 		}
 	}
 
+	/**
+	 * dispatch the async response to the callback threads.
+	 *
+	 * @param message
+	 *            async response message
+	 * @param context
+	 *            callback context of the request, null if none.
+	 */
+	@SuppressWarnings("rawtypes")
+	private void dispatch(final KineticMessage message, Object context) {
+
+		// check if the client is closed already.
+		if (this.isClosed) {
+			return;
+		}
+
+		// callbacks of the same key are run by the same thread if ordered
+		int keyHash = 0;
+
+		if (context instanceof CallbackContext) {
+			keyHash = ((CallbackContext) context).getRequestMessage()
+					.getCommand().getBody().getKeyValue().getKey().hashCode();
+		}
+
+		this.callbackExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					doProcessMessage(message);
+				} catch (Throwable t) {
+					logger.log(Level.WARNING, "callback failed", t);
+				}
+			}
+		}, keyHash);
+	}
+
 	/**
 	 * check if the thread should exit.
 	 */
@@ -0,0 +1,120 @@
+/**
+ * Copyright (C) 2014 Seagate Technology.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package com.seagate.kinetic.client.io;
+
+import com.seagate.kinetic.common.lib.KineticMessage;
+
+/**
+ * Response mailbox of a synchronous request.
+ * <p>
+ * A thread has at most one synchronous request in progress, so each thread
+ * reuses its own slot for all its synchronous requests. A response is only
+ * delivered if the slot is still waiting for the same message handler and
+ * sequence, so that a late response of a timed out request is never
+ * delivered to a later request of the thread.
+ *
+ * @see SyncSlotTable
+ * @see MessageHandler
+ */
+final class SyncSlot {
+
+	// one slot per thread
+	private static final ThreadLocal<SyncSlot> SLOTS = new ThreadLocal<SyncSlot>() {
+		@Override
+		protected SyncSlot initialValue() {
+			return new SyncSlot();
+		}
+	};
+
+	// message handler of the request in progress, null if none
+	private Object owner = null;
+
+	// sequence of the request in progress
+	private long sequence = 0;
+
+	private KineticMessage response = null;
+
+	private SyncSlot() {
+	}
+
+	/**
+	 * Get the slot of the calling thread.
+	 */
+	static SyncSlot get() {
+		return SLOTS.get();
+	}
+
+	/**
+	 * Prepare the slot for a new request.
+	 */
+	synchronized void reset(Object owner, long sequence) {
+		this.owner = owner;
+		this.sequence = sequence;
+		this.response = null;
+	}
+
+	synchronized long getSequence() {
+		return this.sequence;
+	}
+
+	/**
+	 * Deliver the response if the slot is waiting for it.
+	 *
+	 * @return true if delivered.
+	 */
+	synchronized boolean deliver(Object owner, long sequence,
+			KineticMessage response) {
+
+		if (this.owner != owner || this.sequence != sequence
+				|| this.response != null) {
+			return false;
+		}
+
+		this.response = response;
+		this.notifyAll();
+
+		return true;
+	}
+
+	/**
+	 * Wait for the response. The slot does not accept responses after this
+	 * method returns.
+	 *
+	 * @param timeout
+	 *            max time in milli seconds to wait.
+	 * @return the response, or null if timed out.
+	 */
+	synchronized KineticMessage await(long timeout)
+			throws InterruptedException {
+
+		long deadline = System.currentTimeMillis() + timeout;
+		long remaining = timeout;
+
+		try {
+			while (this.response == null && remaining > 0) {
+				this.wait(remaining);
+				remaining = deadline - System.currentTimeMillis();
+			}
+
+			return this.response;
+		} finally {
+			this.owner = null;
+			this.response = null;
+		}
+	}
+}
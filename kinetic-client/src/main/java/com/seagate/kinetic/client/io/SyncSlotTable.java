@@ -0,0 +1,212 @@
+/**
+ * Copyright (C) 2014 Seagate Technology.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package com.seagate.kinetic.client.io;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sequence to {@link SyncSlot} map of the synchronous requests in progress.
+ * <p>
+ * The map is split in stripes, each an open addressing hash table keyed by
+ * the primitive sequence number, so that neither the sequence is boxed nor
+ * an entry object is allocated per request.
+ *
+ * @see MessageHandler
+ */
+final class SyncSlotTable {
+
+	private static final int STRIPES = 16;
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private final Stripe[] stripes = new Stripe[STRIPES];
+
+	SyncSlotTable() {
+		for (int i = 0; i < STRIPES; i++) {
+			stripes[i] = new Stripe();
+		}
+	}
+
+	void put(long sequence, SyncSlot slot) {
+		long h = hash(sequence);
+		stripes[(int) h & (STRIPES - 1)].put(sequence, h >>> 4, slot);
+	}
+
+	/**
+	 * @return the slot of the sequence, or null if none.
+	 */
+	SyncSlot get(long sequence) {
+		long h = hash(sequence);
+		return stripes[(int) h & (STRIPES - 1)].get(sequence, h >>> 4);
+	}
+
+	void remove(long sequence) {
+		long h = hash(sequence);
+		stripes[(int) h & (STRIPES - 1)].remove(sequence, h >>> 4);
+	}
+
+	/**
+	 * Get all the slots in the table.
+	 */
+	List<SyncSlot> values() {
+
+		List<SyncSlot> list = new ArrayList<SyncSlot>();
+
+		for (Stripe stripe : stripes) {
+			stripe.addValuesTo(list);
+		}
+
+		return list;
+	}
+
+	/**
+	 * 64 bit finalizer of MurmurHash3, spreads the sequential numbers.
+	 */
+	private static long hash(long key) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb9fe1a85ec53L;
+		key ^= key >>> 33;
+		return key;
+	}
+
+	/**
+	 * Linear probing hash table. An empty bucket has a null value.
+	 */
+	private static final class Stripe {
+
+		private long[] keys = new long[INITIAL_CAPACITY];
+
+		private SyncSlot[] values = new SyncSlot[INITIAL_CAPACITY];
+
+		private int size = 0;
+
+		synchronized void put(long key, long hash, SyncSlot value) {
+
+			// keep load factor at most 1/2
+			if ((size + 1) * 2 > values.length) {
+				this.resize(values.length * 2);
+			}
+
+			int mask = values.length - 1;
+			int i = (int) hash & mask;
+
+			while (values[i] != null) {
+				if (keys[i] == key) {
+					values[i] = value;
+					return;
+				}
+
+				i = (i + 1) & mask;
+			}
+
+			keys[i] = key;
+			values[i] = value;
+			size++;
+		}
+
+		synchronized SyncSlot get(long key, long hash) {
+
+			int mask = values.length - 1;
+			int i = (int) hash & mask;
+
+			while (values[i] != null) {
+				if (keys[i] == key) {
+					return values[i];
+				}
+
+				i = (i + 1) & mask;
+			}
+
+			return null;
+		}
+
+		synchronized void remove(long key, long hash) {
+
+			int mask = values.length - 1;
+			int i = (int) hash & mask;
+
+			while (values[i] != null && keys[i] != key) {
+				i = (i + 1) & mask;
+			}
+
+			if (values[i] == null) {
+				return;
+			}
+
+			values[i] = null;
+			size--;
+
+			// shift back the following entries of the probe sequence
+			int j = (i + 1) & mask;
+
+			while (values[j] != null) {
+
+				int home = (int) (hash(keys[j]) >>> 4) & mask;
+
+				// move entry j to the hole if the hole is between its home
+				// bucket and j (cyclically)
+				if (((j - home) & mask) >= ((j - i) & mask)) {
+					keys[i] = keys[j];
+					values[i] = values[j];
+					values[j] = null;
+					i = j;
+				}
+
+				j = (j + 1) & mask;
+			}
+		}
+
+		synchronized void addValuesTo(List<SyncSlot> list) {
+			for (SyncSlot value : values) {
+				if (value != null) {
+					list.add(value);
+				}
+			}
+		}
+
+		private void resize(int capacity) {
+
+			long[] oldKeys = keys;
+			SyncSlot[] oldValues = values;
+
+			keys = new long[capacity];
+			values = new SyncSlot[capacity];
+
+			int mask = capacity - 1;
+
+			for (int k = 0; k < oldValues.length; k++) {
+
+				if (oldValues[k] == null) {
+					continue;
+				}
+
+				int i = (int) (hash(oldKeys[k]) >>> 4) & mask;
+
+				while (values[i] != null) {
+					i = (i + 1) & mask;
+				}
+
+				keys[i] = oldKeys[k];
+				values[i] = oldValues[k];
+			}
+		}
+	}
+}
@@ -28,7 +28,10 @@ import io.netty.channel.socket.SocketChannel;
 
 import java.util.logging.Logger;
 
+import kinetic.client.ClientConfiguration;
+
 import com.seagate.kinetic.client.io.provider.spi.ClientMessageService;
+import com.seagate.kinetic.common.lib.NettyTransportUtil;
 import com.seagate.kinetic.common.protocol.codec.KineticDecoder;
 import com.seagate.kinetic.common.protocol.codec.KineticEncoder;
 //import com.seagate.kinetic.proto.Kinetic;
@@ -60,6 +63,15 @@ ChannelInitializer<SocketChannel> {
 					.getConnectTimeoutMillis());
 		}
 
+		ClientConfiguration config = mservice.getConfiguration();
+
+		// pooled direct buffers, no delay, socket buffers and water marks
+		NettyTransportUtil.configure(ch.config(),
+				config.getSocketSendBufferSize(),
+				config.getSocketReceiveBufferSize(),
+				config.getWriteBufferHighWaterMark(),
+				config.getWriteBufferLowWaterMark());
+
 		ChannelPipeline p = ch.pipeline();
 
 		// decoder
@@ -18,12 +18,12 @@
 package com.seagate.kinetic.client.io.provider.nio.tcp;
 
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
 
 import java.util.concurrent.ThreadFactory;
 
 import com.seagate.kinetic.client.io.provider.nio.NioClientThreadFactory;
 import com.seagate.kinetic.client.io.provider.nio.udt.UdtWorkerGroup;
+import com.seagate.kinetic.common.lib.NettyTransportUtil;
 
 /**
  * 
@@ -42,7 +42,7 @@ public class NioWorkerGroup {
 
 	static {
 		tfactory = new NioClientThreadFactory("kinetic.client.nio");
-		workerGroup = new NioEventLoopGroup(0, tfactory);
+		workerGroup = NettyTransportUtil.newEventLoopGroup(0, tfactory);
 	}
 
 	/**
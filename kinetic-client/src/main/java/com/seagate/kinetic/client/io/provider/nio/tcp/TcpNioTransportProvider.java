@@ -20,7 +20,6 @@ package com.seagate.kinetic.client.io.provider.nio.tcp;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.Channel;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.socket.nio.NioSocketChannel;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
@@ -33,6 +32,7 @@ import kinetic.client.KineticException;
 import com.seagate.kinetic.client.io.provider.spi.ClientMessageService;
 import com.seagate.kinetic.client.io.provider.spi.ClientTransportProvider;
 import com.seagate.kinetic.common.lib.KineticMessage;
+import com.seagate.kinetic.common.lib.NettyTransportUtil;
 
 /**
  * This class provides TCP nio transport support for the Kinetic client runtime.
@@ -90,7 +90,11 @@ public class TcpNioTransportProvider implements ClientTransportProvider {
 
             bootstrap = new Bootstrap();
 
-            bootstrap.group(workerGroup).channel(NioSocketChannel.class)
+            bootstrap
+                    .group(workerGroup)
+                    .channel(
+                            NettyTransportUtil
+                                    .getSocketChannelClass(workerGroup))
                     .handler(nioChannelInitializer);
 
             if (config.getLocalAddress() == null) {
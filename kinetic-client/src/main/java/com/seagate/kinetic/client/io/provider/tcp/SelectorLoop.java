@@ -0,0 +1,206 @@
+/**
+ * Copyright (C) 2014 Seagate Technology.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package com.seagate.kinetic.client.io.provider.tcp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A selector thread shared by many client connections.
+ * <p>
+ * The selector threads are created on first use and are shared by all client
+ * instances that use the selector transport. Each thread owns one selector
+ * and one direct read buffer, which all its connections read into. Channels
+ * are registered and interest ops are changed by tasks run on the selector
+ * thread.
+ *
+ * @see TcpSelectorTransportProvider
+ */
+class SelectorLoop implements Runnable {
+
+	private static final Logger logger = Logger.getLogger(SelectorLoop.class
+			.getName());
+
+	// size of the read buffer of each selector thread
+	private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+	// shared selector threads, created on first use
+	private static SelectorLoop[] loops = null;
+
+	// next loop to assign a connection to
+	private static int next = 0;
+
+	// last ignored thread count, logged once
+	private static int ignoredThreads = 0;
+
+	private final Selector selector;
+
+	private final Thread thread;
+
+	// tasks to run on the selector thread
+	private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+
+	// read buffer shared by the connections of this loop
+	private final ByteBuffer readBuffer = ByteBuffer
+			.allocateDirect(READ_BUFFER_SIZE);
+
+	private SelectorLoop(int index) throws IOException {
+
+		this.selector = Selector.open();
+
+		this.thread = new Thread(this, "kinetic.client.selector-" + index);
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	/**
+	 * Get the selector thread for a new connection. The connections are
+	 * assigned to the selector threads in turn.
+	 * <p>
+	 * The threads are created with the thread count of the first caller. A
+	 * different thread count of a later caller is ignored and a warning is
+	 * logged.
+	 *
+	 * @param nThreads
+	 *            number of selector threads, used when the threads are
+	 *            created.
+	 * @return the selector thread for the new connection.
+	 * @throws IOException
+	 *             if a selector cannot be opened.
+	 */
+	static synchronized SelectorLoop next(int nThreads) throws IOException {
+
+		if (loops == null) {
+
+			SelectorLoop[] created = new SelectorLoop[Math.max(1, nThreads)];
+
+			for (int i = 0; i < created.length; i++) {
+				created[i] = new SelectorLoop(i);
+			}
+
+			loops = created;
+
+			logger.info("selector threads started, count=" + loops.length);
+
+		} else if (nThreads != loops.length && nThreads != ignoredThreads) {
+
+			ignoredThreads = nThreads;
+
+			logger.warning("selector threads already started, count="
+					+ loops.length + ", ignored count=" + nThreads);
+		}
+
+		SelectorLoop loop = loops[next];
+
+		next = (next + 1) % loops.length;
+
+		return loop;
+	}
+
+	/**
+	 * Check if the calling thread is this selector thread.
+	 */
+	boolean inLoop() {
+		return Thread.currentThread() == this.thread;
+	}
+
+	/**
+	 * Run the task on the selector thread.
+	 */
+	void execute(Runnable task) {
+		this.tasks.add(task);
+		this.selector.wakeup();
+	}
+
+	/**
+	 * Register the channel for read. Must be called on the selector thread.
+	 */
+	SelectionKey register(SocketChannel channel,
+			TcpSelectorTransportProvider connection) throws IOException {
+		return channel.register(this.selector, SelectionKey.OP_READ,
+				connection);
+	}
+
+	@Override
+	public void run() {
+
+		while (true) {
+
+			try {
+				this.selector.select();
+
+				this.runTasks();
+
+				Iterator<SelectionKey> it = this.selector.selectedKeys()
+						.iterator();
+
+				while (it.hasNext()) {
+
+					SelectionKey key = it.next();
+					it.remove();
+
+					this.process(key);
+				}
+			} catch (Exception e) {
+				logger.log(Level.WARNING, e.getMessage(), e);
+			}
+		}
+	}
+
+	private void runTasks() {
+
+		Runnable task = null;
+
+		while ((task = this.tasks.poll()) != null) {
+			try {
+				task.run();
+			} catch (Exception e) {
+				logger.log(Level.WARNING, e.getMessage(), e);
+			}
+		}
+	}
+
+	private void process(SelectionKey key) {
+
+		TcpSelectorTransportProvider connection = (TcpSelectorTransportProvider) key
+				.attachment();
+
+		try {
+			if (key.isValid() && key.isWritable()) {
+				connection.onWritable();
+			}
+
+			if (key.isValid() && key.isReadable()) {
+				connection.onReadable(this.readBuffer);
+			}
+		} catch (CancelledKeyException e) {
+			// closed by another thread
+			;
+		} catch (Exception e) {
+			connection.closeOnError(e);
+		}
+	}
+}
@@ -0,0 +1,547 @@
+/**
+ * Copyright (C) 2014 Seagate Technology.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package com.seagate.kinetic.client.io.provider.tcp;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.LinkedList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import kinetic.client.ClientConfiguration;
+import kinetic.client.KineticException;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.seagate.kinetic.client.io.provider.spi.ClientMessageService;
+import com.seagate.kinetic.client.io.provider.spi.ClientTransportProvider;
+import com.seagate.kinetic.common.lib.KineticMessage;
+import com.seagate.kinetic.proto.Kinetic.Command;
+import com.seagate.kinetic.proto.Kinetic.Message;
+
+/**
+ * Non-blocking TCP transport provider over a shared pool of selector threads.
+ * <p>
+ * Connections do not have their own threads. Each connection is registered
+ * with one of the shared selector threads, which reads and frames the
+ * messages of all its connections. Messages are written with one gathering
+ * write of the header, the protocol buffer message and the value. A message
+ * that cannot be written at once is queued and written by the selector
+ * thread when the channel is writable. Writers wait while the queued bytes
+ * of the connection exceed the max pending write size.
+ *
+ * @see ClientConfiguration#setUseSelectorTransport(boolean)
+ * @see SelectorLoop
+ */
+public class TcpSelectorTransportProvider implements ClientTransportProvider {
+
+	private final Logger logger = Logger
+			.getLogger(TcpSelectorTransportProvider.class.getName());
+
+	// message header size, magic + proto length + value length
+	private static final int HEADER_SIZE = 9;
+
+	// max queued bytes before writers wait
+	private static final long MAX_PENDING_WRITE = 4 * 1024 * 1024;
+
+	// max protocol buffer message length accepted from the wire
+	private static final int MAX_PROTO_LENGTH = 1024 * 1024;
+
+	// max value length accepted from the wire, the protocol max value size
+	private static final int MAX_VALUE_LENGTH = 1024 * 1024;
+
+	// read states
+	private static final int READ_HEADER = 0;
+	private static final int READ_PROTO = 1;
+	private static final int READ_VALUE = 2;
+
+	private ClientMessageService mservice = null;
+
+	private SocketChannel channel = null;
+
+	private SelectorLoop loop = null;
+
+	// set on the selector thread when registered
+	private volatile SelectionKey key = null;
+
+	private final AtomicBoolean isClosed = new AtomicBoolean(false);
+
+	// lock for the write states below
+	private final Object writeLock = new Object();
+
+	// frames not completely written
+	private final LinkedList<ByteBuffer[]> pending = new LinkedList<ByteBuffer[]>();
+
+	// bytes not yet written of the pending frames
+	private long pendingBytes = 0;
+
+	// read states, accessed by the selector thread only
+	private int readState = READ_HEADER;
+
+	private final byte[] header = new byte[HEADER_SIZE];
+
+	private byte[] proto = null;
+
+	private byte[] value = null;
+
+	// read position in the current part
+	private int readPosition = 0;
+
+	public TcpSelectorTransportProvider() {
+		;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void init(ClientMessageService mservice) throws KineticException {
+
+		ClientConfiguration config = mservice.getConfiguration();
+
+		this.mservice = mservice;
+
+		try {
+			this.channel = SocketChannel.open();
+
+			this.channel.socket().setTcpNoDelay(true);
+
+			// connect in blocking mode for the connect timeout
+			this.channel.socket().connect(
+					new InetSocketAddress(config.getHost(), config.getPort()),
+					config.getConnectTimeoutMillis());
+
+			this.channel.configureBlocking(false);
+
+			this.loop = SelectorLoop.next(config.getSelectorThreads());
+
+			this.loop.execute(new Runnable() {
+				@Override
+				public void run() {
+					register();
+				}
+			});
+
+			logger.info("tcp selector transport initialized ...");
+
+		} catch (IOException e) {
+
+			this.close();
+
+			logger.log(Level.SEVERE, e.getMessage(), e);
+
+			throw new KineticException(e);
+		}
+	}
+
+	/**
+	 * Register with the selector. Run on the selector thread.
+	 */
+	private void register() {
+
+		try {
+			this.key = this.loop.register(this.channel, this);
+
+			synchronized (this.writeLock) {
+				// frames queued before the registration
+				if (this.pending.isEmpty() == false) {
+					this.key.interestOps(SelectionKey.OP_READ
+							| SelectionKey.OP_WRITE);
+				}
+			}
+		} catch (IOException e) {
+			this.closeOnError(e);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void write(KineticMessage km) throws IOException {
+
+		ByteBuffer[] frame = encode(km);
+
+		synchronized (this.writeLock) {
+
+			if (this.isClosed.get()) {
+				throw new IOException("connection closed");
+			}
+
+			if (this.pending.isEmpty()) {
+
+				// write directly if nothing is queued
+				this.channel.write(frame);
+
+				if (frame[frame.length - 1].hasRemaining() == false) {
+					return;
+				}
+
+				this.pending.add(frame);
+				this.pendingBytes += remaining(frame);
+
+				this.enableWrite();
+			} else {
+				this.pending.add(frame);
+				this.pendingBytes += remaining(frame);
+			}
+
+			// the selector thread must not wait for itself
+			if (this.loop.inLoop()) {
+				return;
+			}
+
+			while (this.pendingBytes > MAX_PENDING_WRITE
+					&& this.isClosed.get() == false) {
+				try {
+					this.writeLock.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException(e.getMessage());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Encode the message as header, protocol buffer message and value
+	 * buffers.
+	 */
+	private static ByteBuffer[] encode(KineticMessage km) {
+
+		byte[] value = km.getValue();
+
+		Message msg = ((Message.Builder) km.getMessage()).build();
+
+		byte[] protoMessageBytes = msg.toByteArray();
+
+		int valueLen = (value == null) ? 0 : value.length;
+
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.put((byte) 'F');
+		header.putInt(protoMessageBytes.length);
+		header.putInt(valueLen);
+		header.flip();
+
+		if (valueLen == 0) {
+			return new ByteBuffer[] { header,
+					ByteBuffer.wrap(protoMessageBytes) };
+		}
+
+		return new ByteBuffer[] { header, ByteBuffer.wrap(protoMessageBytes),
+				ByteBuffer.wrap(value) };
+	}
+
+	private static long remaining(ByteBuffer[] frame) {
+
+		long remaining = 0;
+
+		for (ByteBuffer buffer : frame) {
+			remaining += buffer.remaining();
+		}
+
+		return remaining;
+	}
+
+	/**
+	 * Enable write interest. Must be called while holding the write lock.
+	 */
+	private void enableWrite() {
+
+		this.loop.execute(new Runnable() {
+			@Override
+			public void run() {
+
+				SelectionKey k = key;
+
+				if (k == null || k.isValid() == false) {
+					// registration enables write interest
+					return;
+				}
+
+				synchronized (writeLock) {
+					if (pending.isEmpty() == false) {
+						k.interestOps(SelectionKey.OP_READ
+								| SelectionKey.OP_WRITE);
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Write the queued frames. Called by the selector thread when the channel
+	 * is writable.
+	 */
+	void onWritable() throws IOException {
+
+		synchronized (this.writeLock) {
+
+			while (this.pending.isEmpty() == false) {
+
+				ByteBuffer[] frame = this.pending.getFirst();
+
+				this.pendingBytes -= this.channel.write(frame);
+
+				if (frame[frame.length - 1].hasRemaining()) {
+					break;
+				}
+
+				this.pending.removeFirst();
+			}
+
+			if (this.pending.isEmpty()) {
+				this.key.interestOps(SelectionKey.OP_READ);
+			}
+
+			this.writeLock.notifyAll();
+		}
+	}
+
+	/**
+	 * Read and route the available messages. Called by the selector thread
+	 * when the channel is readable.
+	 *
+	 * @param buffer
+	 *            read buffer of the selector thread.
+	 */
+	void onReadable(ByteBuffer buffer) throws IOException,
+			InterruptedException {
+
+		while (true) {
+
+			int n = 0;
+
+			if (this.readState == READ_VALUE
+					&& this.value.length - this.readPosition >= buffer
+							.capacity()) {
+
+				// read a large value directly, without copy
+				n = this.channel.read(ByteBuffer.wrap(this.value,
+						this.readPosition, this.value.length
+								- this.readPosition));
+
+				if (n > 0) {
+					this.readPosition += n;
+
+					if (this.readPosition == this.value.length) {
+						this.deliver();
+					}
+				}
+			} else {
+				buffer.clear();
+
+				n = this.channel.read(buffer);
+
+				buffer.flip();
+
+				this.consume(buffer);
+			}
+
+			if (n < 0) {
+				throw new EOFException("connection closed by peer");
+			}
+
+			if (n == 0) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Frame the bytes of the read buffer.
+	 */
+	private void consume(ByteBuffer buffer) throws IOException,
+			InterruptedException {
+
+		while (buffer.hasRemaining()) {
+
+			switch (this.readState) {
+
+			case READ_HEADER:
+
+				if (this.copy(buffer, this.header)) {
+					this.onHeader();
+				}
+
+				break;
+
+			case READ_PROTO:
+
+				if (this.copy(buffer, this.proto)) {
+
+					this.readPosition = 0;
+
+					if (this.value == null) {
+						this.deliver();
+					} else {
+						this.readState = READ_VALUE;
+					}
+				}
+
+				break;
+
+			default:
+
+				if (this.copy(buffer, this.value)) {
+					this.deliver();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Copy from the read buffer to the current part.
+	 *
+	 * @return true if the part is complete.
+	 */
+	private boolean copy(ByteBuffer buffer, byte[] part) {
+
+		int len = Math.min(buffer.remaining(), part.length - this.readPosition);
+
+		buffer.get(part, this.readPosition, len);
+
+		this.readPosition += len;
+
+		return this.readPosition == part.length;
+	}
+
+	private void onHeader() throws IOException, InterruptedException {
+
+		ByteBuffer hb = ByteBuffer.wrap(this.header);
+
+		byte magicNumber = hb.get();
+
+		if (magicNumber != 'F') {
+			throw new IOException("Invalid magic number: " + magicNumber);
+		}
+
+		int protoMessageLength = hb.getInt();
+
+		int attachedValueLength = hb.getInt();
+
+		// buffers are allocated from the lengths, the connection is closed
+		if (protoMessageLength < 0 || attachedValueLength < 0
+				|| protoMessageLength > MAX_PROTO_LENGTH
+				|| attachedValueLength > MAX_VALUE_LENGTH) {
+			throw new IOException("Invalid frame length, message="
+					+ protoMessageLength + ", value=" + attachedValueLength);
+		}
+
+		this.proto = new byte[protoMessageLength];
+
+		this.value = (attachedValueLength > 0) ? new byte[attachedValueLength]
+				: null;
+
+		this.readPosition = 0;
+
+		this.readState = READ_PROTO;
+
+		if (protoMessageLength == 0 && this.value == null) {
+			this.deliver();
+		} else if (protoMessageLength == 0) {
+			this.readState = READ_VALUE;
+		}
+	}
+
+	/**
+	 * Route the completed message and reset the read states.
+	 */
+	private void deliver() throws IOException, InterruptedException {
+
+		KineticMessage km = new KineticMessage();
+
+		Message message = null;
+
+		try {
+			message = Message.newBuilder().mergeFrom(this.proto).build();
+		} catch (InvalidProtocolBufferException e) {
+			throw new IOException(e.getMessage());
+		}
+
+		km.setMessage(message);
+
+		if (this.value != null) {
+			km.setValue(this.value);
+		}
+
+		try {
+			km.setCommand(Command.newBuilder()
+					.mergeFrom(message.getCommandBytes()).build());
+		} catch (InvalidProtocolBufferException e) {
+			logger.log(Level.WARNING, e.getMessage(), e);
+		}
+
+		this.readState = READ_HEADER;
+		this.readPosition = 0;
+		this.proto = null;
+		this.value = null;
+
+		if (logger.isLoggable(Level.FINEST)) {
+			logger.finest("read message: " + message);
+		}
+
+		this.mservice.routeMessage(km);
+	}
+
+	/**
+	 * Close the connection after an I/O error on the selector thread.
+	 */
+	void closeOnError(Exception e) {
+
+		if (this.isClosed.get() == false) {
+			logger.log(Level.WARNING, e.getMessage(), e);
+		}
+
+		this.close();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void close() {
+
+		if (this.isClosed.getAndSet(true)) {
+			return;
+		}
+
+		try {
+			if (this.mservice != null) {
+				this.mservice.close();
+			}
+
+			if (this.channel != null) {
+				// deregistered by the selector
+				this.channel.close();
+			}
+
+			logger.info("tcp selector transport closed ...");
+		} catch (Exception e) {
+			logger.log(Level.WARNING, e.getMessage(), e);
+		} finally {
+			synchronized (this.writeLock) {
+				this.writeLock.notifyAll();
+			}
+		}
+	}
+}
@@ -19,15 +19,14 @@ package com.seagate.kinetic.client.io.provider.tcp;
 
 import io.netty.handler.codec.CorruptedFrameException;
 
-import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.SocketAddress;
+import java.nio.ByteBuffer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -153,46 +152,35 @@ public class TcpTransportProvider implements ClientTransportProvider, Runnable {
             // get value to write separately
             byte[] value = km.getValue();
 
-            // write 9 byte header
-            ByteArrayOutputStream baos = new ByteArrayOutputStream(9);
-            DataOutputStream dos = new DataOutputStream(baos);
-
-            // magic
-            dos.writeByte((byte) 'F');
-            // set value to an empty value
-            // message.setValue(ByteString.EMPTY);
-
             // build message (without value) to write
             Message msg = message.build();
 
             // get proto message bytes
             byte[] protoMessageBytes = msg.toByteArray();
 
-            // write message len
-            dos.writeInt(protoMessageBytes.length);
-
-            // write attached value size, 4 byte
+            // attached value size, 4 byte
             int valueLen = 0;
             if (value != null) {
                 valueLen = value.length;
             }
-            dos.writeInt(valueLen);
-
-            dos.flush();
 
-            // 9 byte header
-            byte[] beader = baos.toByteArray();
+            // 9 byte header and protobuf message in one buffer
+            ByteBuffer buffer = ByteBuffer
+                    .allocate(9 + protoMessageBytes.length);
 
-            dos.close();
-            baos.close();
-
-            // 1. write header bytes (9 bytes)
-            os.write(beader);
-
-            // 2. write protobuf message byte[]
-            os.write(protoMessageBytes);
-
-            // 3 (optional) write attached value if any
+            // magic
+            buffer.put((byte) 'F');
+            // message len
+            buffer.putInt(protoMessageBytes.length);
+            // attached value len
+            buffer.putInt(valueLen);
+            // protobuf message byte[]
+            buffer.put(protoMessageBytes);
+
+            // 1. write header and protobuf message
+            os.write(buffer.array());
+
+            // 2 (optional) write attached value if any
             if (valueLen > 0) {
                 // write value
                 os.write(value);
@@ -254,7 +242,7 @@ public class TcpTransportProvider implements ClientTransportProvider, Runnable {
 
                 // 4. read protobuf message
                 byte[] decoded = new byte[protoMessageLength];
-                dis.read(decoded);
+                dis.readFully(decoded);
 
                 // construct protobuf message
                 Message.Builder builder = Message.newBuilder();
@@ -272,7 +260,7 @@ public class TcpTransportProvider implements ClientTransportProvider, Runnable {
                     // construct byte[]
                     byte[] attachedValue = new byte[attachedValueLength];
                     // read from buffer
-                    dis.read(attachedValue);
+                    dis.readFully(attachedValue);
                     // set to message
                     // builder.setValue(ByteString.copyFrom(attachedValue));
                     km.setValue(attachedValue);
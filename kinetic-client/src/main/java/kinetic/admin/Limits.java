@@ -60,6 +60,9 @@ public class Limits {
     //max identity count
     private int maxIdentityCount = -1;
 
+    // max commands per batch, 0 if not reported
+    private int maxCommandsPerBatch = 0;
+
     /**
      * Get the value of max key size.
      * 
@@ -250,6 +253,25 @@ public class Limits {
     public void setMaxIdentityCount (int maxIdentityCount) {
         this.maxIdentityCount = maxIdentityCount;
     }
+
+    /**
+     * Get max number of commands per batch. 0 if not reported by the drive.
+     * 
+     * @return max number of commands per batch.
+     */
+    public int getMaxCommandsPerBatch() {
+        return this.maxCommandsPerBatch;
+    }
+
+    /**
+     * Set max number of commands per batch.
+     * 
+     * @param maxCommandsPerBatch
+     *            the max number of commands per batch to be set.
+     */
+    public void setMaxCommandsPerBatch(int maxCommandsPerBatch) {
+        this.maxCommandsPerBatch = maxCommandsPerBatch;
+    }
     
     
 }
@@ -0,0 +1,79 @@
+/**
+ * Copyright (C) 2014 Seagate Technology.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package kinetic.client;
+
+import java.util.List;
+
+/**
+ * The results of a bulk operation, in request order.
+ * <p>
+ * Each request of a bulk operation succeeds or fails on its own. The failure
+ * of a request is reported by {@link #getError(int)} and does not fail the
+ * other requests of the bulk operation.
+ * <p>
+ * The Param Type <T> matches the corresponding return type for its single
+ * request API variation. For example, a {@link KineticClient#getAll(List)}
+ * operation would have a BulkResult of type {@link Entry}.
+ *
+ * @see KineticClient#getAll(List)
+ * @see KineticClient#putAll(List)
+ * @see KineticClient#deleteAll(List)
+ */
+public interface BulkResult<T> {
+
+	/**
+	 * Get the number of requests of the bulk operation.
+	 *
+	 * @return number of requests.
+	 */
+	public int size();
+
+	/**
+	 * Get the result of the request at the specified index.
+	 *
+	 * @param index
+	 *            index of the request in the bulk operation.
+	 * @return the result of the request. null if the request failed, or if
+	 *         the single request API variation returns null.
+	 */
+	public T get(int index);
+
+	/**
+	 * Get the failure of the request at the specified index.
+	 *
+	 * @param index
+	 *            index of the request in the bulk operation.
+	 * @return the failure of the request, or null if the request succeeded.
+	 */
+	public KineticException getError(int index);
+
+	/**
+	 * Check if any request of the bulk operation failed.
+	 *
+	 * @return true if any request failed.
+	 */
+	public boolean hasErrors();
+
+	/**
+	 * Get the results of all requests, in request order. The result of a
+	 * failed request is null.
+	 *
+	 * @return the results of all requests.
+	 */
+	public List<T> getResults();
+}
@@ -123,6 +123,68 @@ public class ClientConfiguration extends Properties {
      */
     private int asyncQueueSize = 10;
 
+    /**
+     * Max size of the adaptive asynchronous request window, 0 if the window
+     * is fixed to the asynchronous queued size.
+     */
+    private int asyncMaxQueueSize = 0;
+
+    /**
+     * Number of connections opened by a pooled client.
+     */
+    private int connectionPoolSize = 1;
+
+    /**
+     * Flag to use the shared selector thread pool TCP transport.
+     */
+    private boolean useSelectorTransport = false;
+
+    /**
+     * Number of threads in the shared selector thread pool.
+     */
+    private int selectorThreads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Socket send buffer size, 0 to use the system default.
+     */
+    private int socketSendBufferSize = 0;
+
+    /**
+     * Socket receive buffer size, 0 to use the system default.
+     */
+    private int socketReceiveBufferSize = 0;
+
+    /**
+     * Write buffer high water mark of the nio connections.
+     */
+    private int writeBufferHighWaterMark = 64 * 1024;
+
+    /**
+     * Write buffer low water mark of the nio connections.
+     */
+    private int writeBufferLowWaterMark = 32 * 1024;
+
+    /**
+     * Number of keys fetched per key range request by the range iterator.
+     */
+    private int rangePageSize = 200;
+
+    /**
+     * Flag to enable value prefetching (pipelined GETs) by the range
+     * iterator.
+     */
+    private boolean rangePrefetchValues = false;
+
+    /**
+     * Number of threads that invoke the asynchronous callback handlers.
+     */
+    private int callbackThreads = 1;
+
+    /**
+     * Flag to invoke the callback handlers of the same key in response order.
+     */
+    private boolean callbackOrderedByKey = false;
+
     // expected wwn to connect to.
     private String expectedWwn = null;
 
@@ -440,6 +502,11 @@ public class ClientConfiguration extends Properties {
      * Set asynchronous operation queued size. For asynchronous operations, a
      * request is blocked when the queued requests reached the count set for
      * this instance. Default is set to 10.
+     * <p>
+     * If the max queued size is set larger than this size, this is the
+     * initial size of an adaptive window of asynchronous requests in flight.
+     * 
+     * @see #setAsyncMaxQueueSize(int)
      * 
      * @param qsize
      *            the max queued operations to be set for the current kinetic
@@ -460,6 +527,338 @@ public class ClientConfiguration extends Properties {
         return this.asyncQueueSize;
     }
 
+    /**
+     * Set the max size of the asynchronous request window. If set larger
+     * than the asynchronous queued size, the window is adaptive. It grows
+     * from the asynchronous queued size while the response latency stays
+     * close to the lowest observed latency, and is halved when the latency
+     * rises or the service responds busy.
+     * <p>
+     * The max size should not exceed the max number of outstanding requests
+     * supported by the drive. Default is set to 0, the window is fixed to the
+     * asynchronous queued size.
+     * 
+     * @param qsize
+     *            max number of asynchronous requests in flight.
+     * 
+     * @see #setAsyncQueueSize(int)
+     */
+    public void setAsyncMaxQueueSize(int qsize) {
+        this.asyncMaxQueueSize = qsize;
+    }
+
+    /**
+     * Get the max size of the asynchronous request window. Default is set to
+     * 0, the window is fixed to the asynchronous queued size.
+     * 
+     * @return max size of the adaptive asynchronous request window.
+     */
+    public int getAsyncMaxQueueSize() {
+        return this.asyncMaxQueueSize;
+    }
+
+    /**
+     * Set the number of connections opened to the drive by the client
+     * instance. If set to more than one, <code>KineticClientFactory</code>
+     * returns a pooled client. Requests of the same key are always sent on the
+     * same connection and are processed in order. Requests without a key are
+     * sent on the connection with the least outstanding requests. All
+     * connections share this configuration, including the user identity and
+     * HMAC key. Default is set to 1.
+     * 
+     * @param size
+     *            number of connections to the drive.
+     * 
+     * @see KineticClientFactory#createInstance(ClientConfiguration)
+     */
+    public void setConnectionPoolSize(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException(
+                    "connection pool size must be positive: " + size);
+        }
+
+        this.connectionPoolSize = size;
+    }
+
+    /**
+     * Get the number of connections opened to the drive by the client
+     * instance. Default is set to 1.
+     * 
+     * @return number of connections to the drive.
+     */
+    public int getConnectionPoolSize() {
+        return this.connectionPoolSize;
+    }
+
+    /**
+     * Set to true to use the selector TCP transport. Connections of the
+     * selector transport do not have their own I/O threads. All connections
+     * of all client instances in the JVM share a pool of selector threads
+     * that read the responses, and each message is written with one
+     * gathering write. Default is set to false.
+     * <p>
+     * The selector transport does not support SSL/TLS. This flag is ignored
+     * if SSL/TLS is used.
+     * 
+     * @param flag
+     *            true to use the selector TCP transport.
+     * 
+     * @see #setSelectorThreads(int)
+     */
+    public void setUseSelectorTransport(boolean flag) {
+        this.useSelectorTransport = flag;
+    }
+
+    /**
+     * Get if the selector TCP transport is used. Default is set to false.
+     * 
+     * @return true if the selector TCP transport is used.
+     */
+    public boolean getUseSelectorTransport() {
+        return this.useSelectorTransport;
+    }
+
+    /**
+     * Set the number of threads in the shared selector thread pool. The pool
+     * is shared by all client instances in the JVM, and is created with the
+     * number of threads of the first client instance that uses the selector
+     * transport. The value of later client instances is ignored, and a
+     * warning is logged if it differs from the pool size. Default is set to
+     * the number of available processors.
+     * 
+     * @param nThreads
+     *            number of selector threads.
+     * 
+     * @see #setUseSelectorTransport(boolean)
+     */
+    public void setSelectorThreads(int nThreads) {
+        if (nThreads <= 0) {
+            throw new IllegalArgumentException(
+                    "selector threads must be positive: " + nThreads);
+        }
+
+        this.selectorThreads = nThreads;
+    }
+
+    /**
+     * Get the number of threads in the shared selector thread pool.
+     * 
+     * @return number of selector threads.
+     */
+    public int getSelectorThreads() {
+        return this.selectorThreads;
+    }
+
+    /**
+     * Set the socket send buffer size (SO_SNDBUF) of the client TCP
+     * connections. Default is set to 0, the operating system default is used.
+     * 
+     * @param size
+     *            socket send buffer size in bytes, 0 to use the system
+     *            default.
+     */
+    public void setSocketSendBufferSize(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException(
+                    "socket send buffer size must not be negative: " + size);
+        }
+
+        this.socketSendBufferSize = size;
+    }
+
+    /**
+     * Get the socket send buffer size (SO_SNDBUF) of the client TCP
+     * connections.
+     * 
+     * @return socket send buffer size in bytes, 0 if the system default is
+     *         used.
+     */
+    public int getSocketSendBufferSize() {
+        return this.socketSendBufferSize;
+    }
+
+    /**
+     * Set the socket receive buffer size (SO_RCVBUF) of the client TCP
+     * connections. Default is set to 0, the operating system default is used.
+     * 
+     * @param size
+     *            socket receive buffer size in bytes, 0 to use the system
+     *            default.
+     */
+    public void setSocketReceiveBufferSize(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException(
+                    "socket receive buffer size must not be negative: " + size);
+        }
+
+        this.socketReceiveBufferSize = size;
+    }
+
+    /**
+     * Get the socket receive buffer size (SO_RCVBUF) of the client TCP
+     * connections.
+     * 
+     * @return socket receive buffer size in bytes, 0 if the system default
+     *         is used.
+     */
+    public int getSocketReceiveBufferSize() {
+        return this.socketReceiveBufferSize;
+    }
+
+    /**
+     * Set the write buffer water marks of the client TCP connections. A
+     * connection becomes not writable when its queued outbound bytes exceed
+     * the high water mark, and writable again when they drop below the low
+     * water mark. Default is set to 65536 and 32768 bytes.
+     * 
+     * @param high
+     *            write buffer high water mark in bytes.
+     * @param low
+     *            write buffer low water mark in bytes.
+     */
+    public void setWriteBufferWaterMarks(int high, int low) {
+        if (low < 0 || high < low) {
+            throw new IllegalArgumentException("invalid water marks, high="
+                    + high + ", low=" + low);
+        }
+
+        this.writeBufferHighWaterMark = high;
+        this.writeBufferLowWaterMark = low;
+    }
+
+    /**
+     * Get the write buffer high water mark of the client TCP connections.
+     * 
+     * @return write buffer high water mark in bytes.
+     */
+    public int getWriteBufferHighWaterMark() {
+        return this.writeBufferHighWaterMark;
+    }
+
+    /**
+     * Get the write buffer low water mark of the client TCP connections.
+     * 
+     * @return write buffer low water mark in bytes.
+     */
+    public int getWriteBufferLowWaterMark() {
+        return this.writeBufferLowWaterMark;
+    }
+
+    /**
+     * Set the number of keys fetched per key range request when iterating a
+     * key range with the client range iterator. The next page of keys is
+     * fetched in the background while the current page is consumed. Default
+     * is set to 200.
+     * <p>
+     * The page size should not exceed the max key range count supported by
+     * the connected drive or simulator.
+     * 
+     * @param pageSize
+     *            number of keys per key range request.
+     */
+    public void setRangePageSize(int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("page size must be positive: "
+                    + pageSize);
+        }
+
+        this.rangePageSize = pageSize;
+    }
+
+    /**
+     * Get the number of keys fetched per key range request when iterating a
+     * key range. Default is set to 200.
+     * 
+     * @return number of keys per key range request.
+     */
+    public int getRangePageSize() {
+        return this.rangePageSize;
+    }
+
+    /**
+     * Set to true to fetch the values of each page of keys with pipelined
+     * asynchronous GETs when iterating a key range with the client range
+     * iterator. Otherwise, each entry is fetched with a
+     * synchronous GET when it is consumed. Default is set to false.
+     * <p>
+     * The number of GETs in flight is bounded by the asynchronous queue size.
+     * 
+     * @param flag
+     *            true to prefetch the values of each page.
+     * 
+     * @see #setAsyncQueueSize(int)
+     */
+    public void setRangePrefetchValues(boolean flag) {
+        this.rangePrefetchValues = flag;
+    }
+
+    /**
+     * Get the value prefetching flag of the range iterator. Default is set to
+     * false.
+     * 
+     * @return true if the values of each page are prefetched.
+     */
+    public boolean getRangePrefetchValues() {
+        return this.rangePrefetchValues;
+    }
+
+    /**
+     * Set the number of threads that invoke the asynchronous callback
+     * handlers of a client instance. With more than one thread, a slow
+     * callback handler does not delay the callbacks of the other outstanding
+     * requests. Default is set to 1.
+     * <p>
+     * With one thread, all callback handlers are invoked in the order the
+     * responses are received.
+     * 
+     * @param nThreads
+     *            number of callback threads.
+     * 
+     * @see #setCallbackOrderedByKey(boolean)
+     */
+    public void setCallbackThreads(int nThreads) {
+        if (nThreads <= 0) {
+            throw new IllegalArgumentException(
+                    "number of callback threads must be positive: " + nThreads);
+        }
+
+        this.callbackThreads = nThreads;
+    }
+
+    /**
+     * Get the number of threads that invoke the asynchronous callback
+     * handlers. Default is set to 1.
+     * 
+     * @return number of callback threads.
+     */
+    public int getCallbackThreads() {
+        return this.callbackThreads;
+    }
+
+    /**
+     * Set to true to invoke the callback handlers of requests with the same
+     * key in the order the responses are received, when more than one
+     * callback thread is used. Callbacks of different keys may still be
+     * invoked concurrently. Default is set to false.
+     * 
+     * @param flag
+     *            true to order the callbacks of the same key.
+     * 
+     * @see #setCallbackThreads(int)
+     */
+    public void setCallbackOrderedByKey(boolean flag) {
+        this.callbackOrderedByKey = flag;
+    }
+
+    /**
+     * Get the per key callback ordering flag. Default is set to false.
+     * 
+     * @return true if the callbacks of the same key are invoked in order.
+     */
+    public boolean getCallbackOrderedByKey() {
+        return this.callbackOrderedByKey;
+    }
+
     /**
      * Get Java Nio thread pool exit await timeout - used when connection is
      * closed and Java client runtime library waiting for thread pool to exit.
@@ -179,6 +179,27 @@ public interface KineticClient extends GenericKineticClient {
     public void putAsync(Entry entry, byte[] newVersion,
             CallbackHandler<Entry> handler) throws KineticException;
 
+    /**
+     * Put the specified <code>Entry</code> asynchronously and return the
+     * pending result of the operation. Same as
+     * {@link #putAsync(Entry, byte[], CallbackHandler)}, with the returned
+     * future as the callback handler.
+     * 
+     * @param entry
+     *            the <code>Entry</code> to be put to the persistent store.
+     * 
+     * @param newVersion
+     *            new version for the entry.
+     * 
+     * @return the pending result of the operation.
+     * @throws KineticException
+     *             if any internal errors occurred.
+     * 
+     * @see KineticFuture
+     */
+    public KineticFuture<Entry> putAsync(Entry entry, byte[] newVersion)
+            throws KineticException;
+
     /**
      * Force to put the specified <code>Entry</code> asynchronously. Overwrite
      * the entry in the store if existed.
@@ -198,6 +219,23 @@ public interface KineticClient extends GenericKineticClient {
     public void putForcedAsync(Entry entry, CallbackHandler<Entry> handler)
             throws KineticException;
 
+    /**
+     * Force to put the specified <code>Entry</code> asynchronously and return
+     * the pending result of the operation.
+     * 
+     * @param entry
+     *            the <code>Entry</code> to be put to the persistent store.
+     * 
+     * @return the pending result of the operation.
+     * @throws KineticException
+     *             if any internal errors occurred.
+     * 
+     * @see #putForcedAsync(Entry, CallbackHandler)
+     * @see KineticFuture
+     */
+    public KineticFuture<Entry> putForcedAsync(Entry entry)
+            throws KineticException;
+
     /**
      * Get the <code>Entry</code> entry associated with the specified key.
      * <p>
@@ -259,6 +297,23 @@ public interface KineticClient extends GenericKineticClient {
     public void getAsync(byte[] key, CallbackHandler<Entry> handler)
             throws KineticException;
 
+    /**
+     * Get the <code>Entry</code> associated with the specified key
+     * asynchronously and return the pending result of the operation. The
+     * result is null if there is no entry found.
+     * 
+     * @param key
+     *            the key used to obtain the entry.
+     * 
+     * @return the pending result of the operation.
+     * @throws KineticException
+     *             if any internal error occurred.
+     * 
+     * @see #getAsync(byte[], CallbackHandler)
+     * @see KineticFuture
+     */
+    public KineticFuture<Entry> getAsync(byte[] key) throws KineticException;
+
     /**
      * Delete the entry that is associated with the key specified in the
      * <code>entry</code>. Applications may also use other variations of this
@@ -322,6 +377,24 @@ public interface KineticClient extends GenericKineticClient {
     public void deleteAsync(Entry entry, CallbackHandler<Boolean> handler)
             throws KineticException;
 
+    /**
+     * Delete the entry that is associated with the key specified in the
+     * <code>entry</code> asynchronously and return the pending result of the
+     * operation.
+     * 
+     * @param entry
+     *            the key in the entry is used to find the associated entry.
+     * 
+     * @return the pending result of the operation.
+     * @throws KineticException
+     *             if any internal error occurred.
+     * 
+     * @see #deleteAsync(Entry, CallbackHandler)
+     * @see KineticFuture
+     */
+    public KineticFuture<Boolean> deleteAsync(Entry entry)
+            throws KineticException;
+
     /**
      * Force delete the entry that is associated with the key specified in the
      * parameter asynchronously, ignoring the entry version stored in the
@@ -343,6 +416,23 @@ public interface KineticClient extends GenericKineticClient {
     public void deleteForcedAsync(byte[] key, CallbackHandler<Boolean> handler)
             throws KineticException;
 
+    /**
+     * Force delete the entry that is associated with the specified key
+     * asynchronously and return the pending result of the operation.
+     * 
+     * @param key
+     *            the key used to find the associated entry.
+     * 
+     * @return the pending result of the operation.
+     * @throws KineticException
+     *             if any internal error occurred.
+     * 
+     * @see #deleteForcedAsync(byte[], CallbackHandler)
+     * @see KineticFuture
+     */
+    public KineticFuture<Boolean> deleteForcedAsync(byte[] key)
+            throws KineticException;
+
     /**
      * Get the <code>Entry</code> entry associated with a key that is after the
      * specified key.
@@ -482,6 +572,34 @@ public interface KineticClient extends GenericKineticClient {
             byte[] endKey, boolean endKeyInclusive, int maxKeys,
             CallbackHandler<List<byte[]>> handler) throws KineticException;
 
+    /**
+     * Get a <code>List</code> of keys in the sequence based on the specified
+     * key range asynchronously and return the pending result of the
+     * operation.
+     * 
+     * @param startKey
+     *            the start key in the specified key range.
+     * @param startKeyInclusive
+     *            true if the start key is inclusive.
+     * @param endKey
+     *            the end key in the specified key range.
+     * @param endKeyInclusive
+     *            true if the start key is inclusive.
+     * @param maxKeys
+     *            max number of keys to be returned for this operation.
+     * 
+     * @return the pending result of the operation.
+     * @throws KineticException
+     *             if any internal error occurred.
+     * 
+     * @see #getKeyRangeAsync(byte[], boolean, byte[], boolean, int,
+     *      CallbackHandler)
+     * @see KineticFuture
+     */
+    public KineticFuture<List<byte[]>> getKeyRangeAsync(byte[] startKey,
+            boolean startKeyInclusive, byte[] endKey, boolean endKeyInclusive,
+            int maxKeys) throws KineticException;
+
     /**
      * Get entry metadata for the specified key.
      * 
@@ -517,6 +635,122 @@ public interface KineticClient extends GenericKineticClient {
     public void getMetadataAsync(byte[] key,
             CallbackHandler<EntryMetadata> handler) throws KineticException;
 
+    /**
+     * Get the entry metadata for the specified key asynchronously and return
+     * the pending result of the operation. The result is null if there is no
+     * entry found.
+     * 
+     * @param key
+     *            the entry key.
+     * 
+     * @return the pending result of the operation.
+     * @throws KineticException
+     *             if any internal errors occur.
+     * 
+     * @see #getMetadataAsync(byte[], CallbackHandler)
+     * @see KineticFuture
+     */
+    public KineticFuture<EntryMetadata> getMetadataAsync(byte[] key)
+            throws KineticException;
+
+    /**
+     * Get the entries of the specified keys.
+     * <p>
+     * The get requests are sent without waiting for the responses, up to the
+     * asynchronous request window. The result of each key is returned in
+     * request order. The result of a key is null if there is no entry found.
+     * The failure of a key does not fail the other keys.
+     * 
+     * @param keys
+     *            the keys of the entries.
+     * 
+     * @return the entry of each key, in request order.
+     * @throws KineticException
+     *             if any internal errors occur.
+     * 
+     * @see BulkResult
+     */
+    public BulkResult<Entry> getAll(List<byte[]> keys)
+            throws KineticException;
+
+    /**
+     * Put the specified entries, forced, without batching. Each entry is put
+     * as {@link #putForced(Entry)}.
+     * 
+     * @param entries
+     *            the entries to be put.
+     * 
+     * @return the put entry of each request, in request order.
+     * @throws KineticException
+     *             if any internal errors occur.
+     * 
+     * @see #putAll(List, boolean)
+     */
+    public BulkResult<Entry> putAll(List<Entry> entries)
+            throws KineticException;
+
+    /**
+     * Put the specified entries, forced.
+     * <p>
+     * The put requests are sent without waiting for the responses, up to the
+     * asynchronous request window. If batched, the entries are put in batches
+     * of up to the max number of commands per batch of the drive, and all
+     * entries of a failed batch fail. The failure of an entry does not fail
+     * the other entries (or batches).
+     * 
+     * @param entries
+     *            the entries to be put.
+     * @param isBatched
+     *            true to put the entries in batches.
+     * 
+     * @return the put entry of each request, in request order.
+     * @throws KineticException
+     *             if any internal errors occur.
+     * 
+     * @see #createBatchOperation()
+     */
+    public BulkResult<Entry> putAll(List<Entry> entries, boolean isBatched)
+            throws KineticException;
+
+    /**
+     * Delete the entries of the specified keys, forced, without batching.
+     * Each key is deleted as {@link #deleteForced(byte[])}.
+     * 
+     * @param keys
+     *            the keys of the entries to be deleted.
+     * 
+     * @return the delete result of each key, in request order.
+     * @throws KineticException
+     *             if any internal errors occur.
+     * 
+     * @see #deleteAll(List, boolean)
+     */
+    public BulkResult<Boolean> deleteAll(List<byte[]> keys)
+            throws KineticException;
+
+    /**
+     * Delete the entries of the specified keys, forced.
+     * <p>
+     * The delete requests are sent without waiting for the responses, up to
+     * the asynchronous request window. If batched, the keys are deleted in
+     * batches of up to the max number of commands per batch of the drive, and
+     * all deletes of a failed batch fail. The failure of a key does not fail
+     * the other keys (or batches).
+     * 
+     * @param keys
+     *            the keys of the entries to be deleted.
+     * @param isBatched
+     *            true to delete the keys in batches.
+     * 
+     * @return the delete result of each key, in request order.
+     * @throws KineticException
+     *             if any internal errors occur.
+     * 
+     * @see #createBatchOperation()
+     */
+    public BulkResult<Boolean> deleteAll(List<byte[]> keys, boolean isBatched)
+            throws KineticException;
+
     /**
      * Create a new instance of <code>BatchOperation</code> object.
      * <p>
@@ -17,7 +17,11 @@
  */
 package kinetic.client;
 
+import java.util.List;
+
+import com.seagate.kinetic.client.internal.ClusterKineticClient;
 import com.seagate.kinetic.client.internal.DefaultKineticClient;
+import com.seagate.kinetic.client.internal.PooledKineticClient;
 
 /**
  * Kinetic client boot-strap interface. This is the starting point for the
@@ -33,6 +37,7 @@ import com.seagate.kinetic.client.internal.DefaultKineticClient;
  * 
  * @see KineticClient
  * @see ClientConfiguration
+ * @see ClientConfiguration#setConnectionPoolSize(int)
  * 
  * @author Chiaming Yang
  * 
@@ -41,6 +46,9 @@ public class KineticClientFactory {
 
 	/**
 	 * Construct a new instance of the <code>KineticClient</code>.
+	 * <p>
+	 * A pooled client is returned if the configured connection pool size is
+	 * more than one.
 	 * 
 	 * @param config
 	 *            client configuration used to create new instance.
@@ -51,6 +59,30 @@ public class KineticClientFactory {
 	 */
 	public static KineticClient createInstance(ClientConfiguration config)
 			throws KineticException {
+
+		if (config.getConnectionPoolSize() > 1) {
+			return new PooledKineticClient(config);
+		}
+
 		return new DefaultKineticClient(config);
 	}
+
+	/**
+	 * Construct a new instance of the <code>KineticClient</code> over a
+	 * cluster of drives. Keys are placed on the drives with a consistent hash
+	 * ring.
+	 * 
+	 * @param configs
+	 *            client configuration of each drive in the cluster.
+	 * @return a new KineticClient instance that is connected to all drives.
+	 * 
+	 * @throws KineticException
+	 *             if any internal errors occur.
+	 * 
+	 * @see ClusterKineticClient
+	 */
+	public static KineticClient createInstance(List<ClientConfiguration> configs)
+			throws KineticException {
+		return new ClusterKineticClient(configs);
+	}
 }
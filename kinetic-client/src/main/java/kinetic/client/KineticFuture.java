@@ -0,0 +1,64 @@
+/**
+ * Copyright (C) 2014 Seagate Technology.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package kinetic.client;
+
+import java.util.concurrent.Future;
+
+/**
+ * The pending result of an asynchronous operation.
+ * <p>
+ * Returned by the asynchronous operations of {@link KineticClient} that do
+ * not take a callback handler. Applications may wait for the result with
+ * {@link #get()} or {@link #getResult()}, or add callback handlers that are
+ * invoked when the operation completes.
+ * <p>
+ * An operation cannot be cancelled once the request is sent,
+ * {@link #cancel(boolean)} always returns false.
+ * <p>
+ * The Param Type <T> matches the corresponding return type for its synchronous
+ * API variation. For example, a {@link KineticClient#putAsync(Entry, byte[])}
+ * operation would have a KineticFuture of type {@link Entry}.
+ *
+ * @see KineticClient
+ * @see CallbackHandler
+ */
+public interface KineticFuture<T> extends Future<T> {
+
+	/**
+	 * Add a callback handler that is invoked when the operation completes.
+	 * Handlers are invoked in the order they are added, by the client
+	 * callback thread. If the operation is already completed, the handler is
+	 * invoked by the calling thread before this method returns.
+	 *
+	 * @param handler
+	 *            the callback handler to be invoked.
+	 */
+	public void addCallback(CallbackHandler<T> handler);
+
+	/**
+	 * Wait for the operation to complete and get the result.
+	 * <p>
+	 * Same as {@link #get()}, except that the failure of the operation is
+	 * thrown as is.
+	 *
+	 * @return the result of the operation.
+	 * @throws KineticException
+	 *             if the operation failed, or if interrupted while waiting.
+	 */
+	public T getResult() throws KineticException;
+}
@@ -0,0 +1,74 @@
+/**
+ *
+ * Copyright (C) 2014 Seagate Technology.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.google.protobuf;
+
+/**
+ * Zero copy conversions between <code>byte[]</code> and {@link ByteString}.
+ * <p>
+ * Protocol buffers 2.5 always copies the bytes when a <code>ByteString</code>
+ * is created from, or converted to, a <code>byte[]</code>. This class is
+ * placed in the protocol buffers package so that it can access the backing
+ * array of <code>LiteralByteString</code>.
+ * <p>
+ * The caller must not modify the arrays passed to or returned from this
+ * class, as they are shared with the <code>ByteString</code> instances.
+ */
+public final class ZeroCopyByteString extends LiteralByteString {
+
+    private ZeroCopyByteString(byte[] bytes) {
+        super(bytes);
+    }
+
+    /**
+     * Wrap the specified byte[] without copy.
+     *
+     * @param bytes
+     *            the bytes to be wrapped. Must not be modified after this
+     *            call.
+     * @return a byte string backed by the specified array.
+     */
+    public static ByteString wrap(byte[] bytes) {
+
+        if (bytes == null || bytes.length == 0) {
+            return ByteString.EMPTY;
+        }
+
+        return new LiteralByteString(bytes);
+    }
+
+    /**
+     * Get the bytes of the specified byte string. The backing array is
+     * returned without copy if the byte string is backed by a whole array.
+     * Otherwise, a copy is returned.
+     *
+     * @param bs
+     *            the byte string
+     * @return the bytes of the byte string. Must not be modified.
+     */
+    public static byte[] unwrap(ByteString bs) {
+
+        if (bs.getClass() == LiteralByteString.class
+                || bs.getClass() == ZeroCopyByteString.class) {
+            return ((LiteralByteString) bs).bytes;
+        }
+
+        return bs.toByteArray();
+    }
+}
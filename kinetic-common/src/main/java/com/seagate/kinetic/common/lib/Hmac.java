@@ -19,12 +19,12 @@
 package com.seagate.kinetic.common.lib;
 
 import java.io.StringWriter;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.security.GeneralSecurityException;
 import java.security.InvalidKeyException;
 import java.security.Key;
 import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.logging.Logger;
 
 import javax.crypto.Mac;
@@ -36,6 +36,11 @@ import com.seagate.kinetic.proto.Kinetic.Message;
 
 /**
  * Hmac common library.
+ * <p>
+ * Initialized <code>Mac</code> instances are cached per thread and per key,
+ * so that <code>Mac.getInstance</code> and <code>Mac.init</code> are not
+ * called for each message. HMAC values are calculated directly over the
+ * <code>ByteString</code> content without copying it to a byte[].
  *
  * @author Jim Hugues.
  * @author chiaming
@@ -47,6 +52,17 @@ public class Hmac {
 
 	private final static Logger LOG = Logger.getLogger(Hmac.class.getName());
 
+	// max number of cached Mac instances per thread
+	private static final int MAX_CACHED_MAC = 32;
+
+	// per thread cache of initialized Mac instances, key -> mac
+	private static final ThreadLocal<Map<Key, Mac>> macCache = new ThreadLocal<Map<Key, Mac>>() {
+		@Override
+		protected Map<Key, Mac> initialValue() {
+			return new HashMap<Key, Mac>();
+		}
+	};
+
 	public static String toString(byte[] b) {
 		final int MAX_LENGTH = 50; // only include up to MAX_LENGTH bytes
 		StringWriter sw = new StringWriter();
@@ -91,9 +107,12 @@ public class Hmac {
 		throw h.new HmacException(status, s);
 	}
 
-	static private byte[] int32(int x) {
-		return ByteBuffer.allocate(4).order(ByteOrder.BIG_ENDIAN).putInt(x)
-				.array();
+	// big endian 4 byte length, written without allocation
+	private static void updateInt32(Mac mac, int x) {
+		mac.update((byte) (x >>> 24));
+		mac.update((byte) (x >>> 16));
+		mac.update((byte) (x >>> 8));
+		mac.update((byte) x);
 	}
 
 	// private byte[] int64(long x) {
@@ -117,11 +136,19 @@ public class Hmac {
 	static void lv(String name, Mac mac, byte[] bytes) {
 		if (bytes.length > 0) {
 			// LOG.fine(name + toString(bytes));
-			mac.update(int32(bytes.length));
+			updateInt32(mac, bytes.length);
 			mac.update(bytes);
 		}
 	}
 
+	static void lv(String name, Mac mac, ByteString bytes) {
+		if (bytes.size() > 0) {
+			updateInt32(mac, bytes.size());
+			// read only view of the byte string, no copy
+			mac.update(bytes.asReadOnlyByteBuffer());
+		}
+	}
+
 //	public static ByteString calc(KineticMessage im, Key key)
 //			throws HmacException {
 //
@@ -157,7 +184,36 @@ public class Hmac {
 
         try {
 
-            Mac mac = getMacInstance (key);
+            Mac mac = getCachedMacInstance(key);
+
+            lv("command", mac, bytes);
+
+            ByteString result = ByteString.copyFrom(mac.doFinal());
+
+            LOG.fine("Message Hmac :" + toString(result));
+            return result;
+
+        } catch (GeneralSecurityException e) {
+            oops(e.getMessage());
+        }
+        return null; // should never get here...
+    }
+
+	/**
+	 * Calculate HMAC based on the specified byte string and key. The byte
+	 * string content is not copied.
+	 * 
+	 * @param bytes bytes for HMAC calculation
+	 * @param key security key used to calculate HMAC
+	 * @return byte string of hmac value
+	 * @throws HmacException 
+	 */
+	public static ByteString calc(ByteString bytes, Key key)
+            throws HmacException {
+
+        try {
+
+            Mac mac = getCachedMacInstance(key);
 
             lv("command", mac, bytes);
 
@@ -180,7 +236,7 @@ public class Hmac {
 
 			// Message.Builder message = (Builder) im.getMessage();
 
-			Mac mac = getMacInstance(key);
+			Mac mac = getCachedMacInstance(key);
 
 			byte[] value = im.getValue();
 			if (value == null) {
@@ -202,8 +258,8 @@ public class Hmac {
 	public static boolean check(KineticMessage km, Key key)
 			throws HmacException {
 
-	    // get commnad bytes
-	    byte[] bytes = km.getMessage().getCommandBytes().toByteArray();
+	    // get commnad bytes, not copied
+	    ByteString bytes = km.getMessage().getCommandBytes();
 	    
 	    // get expected hmac value
 	    ByteString expected = km.getMessage().getHmacAuth().getHmac();
@@ -236,6 +292,27 @@ public class Hmac {
         return false;
     }
 
+	/**
+	 * Check if the specified byte string is equal to the expected hmac with
+	 * the specified key.
+	 * 
+	 * @param bytes
+	 * @param key
+	 * @param expectedHmac
+	 * @return
+	 * @throws HmacException
+	 */
+	public static boolean check(ByteString bytes, Key key,
+			ByteString expectedHmac) throws HmacException {
+
+		if (calc(bytes, key).equals(expectedHmac)) {
+			return true;
+		}
+
+		LOG.warning("HMAC did not compare");
+		return false;
+	}
+
 	public static Mac getMacInstance (Key key) throws HmacException, NoSuchAlgorithmException, InvalidKeyException {
 
 		Mac mac = null;
@@ -253,4 +330,44 @@ public class Hmac {
 		return mac;
 	}
 
+	/**
+	 * Get an initialized Mac instance for the specified key from the calling
+	 * thread's cache. The instance is created and cached if not found.
+	 * <p>
+	 * The returned instance must only be used by the calling thread and must
+	 * be finished (doFinal) before this method is called again with the same
+	 * key.
+	 * 
+	 * @param key security key
+	 * @return initialized Mac instance for the key.
+	 */
+	private static Mac getCachedMacInstance(Key key) throws HmacException,
+			NoSuchAlgorithmException, InvalidKeyException {
+
+		if (key == null) {
+			oops("User not found");
+		}
+
+		Map<Key, Mac> cache = macCache.get();
+
+		Mac mac = cache.get(key);
+
+		if (mac == null) {
+
+			// keys may be replaced (for example, by security setup)
+			if (cache.size() >= MAX_CACHED_MAC) {
+				cache.clear();
+			}
+
+			mac = getMacInstance(key);
+
+			cache.put(key, mac);
+		} else {
+			// clear state left by a failed calculation
+			mac.reset();
+		}
+
+		return mac;
+	}
+
 }
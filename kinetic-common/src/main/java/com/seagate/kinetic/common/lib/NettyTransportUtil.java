@@ -0,0 +1,225 @@
+/**
+ * Copyright (C) 2014 Seagate Technology.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package com.seagate.kinetic.common.lib;
+
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannelConfig;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Netty transport utilities shared by the client and the simulator TCP
+ * transports.
+ * <p>
+ * Event loop groups use the Netty native epoll transport if the
+ * "kinetic.io.epoll" Java System property is set to true and the native
+ * transport is available (Linux, with the netty-transport-native-epoll
+ * library in the class path). Otherwise, the Java NIO transport is used.
+ * <p>
+ * For example, set the following Java VM argument when running a Kinetic
+ * application or Simulator.
+ * <p>
+ * -D"kinetic.io.epoll"=true
+ */
+public class NettyTransportUtil {
+
+    private final static Logger logger = Logger
+            .getLogger(NettyTransportUtil.class.getName());
+
+    /**
+     * set to true to use the native epoll transport if available.
+     */
+    public final static String EPOLL_PROP_NAME = "kinetic.io.epoll";
+
+    private static final String EPOLL_NATIVE = "io.netty.channel.epoll.Native";
+
+    private static final String EPOLL_EVENT_LOOP_GROUP = "io.netty.channel.epoll.EpollEventLoopGroup";
+
+    private static final String EPOLL_SOCKET_CHANNEL = "io.netty.channel.epoll.EpollSocketChannel";
+
+    private static final String EPOLL_SERVER_SOCKET_CHANNEL = "io.netty.channel.epoll.EpollServerSocketChannel";
+
+    // true if the native epoll transport is requested and available
+    private static final boolean useEpoll = Boolean
+            .getBoolean(EPOLL_PROP_NAME) && isEpollAvailable();
+
+    /**
+     * Check if the native epoll transport can be used in this JVM.
+     * 
+     * @return true if the native epoll transport classes and library are
+     *         available.
+     */
+    public static boolean isEpollAvailable() {
+
+        String os = System.getProperty("os.name", "");
+
+        if (os.toLowerCase().startsWith("linux") == false) {
+            return false;
+        }
+
+        try {
+            // loads the native library
+            Class.forName(EPOLL_NATIVE, true,
+                    NettyTransportUtil.class.getClassLoader());
+
+            Class.forName(EPOLL_EVENT_LOOP_GROUP);
+
+            return true;
+        } catch (Throwable t) {
+            logger.info("native epoll transport is not available: " + t);
+        }
+
+        return false;
+    }
+
+    /**
+     * Create a new event loop group. A native epoll group is created if
+     * requested and available, otherwise a NIO group is created.
+     * 
+     * @param nThreads
+     *            number of threads, 0 to use the Netty default.
+     * @param threadFactory
+     *            thread factory of the group.
+     * @return a new event loop group.
+     */
+    public static EventLoopGroup newEventLoopGroup(int nThreads,
+            ThreadFactory threadFactory) {
+
+        if (useEpoll) {
+            try {
+                EventLoopGroup group = (EventLoopGroup) Class
+                        .forName(EPOLL_EVENT_LOOP_GROUP)
+                        .getConstructor(int.class, ThreadFactory.class)
+                        .newInstance(nThreads, threadFactory);
+
+                logger.info("using native epoll event loop group ...");
+
+                return group;
+            } catch (Throwable t) {
+                logger.log(Level.WARNING,
+                        "native epoll transport failed, using nio: " + t);
+            }
+        }
+
+        return new NioEventLoopGroup(nThreads, threadFactory);
+    }
+
+    /**
+     * Check if the specified group is a native epoll event loop group.
+     * 
+     * @param group
+     *            the event loop group.
+     * @return true if the group is a native epoll group.
+     */
+    public static boolean isEpoll(EventLoopGroup group) {
+        return group.getClass().getName().equals(EPOLL_EVENT_LOOP_GROUP);
+    }
+
+    /**
+     * Get the client socket channel class for the specified group.
+     * 
+     * @param group
+     *            the event loop group the channel is registered with.
+     * @return the socket channel class to use with the group.
+     */
+    public static Class<? extends Channel> getSocketChannelClass(
+            EventLoopGroup group) {
+
+        if (isEpoll(group)) {
+            try {
+                return Class.forName(EPOLL_SOCKET_CHANNEL).asSubclass(
+                        Channel.class);
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        return NioSocketChannel.class;
+    }
+
+    /**
+     * Get the server socket channel class for the specified group.
+     * 
+     * @param group
+     *            the event loop group the channel is registered with.
+     * @return the server socket channel class to use with the group.
+     */
+    public static Class<? extends ServerChannel> getServerChannelClass(
+            EventLoopGroup group) {
+
+        if (isEpoll(group)) {
+            try {
+                return Class.forName(EPOLL_SERVER_SOCKET_CHANNEL).asSubclass(
+                        ServerChannel.class);
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        return NioServerSocketChannel.class;
+    }
+
+    /**
+     * Configure a connected socket channel. Buffers are allocated from the
+     * pooled direct buffer allocator and Nagle's algorithm is disabled.
+     * 
+     * @param config
+     *            the socket channel config.
+     * @param sendBufferSize
+     *            socket send buffer size, 0 to use the system default.
+     * @param receiveBufferSize
+     *            socket receive buffer size, 0 to use the system default.
+     * @param highWaterMark
+     *            write buffer high water mark in bytes.
+     * @param lowWaterMark
+     *            write buffer low water mark in bytes.
+     */
+    public static void configure(SocketChannelConfig config,
+            int sendBufferSize, int receiveBufferSize, int highWaterMark,
+            int lowWaterMark) {
+
+        config.setAllocator(PooledByteBufAllocator.DEFAULT);
+
+        config.setTcpNoDelay(true);
+
+        if (sendBufferSize > 0) {
+            config.setSendBufferSize(sendBufferSize);
+        }
+
+        if (receiveBufferSize > 0) {
+            config.setReceiveBufferSize(receiveBufferSize);
+        }
+
+        // the high mark must not be set below the current low mark
+        if (highWaterMark >= config.getWriteBufferLowWaterMark()) {
+            config.setWriteBufferHighWaterMark(highWaterMark);
+            config.setWriteBufferLowWaterMark(lowWaterMark);
+        } else {
+            config.setWriteBufferLowWaterMark(lowWaterMark);
+            config.setWriteBufferHighWaterMark(highWaterMark);
+        }
+    }
+}
@@ -65,6 +65,12 @@ public class KineticDecoder extends ByteToMessageDecoder {
 
 	private static boolean printMessage = Boolean.getBoolean("kinetic.io.in");
 
+	// max size of the reused message array
+	private static final int MAX_SCRATCH_SIZE = 64 * 1024;
+
+	// reused to parse the messages of direct buffers, one decoder per channel
+	private byte[] scratch = new byte[0];
+
 	@Override
 	protected void decode(ChannelHandlerContext ctx, ByteBuf in,
 			List<Object> out) {
@@ -98,10 +104,6 @@ public class KineticDecoder extends ByteToMessageDecoder {
 			return;
 		}
 
-		// 4. read protobuf message
-		byte[] decoded = new byte[protoMessageLength];
-		in.readBytes(decoded);
-
 		// kinetic message
 		KineticMessage km = new KineticMessage();
 
@@ -109,7 +111,30 @@ public class KineticDecoder extends ByteToMessageDecoder {
 		Message.Builder mbuilder = Message.newBuilder();
 
 		try {
-			mbuilder.mergeFrom(decoded);
+			// 4. read protobuf message
+			if (in.hasArray()) {
+				// parse from the backing array, no copy
+				mbuilder.mergeFrom(in.array(),
+						in.arrayOffset() + in.readerIndex(), protoMessageLength);
+				in.skipBytes(protoMessageLength);
+			} else {
+				// direct buffer (pooled direct allocator). protobuf cannot
+				// parse off heap memory, the message is copied to an array
+				// reused by this channel. parsed fields do not share it.
+				byte[] decoded = this.scratch;
+
+				if (decoded.length < protoMessageLength) {
+
+					decoded = new byte[protoMessageLength];
+
+					if (protoMessageLength <= MAX_SCRATCH_SIZE) {
+						this.scratch = decoded;
+					}
+				}
+
+				in.readBytes(decoded, 0, protoMessageLength);
+				mbuilder.mergeFrom(decoded, 0, protoMessageLength);
+			}
 		} catch (Exception e) {
 			in.resetReaderIndex();
 
@@ -120,7 +145,9 @@ public class KineticDecoder extends ByteToMessageDecoder {
 
 		// 5. read attched value if any
 		if (attachedValueLength > 0) {
-			// construct byte[]
+			// construct byte[], the only copy of the value on the inbound
+			// path. the array is shared (not copied) by the store and the
+			// encoder (see ZeroCopyByteString).
 			byte[] attachedValue = new byte[attachedValueLength];
 			// read from buffer
 			in.readBytes(attachedValue);
@@ -18,9 +18,11 @@
 package com.seagate.kinetic.common.protocol.codec;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.MessageToByteEncoder;
+import io.netty.handler.codec.MessageToMessageEncoder;
 
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -45,6 +47,9 @@ import com.seagate.kinetic.proto.Kinetic.Message.Builder;
  * <li>5. write value byte[] if any
  * </ul>
  * <p>
+ * The value is not copied. The encoded message is a composite buffer of the
+ * message header and the wrapped value byte[].
+ * <p>
  *
  * To log/print the encoded message, set the "kinetic.io.out" Java System
  * property to true.
@@ -56,7 +61,7 @@ import com.seagate.kinetic.proto.Kinetic.Message.Builder;
  *
  * @author chiaming
  */
-public class KineticEncoder extends MessageToByteEncoder<KineticMessage> {
+public class KineticEncoder extends MessageToMessageEncoder<KineticMessage> {
 
 	private final Logger logger = Logger.getLogger(KineticEncoder.class
 			.getName());
@@ -65,7 +70,7 @@ public class KineticEncoder extends MessageToByteEncoder<KineticMessage> {
 
 	@Override
 	protected void encode(ChannelHandlerContext ctx, KineticMessage km,
-			ByteBuf out) throws Exception {
+			List<Object> out) throws Exception {
 
 		try {
 	
@@ -73,9 +78,6 @@ public class KineticEncoder extends MessageToByteEncoder<KineticMessage> {
 			// byte[] value = builder.getValue().toByteArray();
 			byte[] value = km.getValue();
 
-			// 1. write magic number
-			out.writeByte((byte) 'F');
-			
 			//get message
 			Message.Builder messageBuilder = (Builder) km.getMessage();
 			
@@ -85,23 +87,31 @@ public class KineticEncoder extends MessageToByteEncoder<KineticMessage> {
 			// get proto message bytes
 			byte[] protoMessageBytes = msg.toByteArray();
 
+			// header buffer
+			ByteBuf header = ctx.alloc().buffer(9 + protoMessageBytes.length);
+
+			// 1. write magic number
+			header.writeByte((byte) 'F');
+
 			// 2. write protobuf message message size, 4 byte
-			out.writeInt(protoMessageBytes.length);
+			header.writeInt(protoMessageBytes.length);
 
 			// 3. write attached value size, 4 byte
 			if (value != null) {
-				out.writeInt(value.length);
+				header.writeInt(value.length);
 			} else {
-				out.writeInt(0);
+				header.writeInt(0);
 			}
 
 			// 4. write protobuf message byte[]
-			out.writeBytes(protoMessageBytes);
+			header.writeBytes(protoMessageBytes);
 
-			// 5 (optional) write attached value if any
+			// 5 (optional) attach value if any, without copy
 			if (value != null && value.length > 0) {
-				// write value
-				out.writeBytes(value);
+				out.add(Unpooled.wrappedBuffer(header,
+						Unpooled.wrappedBuffer(value)));
+			} else {
+				out.add(header);
 			}
 
 			// log message out
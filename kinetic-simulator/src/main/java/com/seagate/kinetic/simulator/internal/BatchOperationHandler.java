@@ -19,22 +19,32 @@
  */
 package com.seagate.kinetic.simulator.internal;
 
-import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import com.google.protobuf.ByteString;
 import com.seagate.kinetic.common.lib.KineticMessage;
-import com.seagate.kinetic.proto.Kinetic.Command.Algorithm;
-import com.seagate.kinetic.proto.Kinetic.Command.KeyValue;
 import com.seagate.kinetic.proto.Kinetic.Command.MessageType;
 import com.seagate.kinetic.proto.Kinetic.Command.Status.StatusCode;
-import com.seagate.kinetic.simulator.persist.BatchOperation;
-import com.seagate.kinetic.simulator.persist.KVValue;
+import com.seagate.kinetic.simulator.internal.handler.ServiceException;
 import com.seagate.kinetic.simulator.persist.Store;
 
 /**
  * Batch operation handler.
+ * <p>
+ * Multiple batches (up to the configured max outstanding batches) may be in
+ * progress concurrently. A batch is in progress from its START_BATCH until it
+ * is committed, aborted, or its connection is closed. Each batch buffers its
+ * commands in its own {@link BatchTransaction}. Versions are checked optimistically when a
+ * command is added and validated again when the batch is committed.
+ * <p>
+ * Validation and commit of a batch are atomic against other write requests:
+ * batch commits hold the write lock of the commit lock, and non-batch PUT and
+ * DELETE requests hold its read lock. Non-batch requests never wait for an
+ * open batch, only for a batch commit in progress.
  * 
  * @author chiaming
  *
@@ -44,24 +54,24 @@ public class BatchOperationHandler {
     private final static Logger logger = Logger.getLogger(BatchOperationHandler.class
             .getName());
 
-    private long MAX_TIME_OUT = 30000;
+    private static final String SEP = ".";
 
     private SimulatorEngine engine = null;
 
     @SuppressWarnings("rawtypes")
     private Store store = null;
 
-    RequestContext context = null;
+    // max concurrent batches
+    private final int maxOutstandingBatches;
 
-    private long cid = -1;
+    // max commands per batch
+    private final int maxCommandsPerBatch;
 
-    private int batchId = -1;
+    // key = connId + "." + batchId
+    private final ConcurrentHashMap<String, BatchTransaction> batchMap = new ConcurrentHashMap<String, BatchTransaction>();
 
-    // boolean isClosed = false;
-
-    private BatchOperation<ByteString, KVValue> batch = null;
-
-    private ArrayList<KineticMessage> list = new ArrayList<KineticMessage>();
+    // batch commit (write) vs. non-batch write requests (read)
+    private final ReadWriteLock commitLock = new ReentrantReadWriteLock();
 
     public BatchOperationHandler(SimulatorEngine engine) {
 
@@ -70,37 +80,63 @@ public class BatchOperationHandler {
 
             // store
             this.store = engine.getStore();
-    }
 
-    @SuppressWarnings("unchecked")
-    public synchronized void init(RequestContext context)
-            throws InvalidBatchException, InvalidRequestException {
+            this.maxOutstandingBatches = engine.getServiceConfiguration()
+                    .getMaxOutstandingBatches();
 
-        if (this.batch != null) {
-            this.waitForBatchToFinish();
-        }
+            this.maxCommandsPerBatch = engine.getServiceConfiguration()
+                    .getMaxCommandsPerBatch();
+    }
+
+    /**
+     * start a new batch for the batch id of the request.
+     */
+    private BatchTransaction init(RequestContext context)
+            throws InvalidBatchException {
 
-        // init with this context
-        this.context = context;
+        String key = getBatchKey(context.getRequestMessage());
 
-        // this batch op handler belongs to this connection
-        this.cid = context.getRequestMessage().getCommand().getHeader()
+        // this batch belongs to this connection
+        long cid = context.getRequestMessage().getCommand().getHeader()
                 .getConnectionID();
 
         // batch Id
-        this.batchId = context.getRequestMessage().getCommand().getHeader()
+        int batchId = context.getRequestMessage().getCommand().getHeader()
                 .getBatchID();
 
-        // start batch
-        try {
-            // create new batch instance
-            batch = engine.getStore().createBatchOperation();
-        } catch (KVStoreException e) {
-            throw new InvalidBatchException(e);
+        BatchTransaction tx = null;
+
+        synchronized (this) {
+
+            if (batchMap.containsKey(key)) {
+                throw new InvalidBatchException("batch already started: "
+                        + key);
+            }
+
+            if (batchMap.size() >= this.maxOutstandingBatches) {
+                throw new InvalidBatchException(
+                        "Exceeded max number of outstanding batches: "
+                                + this.maxOutstandingBatches);
+            }
+
+            // start batch
+            try {
+                tx = new BatchTransaction(store, cid, batchId,
+                        this.maxCommandsPerBatch);
+            } catch (KVStoreException e) {
+                throw new InvalidBatchException(e);
+            }
+
+            batchMap.put(key, tx);
         }
+
+        logger.info("batch started, key=" + key + ", outstanding batches="
+                + batchMap.size());
+
+        return tx;
     }
 
-    public synchronized void checkBatchMode(KineticMessage kmreq)
+    public void checkBatchMode(KineticMessage kmreq)
             throws InvalidRequestException {
 
         if (kmreq.getIsInvalidBatchMessage()) {
@@ -108,53 +144,37 @@ public class BatchOperationHandler {
                     "Invalid batch Id found in message: "
                             + kmreq.getCommand().getHeader().getBatchID());
         }
+    }
 
-        if (this.batch == null) {
-            return;
-        }
+    /**
+     * Process a non-batch request. PUT and DELETE requests are not processed
+     * while a batch is being committed.
+     * 
+     * @param context
+     *            request context
+     * @throws ServiceException
+     *             if any internal error occurred.
+     */
+    public void processRequest(RequestContext context)
+            throws ServiceException {
 
-        if (kmreq.getCommand().getHeader().getBatchID() == this.batchId
-                && kmreq.getCommand().getHeader().getConnectionID() == this.cid) {
+        MessageType mtype = context.getMessageType();
 
+        if (mtype != MessageType.PUT && mtype != MessageType.DELETE) {
+            context.processRequest();
             return;
         }
 
-        this.waitForBatchToFinish();
-    }
-
-    private synchronized void waitForBatchToFinish() {
-
-        long totalWaitTime = 0;
-        long period = 3000;
+        commitLock.readLock().lock();
 
-        long start = System.currentTimeMillis();
-
-        while (batch != null) {
-
-            try {
-
-                this.wait(period);
-
-                if (batch == null) {
-                    return;
-                }
-
-                totalWaitTime = (System.currentTimeMillis() - start);
-
-                if (totalWaitTime >= MAX_TIME_OUT) {
-                    throw new RuntimeException(
-                            "Timeout waiting for batch mode to finish");
-                } else {
-                    logger.warning("waiting for batch mode to finish., total wait time ="
-                            + totalWaitTime);
-                }
-            } catch (InterruptedException e) {
-                logger.log(Level.WARNING, e.getMessage(), e);
-            }
+        try {
+            context.processRequest();
+        } finally {
+            commitLock.readLock().unlock();
         }
     }
 
-    public synchronized void handleRequest(RequestContext context)
+    public void handleRequest(RequestContext context)
             throws InvalidBatchException,
             NotAttemptedException, KVStoreException {
 
@@ -162,31 +182,45 @@ public class BatchOperationHandler {
          * messages will be queued or dequeued. no process until end batch is
          * received.
          */
-        if (context.getMessageType() == MessageType.START_BATCH
-                || context.getMessageType() == MessageType.ABORT_BATCH) {
+        if (context.getMessageType() == MessageType.START_BATCH) {
+
+            try {
+                this.init(context);
+            } catch (InvalidBatchException ibe) {
+
+                logger.warning(ibe.getMessage());
+
+                context.getCommandBuilder().getStatusBuilder()
+                        .setCode(StatusCode.INVALID_BATCH);
+                context.getCommandBuilder().getStatusBuilder()
+                        .setStatusMessage(ibe.getMessage());
+
+                throw ibe;
+            }
+
             return;
         }
 
-        try {
+        if (context.getMessageType() == MessageType.ABORT_BATCH) {
+            close(getBatchKey(context.getRequestMessage()));
+            return;
+        }
 
-            /**
-             * start batch if message is tagged as first batch message
-             */
-            if (context.getRequestMessage().getIsFirstBatchMessage()) {
-                this.init(context);
-            }
+        String key = getBatchKey(context.getRequestMessage());
+
+        try {
 
             // check if this is a valid batch message
-            checkBatch(context);
+            BatchTransaction tx = checkBatch(context, key);
 
             MessageType mtype = context.getMessageType();
 
             if (mtype == MessageType.END_BATCH) {
-                this.commitBatch();
+                this.commitBatch(tx, key);
             } else if (mtype == MessageType.PUT) {
-                this.batchPut(context.getRequestMessage());
+                tx.put(context.getRequestMessage());
             } else if (mtype == MessageType.DELETE) {
-                this.batchDelete(context.getRequestMessage());
+                tx.delete(context.getRequestMessage());
             } else {
                 throw new NotAttemptedException("invalid message type: "
                         + mtype);
@@ -201,7 +235,7 @@ public class BatchOperationHandler {
             context.getCommandBuilder().getStatusBuilder()
                     .setStatusMessage(nae.getMessage());
 
-            close();
+            close(key);
 
             throw nae;
         } catch (KVStoreVersionMismatch vmismatch) {
@@ -214,7 +248,7 @@ public class BatchOperationHandler {
             context.getCommandBuilder().getStatusBuilder()
                     .setStatusMessage(vmismatch.getMessage());
 
-            close();
+            close(key);
 
             throw vmismatch;
         } catch (KVStoreException kvse) {
@@ -226,7 +260,7 @@ public class BatchOperationHandler {
             context.getCommandBuilder().getStatusBuilder()
                     .setStatusMessage(kvse.getMessage());
 
-            close();
+            close(key);
 
             throw kvse;
         } catch (Exception e) {
@@ -238,14 +272,16 @@ public class BatchOperationHandler {
             context.getCommandBuilder().getStatusBuilder()
                     .setStatusMessage(e.getMessage());
 
-            close();
+            close(key);
         }
     }
 
-    private void checkBatch(RequestContext context)
+    private BatchTransaction checkBatch(RequestContext context, String key)
             throws InvalidBatchException, NotAttemptedException {
 
-        if (this.batch == null) {
+        BatchTransaction tx = batchMap.get(key);
+
+        if (tx == null || tx.isClosed()) {
 
             String msg = "batch is not started or has ended";
 
@@ -256,174 +292,73 @@ public class BatchOperationHandler {
             }
         }
 
-        // check if request is from the same batch
-        if (context.getRequestMessage().getCommand().getHeader()
-                .getConnectionID() != this.cid
-                || context.getRequestMessage().getCommand().getHeader()
-                        .getBatchID() != this.batchId) {
-
-            throw new RuntimeException("DB is locked by: "
-                    + cid
-                    + "-"
-                    + batchId
-                    + ", request id: "
-                    + context.getRequestMessage().getCommand().getHeader()
-                            .getConnectionID()
-                    + context.getRequestMessage().getCommand().getHeader()
-                            .getBatchID());
-        }
-
+        return tx;
     }
 
-    private void batchDelete(KineticMessage km) throws KVStoreException {
+    private void commitBatch(BatchTransaction tx, String key)
+            throws KVStoreVersionMismatch {
 
-        // proto request KV
-        KeyValue requestKeyValue = km.getCommand().getBody().getKeyValue();
+        // validate and commit atomically against other writers
+        commitLock.writeLock().lock();
 
-        ByteString key = requestKeyValue.getKey();
-
-        // check version if required
-        if (requestKeyValue.getForce() == false) {
-            checkVersion(requestKeyValue);
-        }
-
-        batch.delete(key);
-    }
-
-    private void batchPut(KineticMessage km) throws KVStoreException {
-
-        ByteString key = km.getCommand().getBody().getKeyValue().getKey();
-
-        ByteString valueByteString = null;
-
-        if (km.getValue() != null) {
-            valueByteString = ByteString.copyFrom(km.getValue());
-        } else {
-            // set value to empty if null
-            valueByteString = ByteString.EMPTY;
-        }
-
-        // proto request KV
-        KeyValue requestKeyValue = km.getCommand().getBody().getKeyValue();
-
-        // check version if required
-        if (requestKeyValue.getForce() == false) {
-            checkVersion(requestKeyValue);
-        }
-
-        // construct store KV
-        Algorithm al = null;
-        if (requestKeyValue.hasAlgorithm()) {
-            al = requestKeyValue.getAlgorithm();
-        }
-
-        KVValue data = new KVValue(requestKeyValue.getKey(),
-                requestKeyValue.getNewVersion(), requestKeyValue.getTag(), al,
-                valueByteString);
-
-        // batch put
-        batch.put(key, data);
-
-        logger.info("*** batch op put entry., key = " + key);
-    }
-
-    private synchronized void commitBatch() {
         try {
             // commit db batch
-            batch.commit();
+            tx.commit();
         } finally {
-            this.close();
+            commitLock.writeLock().unlock();
+
+            this.close(key);
         }
     }
 
     /**
-     * close the current batch operation.
+     * close the batch operation with the specified key.
      */
-    public synchronized void close() {
-
-        if (this.batch == null) {
-            return;
-        }
-
-        try {
-            // close db batch
-            batch.close();
+    private void close(String key) {
 
-            // clear list
-            list.clear();
+        BatchTransaction tx = batchMap.remove(key);
 
-            logger.info("*** batch op closed ");
-        } catch (Exception e) {
-            logger.log(Level.WARNING, e.getMessage(), e);
-        } finally {
-            batch = null;
-            this.notifyAll();
+        if (tx != null) {
+            tx.close();
         }
     }
 
-    private static void compareVersion(ByteString storeDbVersion,
-            ByteString requestDbVersion) throws KVStoreVersionMismatch {
-
-        if (mySize(storeDbVersion) != mySize(requestDbVersion)) {
-            throw new KVStoreVersionMismatch("Length mismatch");
-        }
-
-        if (mySize(storeDbVersion) == 0) {
-            return;
-        }
+    /**
+     * close the batch operations in progress of the specified connection.
+     * 
+     * @param cid
+     *            connection id
+     */
+    public void close(long cid) {
 
-        if (!storeDbVersion.equals(requestDbVersion)) {
-            throw new KVStoreVersionMismatch("Compare mismatch");
+        for (Map.Entry<String, BatchTransaction> e : batchMap.entrySet()) {
+            if (e.getValue().getConnectionId() == cid) {
+                this.close(e.getKey());
+            }
         }
     }
 
-    private static int mySize(ByteString s) {
-        if (s == null)
-            return 0;
-        return s.size();
-    }
-
-    private void checkVersion(KeyValue requestKeyValue) throws KVStoreException {
-
-        ByteString requestDbVersion = requestKeyValue.getDbVersion();
-
-        ByteString key = requestKeyValue.getKey();
-
-        ByteString storeDbVersion = this.getDbVersion(key);
-
-        logger.info("*********comparing version., storeV=" + storeDbVersion
-                + "requestV=" + requestDbVersion);
-
-        compareVersion(storeDbVersion, requestDbVersion);
-
-        logger.info("*********batch op version checked and passed ...");
-    }
-
-    @SuppressWarnings("unchecked")
-    private ByteString getDbVersion(ByteString key) {
-
-        KVValue storeKv = null;
-        ByteString storeDbVersion = null;
+    /**
+     * close all batch operations in progress.
+     */
+    public void close() {
 
-        try {
-            storeKv = (KVValue) store.get(key);
-            storeDbVersion = storeKv.getVersion();
-        } catch (Exception e) {
-            ;
+        for (String key : batchMap.keySet()) {
+            this.close(key);
         }
-
-        return storeDbVersion;
     }
 
-    public synchronized boolean isClosed() {
-        return (this.batch == null);
-    }
-
-    public long getConnectionId() {
-        return this.cid;
+    /**
+     * Get the number of batches in progress.
+     * 
+     * @return number of batches in progress.
+     */
+    public int getOutstandingBatches() {
+        return batchMap.size();
     }
 
-    public int getBatchId() {
-        return this.batchId;
+    private static String getBatchKey(KineticMessage km) {
+        return km.getCommand().getHeader().getConnectionID() + SEP
+                + km.getCommand().getHeader().getBatchID();
     }
 }
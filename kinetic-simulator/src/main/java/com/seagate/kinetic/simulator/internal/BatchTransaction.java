@@ -0,0 +1,272 @@
+/**
+ * 
+ * Copyright (C) 2014 Seagate Technology.
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.seagate.kinetic.simulator.internal;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.ZeroCopyByteString;
+import com.seagate.kinetic.common.lib.KineticMessage;
+import com.seagate.kinetic.proto.Kinetic.Command.Algorithm;
+import com.seagate.kinetic.proto.Kinetic.Command.KeyValue;
+import com.seagate.kinetic.simulator.persist.BatchOperation;
+import com.seagate.kinetic.simulator.persist.KVValue;
+import com.seagate.kinetic.simulator.persist.Store;
+
+/**
+ * A single batch (connection id + batch id) in progress.
+ * <p>
+ * Commands are buffered in the batch's own store <code>BatchOperation</code>.
+ * The version of each key checked by a versioned command is recorded, and the
+ * recorded versions are validated again when the batch is committed
+ * (optimistic concurrency control). The caller is responsible for making the
+ * validation and the commit atomic against other writers.
+ *
+ * @see BatchOperationHandler
+ */
+class BatchTransaction {
+
+    private final static Logger logger = Logger
+            .getLogger(BatchTransaction.class.getName());
+
+    @SuppressWarnings("rawtypes")
+    private final Store store;
+
+    private final long cid;
+
+    private final int batchId;
+
+    private final int maxCommands;
+
+    private final BatchOperation<ByteString, KVValue> batch;
+
+    // key -> version read when the command was added, null if not found
+    private final Map<ByteString, ByteString> readVersions = new HashMap<ByteString, ByteString>();
+
+    private int commandCount = 0;
+
+    private boolean isClosed = false;
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    BatchTransaction(Store store, long cid, int batchId, int maxCommands)
+            throws KVStoreException {
+
+        this.store = store;
+        this.cid = cid;
+        this.batchId = batchId;
+        this.maxCommands = maxCommands;
+
+        // each batch has its own store batch
+        this.batch = store.createBatchOperation();
+    }
+
+    long getConnectionId() {
+        return this.cid;
+    }
+
+    int getBatchId() {
+        return this.batchId;
+    }
+
+    synchronized boolean isClosed() {
+        return this.isClosed;
+    }
+
+    synchronized void put(KineticMessage km) throws KVStoreException,
+            InvalidBatchException {
+
+        this.addCommand();
+
+        ByteString key = km.getCommand().getBody().getKeyValue().getKey();
+
+        ByteString valueByteString = null;
+
+        if (km.getValue() != null) {
+            // no copy, the entry shares the request value
+            valueByteString = ZeroCopyByteString.wrap(km.getValue());
+        } else {
+            // set value to empty if null
+            valueByteString = ByteString.EMPTY;
+        }
+
+        // proto request KV
+        KeyValue requestKeyValue = km.getCommand().getBody().getKeyValue();
+
+        // check version if required
+        if (requestKeyValue.getForce() == false) {
+            checkVersion(requestKeyValue);
+        }
+
+        // construct store KV
+        Algorithm al = null;
+        if (requestKeyValue.hasAlgorithm()) {
+            al = requestKeyValue.getAlgorithm();
+        }
+
+        KVValue data = new KVValue(requestKeyValue.getKey(),
+                requestKeyValue.getNewVersion(), requestKeyValue.getTag(), al,
+                valueByteString);
+
+        // batch put
+        batch.put(key, data);
+
+        logger.fine("batch op put entry., key = " + key);
+    }
+
+    synchronized void delete(KineticMessage km) throws KVStoreException,
+            InvalidBatchException {
+
+        this.addCommand();
+
+        // proto request KV
+        KeyValue requestKeyValue = km.getCommand().getBody().getKeyValue();
+
+        ByteString key = requestKeyValue.getKey();
+
+        // check version if required
+        if (requestKeyValue.getForce() == false) {
+            checkVersion(requestKeyValue);
+        }
+
+        batch.delete(key);
+    }
+
+    /**
+     * Validate the recorded versions against the store and commit the batch.
+     *
+     * @throws KVStoreVersionMismatch
+     *             if any of the recorded versions was changed by another
+     *             writer after it was read.
+     */
+    synchronized void commit() throws KVStoreVersionMismatch {
+
+        for (Map.Entry<ByteString, ByteString> e : readVersions.entrySet()) {
+
+            ByteString current = this.getDbVersion(e.getKey());
+
+            if (equals(current, e.getValue()) == false) {
+                throw new KVStoreVersionMismatch(
+                        "Version changed by another writer, key="
+                                + e.getKey());
+            }
+        }
+
+        batch.commit();
+    }
+
+    /**
+     * close the batch operation.
+     */
+    synchronized void close() {
+
+        if (this.isClosed) {
+            return;
+        }
+
+        try {
+            // close db batch
+            batch.close();
+
+            logger.fine("batch op closed, cid=" + cid + ", batchId="
+                    + batchId);
+        } catch (Exception e) {
+            logger.log(Level.WARNING, e.getMessage(), e);
+        } finally {
+            this.isClosed = true;
+            this.readVersions.clear();
+        }
+    }
+
+    private void addCommand() throws InvalidBatchException {
+
+        if (++this.commandCount > this.maxCommands) {
+            throw new InvalidBatchException(
+                    "Exceeded max number of commands per batch: "
+                            + this.maxCommands);
+        }
+    }
+
+    private void checkVersion(KeyValue requestKeyValue)
+            throws KVStoreException {
+
+        ByteString requestDbVersion = requestKeyValue.getDbVersion();
+
+        ByteString key = requestKeyValue.getKey();
+
+        ByteString storeDbVersion = this.getDbVersion(key);
+
+        compareVersion(storeDbVersion, requestDbVersion);
+
+        // remember the first version read for this key
+        if (readVersions.containsKey(key) == false) {
+            readVersions.put(key, storeDbVersion);
+        }
+    }
+
+    private static void compareVersion(ByteString storeDbVersion,
+            ByteString requestDbVersion) throws KVStoreVersionMismatch {
+
+        if (mySize(storeDbVersion) != mySize(requestDbVersion)) {
+            throw new KVStoreVersionMismatch("Length mismatch");
+        }
+
+        if (mySize(storeDbVersion) == 0) {
+            return;
+        }
+
+        if (!storeDbVersion.equals(requestDbVersion)) {
+            throw new KVStoreVersionMismatch("Compare mismatch");
+        }
+    }
+
+    private static boolean equals(ByteString v1, ByteString v2) {
+
+        if (v1 == null || v2 == null) {
+            return v1 == v2;
+        }
+
+        return v1.equals(v2);
+    }
+
+    private static int mySize(ByteString s) {
+        if (s == null)
+            return 0;
+        return s.size();
+    }
+
+    @SuppressWarnings("unchecked")
+    private ByteString getDbVersion(ByteString key) {
+
+        KVValue storeKv = null;
+        ByteString storeDbVersion = null;
+
+        try {
+            storeKv = (KVValue) store.getMetadata(key);
+            storeDbVersion = storeKv.getVersion();
+        } catch (Exception e) {
+            ;
+        }
+
+        return storeDbVersion;
+    }
+}
@@ -22,6 +22,7 @@ package com.seagate.kinetic.simulator.internal;
 import java.io.UnsupportedEncodingException;
 import java.net.UnknownHostException;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -41,6 +42,7 @@ import com.seagate.kinetic.proto.Kinetic.Command.MessageType;
 import com.seagate.kinetic.proto.Kinetic.Command.Security.ACL;
 import com.seagate.kinetic.proto.Kinetic.Command.Security.ACL.Permission;
 import com.seagate.kinetic.proto.Kinetic.Command.Status.StatusCode;
+import com.seagate.kinetic.simulator.persist.StoreStatistics;
 import com.seagate.kinetic.simulator.utility.CapacityUtil;
 import com.seagate.kinetic.simulator.utility.ConfigurationUtil;
 import com.seagate.kinetic.simulator.utility.LimitsUtil;
@@ -58,6 +60,9 @@ import com.seagate.kinetic.simulator.utility.UtilizationUtil;
 public class GetLogHandler {
     
     public static final String SIMULATOR_DUMMY_LOG_NAME = "com.seagate.simulator:dummy";
+
+    // device log of the store statistics, one "name=value" line per statistic
+    public static final String SIMULATOR_STORE_LOG_NAME = "com.seagate.simulator:store";
     
     public static boolean checkPermission(KineticMessage request,
             KineticMessage respond, Map<Long, ACL> currentMap) {
@@ -108,7 +113,8 @@ public class GetLogHandler {
 
             switch (type) {
             case CAPACITIES:
-                Capacity capacity = CapacityUtil.getCapacity();
+                Capacity capacity = CapacityUtil.getCapacity(engine
+                        .getStore());
                 getLog.setCapacity(capacity);
                 break;
             case UTILIZATIONS:
@@ -226,6 +232,8 @@ public class GetLogHandler {
                         Arrays.fill(dummyValue, (byte) 0);
                         
                         kmresp.setValue(dummyValue);
+                    } else if (SIMULATOR_STORE_LOG_NAME.equals(bs.toStringUtf8())) {
+                        kmresp.setValue(getStoreStatistics(engine));
                     } else {
                         respCommandBuilder.getStatusBuilder()
                         .setCode(StatusCode.NOT_FOUND);
@@ -244,4 +252,29 @@ public class GetLogHandler {
             }
         }
     }
+
+    /**
+     * Get the store statistics device log.
+     * 
+     * @return one "name=value" line per statistic, empty if the store does
+     *         not report statistics.
+     */
+    private static byte[] getStoreStatistics(SimulatorEngine engine)
+            throws UnsupportedEncodingException {
+
+        Map<String, Object> statistics = new LinkedHashMap<String, Object>();
+
+        if (engine.getStore() instanceof StoreStatistics) {
+            ((StoreStatistics) engine.getStore()).getStatistics(statistics);
+        }
+
+        StringBuilder sb = new StringBuilder();
+
+        for (Map.Entry<String, Object> e : statistics.entrySet()) {
+            sb.append(e.getKey()).append('=').append(e.getValue())
+                    .append('\n');
+        }
+
+        return sb.toString().getBytes("UTF-8");
+    }
 }
@@ -279,14 +279,11 @@ public class RequestContext {
             ByteString commandByteString = commandBuilder.build()
                     .toByteString();
 
-            // get command byte[]
-            byte[] commandByte = commandByteString.toByteArray();
-
             // require Hmac calculation ?
             if (request.getMessage().getAuthType() == AuthType.HMACAUTH) {
 
                 // calculate hmac
-                ByteString hmac = Hmac.calc(commandByte, key);
+                ByteString hmac = Hmac.calc(commandByteString, key);
 
                 // set identity
                 messageBuilder.getHmacAuthBuilder().setIdentity(userId);
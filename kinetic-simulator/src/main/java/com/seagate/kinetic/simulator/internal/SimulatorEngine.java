@@ -396,6 +396,11 @@ public class SimulatorEngine implements MessageService {
         // close transport providers
         this.closeTransportServices();
 
+        // abort batches in progress
+        if (this.batchOp != null) {
+            this.batchOp.close();
+        }
+
         // close db store
         if (this.store != null) {
             this.store.close();
@@ -459,8 +464,8 @@ public class SimulatorEngine implements MessageService {
             if (kmreq.getIsBatchMessage()) {
                 this.batchOp.handleRequest(context);
             } else {
-                // process request
-                context.processRequest();
+                // process request, never blocked by open batches
+                this.batchOp.processRequest(context);
             }
 
         } catch (Exception e) {
@@ -823,6 +828,27 @@ public class SimulatorEngine implements MessageService {
         return info;
     }
 
+    /**
+     * unregister a closed connection. The batches in progress of the
+     * connection are closed.
+     * 
+     * @param ctx
+     *            the closed connection.
+     * 
+     * @return the connection info instance associated with the connection.
+     */
+    @Override
+    public ConnectionInfo unregisterConnection(ChannelHandlerContext ctx) {
+
+        ConnectionInfo info = removeConnectionInfo(ctx);
+
+        if (info != null && this.batchOp != null) {
+            this.batchOp.close(info.getConnectionId());
+        }
+
+        return info;
+    }
+
     /**
      * instantiate a new connection info object with connection id set.
      * 
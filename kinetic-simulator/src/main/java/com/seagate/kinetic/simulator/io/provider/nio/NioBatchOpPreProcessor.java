@@ -150,7 +150,7 @@ public class NioBatchOpPreProcessor {
         return flag;
     }
 
-    private static synchronized void processBatchQueue(
+    private static void processBatchQueue(
             NioMessageServiceHandler ioHandler,
             ChannelHandlerContext ctx,
             KineticMessage km) throws InterruptedException,
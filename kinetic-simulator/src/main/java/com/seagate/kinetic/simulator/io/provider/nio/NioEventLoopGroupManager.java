@@ -20,13 +20,14 @@
 package com.seagate.kinetic.simulator.io.provider.nio;
 
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
 
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import kinetic.simulator.SimulatorConfiguration;
 
+import com.seagate.kinetic.common.lib.NettyTransportUtil;
+
 /**
  * 
  * Nio Event Loop Group management class.
@@ -75,10 +76,12 @@ public class NioEventLoopGroupManager {
 		logger.info("Nio event loop threads = " + nBossThreads);
 
 		// construct boss group
-		bossGroup = new NioEventLoopGroup(nBossThreads, bossTreadFactory);
+		bossGroup = NettyTransportUtil.newEventLoopGroup(nBossThreads,
+				bossTreadFactory);
 
 		// construct worker group
-		workerGroup = new NioEventLoopGroup(nWorkerThreads, workerThreadFactory);
+		workerGroup = NettyTransportUtil.newEventLoopGroup(nWorkerThreads,
+				workerThreadFactory);
 	}
 
 	/**
@@ -34,7 +34,6 @@ import com.seagate.kinetic.proto.Kinetic.Message;
 import com.seagate.kinetic.proto.Kinetic.Message.AuthType;
 import com.seagate.kinetic.simulator.internal.ConnectionInfo;
 import com.seagate.kinetic.simulator.internal.FaultInjectedCloseConnectionException;
-import com.seagate.kinetic.simulator.internal.SimulatorEngine;
 import com.seagate.kinetic.simulator.io.provider.spi.MessageService;
 
 /**
@@ -188,7 +187,7 @@ public class NioMessageServiceHandler extends
 	    
         // remove connection info of the channel handler context from conn info
         // map
-        ConnectionInfo info = SimulatorEngine.removeConnectionInfo(ctx);
+        ConnectionInfo info = this.lcservice.unregisterConnection(ctx);
 
         logger.info("connection info is removed, id=" + info.getConnectionId()
                 + ", is secure channel=" + this.isSecureChannel);
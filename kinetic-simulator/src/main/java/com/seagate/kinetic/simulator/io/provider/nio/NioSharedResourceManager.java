@@ -20,11 +20,12 @@
 package com.seagate.kinetic.simulator.io.provider.nio;
 
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
 
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.seagate.kinetic.common.lib.NettyTransportUtil;
+
 /**
  * 
  * Nio Event Loop Group management class.
@@ -57,10 +58,11 @@ public class NioSharedResourceManager {
 		workerThreadFactory = new NioThreadFactory("Simulator-nio-worker", true);
 
 		// construct boss group
-		bossGroup = new NioEventLoopGroup(0, bossTreadFactory);
+		bossGroup = NettyTransportUtil.newEventLoopGroup(0, bossTreadFactory);
 
 		// construct worker group
-		workerGroup = new NioEventLoopGroup(0, workerThreadFactory);
+		workerGroup = NettyTransportUtil.newEventLoopGroup(0,
+				workerThreadFactory);
 	}
 
 	/**
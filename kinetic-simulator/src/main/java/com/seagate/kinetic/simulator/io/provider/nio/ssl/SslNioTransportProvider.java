@@ -22,7 +22,6 @@ package com.seagate.kinetic.simulator.io.provider.nio.ssl;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 
 import java.io.IOException;
 import java.util.logging.Level;
@@ -30,6 +29,7 @@ import java.util.logging.Logger;
 
 import kinetic.simulator.SimulatorConfiguration;
 
+import com.seagate.kinetic.common.lib.NettyTransportUtil;
 import com.seagate.kinetic.simulator.io.provider.nio.NioSharedResourceManager;
 import com.seagate.kinetic.simulator.io.provider.spi.MessageService;
 import com.seagate.kinetic.simulator.io.provider.spi.TransportProvider;
@@ -88,7 +88,7 @@ public class SslNioTransportProvider implements TransportProvider, Runnable {
 		bootstrap = new ServerBootstrap();
 
 		bootstrap.group(bossGroup, workerGroup)
-		.channel(NioServerSocketChannel.class)
+		.channel(NettyTransportUtil.getServerChannelClass(bossGroup))
 		.childHandler(sslChannelInitializer);
 
 		logger.info("KineticClient ssl service binding on port =" + port);
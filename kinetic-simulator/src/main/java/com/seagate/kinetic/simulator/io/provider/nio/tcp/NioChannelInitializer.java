@@ -26,6 +26,9 @@ import io.netty.channel.socket.SocketChannel;
 
 import java.util.logging.Logger;
 
+import kinetic.simulator.SimulatorConfiguration;
+
+import com.seagate.kinetic.common.lib.NettyTransportUtil;
 import com.seagate.kinetic.common.protocol.codec.KineticDecoder;
 import com.seagate.kinetic.common.protocol.codec.KineticEncoder;
 import com.seagate.kinetic.simulator.io.provider.nio.NioMessageServiceHandler;
@@ -47,6 +50,15 @@ ChannelInitializer<SocketChannel> {
 	@Override
 	protected void initChannel(SocketChannel ch) throws Exception {
 
+		SimulatorConfiguration config = lcservice.getServiceConfiguration();
+
+		// pooled direct buffers, no delay, socket buffers and water marks
+		NettyTransportUtil.configure(ch.config(),
+				config.getSocketSendBufferSize(),
+				config.getSocketReceiveBufferSize(),
+				config.getWriteBufferHighWaterMark(),
+				config.getWriteBufferLowWaterMark());
+
 		ChannelPipeline p = ch.pipeline();
 
 		
@@ -21,8 +21,8 @@ package com.seagate.kinetic.simulator.io.provider.nio.tcp;
 
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 
 import java.io.IOException;
 import java.util.logging.Level;
@@ -30,6 +30,7 @@ import java.util.logging.Logger;
 
 import kinetic.simulator.SimulatorConfiguration;
 
+import com.seagate.kinetic.common.lib.NettyTransportUtil;
 import com.seagate.kinetic.simulator.io.provider.nio.NioSharedResourceManager;
 import com.seagate.kinetic.simulator.io.provider.spi.MessageService;
 import com.seagate.kinetic.simulator.io.provider.spi.TransportProvider;
@@ -82,9 +83,17 @@ public class TcpNioTransportProvider implements TransportProvider, Runnable {
 		bootstrap = new ServerBootstrap();
 
 		bootstrap.group(bossGroup, workerGroup)
-		.channel(NioServerSocketChannel.class)
+		.channel(NettyTransportUtil.getServerChannelClass(bossGroup))
 		.childHandler(msChannelInitializer);
 
+		int receiveBufferSize = this.service.getServiceConfiguration()
+				.getSocketReceiveBufferSize();
+
+		if (receiveBufferSize > 0) {
+			// inherited by the accepted sockets, before the TCP handshake
+			bootstrap.option(ChannelOption.SO_RCVBUF, receiveBufferSize);
+		}
+
 		logger.info("Kinetic nio service binding on port =" + port);
 
 		channelFuture = bootstrap.bind(port).sync();
@@ -85,4 +85,15 @@ public interface MessageService {
 	 * @return
 	 */
 	public ConnectionInfo registerNewConnection (ChannelHandlerContext ctx);
+
+	/**
+	 * Unregister a closed connection. Resources held for the connection, such
+	 * as its batches in progress, are released.
+	 * 
+	 * @param ctx
+	 *            the closed connection.
+	 * @return the connection info associated with the connection, or null if
+	 *         none.
+	 */
+	public ConnectionInfo unregisterConnection(ChannelHandlerContext ctx);
 }
@@ -0,0 +1,62 @@
+/**
+ * 
+ * Copyright (C) 2014 Seagate Technology.
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.seagate.kinetic.simulator.persist;
+
+import com.google.protobuf.ByteString;
+import com.seagate.kinetic.simulator.internal.KVStoreException;
+
+/**
+ * Implemented by stores that keep open cursors for the sequential GETNEXT
+ * and GETPREVIOUS traversal of a connection.
+ * <p>
+ * The result is the same as {@link Store#getNext(Object)} and
+ * {@link Store#getPrevious(Object)}. A store may use the connection id to
+ * advance the cursor that returned the specified key, instead of seeking
+ * from the key again.
+ */
+public interface CursorStore {
+
+    /**
+     * Get the entry next to the specified key.
+     *
+     * @param cid
+     *            the connection id of the request.
+     * @param key
+     *            the key to start from, not included.
+     * @return the next entry.
+     * @throws KVStoreException
+     *             if there is no next entry or the store cannot be read.
+     */
+    public KVValue getNext(long cid, ByteString key) throws KVStoreException;
+
+    /**
+     * Get the entry previous to the specified key.
+     *
+     * @param cid
+     *            the connection id of the request.
+     * @param key
+     *            the key to start from, not included.
+     * @return the previous entry.
+     * @throws KVStoreException
+     *             if there is no previous entry or the store cannot be read.
+     */
+    public KVValue getPrevious(long cid, ByteString key)
+            throws KVStoreException;
+}
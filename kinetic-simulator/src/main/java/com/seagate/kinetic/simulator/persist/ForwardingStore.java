@@ -0,0 +1,192 @@
+/**
+ * 
+ * Copyright (C) 2014 Seagate Technology.
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.seagate.kinetic.simulator.persist;
+
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+import kinetic.simulator.SimulatorConfiguration;
+
+import com.google.protobuf.ByteString;
+import com.seagate.kinetic.simulator.internal.KVStoreException;
+
+/**
+ * A store that forwards all its operations to another store. Subclasses
+ * override the operations to add behavior in front of the wrapped store,
+ * such as caching.
+ * <p>
+ * The statistics of the wrapped store are reported if it implements
+ * {@link StoreStatistics}. The open cursors of the wrapped store are used if
+ * it implements {@link CursorStore}.
+ */
+public abstract class ForwardingStore implements
+        Store<ByteString, ByteString, KVValue>, StoreStatistics, CursorStore {
+
+    // the wrapped store
+    private final Store<ByteString, ByteString, KVValue> store;
+
+    /**
+     * Constructor.
+     *
+     * @param store
+     *            the wrapped store, already initialized.
+     */
+    protected ForwardingStore(Store<ByteString, ByteString, KVValue> store) {
+        this.store = store;
+    }
+
+    /**
+     * Get the wrapped store.
+     *
+     * @return the wrapped store.
+     */
+    public Store<ByteString, ByteString, KVValue> getStore() {
+        return this.store;
+    }
+
+    @Override
+    public void init(SimulatorConfiguration config) {
+        store.init(config);
+    }
+
+    @Override
+    public void put(ByteString key, ByteString oldVersion, KVValue value,
+            PersistOption option) throws KVStoreException {
+        store.put(key, oldVersion, value, option);
+    }
+
+    @Override
+    public void putForced(ByteString key, KVValue value, PersistOption option)
+            throws KVStoreException {
+        store.putForced(key, value, option);
+    }
+
+    @Override
+    public void delete(ByteString key, ByteString oldVersion,
+            PersistOption option) throws KVStoreException {
+        store.delete(key, oldVersion, option);
+    }
+
+    @Override
+    public void deleteForced(ByteString key, PersistOption option)
+            throws KVStoreException {
+        store.deleteForced(key, option);
+    }
+
+    @Override
+    public KVValue get(ByteString key) throws KVStoreException {
+        return store.get(key);
+    }
+
+    @Override
+    public KVValue getMetadata(ByteString key) throws KVStoreException {
+        return store.getMetadata(key);
+    }
+
+    @Override
+    public KVValue getPrevious(ByteString key) throws KVStoreException {
+        return store.getPrevious(key);
+    }
+
+    @Override
+    public KVValue getNext(ByteString key) throws KVStoreException {
+        return store.getNext(key);
+    }
+
+    @Override
+    public KVValue getPrevious(long cid, ByteString key)
+            throws KVStoreException {
+
+        if (store instanceof CursorStore) {
+            return ((CursorStore) store).getPrevious(cid, key);
+        }
+
+        return store.getPrevious(key);
+    }
+
+    @Override
+    public KVValue getNext(long cid, ByteString key) throws KVStoreException {
+
+        if (store instanceof CursorStore) {
+            return ((CursorStore) store).getNext(cid, key);
+        }
+
+        return store.getNext(key);
+    }
+
+    @Override
+    public SortedMap<?, ?> getRange(ByteString startKey,
+            boolean startKeyInclusive, ByteString endKey,
+            boolean endKeyInclusive, int n) throws KVStoreException {
+        return store.getRange(startKey, startKeyInclusive, endKey,
+                endKeyInclusive, n);
+    }
+
+    @Override
+    public List<?> getKeyRange(ByteString startKey, boolean startKeyInclusive,
+            ByteString endKey, boolean endKeyInclusive, int n)
+            throws KVStoreException {
+        return store.getKeyRange(startKey, startKeyInclusive, endKey,
+                endKeyInclusive, n);
+    }
+
+    @Override
+    public List<?> getRangeReversed(ByteString startKey,
+            boolean startKeyInclusive, ByteString endKey,
+            boolean endKeyInclusive, int n) throws KVStoreException {
+        return store.getRangeReversed(startKey, startKeyInclusive, endKey,
+                endKeyInclusive, n);
+    }
+
+    @Override
+    public void close() {
+        store.close();
+    }
+
+    @Override
+    public void reset() throws KVStoreException {
+        store.reset();
+    }
+
+    @Override
+    public BatchOperation<ByteString, KVValue> createBatchOperation()
+            throws KVStoreException {
+        return store.createBatchOperation();
+    }
+
+    @Override
+    public void flush() throws KVStoreException {
+        store.flush();
+    }
+
+    @Override
+    public void compactRange(ByteString startKey, ByteString endKey)
+            throws KVStoreException {
+        store.compactRange(startKey, endKey);
+    }
+
+    @Override
+    public void getStatistics(Map<String, Object> statistics) {
+        if (store instanceof StoreStatistics) {
+            ((StoreStatistics) store).getStatistics(statistics);
+        }
+    }
+}
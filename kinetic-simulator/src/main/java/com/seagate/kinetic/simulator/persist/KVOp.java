@@ -26,6 +26,7 @@ import java.util.logging.Logger;
 import kinetic.simulator.SimulatorConfiguration;
 
 import com.google.protobuf.ByteString;
+import com.google.protobuf.ZeroCopyByteString;
 import com.seagate.kinetic.common.lib.KineticMessage;
 import com.seagate.kinetic.proto.Kinetic.Command;
 import com.seagate.kinetic.proto.Kinetic.Command.Algorithm;
@@ -40,6 +41,7 @@ import com.seagate.kinetic.simulator.internal.Authorizer;
 import com.seagate.kinetic.simulator.internal.InvalidRequestException;
 import com.seagate.kinetic.simulator.internal.KVSecurityException;
 import com.seagate.kinetic.simulator.internal.KVStoreException;
+import com.seagate.kinetic.simulator.internal.KVStoreNoSpace;
 import com.seagate.kinetic.simulator.internal.KVStoreNotFound;
 import com.seagate.kinetic.simulator.internal.KVStoreVersionMismatch;
 import com.seagate.kinetic.simulator.lib.MyLogger;
@@ -128,7 +130,12 @@ public class KVOp {
                         Authorizer.checkPermission(aclmap, kmreq.getMessage()
                                 .getHmacAuth().getIdentity(),Permission.READ, key);
 
-                        storeEntry = store.get(key);
+                        if (metadataOnly) {
+                            // value is not read
+                            storeEntry = store.getMetadata(key);
+                        } else {
+                            storeEntry = store.get(key);
+                        }
 
                         // respond metadata
                         respondKeyValue.setKey(storeEntry.getKeyOf());
@@ -144,7 +151,8 @@ public class KVOp {
                         if (!metadataOnly) {
                             // respond.setValue(storeEntry.getData());
                             //byte[] bytes = storeEntry.getData().toByteArray();
-                            kmresp.setValue(storeEntry.getData().toByteArray());
+                            kmresp.setValue(ZeroCopyByteString.unwrap(storeEntry
+                                    .getData()));
                         }
 
                     } finally {
@@ -182,7 +190,8 @@ public class KVOp {
 
                         ByteString valueByteString = null;
                         if (kmreq.getValue() != null) {
-                            valueByteString = ByteString.copyFrom(kmreq
+                            // no copy, the entry shares the request value
+                            valueByteString = ZeroCopyByteString.wrap(kmreq
                                     .getValue());
                         } else {
                             // set value to empty if null
@@ -255,7 +264,7 @@ public class KVOp {
                                 .getHmacAuth().getIdentity(), Permission.READ,
                                 key);
 
-                        storeEntry = store.get(key);
+                        storeEntry = store.getMetadata(key);
                         respondKeyValue.setDbVersion(storeEntry.getVersion());
                     } finally {
                         // respond message type
@@ -270,7 +279,7 @@ public class KVOp {
                         //check max key length
                         checkMaxKeyLenth (key.size());
                         
-                        storeEntry = store.getNext(key);
+                        storeEntry = getNext(store, kmreq, key);
                         ByteString nextKey = storeEntry.getKeyOf();
 
                         // We must verify that the next key is readable, not the passed key
@@ -288,7 +297,8 @@ public class KVOp {
 
                         if (!metadataOnly) {
                             // respond.setValue(storeEntry.getData());
-                            kmresp.setValue(storeEntry.getData().toByteArray());
+                            kmresp.setValue(ZeroCopyByteString.unwrap(storeEntry
+                                    .getData()));
                         }
                     } finally {
                         // respond message type
@@ -303,7 +313,7 @@ public class KVOp {
                         //check max key length
                         checkMaxKeyLenth (key.size());
                         
-                        storeEntry = store.getPrevious(key);
+                        storeEntry = getPrevious(store, kmreq, key);
                         ByteString previousKey = storeEntry.getKeyOf();
 
                         // We must verify that the previous key is readable, not the passed key
@@ -321,7 +331,8 @@ public class KVOp {
 
                         if (!metadataOnly) {
                             // respond.setValue(storeEntry.getData());
-                            kmresp.setValue(storeEntry.getData().toByteArray());
+                            kmresp.setValue(ZeroCopyByteString.unwrap(storeEntry
+                                    .getData()));
                         }
                     } finally {
                         // respond message type
@@ -340,6 +351,8 @@ public class KVOp {
                 handleException(Status.StatusCode.NOT_FOUND);
             } catch (KVStoreVersionMismatch e) {
                 handleException(Status.StatusCode.VERSION_MISMATCH);
+            } catch (KVStoreNoSpace e) {
+                handleException(Status.StatusCode.NO_SPACE, e.getMessage());
             } catch (KVStoreException e) {
                 handleException(Status.StatusCode.INTERNAL_ERROR,
                         "Opps1: " + e.getMessage());
@@ -431,6 +444,38 @@ public class KVOp {
 
         return option;
     }
+
+    /**
+     * Get the next entry. The open cursor of the connection is used if the
+     * store supports it.
+     */
+    private static KVValue getNext(
+            Store<ByteString, ByteString, KVValue> store, KineticMessage kmreq,
+            ByteString key) throws KVStoreException {
+
+        if (store instanceof CursorStore) {
+            return ((CursorStore) store).getNext(kmreq.getCommand()
+                    .getHeader().getConnectionID(), key);
+        }
+
+        return store.getNext(key);
+    }
+
+    /**
+     * Get the previous entry. The open cursor of the connection is used if
+     * the store supports it.
+     */
+    private static KVValue getPrevious(
+            Store<ByteString, ByteString, KVValue> store, KineticMessage kmreq,
+            ByteString key) throws KVStoreException {
+
+        if (store instanceof CursorStore) {
+            return ((CursorStore) store).getPrevious(kmreq.getCommand()
+                    .getHeader().getConnectionID(), key);
+        }
+
+        return store.getPrevious(key);
+    }
     
     private static void checkMaxKeyLenth (int len) throws InvalidRequestException {
         if (len > maxKeySize) {
@@ -20,12 +20,24 @@
 
 package com.seagate.kinetic.simulator.persist;
 
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
 import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.ExtensionRegistryLite;
 import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.WireFormat;
 import com.seagate.kinetic.proto.Kinetic.Command.Algorithm;
+import com.seagate.kinetic.proto.KineticDb.Versioned;
+import com.seagate.kinetic.simulator.internal.KVStoreException;
 
 public class KVValue {
 
+    private final static Logger logger = Logger.getLogger(KVValue.class
+            .getName());
+
     public com.seagate.kinetic.proto.KineticDb.Versioned.Builder m = com.seagate.kinetic.proto.KineticDb.Versioned
             .newBuilder();
 
@@ -155,4 +167,93 @@ public class KVValue {
         return m.build().toByteArray();
     }
 
+    /**
+     * Serialize the metadata (key, version, tag and algorithm) of this entry
+     * without the value.
+     *
+     * @return serialized <code>Versioned</code> message without the value.
+     */
+    public byte[] toMetadataByteArray() {
+        return Versioned.newBuilder().setMetadata(m.getMetadataBuilder())
+                .build().toByteArray();
+    }
+
+    /**
+     * Parse the metadata of a serialized <code>Versioned</code> entry. The
+     * value field is skipped and is never copied.
+     * <p>
+     * The metadata is serialized before the value. Parsing stops after the
+     * metadata field so that the bytes may be a prefix of the entry, as long
+     * as the prefix contains the whole metadata field.
+     *
+     * @param bytes
+     *            serialized <code>Versioned</code> entry or its prefix.
+     *
+     * @return a new instance that contains only the metadata of the entry.
+     *
+     * @throws KVStoreException
+     *             if the bytes are not a valid entry.
+     *
+     * @see #getMetadataEnd(byte[])
+     */
+    public static KVValue parseMetadata(byte[] bytes) throws KVStoreException {
+
+        KVValue kv = new KVValue(null, null, null, null, null);
+
+        try {
+            CodedInputStream in = CodedInputStream.newInstance(bytes);
+
+            int tag = in.readTag();
+
+            while (tag != 0) {
+
+                if (WireFormat.getTagFieldNumber(tag) == Versioned.METADATA_FIELD_NUMBER) {
+                    in.readMessage(kv.m.getMetadataBuilder(),
+                            ExtensionRegistryLite.getEmptyRegistry());
+                    break;
+                }
+
+                // value or unknown field
+                in.skipField(tag);
+
+                tag = in.readTag();
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, e.getMessage(), e);
+            throw new KVStoreException("unable to parse entry metadata");
+        }
+
+        return kv;
+    }
+
+    /**
+     * Get the number of leading bytes of a serialized <code>Versioned</code>
+     * entry that must be read to parse its metadata.
+     *
+     * @param prefix
+     *            a prefix of the serialized entry.
+     *
+     * @return the offset right after the metadata field, or
+     *         <code>Integer.MAX_VALUE</code> if it cannot be determined from
+     *         the prefix (the whole entry should be read).
+     */
+    public static int getMetadataEnd(byte[] prefix) {
+
+        try {
+            CodedInputStream in = CodedInputStream.newInstance(prefix);
+
+            int tag = in.readTag();
+
+            if (WireFormat.getTagFieldNumber(tag) == Versioned.METADATA_FIELD_NUMBER) {
+                int length = in.readRawVarint32();
+                return in.getTotalBytesRead() + length;
+            }
+        } catch (IOException e) {
+            // truncated header
+            ;
+        }
+
+        return Integer.MAX_VALUE;
+    }
+
 }
@@ -134,6 +134,25 @@ public interface Store<K, O, V> {
      */
     V get(K key) throws KVStoreException;
 
+    /**
+     * Get the metadata (key, version, tag and algorithm) of the entry
+     * associated with the specified key.
+     * <p>
+     * The returned <code>V</code> does not contain the value data.
+     * Implementations should not read or deserialize the stored value so
+     * that version checks and metadata only requests do not cost as much as
+     * a full read.
+     *
+     * @param key
+     *            the key used to obtain the entry metadata.
+     *
+     * @return the <code>V</code> with the entry metadata only.
+     *
+     * @throws KVStoreException
+     *             if any internal error occurred or the entry is not found.
+     */
+    V getMetadata(K key) throws KVStoreException;
+
     /**
      * Get the <code>V</code> entry associated with a key that is before the
      * specified key in the sequence.
@@ -195,6 +214,34 @@ public interface Store<K, O, V> {
     SortedMap<?, ?> getRange(K startKey, boolean startKeyInclusive, K endKey,
             boolean endKeyInclusive, int n) throws KVStoreException;
 
+    /**
+     * Get a list of keys in the sequence based on the specified key range.
+     * <p>
+     * Unlike {@link #getRange(Object, boolean, Object, boolean, int)}, only
+     * the keys are returned. Implementations should not read or deserialize
+     * the stored values so that the cost of a key range scan is proportional
+     * to the number of keys rather than the number of bytes stored.
+     *
+     * @param startKey
+     *            the start key in the specified key range.
+     * @param startKeyInclusive
+     *            true if the start key is inclusive.
+     * @param endKey
+     *            the end key in the specified key range.
+     * @param endKeyInclusive
+     *            true if the end key is inclusive.
+     * @param maxReturned
+     *            the maximum entry to be returned in the list.
+     *
+     * @return an ordered list of keys (<code>KVKey</code>) in the specified
+     *         key range, at most <code>maxReturned</code> keys are returned.
+     *
+     * @throws KVStoreException
+     *             if any internal error occurred.
+     */
+    List<?> getKeyRange(K startKey, boolean startKeyInclusive, K endKey,
+            boolean endKeyInclusive, int maxReturned) throws KVStoreException;
+
     /**
      * Get a list of reversed keys in the sequence based on the specified key
      * range.
@@ -24,6 +24,10 @@ import java.util.logging.Logger;
 
 import kinetic.simulator.SimulatorConfiguration;
 
+import com.google.protobuf.ByteString;
+import com.seagate.kinetic.simulator.persist.cache.CachingStore;
+import com.seagate.kinetic.simulator.persist.filter.BloomFilterStore;
+
 /**
  * Create a new instance of persistent store
  * <p>
@@ -44,9 +48,19 @@ import kinetic.simulator.SimulatorConfiguration;
  * If "kietic.db.class" is not defined and the "kinetic.db.leveldb" Java System
  * Property is set to true, then leveldb is used.
  * <p>
+ * If "kietic.db.class" is not defined, the memory store is not used and the
+ * bitcask store is set in the simulator configuration (or the
+ * "kinetic.db.bitcask" property is set to true), then the bitcask store is
+ * used.
+ * <p>
  * The default store is set to MemoryStore by the simulator if no store property
  * (as described above) is set.
  * <p>
+ * If the Bloom filter is enabled in the simulator configuration, the store is
+ * wrapped by a {@link BloomFilterStore}. If the store cache size of the
+ * simulator configuration is greater than 0, the store is wrapped by a
+ * {@link CachingStore}.
+ * <p>
  * 
  * @author Chenchong(Emma) Li
  */
@@ -67,6 +81,7 @@ public class StoreFactory {
 	 * 
 	 * @return a new instance of persistent store.
 	 */
+	@SuppressWarnings("unchecked")
 	public static Store<?, ?, ?> createInstance(SimulatorConfiguration config) {
 
 		// store interface
@@ -101,6 +116,11 @@ public class StoreFactory {
 			if (isMemory) {
 				// use memory store
 				dbFullName = packageName + ".memory.MemoryStore";
+			} else if (config.getUseBitcaskStore()
+					|| Boolean.parseBoolean(config.getProperty(
+							"kinetic.db.bitcask", "false"))) {
+				// use bitcask store
+				dbFullName = packageName + ".bitcask.BitcaskStore";
 			}
 		}
 
@@ -111,6 +131,20 @@ public class StoreFactory {
 			store = (Store<?, ?, ?>) Class.forName(dbFullName).newInstance();
 			// initialize the store.
 			store.init(config);
+
+			// negative lookup filter in front of the store
+			if (config.getUseBloomFilter()) {
+				store = new BloomFilterStore(
+						(Store<ByteString, ByteString, KVValue>) store,
+						config.getBloomFilterExpectedKeys());
+			}
+
+			// read cache in front of the store
+			if (config.getStoreCacheSize() > 0) {
+				store = new CachingStore(
+						(Store<ByteString, ByteString, KVValue>) store,
+						config.getStoreCacheSize());
+			}
 		} catch (Exception e) {
 			logger.log(Level.WARNING, e.getMessage(), e);
 			throw new RuntimeException(e);
@@ -0,0 +1,41 @@
+/**
+ * 
+ * Copyright (C) 2014 Seagate Technology.
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.seagate.kinetic.simulator.persist;
+
+import java.util.Map;
+
+/**
+ * Implemented by stores that report internal statistics (such as cache hit
+ * and miss counters). The statistics are returned by the simulator in the
+ * store device log.
+ *
+ * @see com.seagate.kinetic.simulator.internal.GetLogHandler
+ */
+public interface StoreStatistics {
+
+    /**
+     * Add the store statistics to the specified map.
+     *
+     * @param statistics
+     *            statistic name to value map, in the order the statistics
+     *            are reported.
+     */
+    public void getStatistics(Map<String, Object> statistics);
+}
@@ -22,6 +22,7 @@ package com.seagate.kinetic.simulator.persist.bdb;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.SortedMap;
@@ -46,6 +47,8 @@ import com.sleepycat.je.DatabaseEntry;
 import com.sleepycat.je.Durability;
 import com.sleepycat.je.Environment;
 import com.sleepycat.je.EnvironmentConfig;
+import com.sleepycat.je.LockMode;
+import com.sleepycat.je.OperationStatus;
 import com.sleepycat.je.Transaction;
 
 public final class KVStore {
@@ -77,6 +80,9 @@ public final class KVStore {
 
 	private StoredSortedMap<KVKey, KVValue> v = null;
 
+	// number of leading bytes read for metadata only requests
+	private static final int METADATA_PREFIX_SIZE = 8 * 1024;
+
 	public KVStore(SimulatorConfiguration config) {
 		this.config = config;
 		this.init();
@@ -201,9 +207,43 @@ public final class KVStore {
 		return object;
 	}
 
+	/**
+	 * Get the metadata of the entry. Only the leading bytes of the record
+	 * that contain the metadata are read (partial read), the value is not.
+	 */
+	public synchronized KVValue getMetadata(ByteString key)
+			throws KVStoreException {
+
+		DatabaseEntry keyEntry = new DatabaseEntry(key.toByteArray());
+
+		int size = METADATA_PREFIX_SIZE;
+
+		while (true) {
+
+			DatabaseEntry data = new DatabaseEntry();
+			data.setPartial(0, size, true);
+
+			OperationStatus status = myDatabase.get(null, keyEntry, data,
+					LockMode.DEFAULT);
+
+			if (status != OperationStatus.SUCCESS)
+				throw new KVStoreNotFound();
+
+			byte[] prefix = Arrays.copyOfRange(data.getData(),
+					data.getOffset(), data.getOffset() + data.getSize());
+
+			// metadata is in the prefix, or the whole record was read
+			int end = KVValue.getMetadataEnd(prefix);
+			if (end <= prefix.length || prefix.length < size)
+				return KVValue.parseMetadata(prefix);
+
+			size = end;
+		}
+	}
+
 	// returns the version if it is in the db. Null otherwise.
 	ByteString getVersion(ByteString key) throws KVStoreException {
-		KVValue obj = get(key);
+		KVValue obj = getMetadata(key);
 		if (obj == null)
 			throw new KVStoreNotFound();
 		if (!obj.hasVersion())
@@ -228,6 +268,9 @@ public final class KVStore {
 		SortedMap<KVKey, KVValue> m;
 		if (k2.size() == 0)
 			m = v.tailMap(KvkOf(k1), i1);
+		else if (KvkOf(k1).compareTo(KvkOf(k2)) > 0)
+			// start key after the end key, empty range
+			m = new TreeMap<KVKey, KVValue>();
 		else
 			m = v.subMap(KvkOf(k1), i1, KvkOf(k2), i2);
 		logger.fine("Number of entries: " + m.size() + " requesting " + n);
@@ -245,6 +288,32 @@ public final class KVStore {
 		return m;
 	}
 
+	public synchronized List<KVKey> getKeyRange(ByteString k1, boolean i1,
+			ByteString k2, boolean i2, int n) throws KVStoreException {
+		logger.fine("Key 1: " + Hmac.toString(k1) + "Key 2: "
+				+ Hmac.toString(k2));
+
+		SortedMap<KVKey, KVValue> m;
+		if (k2.size() == 0)
+			m = v.tailMap(KvkOf(k1), i1);
+		else if (KvkOf(k1).compareTo(KvkOf(k2)) > 0)
+			// start key after the end key, empty range
+			m = new TreeMap<KVKey, KVValue>();
+		else
+			m = v.subMap(KvkOf(k1), i1, KvkOf(k2), i2);
+
+		// iterate the key set view so that the value binding is not invoked
+		List<KVKey> kvKeyOfList = new ArrayList<KVKey>();
+		for (KVKey key : m.keySet()) {
+			if (n-- > 0)
+				kvKeyOfList.add(key);
+			else
+				break;
+		}
+
+		return kvKeyOfList;
+	}
+
 	public synchronized List<KVKey> getRangeReversed(ByteString k1, boolean i1,
 			ByteString k2, boolean i2, int n) throws KVStoreException {
 		logger.fine("Key 1: " + Hmac.toString(k1) + "Key 2: "
@@ -253,6 +322,9 @@ public final class KVStore {
 		SortedMap<KVKey, KVValue> m;
 		if (k2.size() == 0)
 			m = v.tailMap(KvkOf(k1), i1);
+		else if (KvkOf(k1).compareTo(KvkOf(k2)) > 0)
+			// start key after the end key, empty range
+			m = new TreeMap<KVKey, KVValue>();
 		else
 			m = v.subMap(KvkOf(k1), i1, KvkOf(k2), i2);
 		logger.fine("Number of entries: " + m.size() + " requesting " + n);
@@ -296,10 +368,10 @@ public final class KVStore {
 			KVValue value) throws KVStoreVersionMismatch {
 
 		ByteString version = null;
-		KVValue obj = v.get(KvkOf(key));
-		if (obj != null) {// exists
-			version = obj.getVersion();
-		} else {
+		try {
+			// exists
+			version = getMetadata(key).getVersion();
+		} catch (KVStoreException e) {
 			logger.fine("Key does not exist");
 		}
 		checkVersion(version, oldVersion);
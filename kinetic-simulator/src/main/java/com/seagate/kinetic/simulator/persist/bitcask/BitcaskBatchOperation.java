@@ -0,0 +1,101 @@
+/**
+ * 
+ * Copyright (C) 2014 Seagate Technology.
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.seagate.kinetic.simulator.persist.bitcask;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import com.google.protobuf.ByteString;
+import com.seagate.kinetic.simulator.internal.KVStoreException;
+import com.seagate.kinetic.simulator.persist.BatchOperation;
+import com.seagate.kinetic.simulator.persist.KVValue;
+
+/**
+ * Bitcask store batch. Entries are buffered and appended to the active
+ * segment as one batch with a single sync on commit.
+ *
+ * @see BitcaskStore#commitBatch(List, List)
+ */
+public class BitcaskBatchOperation implements
+        BatchOperation<ByteString, KVValue> {
+
+    private final static Logger logger = Logger
+            .getLogger(BitcaskBatchOperation.class.getName());
+
+    private final BitcaskStore store;
+
+    private final List<byte[]> keys = new ArrayList<byte[]>();
+
+    // null for a delete
+    private final List<KVValue> values = new ArrayList<KVValue>();
+
+    private volatile boolean isClosed = false;
+
+    public BitcaskBatchOperation(BitcaskStore store) {
+        this.store = store;
+
+        logger.fine("*** batch created ....");
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        this.keys.clear();
+        this.values.clear();
+        this.isClosed = true;
+
+        logger.fine("*** batch closed ....");
+    }
+
+    @Override
+    public synchronized void put(ByteString key, KVValue value) {
+
+        value.setKeyOf(key);
+
+        keys.add(key.toByteArray());
+        values.add(value);
+    }
+
+    @Override
+    public synchronized void delete(ByteString key) {
+        keys.add(key.toByteArray());
+        values.add(null);
+    }
+
+    @Override
+    public synchronized void commit() {
+
+        try {
+            if (keys.isEmpty() == false) {
+                store.commitBatch(keys, values);
+            }
+        } catch (KVStoreException e) {
+            throw new RuntimeException(e);
+        } finally {
+            this.isClosed = true;
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return this.isClosed;
+    }
+}
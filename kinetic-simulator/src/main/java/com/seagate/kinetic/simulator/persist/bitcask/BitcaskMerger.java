@@ -0,0 +1,143 @@
+/**
+ * 
+ * Copyright (C) 2014 Seagate Technology.
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.seagate.kinetic.simulator.persist.bitcask;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.TimerTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bitcask segment merger.
+ * <p>
+ * Each run writes the missing hint files of the sealed segments, then picks
+ * the next sealed segment (round robin, oldest first). If less than half of
+ * the segment is live, the live records are copied to the active segment,
+ * the key directory is updated and the segment file is removed.
+ *
+ * @see BitcaskStore
+ */
+class BitcaskMerger extends TimerTask {
+
+    private final static Logger logger = Logger.getLogger(BitcaskMerger.class
+            .getName());
+
+    // segments with less live bytes than this ratio are merged
+    private static final double LIVE_RATIO_THRESHOLD = 0.5;
+
+    private final BitcaskStore store;
+
+    // last inspected segment id
+    private long lastSegmentId = 0;
+
+    BitcaskMerger(BitcaskStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public void run() {
+
+        try {
+
+            List<Segment> sealed = store.getSealedSegments();
+
+            if (sealed.isEmpty()) {
+                return;
+            }
+
+            writeHints(sealed);
+
+            // next segment after the last inspected one, wrap around
+            Segment segment = sealed.get(0);
+            for (Segment s : sealed) {
+                if (s.getId() > lastSegmentId) {
+                    segment = s;
+                    break;
+                }
+            }
+
+            lastSegmentId = segment.getId();
+
+            merge(segment);
+
+        } catch (Exception e) {
+            logger.log(Level.WARNING, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Merge all the sealed segments below the live ratio threshold.
+     */
+    void mergeAll() throws IOException {
+
+        List<Segment> sealed = store.getSealedSegments();
+
+        writeHints(sealed);
+
+        for (Segment segment : sealed) {
+            merge(segment);
+        }
+    }
+
+    private static void writeHints(List<Segment> sealed) throws IOException {
+        for (Segment segment : sealed) {
+            if (segment.hasHint() == false) {
+                segment.writeHint();
+            }
+        }
+    }
+
+    /**
+     * Merge the specified segment if its live ratio is below the threshold.
+     */
+    private synchronized void merge(Segment segment) throws IOException {
+
+        long total = segment.getSize();
+        long live = segment.getLiveBytes();
+
+        if (total > 0 && live >= total * LIVE_RATIO_THRESHOLD) {
+            logger.fine("bitcask segment not merged, id=" + segment.getId()
+                    + ", live=" + live + ", total=" + total);
+            return;
+        }
+
+        int relocated = 0;
+
+        long offset = 0;
+        Segment.Record record = null;
+
+        // header and key only, values are copied as is
+        while ((record = segment.readRecord(offset, false)) != null) {
+
+            if (record.isBatch() == false && store.relocate(segment, record)) {
+                relocated++;
+            }
+
+            offset += record.getSize();
+        }
+
+        store.removeSegment(segment);
+
+        logger.info("bitcask segment merged, id=" + segment.getId()
+                + ", relocated=" + relocated + ", live=" + live + ", total="
+                + total);
+    }
+}
@@ -0,0 +1,971 @@
+/**
+ * 
+ * Copyright (C) 2014 Seagate Technology.
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.seagate.kinetic.simulator.persist.bitcask;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.Timer;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import kinetic.simulator.SimulatorConfiguration;
+
+import com.google.protobuf.ByteString;
+import com.seagate.kinetic.simulator.internal.KVStoreException;
+import com.seagate.kinetic.simulator.internal.KVStoreNotFound;
+import com.seagate.kinetic.simulator.internal.KVStoreVersionMismatch;
+import com.seagate.kinetic.simulator.persist.BatchOperation;
+import com.seagate.kinetic.simulator.persist.KVKey;
+import com.seagate.kinetic.simulator.persist.KVValue;
+import com.seagate.kinetic.simulator.persist.PersistOption;
+import com.seagate.kinetic.simulator.persist.Store;
+import com.seagate.kinetic.simulator.persist.memory.KeyComparator;
+
+/**
+ * Log-structured hash store (bitcask) for the Kinetic simulator.
+ * <p>
+ * Entries are appended to segment files. An in-memory key directory, sorted
+ * by the kinetic key order, maps each key to the location of its latest
+ * record, so that a GET is a single positioned read and getNext, getPrevious
+ * and range requests are served from the key directory.
+ * <p>
+ * Writes are appended by a single writer. SYNC and FLUSH writes force the
+ * active segment before they return. Reads do not take any lock.
+ * <p>
+ * Sealed segments with mostly overwritten or deleted records are merged in
+ * the background by the {@link BitcaskMerger}: the live records are copied
+ * to the active segment and the segment file is removed. A hint file is
+ * written for each sealed segment so that the key directory is rebuilt on
+ * restart without reading the values. Segments without a hint file are
+ * scanned on restart, and a torn write at the end of a segment is truncated.
+ * <p>
+ * The store is selected with
+ * {@link SimulatorConfiguration#setUseBitcaskStore(boolean)}, or with
+ * <code>-Dkinetic.db.class=com.seagate.kinetic.simulator.persist.bitcask.BitcaskStore</code>
+ * 
+ * @see Segment
+ * @see BitcaskMerger
+ */
+public class BitcaskStore implements Store<ByteString, ByteString, KVValue> {
+
+    private final static Logger logger = Logger.getLogger(BitcaskStore.class
+            .getName());
+
+    // simulator config
+    private SimulatorConfiguration config = null;
+
+    // segment folder
+    private File folder = null;
+
+    // max segment size before a new segment is started
+    private long segmentSize = 0;
+
+    // key directory, key -> location of the latest record
+    private final ConcurrentSkipListMap<byte[], KeyDirEntry> keyDir = new ConcurrentSkipListMap<byte[], KeyDirEntry>(
+            new KeyComparator());
+
+    // open segments, id -> segment
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<Long, Segment>();
+
+    // single writer lock, guards the active segment and key directory updates
+    private final Object writeLock = new Object();
+
+    // active segment, appended by the writer
+    private Segment active = null;
+
+    // segment merge timer
+    private Timer mergeTimer = null;
+
+    // segment merger
+    private BitcaskMerger merger = null;
+
+    private volatile boolean isClosed = true;
+
+    // default no-arg constructor
+    public BitcaskStore() {
+        ;
+    }
+
+    @Override
+    public void init(SimulatorConfiguration config) {
+
+        this.config = config;
+
+        String defaultHome = System.getProperty("user.home") + File.separator
+                + "kinetic";
+
+        String kineticHome = config.getProperty(
+                SimulatorConfiguration.KINETIC_HOME, defaultHome);
+
+        String persistFolder = kineticHome
+                + File.separator
+                + config.getProperty(SimulatorConfiguration.PERSIST_HOME,
+                        "bitcask");
+
+        this.folder = new File(persistFolder);
+
+        if (folder.exists() == false) {
+            boolean created = folder.mkdirs();
+            logger.info("create persist folder: " + persistFolder
+                    + ", created=" + created);
+        }
+
+        this.segmentSize = config.getBitcaskSegmentSize();
+
+        try {
+            this.open();
+        } catch (IOException e) {
+
+            logger.log(Level.SEVERE, e.getMessage(), e);
+
+            throw new RuntimeException(e);
+        }
+
+        this.merger = new BitcaskMerger(this);
+
+        long period = config.getBitcaskMergePeriod();
+
+        this.mergeTimer = new Timer("bitcask-merger", true);
+        this.mergeTimer.schedule(merger, period, period);
+
+        logger.info("bitcask store opened, folder=" + folder + ", segments="
+                + segments.size() + ", keys=" + keyDir.size());
+    }
+
+    /**
+     * Open the segments and rebuild the key directory.
+     */
+    private void open() throws IOException {
+
+        List<Long> ids = new ArrayList<Long>();
+
+        for (File file : folder.listFiles()) {
+
+            String name = file.getName();
+
+            if (name.endsWith(Segment.DATA_SUFFIX)) {
+                ids.add(Long.parseLong(name.substring(0, name.length()
+                        - Segment.DATA_SUFFIX.length())));
+            } else if (name.endsWith(Segment.HINT_SUFFIX) == false
+                    || new File(folder, name.replace(Segment.HINT_SUFFIX,
+                            Segment.DATA_SUFFIX)).exists() == false) {
+                // incomplete or orphan hint file
+                file.delete();
+            }
+        }
+
+        // replay oldest first, later records replace earlier ones
+        Collections.sort(ids);
+
+        for (Long id : ids) {
+
+            Segment segment = new Segment(folder, id);
+
+            segments.put(id, segment);
+
+            if (segment.hasHint()) {
+                this.loadHint(segment);
+            } else {
+                this.recover(segment);
+            }
+        }
+
+        long nextId = ids.isEmpty() ? 1 : ids.get(ids.size() - 1) + 1;
+
+        // a new segment is started each time the store is opened
+        this.active = new Segment(folder, nextId);
+        segments.put(nextId, active);
+
+        this.isClosed = false;
+    }
+
+    /**
+     * Rebuild the key directory entries of a segment from its hint file.
+     */
+    private void loadHint(final Segment segment) throws IOException {
+
+        segment.readHint(new Segment.HintVisitor() {
+            @Override
+            public void visit(byte[] key, long offset, int metaLength,
+                    int dataLength) {
+                updateKeyDir(segment, key, offset, metaLength, dataLength);
+            }
+        });
+    }
+
+    /**
+     * Rebuild the key directory entries of a segment by scanning its
+     * records. The segment is truncated at the first invalid record or
+     * incomplete batch.
+     */
+    private void recover(Segment segment) throws IOException {
+
+        long offset = 0;
+        Segment.Record record = null;
+
+        while ((record = segment.readRecord(offset, true)) != null) {
+
+            if (record.isBatch() == false) {
+                this.updateKeyDir(segment, record);
+                offset += record.getSize();
+                continue;
+            }
+
+            // a batch is applied only if all its records are valid
+            List<Segment.Record> batch = new ArrayList<Segment.Record>();
+
+            long next = offset + record.getSize();
+
+            for (int i = 0; i < record.getBatchSize(); i++) {
+
+                Segment.Record r = segment.readRecord(next, true);
+
+                if (r == null || r.isBatch()) {
+                    break;
+                }
+
+                batch.add(r);
+                next += r.getSize();
+            }
+
+            if (batch.size() != record.getBatchSize()) {
+                break;
+            }
+
+            for (Segment.Record r : batch) {
+                this.updateKeyDir(segment, r);
+            }
+
+            offset = next;
+        }
+
+        if (offset < segment.getSize()) {
+            segment.truncate(offset);
+        }
+    }
+
+    private void updateKeyDir(Segment segment, Segment.Record record) {
+        this.updateKeyDir(segment, record.getKey(), record.getOffset(),
+                record.getMetaLength(), record.getDataLength());
+    }
+
+    /**
+     * Point the key to the specified record, or remove the key if the record
+     * is a delete record. Called by the writer or on recovery.
+     */
+    private void updateKeyDir(Segment segment, byte[] key, long offset,
+            int metaLength, int dataLength) {
+
+        KeyDirEntry old = null;
+
+        if (metaLength == Segment.TOMBSTONE) {
+            old = keyDir.remove(key);
+        } else {
+            KeyDirEntry entry = new KeyDirEntry(segment, offset, key.length,
+                    metaLength, dataLength);
+
+            old = keyDir.put(key, entry);
+
+            segment.addLiveBytes(entry.getSize());
+        }
+
+        if (old != null) {
+            old.getSegment().addLiveBytes(-old.getSize());
+        }
+    }
+
+    @Override
+    public void put(ByteString key, ByteString oldVersion, KVValue value,
+            PersistOption pOption) throws KVStoreException {
+
+        byte[] keyArray = key.toByteArray();
+
+        value.setKeyOf(key);
+
+        synchronized (writeLock) {
+
+            this.checkOpen();
+
+            ByteString version = null;
+
+            KeyDirEntry entry = keyDir.get(keyArray);
+
+            if (entry != null) {
+                // version check reads the metadata only
+                version = this.read(entry, false).getVersion();
+            }
+
+            checkVersion(version, oldVersion);
+
+            this.write(keyArray, value, pOption);
+        }
+    }
+
+    @Override
+    public void putForced(ByteString key, KVValue value, PersistOption pOption)
+            throws KVStoreException {
+
+        byte[] keyArray = key.toByteArray();
+
+        value.setKeyOf(key);
+
+        synchronized (writeLock) {
+
+            this.checkOpen();
+
+            this.write(keyArray, value, pOption);
+        }
+    }
+
+    @Override
+    public void delete(ByteString key, ByteString oldVersion,
+            PersistOption pOption) throws KVStoreException {
+
+        byte[] keyArray = key.toByteArray();
+
+        synchronized (writeLock) {
+
+            this.checkOpen();
+
+            KeyDirEntry entry = keyDir.get(keyArray);
+
+            if (entry == null) {
+                throw new KVStoreNotFound();
+            }
+
+            KVValue obj = this.read(entry, false);
+
+            ByteString prevVersion = obj.hasVersion() ? obj.getVersion()
+                    : ByteString.EMPTY;
+
+            checkVersion(prevVersion, oldVersion);
+
+            this.write(keyArray, null, pOption);
+        }
+    }
+
+    @Override
+    public void deleteForced(ByteString key, PersistOption pOption)
+            throws KVStoreException {
+
+        byte[] keyArray = key.toByteArray();
+
+        synchronized (writeLock) {
+
+            this.checkOpen();
+
+            if (keyDir.containsKey(keyArray)) {
+                this.write(keyArray, null, pOption);
+            }
+        }
+    }
+
+    /**
+     * Append a record (a delete record if value is null) to the active
+     * segment and update the key directory. Called with the write lock held.
+     */
+    private void write(byte[] key, KVValue value, PersistOption pOption)
+            throws KVStoreException {
+
+        byte[] metadata = null;
+        ByteString data = null;
+
+        if (value != null) {
+            metadata = value.toMetadataByteArray();
+            data = value.getData();
+        }
+
+        try {
+
+            Segment segment = this.getActiveSegment();
+
+            long offset = segment.append(Segment.encode(key, metadata, data));
+
+            if (pOption != PersistOption.ASYNC) {
+                segment.force();
+            }
+
+            this.updateKeyDir(segment, key, offset,
+                    (metadata == null) ? Segment.TOMBSTONE : metadata.length,
+                    (data == null) ? 0 : data.size());
+
+        } catch (IOException e) {
+            logger.log(Level.WARNING, e.getMessage(), e);
+            throw new KVStoreException(e.getMessage());
+        }
+    }
+
+    /**
+     * Append the batch to the active segment with a single sync and update
+     * the key directory.
+     * 
+     * @param keys
+     *            keys of the batch entries
+     * @param values
+     *            values of the batch entries, null for a delete.
+     */
+    void commitBatch(List<byte[]> keys, List<KVValue> values)
+            throws KVStoreException {
+
+        int count = keys.size();
+
+        ByteBuffer[] records = new ByteBuffer[count + 1];
+        int[] metaLengths = new int[count];
+        int[] dataLengths = new int[count];
+
+        records[0] = Segment.encodeBatchHeader(count);
+
+        for (int i = 0; i < count; i++) {
+
+            KVValue value = values.get(i);
+
+            byte[] metadata = null;
+            ByteString data = null;
+
+            if (value != null) {
+                metadata = value.toMetadataByteArray();
+                data = value.getData();
+            }
+
+            metaLengths[i] = (metadata == null) ? Segment.TOMBSTONE
+                    : metadata.length;
+            dataLengths[i] = (data == null) ? 0 : data.size();
+
+            records[i + 1] = Segment.encode(keys.get(i), metadata, data);
+        }
+
+        synchronized (writeLock) {
+
+            this.checkOpen();
+
+            try {
+
+                Segment segment = this.getActiveSegment();
+
+                long offset = segment.append(records);
+
+                segment.force();
+
+                offset += Segment.HEADER_SIZE;
+
+                for (int i = 0; i < count; i++) {
+
+                    byte[] key = keys.get(i);
+
+                    this.updateKeyDir(segment, key, offset, metaLengths[i],
+                            dataLengths[i]);
+
+                    offset += Segment.recordSize(key.length, metaLengths[i],
+                            dataLengths[i]);
+                }
+
+            } catch (IOException e) {
+                logger.log(Level.WARNING, e.getMessage(), e);
+                throw new KVStoreException(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Get the active segment. The active segment is sealed and a new segment
+     * is started if the active segment is full. Called with the write lock
+     * held.
+     */
+    private Segment getActiveSegment() throws IOException {
+
+        if (active.getSize() >= segmentSize) {
+
+            // sealed segments are immutable and durable
+            active.force();
+
+            Segment segment = new Segment(folder, active.getId() + 1);
+            segments.put(segment.getId(), segment);
+
+            logger.fine("segment sealed, id=" + active.getId());
+
+            this.active = segment;
+        }
+
+        return this.active;
+    }
+
+    /**
+     * Read the entry at the specified location.
+     * 
+     * @param withData
+     *            false to read the metadata only.
+     * @return the entry, or null if the segment was merged and removed after
+     *         the location was obtained from the key directory.
+     */
+    private KVValue read(KeyDirEntry entry, boolean withData)
+            throws KVStoreException {
+
+        int metaOffset = Segment.HEADER_SIZE + entry.getKeyLength();
+
+        int length = withData ? entry.getSize() : metaOffset
+                + entry.getMetaLength();
+
+        byte[] bytes = null;
+
+        try {
+            // single positioned read
+            bytes = entry.getSegment().read(entry.getOffset(), length);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, e.getMessage(), e);
+            throw new KVStoreException(e.getMessage());
+        }
+
+        if (bytes == null) {
+            return null;
+        }
+
+        if (withData) {
+
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 4, length - 4);
+
+            if ((int) crc.getValue() != ByteBuffer.wrap(bytes).getInt(0)) {
+                throw new KVStoreException("corrupted record, " + entry);
+            }
+        }
+
+        KVValue value = new KVValue(Arrays.copyOfRange(bytes, metaOffset,
+                metaOffset + entry.getMetaLength()));
+
+        if (withData) {
+            value.setData(ByteString.copyFrom(bytes,
+                    metaOffset + entry.getMetaLength(), entry.getDataLength()));
+        }
+
+        return value;
+    }
+
+    /**
+     * Read the latest entry of the key.
+     * 
+     * @return the entry, or null if the key is not found.
+     */
+    private KVValue read(byte[] key, boolean withData)
+            throws KVStoreException {
+
+        while (true) {
+
+            KeyDirEntry entry = keyDir.get(key);
+
+            if (entry == null) {
+                return null;
+            }
+
+            KVValue value = this.read(entry, withData);
+
+            if (value != null) {
+                return value;
+            }
+
+            // the record was moved by a merge, read the new location
+            this.checkOpen();
+        }
+    }
+
+    @Override
+    public KVValue get(ByteString key) throws KVStoreException {
+
+        KVValue value = this.read(key.toByteArray(), true);
+
+        if (value == null) {
+            throw new KVStoreNotFound();
+        }
+
+        return value;
+    }
+
+    @Override
+    public KVValue getMetadata(ByteString key) throws KVStoreException {
+
+        KVValue value = this.read(key.toByteArray(), false);
+
+        if (value == null) {
+            throw new KVStoreNotFound();
+        }
+
+        return value;
+    }
+
+    @Override
+    public KVValue getPrevious(ByteString key) throws KVStoreException {
+
+        byte[] from = key.toByteArray();
+
+        KVValue value = null;
+
+        while (value == null) {
+
+            Map.Entry<byte[], KeyDirEntry> entry = keyDir.lowerEntry(from);
+
+            if (entry == null) {
+                throw new KVStoreNotFound();
+            }
+
+            value = this.read(entry.getValue(), true);
+
+            if (value == null) {
+                this.checkOpen();
+            }
+        }
+
+        return value;
+    }
+
+    @Override
+    public KVValue getNext(ByteString key) throws KVStoreException {
+
+        byte[] from = key.toByteArray();
+
+        KVValue value = null;
+
+        while (value == null) {
+
+            Map.Entry<byte[], KeyDirEntry> entry = keyDir.higherEntry(from);
+
+            if (entry == null) {
+                throw new KVStoreNotFound();
+            }
+
+            value = this.read(entry.getValue(), true);
+
+            if (value == null) {
+                this.checkOpen();
+            }
+        }
+
+        return value;
+    }
+
+    @Override
+    public SortedMap<?, ?> getRange(ByteString startKey,
+            boolean startKeyInclusive, ByteString endKey,
+            boolean endKeyInclusive, int n) throws KVStoreException {
+
+        SortedMap<KVKey, KVValue> kvmap = new TreeMap<KVKey, KVValue>();
+
+        for (byte[] k : subMap(startKey, startKeyInclusive, endKey,
+                endKeyInclusive).keySet()) {
+
+            if (n-- <= 0) {
+                break;
+            }
+
+            KVValue value = this.read(k, true);
+
+            // skip keys deleted while scanning
+            if (value != null) {
+                kvmap.put(new KVKey(k), value);
+            }
+        }
+
+        return kvmap;
+    }
+
+    @Override
+    public List<?> getKeyRange(ByteString startKey, boolean startKeyInclusive,
+            ByteString endKey, boolean endKeyInclusive, int n)
+            throws KVStoreException {
+
+        List<KVKey> kvKeyOfList = new ArrayList<KVKey>();
+
+        // served from the key directory, no record is read
+        for (byte[] k : subMap(startKey, startKeyInclusive, endKey,
+                endKeyInclusive).keySet()) {
+            if (n-- > 0) {
+                kvKeyOfList.add(new KVKey(k));
+            } else {
+                break;
+            }
+        }
+
+        return kvKeyOfList;
+    }
+
+    @Override
+    public List<?> getRangeReversed(ByteString startKey,
+            boolean startKeyInclusive, ByteString endKey,
+            boolean endKeyInclusive, int n) throws KVStoreException {
+
+        List<KVKey> kvKeyOfList = new ArrayList<KVKey>();
+
+        for (byte[] k : subMap(startKey, startKeyInclusive, endKey,
+                endKeyInclusive).descendingKeySet()) {
+            if (n-- > 0) {
+                kvKeyOfList.add(new KVKey(k));
+            } else {
+                break;
+            }
+        }
+
+        return kvKeyOfList;
+    }
+
+    /**
+     * Get a (weakly consistent) view of the key directory for the specified
+     * key range. An empty end key means there is no upper bound.
+     */
+    private ConcurrentNavigableMap<byte[], KeyDirEntry> subMap(
+            ByteString startKey, boolean startKeyInclusive, ByteString endKey,
+            boolean endKeyInclusive) {
+
+        byte[] start = startKey.toByteArray();
+
+        if (endKey.size() == 0) {
+            return keyDir.tailMap(start, startKeyInclusive);
+        }
+
+        byte[] end = endKey.toByteArray();
+
+        // empty range if the start key comes after the end key
+        if (keyDir.comparator().compare(start, end) > 0) {
+            return keyDir.subMap(start, true, start, false);
+        }
+
+        return keyDir.subMap(start, startKeyInclusive, end, endKeyInclusive);
+    }
+
+    /**
+     * Get the sealed segments (all but the active segment), oldest first.
+     */
+    List<Segment> getSealedSegments() {
+
+        synchronized (writeLock) {
+
+            List<Segment> sealed = new ArrayList<Segment>(segments.values());
+
+            sealed.remove(active);
+
+            return sealed;
+        }
+    }
+
+    /**
+     * Copy a record of a sealed segment to the active segment if the record
+     * is still the latest record of its key. A delete record is copied if
+     * the key is still deleted and an older segment may hold a record of the
+     * key.
+     * 
+     * @param segment
+     *            the segment being merged
+     * @param record
+     *            the record (header and key) to be copied.
+     * @return true if the record was copied.
+     */
+    boolean relocate(Segment segment, Segment.Record record)
+            throws IOException {
+
+        byte[] key = record.getKey();
+
+        synchronized (writeLock) {
+
+            if (this.isClosed) {
+                throw new IOException("store closed");
+            }
+
+            KeyDirEntry entry = keyDir.get(key);
+
+            if (record.isTombstone()) {
+
+                if (entry != null
+                        || segments.firstKey().longValue() == segment.getId()) {
+                    // overwritten, or no older record to hide
+                    return false;
+                }
+
+            } else if (entry == null || entry.getSegment() != segment
+                    || entry.getOffset() != record.getOffset()) {
+                // overwritten or deleted
+                return false;
+            }
+
+            // records are position independent, copied as is
+            byte[] bytes = segment.read(record.getOffset(), record.getSize());
+
+            Segment target = this.getActiveSegment();
+
+            long offset = target.append(ByteBuffer.wrap(bytes));
+
+            this.updateKeyDir(target, key, offset, record.getMetaLength(),
+                    record.getDataLength());
+
+            return true;
+        }
+    }
+
+    /**
+     * Remove a merged segment. The copied records are synced before the
+     * segment file is deleted.
+     */
+    void removeSegment(Segment segment) throws IOException {
+
+        synchronized (writeLock) {
+
+            if (this.isClosed) {
+                return;
+            }
+
+            active.force();
+
+            segments.remove(segment.getId());
+
+            segment.delete();
+        }
+    }
+
+    @Override
+    public void close() {
+
+        synchronized (writeLock) {
+
+            if (this.isClosed) {
+                return;
+            }
+
+            this.isClosed = true;
+
+            if (this.mergeTimer != null) {
+                this.mergeTimer.cancel();
+                this.mergeTimer = null;
+            }
+
+            for (Segment segment : segments.values()) {
+
+                try {
+                    segment.force();
+
+                    // the active segment is not written after close
+                    if (segment.hasHint() == false) {
+                        segment.writeHint();
+                    }
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, e.getMessage(), e);
+                }
+
+                segment.close();
+            }
+
+            segments.clear();
+            keyDir.clear();
+        }
+
+        logger.info("bitcask store closed ...");
+    }
+
+    @Override
+    public void reset() throws KVStoreException {
+
+        this.close();
+
+        // delete segment and hint files
+        File[] files = folder.listFiles();
+
+        if (files != null) {
+            for (File file : files) {
+                if (file.delete() == false) {
+                    throw new KVStoreException("unable to delete " + file);
+                }
+            }
+        }
+
+        logger.info("bitcask store removed, path=" + folder);
+
+        // re open
+        this.init(config);
+    }
+
+    @Override
+    public BatchOperation<ByteString, KVValue> createBatchOperation()
+            throws KVStoreException {
+        return new BitcaskBatchOperation(this);
+    }
+
+    @Override
+    public void flush() throws KVStoreException {
+
+        synchronized (writeLock) {
+
+            this.checkOpen();
+
+            try {
+                active.force();
+            } catch (IOException e) {
+                throw new KVStoreException(e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void compactRange(ByteString startKey, ByteString endKey)
+            throws KVStoreException {
+
+        // segments hold all key ranges, merge all the eligible segments
+        try {
+            merger.mergeAll();
+
+            logger.info("Media optimization finished");
+        } catch (IOException e) {
+            throw new KVStoreException(e.getMessage());
+        }
+    }
+
+    private void checkOpen() throws KVStoreException {
+        if (this.isClosed) {
+            throw new KVStoreException("bitcask store is closed");
+        }
+    }
+
+    private static void checkVersion(ByteString version, ByteString oldVersion)
+            throws KVStoreVersionMismatch {
+
+        if (mySize(version) != mySize(oldVersion)) {
+            throw new KVStoreVersionMismatch("Length mismatch");
+        }
+
+        if (mySize(version) == 0) {
+            return;
+        }
+
+        if (!version.equals(oldVersion)) {
+            throw new KVStoreVersionMismatch("Compare mismatch");
+        }
+    }
+
+    private static int mySize(ByteString s) {
+        if (s == null)
+            return 0;
+        return s.size();
+    }
+}
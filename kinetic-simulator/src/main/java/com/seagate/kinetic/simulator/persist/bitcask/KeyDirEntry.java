@@ -0,0 +1,83 @@
+/**
+ * 
+ * Copyright (C) 2014 Seagate Technology.
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.seagate.kinetic.simulator.persist.bitcask;
+
+/**
+ * Location of the latest record of a key (key directory entry).
+ * <p>
+ * Entries are immutable. An update of a key replaces its entry in the key
+ * directory.
+ * 
+ * @see BitcaskStore
+ */
+class KeyDirEntry {
+
+    private final Segment segment;
+
+    private final long offset;
+
+    private final int keyLength;
+
+    private final int metaLength;
+
+    private final int dataLength;
+
+    KeyDirEntry(Segment segment, long offset, int keyLength, int metaLength,
+            int dataLength) {
+        this.segment = segment;
+        this.offset = offset;
+        this.keyLength = keyLength;
+        this.metaLength = metaLength;
+        this.dataLength = dataLength;
+    }
+
+    Segment getSegment() {
+        return segment;
+    }
+
+    long getOffset() {
+        return offset;
+    }
+
+    int getKeyLength() {
+        return keyLength;
+    }
+
+    int getMetaLength() {
+        return metaLength;
+    }
+
+    int getDataLength() {
+        return dataLength;
+    }
+
+    /**
+     * Get the size of the record in the segment.
+     */
+    int getSize() {
+        return Segment.recordSize(keyLength, metaLength, dataLength);
+    }
+
+    @Override
+    public String toString() {
+        return "segment=" + segment.getId() + ", offset=" + offset
+                + ", size=" + getSize();
+    }
+}
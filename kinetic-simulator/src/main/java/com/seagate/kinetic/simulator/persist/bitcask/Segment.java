@@ -0,0 +1,534 @@
+/**
+ * 
+ * Copyright (C) 2014 Seagate Technology.
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.seagate.kinetic.simulator.persist.bitcask;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import com.google.protobuf.ByteString;
+
+/**
+ * A bitcask data segment file.
+ * <p>
+ * Each record has the following format:
+ * <p>
+ * <code>[crc32 (4)][key length (4)][metadata length (4)][data length (4)][key][metadata][data]</code>
+ * <p>
+ * The crc covers all the bytes after the crc field. The metadata is the
+ * serialized entry without the value, and the data is the value. A metadata
+ * length of {@link #TOMBSTONE} marks a deleted key. A record with a metadata
+ * length of {@link #BATCH} is a batch header, and its data length is the
+ * number of records in the batch that follow the header. A batch is only
+ * applied on recovery if all its records are valid.
+ * <p>
+ * A hint file is written next to a sealed segment. The hint file holds the
+ * key and the location of each record, so that the key directory can be
+ * rebuilt on restart without reading the values.
+ * 
+ * @see BitcaskStore
+ */
+class Segment {
+
+    private final static Logger logger = Logger.getLogger(Segment.class
+            .getName());
+
+    // record header size
+    static final int HEADER_SIZE = 4 + 4 + 4 + 4;
+
+    // metadata length of a delete record
+    static final int TOMBSTONE = -1;
+
+    // metadata length of a batch header record
+    static final int BATCH = -2;
+
+    // data file name suffix
+    static final String DATA_SUFFIX = ".data";
+
+    // hint file name suffix
+    static final String HINT_SUFFIX = ".hint";
+
+    private final long id;
+
+    private final File file;
+
+    private final File hintFile;
+
+    private final RandomAccessFile raf;
+
+    private final FileChannel channel;
+
+    // append position, only updated by the writer
+    private volatile long size = 0;
+
+    // bytes of the records referenced by the key directory
+    private final AtomicLong liveBytes = new AtomicLong();
+
+    /**
+     * A record read from a segment.
+     */
+    static class Record {
+
+        private final long offset;
+
+        private final byte[] bytes;
+
+        private final int keyLength;
+
+        private final int metaLength;
+
+        private final int dataLength;
+
+        Record(long offset, byte[] bytes, int keyLength, int metaLength,
+                int dataLength) {
+            this.offset = offset;
+            this.bytes = bytes;
+            this.keyLength = keyLength;
+            this.metaLength = metaLength;
+            this.dataLength = dataLength;
+        }
+
+        long getOffset() {
+            return offset;
+        }
+
+        boolean isTombstone() {
+            return metaLength == TOMBSTONE;
+        }
+
+        boolean isBatch() {
+            return metaLength == BATCH;
+        }
+
+        int getKeyLength() {
+            return keyLength;
+        }
+
+        int getMetaLength() {
+            return metaLength;
+        }
+
+        /**
+         * Get the number of records in the batch of a batch header.
+         */
+        int getBatchSize() {
+            return dataLength;
+        }
+
+        int getDataLength() {
+            return dataLength;
+        }
+
+        /**
+         * Get the record size in the segment.
+         */
+        int getSize() {
+            return recordSize(keyLength, metaLength, dataLength);
+        }
+
+        byte[] getKey() {
+            return Arrays.copyOfRange(bytes, HEADER_SIZE, HEADER_SIZE
+                    + keyLength);
+        }
+
+        byte[] getMetadata() {
+            int from = HEADER_SIZE + keyLength;
+            return Arrays.copyOfRange(bytes, from, from + metaLength);
+        }
+
+        ByteString getData() {
+            return ByteString.copyFrom(bytes,
+                    HEADER_SIZE + keyLength + metaLength, dataLength);
+        }
+    }
+
+    /**
+     * Open (or create) the segment with the specified id in the folder.
+     */
+    Segment(File folder, long id) throws IOException {
+        this.id = id;
+        this.file = new File(folder, String.format("%016d", id) + DATA_SUFFIX);
+        this.hintFile = new File(folder, String.format("%016d", id)
+                + HINT_SUFFIX);
+        this.raf = new RandomAccessFile(file, "rw");
+        this.channel = raf.getChannel();
+        this.size = channel.size();
+    }
+
+    long getId() {
+        return id;
+    }
+
+    long getSize() {
+        return size;
+    }
+
+    long getLiveBytes() {
+        return liveBytes.get();
+    }
+
+    void addLiveBytes(long delta) {
+        liveBytes.addAndGet(delta);
+    }
+
+    /**
+     * Get the size of a record.
+     */
+    static int recordSize(int keyLength, int metaLength, int dataLength) {
+
+        if (metaLength == BATCH) {
+            return HEADER_SIZE;
+        }
+
+        return HEADER_SIZE + keyLength + Math.max(metaLength, 0) + dataLength;
+    }
+
+    /**
+     * Encode a record.
+     * 
+     * @param key
+     *            entry key
+     * @param metadata
+     *            entry metadata, null for a delete record.
+     * @param data
+     *            entry value, null for a delete record.
+     * @return the encoded record.
+     */
+    static ByteBuffer encode(byte[] key, byte[] metadata, ByteString data) {
+
+        int metaLength = (metadata == null) ? TOMBSTONE : metadata.length;
+        int dataLength = (data == null) ? 0 : data.size();
+
+        byte[] bytes = new byte[recordSize(key.length, metaLength, dataLength)];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+
+        buffer.position(4);
+        buffer.putInt(key.length);
+        buffer.putInt(metaLength);
+        buffer.putInt(dataLength);
+        buffer.put(key);
+
+        if (metadata != null) {
+            buffer.put(metadata);
+        }
+
+        if (data != null) {
+            data.copyTo(bytes, buffer.position());
+        }
+
+        return seal(bytes);
+    }
+
+    /**
+     * Encode a batch header for the specified number of records.
+     */
+    static ByteBuffer encodeBatchHeader(int count) {
+
+        byte[] bytes = new byte[HEADER_SIZE];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+
+        buffer.position(4);
+        buffer.putInt(0);
+        buffer.putInt(BATCH);
+        buffer.putInt(count);
+
+        return seal(bytes);
+    }
+
+    private static ByteBuffer seal(byte[] bytes) {
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 4, bytes.length - 4);
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.putInt(0, (int) crc.getValue());
+
+        return buffer;
+    }
+
+    /**
+     * Append the records at the end of the segment. Called by the single
+     * writer only.
+     * 
+     * @return offset of the first record.
+     */
+    long append(ByteBuffer... records) throws IOException {
+
+        long offset = this.size;
+
+        long length = 0;
+        for (ByteBuffer record : records) {
+            length += record.remaining();
+        }
+
+        // gathering write, the channel is only positioned by the writer
+        channel.position(offset);
+
+        long written = 0;
+        while (written < length) {
+            written += channel.write(records);
+        }
+
+        this.size = offset + length;
+
+        return offset;
+    }
+
+    /**
+     * Force appended records to the storage device.
+     */
+    void force() throws IOException {
+        channel.force(false);
+    }
+
+    /**
+     * Read the bytes at the specified location with a single positioned read.
+     * 
+     * @return the bytes, or null if the segment was closed.
+     */
+    byte[] read(long offset, int length) throws IOException {
+
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+
+        try {
+            if (readFully(buffer, offset) == false) {
+                throw new IOException("unexpected end of segment, id=" + id
+                        + ", offset=" + offset);
+            }
+        } catch (ClosedChannelException e) {
+            // segment was merged and removed while reading
+            return null;
+        }
+
+        return buffer.array();
+    }
+
+    /**
+     * Read and verify the record at the specified offset.
+     * 
+     * @param withData
+     *            if false, only the header and the key are read and the crc
+     *            is not verified.
+     * @return the record, or null if there is no valid record at the offset
+     *         (end of segment or torn write).
+     */
+    Record readRecord(long offset, boolean withData) throws IOException {
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+
+        if (readFully(header, offset) == false) {
+            return null;
+        }
+
+        int keyLength = header.getInt(4);
+        int metaLength = header.getInt(8);
+        int dataLength = header.getInt(12);
+
+        if (keyLength < 0 || metaLength < BATCH || dataLength < 0) {
+            return null;
+        }
+
+        int length = recordSize(keyLength, metaLength, dataLength);
+
+        if (offset + length > this.size) {
+            return null;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(withData ? length
+                : HEADER_SIZE + keyLength);
+
+        if (readFully(buffer, offset) == false) {
+            return null;
+        }
+
+        byte[] bytes = buffer.array();
+
+        if (withData) {
+
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 4, length - 4);
+
+            if ((int) crc.getValue() != header.getInt(0)) {
+                return null;
+            }
+        }
+
+        return new Record(offset, bytes, keyLength, metaLength, dataLength);
+    }
+
+    private boolean readFully(ByteBuffer buffer, long offset)
+            throws IOException {
+
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, offset + buffer.position());
+
+            if (n < 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Truncate the segment at the specified size, used to drop a torn write
+     * at the end of the segment on recovery.
+     */
+    void truncate(long newSize) throws IOException {
+
+        logger.warning("truncating segment, id=" + id + ", size=" + size
+                + ", new size=" + newSize);
+
+        channel.truncate(newSize);
+        this.size = newSize;
+    }
+
+    boolean hasHint() {
+        return hintFile.exists();
+    }
+
+    /**
+     * Write the hint file of this segment. The hint file is written to a
+     * temporary file first so that an existing hint file is always complete.
+     */
+    void writeHint() throws IOException {
+
+        File tmp = new File(hintFile.getPath() + ".tmp");
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(tmp)));
+
+        int count = 0;
+
+        try {
+
+            long offset = 0;
+            Record record = null;
+
+            while ((record = readRecord(offset, false)) != null) {
+
+                if (record.isBatch() == false) {
+                    out.writeInt(record.getKeyLength());
+                    out.writeInt(record.getMetaLength());
+                    out.writeInt(record.getDataLength());
+                    out.writeLong(offset);
+                    out.write(record.getKey());
+
+                    count++;
+                }
+
+                offset += record.getSize();
+            }
+
+            out.flush();
+        } finally {
+            out.close();
+        }
+
+        if (tmp.renameTo(hintFile) == false) {
+            throw new IOException("unable to rename hint file, " + tmp);
+        }
+
+        logger.fine("hint file written, segment=" + id + ", records=" + count);
+    }
+
+    /**
+     * Read the hint file of this segment.
+     * 
+     * @param visitor
+     *            called for each record in the hint file, in segment order.
+     */
+    void readHint(HintVisitor visitor) throws IOException {
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(hintFile)));
+
+        try {
+
+            while (true) {
+
+                int keyLength = 0;
+
+                try {
+                    keyLength = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+
+                int metaLength = in.readInt();
+                int dataLength = in.readInt();
+                long offset = in.readLong();
+
+                byte[] key = new byte[keyLength];
+                in.readFully(key);
+
+                visitor.visit(key, offset, metaLength, dataLength);
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Hint file record visitor.
+     */
+    interface HintVisitor {
+        void visit(byte[] key, long offset, int metaLength, int dataLength);
+    }
+
+    void close() {
+        try {
+            this.raf.close();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Close the segment and delete its data and hint files.
+     */
+    void delete() {
+
+        this.close();
+
+        if (hintFile.exists() && hintFile.delete() == false) {
+            logger.warning("unable to delete hint file, " + hintFile);
+        }
+
+        if (file.delete() == false) {
+            logger.warning("unable to delete segment file, " + file);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * 
+ * Copyright (C) 2014 Seagate Technology.
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.seagate.kinetic.simulator.persist.cache;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.protobuf.ByteString;
+import com.seagate.kinetic.simulator.persist.BatchOperation;
+import com.seagate.kinetic.simulator.persist.KVValue;
+
+/**
+ * Batch of a caching store. The cached entries of the batch keys are
+ * invalidated when the batch is committed.
+ *
+ * @see CachingStore
+ */
+class CachingBatchOperation implements BatchOperation<ByteString, KVValue> {
+
+    private final BatchOperation<ByteString, KVValue> batch;
+
+    private final SegmentedLruCache cache;
+
+    // keys written by the batch
+    private final List<ByteString> keys = new ArrayList<ByteString>();
+
+    CachingBatchOperation(BatchOperation<ByteString, KVValue> batch,
+            SegmentedLruCache cache) {
+        this.batch = batch;
+        this.cache = cache;
+    }
+
+    @Override
+    public synchronized void put(ByteString key, KVValue value) {
+        batch.put(key, value);
+        keys.add(key);
+    }
+
+    @Override
+    public synchronized void delete(ByteString key) {
+        batch.delete(key);
+        keys.add(key);
+    }
+
+    @Override
+    public synchronized void commit() {
+        try {
+            batch.commit();
+        } finally {
+            for (ByteString key : keys) {
+                cache.invalidate(key);
+            }
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return batch.isClosed();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        keys.clear();
+        batch.close();
+    }
+}
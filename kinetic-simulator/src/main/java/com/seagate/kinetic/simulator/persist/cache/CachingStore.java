@@ -0,0 +1,192 @@
+/**
+ * 
+ * Copyright (C) 2014 Seagate Technology.
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.seagate.kinetic.simulator.persist.cache;
+
+import java.util.Map;
+import java.util.logging.Logger;
+
+import kinetic.simulator.SimulatorConfiguration;
+
+import com.google.protobuf.ByteString;
+import com.seagate.kinetic.simulator.internal.KVStoreException;
+import com.seagate.kinetic.simulator.persist.BatchOperation;
+import com.seagate.kinetic.simulator.persist.ForwardingStore;
+import com.seagate.kinetic.simulator.persist.KVValue;
+import com.seagate.kinetic.simulator.persist.PersistOption;
+import com.seagate.kinetic.simulator.persist.Store;
+
+/**
+ * Read cache in front of a store.
+ * <p>
+ * Entries returned by GET are kept in a byte budgeted segmented LRU cache.
+ * GET and GET metadata requests of cached entries are served without
+ * reading the store. Cached entries are invalidated after each put, delete
+ * and batch commit of their key, before the write returns.
+ * <p>
+ * Cached entries are shared by all the callers and must not be modified.
+ * <p>
+ * The cache is enabled if the store cache size of the simulator
+ * configuration is greater than 0. Hit, miss and eviction counters are
+ * reported in the store statistics.
+ *
+ * @see SegmentedLruCache
+ * @see SimulatorConfiguration#setStoreCacheSize(long)
+ */
+public class CachingStore extends ForwardingStore {
+
+    private final static Logger logger = Logger.getLogger(CachingStore.class
+            .getName());
+
+    private final SegmentedLruCache cache;
+
+    /**
+     * Constructor.
+     *
+     * @param store
+     *            the cached store, already initialized.
+     * @param capacity
+     *            cache budget in bytes.
+     */
+    public CachingStore(Store<ByteString, ByteString, KVValue> store,
+            long capacity) {
+
+        super(store);
+
+        this.cache = new SegmentedLruCache(capacity);
+
+        logger.info("store cache enabled, capacity=" + capacity);
+    }
+
+    @Override
+    public void init(SimulatorConfiguration config) {
+        cache.clear();
+        super.init(config);
+    }
+
+    @Override
+    public void put(ByteString key, ByteString oldVersion, KVValue value,
+            PersistOption option) throws KVStoreException {
+        try {
+            super.put(key, oldVersion, value, option);
+        } finally {
+            cache.invalidate(key);
+        }
+    }
+
+    @Override
+    public void putForced(ByteString key, KVValue value, PersistOption option)
+            throws KVStoreException {
+        try {
+            super.putForced(key, value, option);
+        } finally {
+            cache.invalidate(key);
+        }
+    }
+
+    @Override
+    public void delete(ByteString key, ByteString oldVersion,
+            PersistOption option) throws KVStoreException {
+        try {
+            super.delete(key, oldVersion, option);
+        } finally {
+            cache.invalidate(key);
+        }
+    }
+
+    @Override
+    public void deleteForced(ByteString key, PersistOption option)
+            throws KVStoreException {
+        try {
+            super.deleteForced(key, option);
+        } finally {
+            cache.invalidate(key);
+        }
+    }
+
+    @Override
+    public KVValue get(ByteString key) throws KVStoreException {
+
+        KVValue value = cache.get(key);
+
+        if (value != null) {
+            return value;
+        }
+
+        // obtained before the store is read
+        long stamp = cache.getStamp(key);
+
+        value = super.get(key);
+
+        cache.put(key, value, stamp);
+
+        return value;
+    }
+
+    @Override
+    public KVValue getMetadata(ByteString key) throws KVStoreException {
+
+        KVValue value = cache.get(key);
+
+        if (value != null) {
+            // the cached entry includes the metadata
+            return value;
+        }
+
+        // metadata only entries are not cached
+        return super.getMetadata(key);
+    }
+
+    @Override
+    public void close() {
+        try {
+            super.close();
+        } finally {
+            cache.clear();
+        }
+    }
+
+    @Override
+    public void reset() throws KVStoreException {
+        try {
+            super.reset();
+        } finally {
+            cache.clear();
+        }
+    }
+
+    @Override
+    public BatchOperation<ByteString, KVValue> createBatchOperation()
+            throws KVStoreException {
+        return new CachingBatchOperation(super.createBatchOperation(), cache);
+    }
+
+    @Override
+    public void getStatistics(Map<String, Object> statistics) {
+
+        super.getStatistics(statistics);
+
+        statistics.put("cache.capacity", cache.getCapacity());
+        statistics.put("cache.size", cache.getSize());
+        statistics.put("cache.entries", cache.getCount());
+        statistics.put("cache.hits", cache.getHits());
+        statistics.put("cache.misses", cache.getMisses());
+        statistics.put("cache.evictions", cache.getEvictions());
+    }
+}
@@ -0,0 +1,370 @@
+/**
+ * 
+ * Copyright (C) 2014 Seagate Technology.
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.seagate.kinetic.simulator.persist.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.protobuf.ByteString;
+import com.seagate.kinetic.simulator.persist.KVValue;
+
+/**
+ * Byte budgeted segmented LRU cache of store entries.
+ * <p>
+ * An entry is first cached in the probation segment and is promoted to the
+ * protected segment when it is hit again. The protected segment holds up to
+ * 80% of the budget. Its least recently used entries are demoted to the
+ * probation segment, and entries are evicted from the probation segment
+ * first. A scan of entries read once therefore does not evict the entries
+ * that are read repeatedly.
+ * <p>
+ * The cache is divided in independently locked shards by key hash.
+ * <p>
+ * Each shard has a stamp that is increased on each invalidation. An entry
+ * read from the store after a cache miss is only cached if no key of its
+ * shard was invalidated since the miss, so that an entry replaced in the
+ * store while it was read is never cached.
+ *
+ * @see CachingStore
+ */
+class SegmentedLruCache {
+
+    // number of shards, must be a power of 2
+    private static final int SHARDS = 16;
+
+    // protected segment share of the budget
+    private static final double PROTECTED_RATIO = 0.8;
+
+    // estimated per entry overhead in bytes
+    private static final int ENTRY_OVERHEAD = 128;
+
+    private final Shard[] shards = new Shard[SHARDS];
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    private final long capacity;
+
+    /**
+     * A cache shard.
+     */
+    private class Shard {
+
+        private final long capacity;
+
+        private final long protectedCapacity;
+
+        // insertion order, least recently inserted first
+        private final LinkedHashMap<ByteString, KVValue> probation = new LinkedHashMap<ByteString, KVValue>();
+
+        // access order, least recently used first
+        private final LinkedHashMap<ByteString, KVValue> protectedSegment = new LinkedHashMap<ByteString, KVValue>(
+                16, 0.75f, true);
+
+        private long probationBytes = 0;
+
+        private long protectedBytes = 0;
+
+        // invalidation stamp
+        private long stamp = 0;
+
+        Shard(long capacity) {
+            this.capacity = capacity;
+            this.protectedCapacity = (long) (capacity * PROTECTED_RATIO);
+        }
+
+        synchronized KVValue get(ByteString key) {
+
+            KVValue value = protectedSegment.get(key);
+
+            if (value != null) {
+                return value;
+            }
+
+            value = probation.remove(key);
+
+            if (value == null) {
+                return null;
+            }
+
+            // hit again, promote
+            long size = sizeOf(key, value);
+
+            probationBytes -= size;
+
+            protectedSegment.put(key, value);
+            protectedBytes += size;
+
+            // demote the least recently used protected entries
+            Iterator<Map.Entry<ByteString, KVValue>> it = protectedSegment
+                    .entrySet().iterator();
+
+            while (protectedBytes > protectedCapacity && it.hasNext()) {
+
+                Map.Entry<ByteString, KVValue> e = it.next();
+
+                if (e.getKey().equals(key)) {
+                    break;
+                }
+
+                long demoted = sizeOf(e.getKey(), e.getValue());
+
+                it.remove();
+                protectedBytes -= demoted;
+
+                probation.put(e.getKey(), e.getValue());
+                probationBytes += demoted;
+            }
+
+            return value;
+        }
+
+        synchronized long getStamp() {
+            return this.stamp;
+        }
+
+        synchronized void put(ByteString key, KVValue value, long stamp) {
+
+            if (stamp != this.stamp) {
+                // invalidated while the entry was read
+                return;
+            }
+
+            long size = sizeOf(key, value);
+
+            if (size > capacity || protectedSegment.containsKey(key)
+                    || probation.containsKey(key)) {
+                return;
+            }
+
+            probation.put(key, value);
+            probationBytes += size;
+
+            this.evict();
+        }
+
+        /**
+         * Evict entries until the shard is within its budget, probation
+         * entries first.
+         */
+        private void evict() {
+
+            Iterator<Map.Entry<ByteString, KVValue>> it = probation
+                    .entrySet().iterator();
+
+            while (probationBytes + protectedBytes > capacity && it.hasNext()) {
+
+                Map.Entry<ByteString, KVValue> e = it.next();
+
+                it.remove();
+                probationBytes -= sizeOf(e.getKey(), e.getValue());
+
+                evictions.incrementAndGet();
+            }
+
+            it = protectedSegment.entrySet().iterator();
+
+            while (probationBytes + protectedBytes > capacity && it.hasNext()) {
+
+                Map.Entry<ByteString, KVValue> e = it.next();
+
+                it.remove();
+                protectedBytes -= sizeOf(e.getKey(), e.getValue());
+
+                evictions.incrementAndGet();
+            }
+        }
+
+        synchronized void invalidate(ByteString key) {
+
+            this.stamp++;
+
+            KVValue value = probation.remove(key);
+
+            if (value != null) {
+                probationBytes -= sizeOf(key, value);
+            }
+
+            value = protectedSegment.remove(key);
+
+            if (value != null) {
+                protectedBytes -= sizeOf(key, value);
+            }
+        }
+
+        synchronized void clear() {
+            this.stamp++;
+            probation.clear();
+            protectedSegment.clear();
+            probationBytes = 0;
+            protectedBytes = 0;
+        }
+
+        synchronized long getSize() {
+            return probationBytes + protectedBytes;
+        }
+
+        synchronized int getCount() {
+            return probation.size() + protectedSegment.size();
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param capacity
+     *            cache budget in bytes.
+     */
+    SegmentedLruCache(long capacity) {
+
+        this.capacity = capacity;
+
+        for (int i = 0; i < SHARDS; i++) {
+            shards[i] = new Shard(capacity / SHARDS);
+        }
+    }
+
+    private Shard shardOf(ByteString key) {
+
+        int h = key.hashCode();
+
+        // spread the hash bits
+        h ^= (h >>> 16);
+
+        return shards[h & (SHARDS - 1)];
+    }
+
+    /**
+     * Estimate the memory used by a cached entry.
+     */
+    private static long sizeOf(ByteString key, KVValue value) {
+
+        long size = ENTRY_OVERHEAD + key.size();
+
+        if (value.getData() != null) {
+            size += value.getData().size();
+        }
+
+        if (value.hasVersion()) {
+            size += value.getVersion().size();
+        }
+
+        if (value.hasTag()) {
+            size += value.getTag().size();
+        }
+
+        return size;
+    }
+
+    /**
+     * Get the cached entry of the key.
+     *
+     * @return the cached entry, or null if not cached.
+     */
+    KVValue get(ByteString key) {
+
+        KVValue value = shardOf(key).get(key);
+
+        if (value != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+
+        return value;
+    }
+
+    /**
+     * Get the invalidation stamp of the key shard. Called after a miss,
+     * before the entry is read from the store.
+     */
+    long getStamp(ByteString key) {
+        return shardOf(key).getStamp();
+    }
+
+    /**
+     * Cache an entry read from the store.
+     *
+     * @param stamp
+     *            the stamp obtained before the entry was read.
+     */
+    void put(ByteString key, KVValue value, long stamp) {
+        shardOf(key).put(key, value, stamp);
+    }
+
+    /**
+     * Remove the cached entry of the key.
+     */
+    void invalidate(ByteString key) {
+        shardOf(key).invalidate(key);
+    }
+
+    /**
+     * Remove all the cached entries.
+     */
+    void clear() {
+        for (Shard shard : shards) {
+            shard.clear();
+        }
+    }
+
+    long getCapacity() {
+        return this.capacity;
+    }
+
+    long getSize() {
+
+        long size = 0;
+
+        for (Shard shard : shards) {
+            size += shard.getSize();
+        }
+
+        return size;
+    }
+
+    int getCount() {
+
+        int count = 0;
+
+        for (Shard shard : shards) {
+            count += shard.getCount();
+        }
+
+        return count;
+    }
+
+    long getHits() {
+        return hits.get();
+    }
+
+    long getMisses() {
+        return misses.get();
+    }
+
+    long getEvictions() {
+        return evictions.get();
+    }
+}
@@ -0,0 +1,177 @@
+/**
+ * 
+ * Copyright (C) 2014 Seagate Technology.
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.seagate.kinetic.simulator.persist.filter;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.ZeroCopyByteString;
+
+/**
+ * Concurrent Bloom filter of store keys.
+ * <p>
+ * The filter is sized for an expected number of keys and a target false
+ * positive rate. Keys can be added concurrently without locking. Keys cannot
+ * be removed, the filter is rebuilt by the store instead.
+ *
+ * @see BloomFilterStore
+ */
+class BloomFilter {
+
+    private final AtomicLongArray bits;
+
+    // number of bits
+    private final long size;
+
+    // number of hash functions
+    private final int hashCount;
+
+    private final long expectedKeys;
+
+    // number of keys added (including duplicates)
+    private final AtomicLong added = new AtomicLong();
+
+    /**
+     * Constructor.
+     *
+     * @param expectedKeys
+     *            expected number of keys
+     * @param falsePositiveRate
+     *            target false positive rate at the expected number of keys.
+     */
+    BloomFilter(long expectedKeys, double falsePositiveRate) {
+
+        this.expectedKeys = Math.max(expectedKeys, 1);
+
+        // m = -n ln(p) / (ln 2)^2
+        long m = (long) Math.ceil(-this.expectedKeys
+                * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+
+        int words = (int) Math.min((m + 63) / 64, Integer.MAX_VALUE);
+
+        this.bits = new AtomicLongArray(words);
+        this.size = words * 64L;
+
+        // k = m / n ln 2
+        this.hashCount = Math.max(1,
+                (int) Math.round((double) size / this.expectedKeys * Math.log(2)));
+    }
+
+    /**
+     * Add the key to the filter.
+     */
+    void add(ByteString key) {
+
+        long hash = hash(key);
+
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+
+        for (int i = 1; i <= hashCount; i++) {
+
+            long bit = ((h1 + (long) i * h2) & Long.MAX_VALUE) % size;
+
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+
+            // set the bit
+            long current = bits.get(word);
+            while ((current & mask) == 0
+                    && bits.compareAndSet(word, current, current | mask) == false) {
+                current = bits.get(word);
+            }
+        }
+
+        added.incrementAndGet();
+    }
+
+    /**
+     * Test if the key may have been added to the filter.
+     *
+     * @return false if the key was definitely not added.
+     */
+    boolean mightContain(ByteString key) {
+
+        long hash = hash(key);
+
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+
+        for (int i = 1; i <= hashCount; i++) {
+
+            long bit = ((h1 + (long) i * h2) & Long.MAX_VALUE) % size;
+
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * 64 bit FNV-1a hash of the key, with a final mix.
+     */
+    private static long hash(ByteString key) {
+
+        byte[] bytes = ZeroCopyByteString.unwrap(key);
+
+        long h = 0xcbf29ce484222325L;
+
+        for (byte b : bytes) {
+            h ^= (b & 0xff);
+            h *= 0x100000001b3L;
+        }
+
+        // murmur3 finalizer
+        h ^= (h >>> 33);
+        h *= 0xff51afd7ed558ccdL;
+        h ^= (h >>> 33);
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= (h >>> 33);
+
+        return h;
+    }
+
+    long getExpectedKeys() {
+        return this.expectedKeys;
+    }
+
+    long getAddedKeys() {
+        return added.get();
+    }
+
+    /**
+     * Get the filter memory size in bytes.
+     */
+    long getSizeInBytes() {
+        return size / 8;
+    }
+
+    /**
+     * Get the expected false positive rate for the number of keys added.
+     */
+    double getExpectedFalsePositiveRate() {
+        return Math.pow(
+                1 - Math.exp(-(double) hashCount * added.get() / size),
+                hashCount);
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * 
+ * Copyright (C) 2014 Seagate Technology.
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.seagate.kinetic.simulator.persist.filter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.protobuf.ByteString;
+import com.seagate.kinetic.simulator.persist.BatchOperation;
+import com.seagate.kinetic.simulator.persist.KVValue;
+
+/**
+ * Batch of a Bloom filter store. The keys put by the batch are added to the
+ * filter before the batch is committed.
+ *
+ * @see BloomFilterStore
+ */
+class BloomFilterBatchOperation implements
+        BatchOperation<ByteString, KVValue> {
+
+    private final BatchOperation<ByteString, KVValue> batch;
+
+    private final BloomFilterStore store;
+
+    // keys put by the batch
+    private final List<ByteString> keys = new ArrayList<ByteString>();
+
+    private int deletes = 0;
+
+    BloomFilterBatchOperation(BatchOperation<ByteString, KVValue> batch,
+            BloomFilterStore store) {
+        this.batch = batch;
+        this.store = store;
+    }
+
+    @Override
+    public synchronized void put(ByteString key, KVValue value) {
+        batch.put(key, value);
+        keys.add(key);
+    }
+
+    @Override
+    public synchronized void delete(ByteString key) {
+        batch.delete(key);
+        deletes++;
+    }
+
+    @Override
+    public synchronized void commit() {
+
+        store.getFilterLock().readLock().lock();
+
+        try {
+            for (ByteString key : keys) {
+                store.add(key);
+            }
+
+            batch.commit();
+        } finally {
+            store.getFilterLock().readLock().unlock();
+        }
+
+        for (int i = 0; i < deletes; i++) {
+            store.onDelete();
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return batch.isClosed();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        keys.clear();
+        batch.close();
+    }
+}
@@ -0,0 +1,445 @@
+/**
+ * 
+ * Copyright (C) 2014 Seagate Technology.
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.seagate.kinetic.simulator.persist.filter;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import kinetic.simulator.SimulatorConfiguration;
+
+import com.google.protobuf.ByteString;
+import com.seagate.kinetic.simulator.internal.KVStoreException;
+import com.seagate.kinetic.simulator.internal.KVStoreNotFound;
+import com.seagate.kinetic.simulator.internal.KVStoreVersionMismatch;
+import com.seagate.kinetic.simulator.persist.BatchOperation;
+import com.seagate.kinetic.simulator.persist.ForwardingStore;
+import com.seagate.kinetic.simulator.persist.KVKey;
+import com.seagate.kinetic.simulator.persist.KVValue;
+import com.seagate.kinetic.simulator.persist.PersistOption;
+import com.seagate.kinetic.simulator.persist.Store;
+
+/**
+ * Negative lookup filter in front of a store.
+ * <p>
+ * A Bloom filter of the store keys is kept in memory. Requests on keys that
+ * are definitely not in the store are answered without reading the store:
+ * <ul>
+ * <li>GET and GET metadata fail with NOT_FOUND.</li>
+ * <li>Versioned DELETE fails with NOT_FOUND, and forced DELETE returns.</li>
+ * <li>Versioned PUT with a non empty db version fails with VERSION_MISMATCH.
+ * </li>
+ * </ul>
+ * Keys are added to the filter before they are written to the store. Deleted
+ * keys cannot be removed from a Bloom filter, so the filter is rebuilt from
+ * the store keys in the background when too many keys were added or deleted
+ * since it was built. Writes are added to both filters while a filter is
+ * rebuilt. The filter is not used until it is first built.
+ * <p>
+ * The filter size, expected and observed false positive rates are reported
+ * in the store statistics.
+ *
+ * @see BloomFilter
+ * @see SimulatorConfiguration#setUseBloomFilter(boolean)
+ */
+public class BloomFilterStore extends ForwardingStore {
+
+    private final static Logger logger = Logger
+            .getLogger(BloomFilterStore.class.getName());
+
+    // target false positive rate
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    // number of keys read per page when the filter is rebuilt
+    private static final int REBUILD_PAGE_SIZE = 1000;
+
+    // rebuild check period in milli-seconds
+    private static final long REBUILD_CHECK_PERIOD = 10000;
+
+    private final long minExpectedKeys;
+
+    // current filter, null until first built
+    private volatile BloomFilter filter = null;
+
+    // filter being rebuilt, null if none
+    private volatile BloomFilter pending = null;
+
+    // shared by writes, exclusive to start a rebuild
+    private final ReentrantReadWriteLock filterLock = new ReentrantReadWriteLock();
+
+    // serializes rebuilds
+    private final Object rebuildLock = new Object();
+
+    // deletes since the current filter was built
+    private final AtomicLong deletes = new AtomicLong();
+
+    // lookups answered without reading the store
+    private final AtomicLong negatives = new AtomicLong();
+
+    // lookups passed by the filter but not found in the store
+    private final AtomicLong falsePositives = new AtomicLong();
+
+    private final AtomicLong rebuilds = new AtomicLong();
+
+    private Timer rebuildTimer = null;
+
+    /**
+     * Constructor. The filter is built in the background.
+     *
+     * @param store
+     *            the filtered store, already initialized.
+     * @param expectedKeys
+     *            min number of keys the filter is sized for.
+     */
+    public BloomFilterStore(Store<ByteString, ByteString, KVValue> store,
+            long expectedKeys) {
+
+        super(store);
+
+        this.minExpectedKeys = expectedKeys;
+
+        this.startRebuildTimer();
+    }
+
+    private synchronized void startRebuildTimer() {
+
+        this.rebuildTimer = new Timer("bloom-filter-rebuild", true);
+
+        this.rebuildTimer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                try {
+                    if (isRebuildNeeded()) {
+                        rebuild();
+                    }
+                } catch (Exception e) {
+                    logger.log(Level.WARNING, e.getMessage(), e);
+                }
+            }
+        }, 0, REBUILD_CHECK_PERIOD);
+    }
+
+    private synchronized void stopRebuildTimer() {
+        if (this.rebuildTimer != null) {
+            this.rebuildTimer.cancel();
+            this.rebuildTimer = null;
+        }
+    }
+
+    /**
+     * The filter is rebuilt if it was never built, if more keys were added
+     * (including overwrites) than it is sized for, or if more than half of
+     * its keys were deleted.
+     */
+    private boolean isRebuildNeeded() {
+
+        BloomFilter f = this.filter;
+
+        return f == null || f.getAddedKeys() > f.getExpectedKeys()
+                || deletes.get() > f.getExpectedKeys() / 2;
+    }
+
+    /**
+     * Rebuild the filter from the store keys. Called by the rebuild timer,
+     * package access for tests.
+     */
+    void rebuild() throws KVStoreException {
+
+        synchronized (rebuildLock) {
+
+            long start = System.currentTimeMillis();
+
+            BloomFilter current = this.filter;
+
+            long expectedKeys = minExpectedKeys;
+
+            if (current != null) {
+                // room to grow
+                expectedKeys = Math.max(expectedKeys,
+                        2 * (current.getAddedKeys() - deletes.get()));
+            }
+
+            BloomFilter f = new BloomFilter(expectedKeys, FALSE_POSITIVE_RATE);
+
+            // writes in progress complete before the scan starts
+            filterLock.writeLock().lock();
+
+            try {
+                this.pending = f;
+                deletes.set(0);
+            } finally {
+                filterLock.writeLock().unlock();
+            }
+
+            try {
+                this.addStoreKeys(f);
+
+                this.filter = f;
+            } finally {
+                this.pending = null;
+            }
+
+            rebuilds.incrementAndGet();
+
+            logger.info("bloom filter rebuilt, keys=" + f.getAddedKeys()
+                    + ", size=" + f.getSizeInBytes() + ", time="
+                    + (System.currentTimeMillis() - start) + "ms");
+        }
+    }
+
+    /**
+     * Add all the store keys to the specified filter.
+     */
+    private void addStoreKeys(BloomFilter f) throws KVStoreException {
+
+        // greater than or equal to any key
+        byte[] max = new byte[SimulatorConfiguration.getMaxSupportedKeySize()];
+        Arrays.fill(max, (byte) 0xff);
+
+        ByteString endKey = ByteString.copyFrom(max);
+
+        ByteString startKey = ByteString.EMPTY;
+        boolean startKeyInclusive = true;
+
+        while (true) {
+
+            List<?> keys = getStore().getKeyRange(startKey, startKeyInclusive,
+                    endKey, true, REBUILD_PAGE_SIZE);
+
+            for (Object key : keys) {
+                f.add(((KVKey) key).toByteString());
+            }
+
+            if (keys.size() < REBUILD_PAGE_SIZE) {
+                break;
+            }
+
+            startKey = ((KVKey) keys.get(keys.size() - 1)).toByteString();
+            startKeyInclusive = false;
+        }
+    }
+
+    /**
+     * Test if the key is definitely not in the store.
+     */
+    private boolean isAbsent(ByteString key) {
+
+        BloomFilter f = this.filter;
+
+        if (f != null && f.mightContain(key) == false) {
+            negatives.incrementAndGet();
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Add the key to the filters. Called with the filter read lock held,
+     * before the key is written to the store.
+     */
+    void add(ByteString key) {
+
+        BloomFilter f = this.filter;
+
+        if (f != null) {
+            f.add(key);
+        }
+
+        f = this.pending;
+
+        if (f != null) {
+            f.add(key);
+        }
+    }
+
+    ReentrantReadWriteLock getFilterLock() {
+        return this.filterLock;
+    }
+
+    void onDelete() {
+        deletes.incrementAndGet();
+    }
+
+    @Override
+    public void put(ByteString key, ByteString oldVersion, KVValue value,
+            PersistOption option) throws KVStoreException {
+
+        if (oldVersion != null && oldVersion.size() > 0 && isAbsent(key)) {
+            throw new KVStoreVersionMismatch("Length mismatch");
+        }
+
+        filterLock.readLock().lock();
+
+        try {
+            this.add(key);
+
+            super.put(key, oldVersion, value, option);
+        } finally {
+            filterLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void putForced(ByteString key, KVValue value, PersistOption option)
+            throws KVStoreException {
+
+        filterLock.readLock().lock();
+
+        try {
+            this.add(key);
+
+            super.putForced(key, value, option);
+        } finally {
+            filterLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void delete(ByteString key, ByteString oldVersion,
+            PersistOption option) throws KVStoreException {
+
+        if (isAbsent(key)) {
+            throw new KVStoreNotFound();
+        }
+
+        try {
+            super.delete(key, oldVersion, option);
+        } catch (KVStoreNotFound e) {
+            falsePositives.incrementAndGet();
+            throw e;
+        }
+
+        deletes.incrementAndGet();
+    }
+
+    @Override
+    public void deleteForced(ByteString key, PersistOption option)
+            throws KVStoreException {
+
+        if (isAbsent(key)) {
+            return;
+        }
+
+        super.deleteForced(key, option);
+
+        deletes.incrementAndGet();
+    }
+
+    @Override
+    public KVValue get(ByteString key) throws KVStoreException {
+
+        if (isAbsent(key)) {
+            throw new KVStoreNotFound();
+        }
+
+        try {
+            return super.get(key);
+        } catch (KVStoreNotFound e) {
+            falsePositives.incrementAndGet();
+            throw e;
+        }
+    }
+
+    @Override
+    public KVValue getMetadata(ByteString key) throws KVStoreException {
+
+        if (isAbsent(key)) {
+            throw new KVStoreNotFound();
+        }
+
+        try {
+            return super.getMetadata(key);
+        } catch (KVStoreNotFound e) {
+            falsePositives.incrementAndGet();
+            throw e;
+        }
+    }
+
+    @Override
+    public BatchOperation<ByteString, KVValue> createBatchOperation()
+            throws KVStoreException {
+        return new BloomFilterBatchOperation(super.createBatchOperation(),
+                this);
+    }
+
+    @Override
+    public void init(SimulatorConfiguration config) {
+
+        this.stopRebuildTimer();
+
+        // rebuilt from the re-opened store
+        this.filter = null;
+
+        super.init(config);
+
+        this.startRebuildTimer();
+    }
+
+    @Override
+    public void close() {
+
+        this.stopRebuildTimer();
+
+        super.close();
+    }
+
+    @Override
+    public void reset() throws KVStoreException {
+
+        this.stopRebuildTimer();
+
+        // not used until rebuilt
+        this.filter = null;
+
+        super.reset();
+
+        this.startRebuildTimer();
+    }
+
+    @Override
+    public void getStatistics(Map<String, Object> statistics) {
+
+        super.getStatistics(statistics);
+
+        BloomFilter f = this.filter;
+
+        long lookups = negatives.get() + falsePositives.get();
+
+        statistics.put("bloomFilter.ready", f != null);
+        statistics.put("bloomFilter.size", (f == null) ? 0 : f
+                .getSizeInBytes());
+        statistics.put("bloomFilter.keys", (f == null) ? 0 : f
+                .getAddedKeys());
+        statistics.put("bloomFilter.expectedFalsePositiveRate",
+                (f == null) ? 0 : f.getExpectedFalsePositiveRate());
+        statistics.put("bloomFilter.observedFalsePositiveRate",
+                (lookups == 0) ? 0 : (double) falsePositives.get() / lookups);
+        statistics.put("bloomFilter.negatives", negatives.get());
+        statistics.put("bloomFilter.falsePositives", falsePositives.get());
+        statistics.put("bloomFilter.rebuilds", rebuilds.get());
+    }
+}
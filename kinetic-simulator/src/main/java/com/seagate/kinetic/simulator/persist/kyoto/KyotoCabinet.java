@@ -125,7 +125,7 @@ public class KyotoCabinet implements Store<ByteString, ByteString, KVValue> {
         logger.finest("put versioned ...., data =" + data);
 
         if (data != null) {
-            obj = new KVValue(data);
+            obj = KVValue.parseMetadata(data);
 
             version = obj.getVersion();
             // checkVersion(version, oldVersion);
@@ -182,6 +182,19 @@ public class KyotoCabinet implements Store<ByteString, ByteString, KVValue> {
         return new KVValue(data);
     }
 
+    @Override
+    public KVValue getMetadata(ByteString key) throws KVStoreException {
+
+        byte[] data = db.get(key.toByteArray());
+
+        if (data == null) {
+            throw new KVStoreNotFound();
+        }
+
+        // value bytes are skipped, not deserialized
+        return KVValue.parseMetadata(data);
+    }
+
     @Override
     public KVValue getPrevious(ByteString key) throws KVStoreException {
         Cursor cursor = null;
@@ -324,6 +337,57 @@ public class KyotoCabinet implements Store<ByteString, ByteString, KVValue> {
         return map;
     }
 
+    @Override
+    public List<?> getKeyRange(ByteString startKey, boolean startKeyInclusive,
+            ByteString endKey, boolean endKeyInclusive, int max)
+            throws KVStoreException {
+
+        List<KVKey> listOfKVKey = new ArrayList<KVKey>();
+
+        byte[] start = startKey.toByteArray();
+        byte[] end = endKey.toByteArray();
+
+        Cursor cursor = null;
+
+        try {
+
+            cursor = db.cursor();
+
+            boolean exist = cursor.jump(start);
+
+            if (exist && startKeyInclusive == false
+                    && compare(cursor.get_key(false), start) == 0) {
+                exist = cursor.step();
+            }
+
+            // first key there?
+            boolean more = exist;
+
+            while (more && listOfKVKey.size() < max) {
+
+                // get key only and step to the next record
+                byte[] key = cursor.get_key(true);
+
+                if (key != null
+                        && shouldInclude(key, end, endKeyInclusive, false)) {
+                    listOfKVKey.add(new KVKey(key));
+                } else {
+                    // exit loop
+                    more = false;
+                }
+            }
+        } catch (Exception e) {
+
+            logger.log(Level.WARNING, e.getMessage(), e);
+
+            throw new KVStoreException(e.getMessage());
+        } finally {
+            cursor.disable();
+        }
+
+        return listOfKVKey;
+    }
+
     @Override
     public List<?> getRangeReversed(ByteString startKey,
             boolean startKeyInclusive, ByteString endKey,
@@ -432,7 +496,7 @@ public class KyotoCabinet implements Store<ByteString, ByteString, KVValue> {
     // returns the version if it is in the db. Null otherwise.
     ByteString getVersion(ByteString key) throws KVStoreException {
 
-        KVValue obj = get(key);
+        KVValue obj = getMetadata(key);
 
         if (obj == null)
             throw new KVStoreNotFound();
@@ -0,0 +1,422 @@
+/**
+ * 
+ * Copyright (C) 2014 Seagate Technology.
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.seagate.kinetic.simulator.persist.leveldb;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.iq80.leveldb.DB;
+import org.iq80.leveldb.DBIterator;
+
+/**
+ * Open LevelDB cursors of the sequential GETNEXT and GETPREVIOUS traversal,
+ * per connection.
+ * <p>
+ * A cursor is kept open after it returned an entry, and is found again by
+ * the connection id, the direction and the returned key. The next GETNEXT
+ * (or GETPREVIOUS) from that key then advances the cursor instead of
+ * seeking from the key again.
+ * <p>
+ * A LevelDB iterator reads the db as of the time it was created. The store
+ * calls {@link #invalidate(byte[], byte[])} with the range of the written
+ * keys after each write. A forward cursor only returns keys after its last
+ * key, and a backward cursor only keys before it, so only the cursors whose
+ * remaining range overlaps the written keys are closed. The other cursors
+ * are still valid after the write. Cursors idle for longer than the idle
+ * timeout, such as the cursors of closed connections, are closed.
+ * <p>
+ * A cursor is taken out of the cache while it is used, so that it is never
+ * used by two requests at the same time.
+ *
+ * @see LevelDbStore
+ */
+class CursorCache {
+
+    private final static Logger logger = Logger.getLogger(CursorCache.class
+            .getName());
+
+    /**
+     * An open cursor.
+     */
+    static class Cursor {
+
+        private final long cid;
+
+        private final boolean isForward;
+
+        private final DBIterator iterator;
+
+        // last write sequence the cursor was checked against
+        private long writeSequence;
+
+        // key of the last returned entry
+        private byte[] lastKey = null;
+
+        private long lastUsed = 0;
+
+        Cursor(long cid, boolean isForward, DBIterator iterator,
+                long writeSequence) {
+            this.cid = cid;
+            this.isForward = isForward;
+            this.iterator = iterator;
+            this.writeSequence = writeSequence;
+        }
+
+        DBIterator getIterator() {
+            return this.iterator;
+        }
+
+        /**
+         * Set the key of the entry returned from the cursor.
+         */
+        void setLastKey(byte[] lastKey) {
+            this.lastKey = lastKey;
+        }
+    }
+
+    private final DB db;
+
+    private final int maxPerConnection;
+
+    private final long idleTimeout;
+
+    // lock for the states below
+    private final Object lock = new Object();
+
+    // incremented after each write
+    private long writeSequence = 0;
+
+    // connection id -> idle cursors, most recently used first
+    private final Map<Long, LinkedList<Cursor>> cursors = new HashMap<Long, LinkedList<Cursor>>();
+
+    private int openCount = 0;
+
+    private long lastSweep = System.currentTimeMillis();
+
+    private final AtomicLong hits = new AtomicLong(0);
+
+    private final AtomicLong misses = new AtomicLong(0);
+
+    /**
+     * Constructor.
+     *
+     * @param db
+     *            data db
+     * @param maxPerConnection
+     *            max number of idle cursors kept per connection.
+     * @param idleTimeout
+     *            idle time in milli-seconds after which a cursor is closed.
+     */
+    CursorCache(DB db, int maxPerConnection, long idleTimeout) {
+        this.db = db;
+        this.maxPerConnection = maxPerConnection;
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * Invalidate the open cursors that may return a key in the specified
+     * range. Called after each write, once the write is visible to new
+     * iterators.
+     * <p>
+     * The idle cursors outside of the range are checked against the new
+     * write sequence. A cursor in use during the write is not checked, and
+     * is closed when it is released.
+     *
+     * @param minKey
+     *            the smallest written key.
+     * @param maxKey
+     *            the largest written key.
+     */
+    void invalidate(byte[] minKey, byte[] maxKey) {
+
+        List<Cursor> closed = new ArrayList<Cursor>();
+
+        synchronized (lock) {
+
+            writeSequence++;
+
+            Iterator<LinkedList<Cursor>> lists = cursors.values().iterator();
+
+            while (lists.hasNext()) {
+
+                LinkedList<Cursor> list = lists.next();
+
+                Iterator<Cursor> it = list.iterator();
+
+                while (it.hasNext()) {
+
+                    Cursor c = it.next();
+
+                    if (covers(c, minKey, maxKey)) {
+                        it.remove();
+                        closed.add(c);
+                    } else {
+                        c.writeSequence = writeSequence;
+                    }
+                }
+
+                if (list.isEmpty()) {
+                    lists.remove();
+                }
+            }
+        }
+
+        this.closeAll(closed);
+    }
+
+    /**
+     * Take the cursor of the connection that returned the specified key in
+     * the specified direction.
+     *
+     * @return the cursor, or null if none. The cursor must be passed to
+     *         {@link #release(Cursor)} or {@link #close(Cursor)}.
+     */
+    Cursor take(long cid, byte[] key, boolean isForward) {
+
+        List<Cursor> closed = new ArrayList<Cursor>();
+
+        Cursor found = null;
+
+        synchronized (lock) {
+
+            long now = System.currentTimeMillis();
+
+            if (now - lastSweep >= idleTimeout) {
+                this.sweep(now, closed);
+                lastSweep = now;
+            }
+
+            LinkedList<Cursor> list = cursors.get(cid);
+
+            if (list != null) {
+
+                Iterator<Cursor> it = list.iterator();
+
+                while (it.hasNext()) {
+
+                    Cursor c = it.next();
+
+                    if (isValid(c, now) == false) {
+                        it.remove();
+                        closed.add(c);
+                    } else if (found == null && c.isForward == isForward
+                            && Arrays.equals(c.lastKey, key)) {
+                        it.remove();
+                        found = c;
+                    }
+                }
+
+                if (list.isEmpty()) {
+                    cursors.remove(cid);
+                }
+            }
+        }
+
+        this.closeAll(closed);
+
+        if (found == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+
+        return found;
+    }
+
+    /**
+     * Open a new cursor. The write sequence is read before the iterator is
+     * created, so that a write that races with the creation invalidates the
+     * cursor when it is released.
+     *
+     * @return the new cursor, to be passed to {@link #release(Cursor)} or
+     *         {@link #close(Cursor)}.
+     */
+    Cursor open(long cid, boolean isForward) {
+
+        long sequence = 0;
+
+        synchronized (lock) {
+            sequence = writeSequence;
+            openCount++;
+        }
+
+        Cursor cursor = new Cursor(cid, isForward, db.iterator(), sequence);
+
+        return cursor;
+    }
+
+    /**
+     * Return the cursor to the cache after it returned an entry. The least
+     * recently used cursor of the connection is closed if the connection has
+     * too many cursors.
+     */
+    void release(Cursor cursor) {
+
+        Cursor evicted = null;
+
+        synchronized (lock) {
+
+            cursor.lastUsed = System.currentTimeMillis();
+
+            if (isValid(cursor, cursor.lastUsed) == false) {
+                evicted = cursor;
+            } else {
+
+                LinkedList<Cursor> list = cursors.get(cursor.cid);
+
+                if (list == null) {
+                    list = new LinkedList<Cursor>();
+                    cursors.put(cursor.cid, list);
+                }
+
+                list.addFirst(cursor);
+
+                if (list.size() > maxPerConnection) {
+                    evicted = list.removeLast();
+                }
+            }
+        }
+
+        if (evicted != null) {
+            this.close(evicted);
+        }
+    }
+
+    /**
+     * Close a cursor taken from, or opened by, the cache.
+     */
+    void close(Cursor cursor) {
+
+        synchronized (lock) {
+            openCount--;
+        }
+
+        try {
+            cursor.iterator.close();
+        } catch (Exception e) {
+            logger.log(Level.WARNING, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Close all idle cursors. Called before the db is closed, when no
+     * cursor is in use.
+     */
+    void close() {
+
+        List<Cursor> closed = new ArrayList<Cursor>();
+
+        synchronized (lock) {
+
+            for (LinkedList<Cursor> list : cursors.values()) {
+                closed.addAll(list);
+            }
+
+            cursors.clear();
+        }
+
+        this.closeAll(closed);
+    }
+
+    /**
+     * Get the number of open cursors.
+     */
+    int getOpenCount() {
+        synchronized (lock) {
+            return this.openCount;
+        }
+    }
+
+    /**
+     * Get the number of lookups that found an open cursor.
+     */
+    long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Get the number of lookups that did not find an open cursor.
+     */
+    long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Remove the invalid cursors of all connections. Called with the lock
+     * held.
+     */
+    private void sweep(long now, List<Cursor> closed) {
+
+        Iterator<LinkedList<Cursor>> lists = cursors.values().iterator();
+
+        while (lists.hasNext()) {
+
+            LinkedList<Cursor> list = lists.next();
+
+            Iterator<Cursor> it = list.iterator();
+
+            while (it.hasNext()) {
+
+                Cursor c = it.next();
+
+                if (isValid(c, now) == false) {
+                    it.remove();
+                    closed.add(c);
+                }
+            }
+
+            if (list.isEmpty()) {
+                lists.remove();
+            }
+        }
+    }
+
+    /**
+     * Check if the cursor may return a key in the specified range. Called
+     * with the lock held.
+     */
+    private static boolean covers(Cursor cursor, byte[] minKey, byte[] maxKey) {
+
+        if (cursor.isForward) {
+            return LevelDbStore.compare(maxKey, cursor.lastKey) > 0;
+        }
+
+        return LevelDbStore.compare(minKey, cursor.lastKey) < 0;
+    }
+
+    private boolean isValid(Cursor cursor, long now) {
+        return cursor.writeSequence == writeSequence
+                && now - cursor.lastUsed < idleTimeout;
+    }
+
+    private void closeAll(List<Cursor> list) {
+        for (Cursor c : list) {
+            this.close(c);
+        }
+    }
+}
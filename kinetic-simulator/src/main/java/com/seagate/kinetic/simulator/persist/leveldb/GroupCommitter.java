@@ -0,0 +1,337 @@
+/**
+ * 
+ * Copyright (C) 2014 Seagate Technology.
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.seagate.kinetic.simulator.persist.leveldb;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.iq80.leveldb.DB;
+import org.iq80.leveldb.WriteBatch;
+import org.iq80.leveldb.WriteOptions;
+
+import com.google.protobuf.ByteString;
+import com.seagate.kinetic.simulator.internal.KVStoreException;
+
+/**
+ * Group commit for LevelDB writes.
+ * <p>
+ * Writes are queued by the store and the writing threads wait for their
+ * write to be committed. The first waiting thread becomes the leader. The
+ * leader waits up to the max group commit delay (or until the max group size
+ * is queued), writes all queued writes in one LevelDB <code>WriteBatch</code>
+ * with a single sync, and releases all the writers in the group. Writes
+ * queued while a group is being written are committed by the next leader.
+ * <p>
+ * Queued writes are visible to the store through {@link #getPending(ByteString)}
+ * so that version checks of later writes see the pending writes.
+ *
+ * @see LevelDbStore
+ */
+class GroupCommitter {
+
+    private final static Logger logger = Logger.getLogger(GroupCommitter.class
+            .getName());
+
+    // sync write option
+    private static final WriteOptions SYNC = new WriteOptions().sync(true);
+
+    // async write option
+    private static final WriteOptions ASYNC = new WriteOptions().sync(false);
+
+    /**
+     * A queued write. A delete if the record is null.
+     */
+    static class Write {
+
+        private final ByteString key;
+
+        private final byte[] record;
+
+        private final byte[] metadata;
+
+        private final boolean sync;
+
+        private boolean isDone = false;
+
+        private String error = null;
+
+        Write(ByteString key, byte[] record, byte[] metadata, boolean sync) {
+            this.key = key;
+            this.record = record;
+            this.metadata = metadata;
+            this.sync = sync;
+        }
+
+        /**
+         * Get the metadata of the pending write.
+         *
+         * @return the metadata, or null if the write is a delete.
+         */
+        byte[] getMetadata() {
+            return this.metadata;
+        }
+    }
+
+    private final LevelDbStore store;
+
+    private final DB db;
+
+    private final DB metaDb;
+
+    private final long maxDelay;
+
+    private final int maxSize;
+
+    // lock for the states below
+    private final Object lock = new Object();
+
+    // writes not yet taken by a leader
+    private final LinkedList<Write> queue = new LinkedList<Write>();
+
+    // latest queued or in progress write for each key
+    private final Map<ByteString, Write> pending = new HashMap<ByteString, Write>();
+
+    // true if a leader is writing or collecting a group
+    private boolean hasLeader = false;
+
+    /**
+     * Constructor.
+     *
+     * @param store
+     *            the store, used to sync the value log before a group is
+     *            written.
+     * @param db
+     *            data db
+     * @param metaDb
+     *            metadata index db
+     * @param maxDelay
+     *            max time in milli-seconds a leader waits for more writes.
+     * @param maxSize
+     *            max number of writes in a group.
+     */
+    GroupCommitter(LevelDbStore store, DB db, DB metaDb, long maxDelay,
+            int maxSize) {
+        this.store = store;
+        this.db = db;
+        this.metaDb = metaDb;
+        this.maxDelay = maxDelay;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Queue a write. Must be called while holding the store lock of the key
+     * so that writes of the same key are queued in order.
+     *
+     * @return the queued write, to be passed to {@link #await(Write)}.
+     */
+    Write enqueue(ByteString key, byte[] record, byte[] metadata,
+            boolean sync) {
+
+        Write write = new Write(key, record, metadata, sync);
+
+        synchronized (lock) {
+            queue.add(write);
+            pending.put(key, write);
+
+            if (queue.size() >= maxSize) {
+                // wake up a leader waiting for more writes
+                lock.notifyAll();
+            }
+        }
+
+        return write;
+    }
+
+    /**
+     * Get the latest pending write of the specified key.
+     *
+     * @return the pending write, or null if none.
+     */
+    Write getPending(ByteString key) {
+        synchronized (lock) {
+            return pending.get(key);
+        }
+    }
+
+    /**
+     * Wait for the write to be committed. The calling thread commits a group
+     * if there is no leader.
+     *
+     * @throws KVStoreException
+     *             if the write failed.
+     */
+    void await(Write write) throws KVStoreException {
+
+        synchronized (lock) {
+
+            while (write.isDone == false && hasLeader) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new KVStoreException(e.getMessage());
+                }
+            }
+
+            if (write.isDone == false) {
+                hasLeader = true;
+            }
+        }
+
+        // lead until my own write is committed
+        while (write.isDone == false) {
+            this.commitGroup(write);
+        }
+
+        if (write.error != null) {
+            throw new KVStoreException(write.error);
+        }
+    }
+
+    /**
+     * Collect and commit a group. Called by the leader only.
+     *
+     * @param leaderWrite
+     *            the leader's own write
+     */
+    private void commitGroup(Write leaderWrite) {
+
+        List<Write> group = new ArrayList<Write>();
+
+        synchronized (lock) {
+
+            // wait for more writes to join the group
+            long deadline = System.currentTimeMillis() + maxDelay;
+            long remaining = maxDelay;
+
+            while (queue.size() < maxSize && remaining > 0) {
+                try {
+                    lock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+
+                remaining = deadline - System.currentTimeMillis();
+            }
+
+            while (queue.isEmpty() == false && group.size() < maxSize) {
+                group.add(queue.removeFirst());
+            }
+        }
+
+        String error = null;
+
+        try {
+            this.write(group);
+        } catch (Exception e) {
+            logger.log(Level.WARNING, e.getMessage(), e);
+            error = (e.getMessage() == null) ? e.toString() : e.getMessage();
+        }
+
+        synchronized (lock) {
+
+            for (Write w : group) {
+
+                w.error = error;
+                w.isDone = true;
+
+                if (pending.get(w.key) == w) {
+                    pending.remove(w.key);
+                }
+            }
+
+            // step down if the leader's write is done, next writer leads
+            hasLeader = (leaderWrite.isDone == false);
+
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Write the group in one batch with a single sync.
+     */
+    private void write(List<Write> group) throws IOException {
+
+        if (group.isEmpty()) {
+            return;
+        }
+
+        boolean sync = false;
+
+        // range of the written keys
+        byte[] minKey = null;
+        byte[] maxKey = null;
+
+        WriteBatch batch = db.createWriteBatch();
+        WriteBatch metaBatch = metaDb.createWriteBatch();
+
+        try {
+
+            for (Write w : group) {
+
+                byte[] key = w.key.toByteArray();
+
+                if (w.record == null) {
+                    batch.delete(key);
+                    metaBatch.delete(key);
+                } else {
+                    batch.put(key, w.record);
+                    metaBatch.put(key, w.metadata);
+                }
+
+                sync = sync || w.sync;
+
+                if (minKey == null || LevelDbStore.compare(key, minKey) < 0) {
+                    minKey = key;
+                }
+
+                if (maxKey == null || LevelDbStore.compare(key, maxKey) > 0) {
+                    maxKey = key;
+                }
+            }
+
+            // values must be persisted before the pointers
+            if (sync) {
+                store.syncValueLog();
+            }
+
+            db.write(batch, sync ? SYNC : ASYNC);
+
+            store.invalidateCursors(minKey, maxKey);
+
+            // index is rebuilt on restart if not closed cleanly
+            metaDb.write(metaBatch, ASYNC);
+
+        } finally {
+            batch.close();
+            metaBatch.close();
+        }
+
+        logger.finest("group committed, size=" + group.size() + ", sync="
+                + sync);
+    }
+}
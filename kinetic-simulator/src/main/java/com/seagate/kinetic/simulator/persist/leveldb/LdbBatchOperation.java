@@ -1,6 +1,8 @@
 package com.seagate.kinetic.simulator.persist.leveldb;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Logger;
 
 import org.iq80.leveldb.DB;
@@ -8,8 +10,10 @@ import org.iq80.leveldb.WriteBatch;
 import org.iq80.leveldb.WriteOptions;
 
 import com.google.protobuf.ByteString;
+import com.seagate.kinetic.simulator.internal.KVStoreException;
 import com.seagate.kinetic.simulator.persist.BatchOperation;
 import com.seagate.kinetic.simulator.persist.KVValue;
+import com.seagate.kinetic.simulator.persist.PersistOption;
 
 public class LdbBatchOperation implements BatchOperation<ByteString, KVValue> {
 
@@ -20,15 +24,38 @@ public class LdbBatchOperation implements BatchOperation<ByteString, KVValue> {
 
     private DB db = null;
 
+    // store, used to write large values to the value log
+    private LevelDbStore store = null;
+
+    // batch entry keys, in request order
+    private final List<byte[]> keys = new ArrayList<byte[]>();
+
+    // batch entry values, null for a delete. Large values are appended to
+    // the value log on commit so that an aborted batch leaves no garbage.
+    private final List<KVValue> values = new ArrayList<KVValue>();
+
+    // metadata index batch
+    private WriteBatch metaBatch = null;
+
+    // metadata index db
+    private DB metaDb = null;
+
     private volatile boolean isClosed = false;
 
     // sync write option
     public static final WriteOptions SYNC = new WriteOptions().sync(true);
 
-    public LdbBatchOperation(DB db) {
+    // async write option, used for the metadata index
+    public static final WriteOptions ASYNC = new WriteOptions().sync(false);
+
+    public LdbBatchOperation(LevelDbStore store, DB db, DB metaDb) {
+        this.store = store;
         this.db = db;
         this.batch = db.createWriteBatch();
 
+        this.metaDb = metaDb;
+        this.metaBatch = metaDb.createWriteBatch();
+
         logger.info("*** batch created ....");
     }
 
@@ -37,6 +64,7 @@ public class LdbBatchOperation implements BatchOperation<ByteString, KVValue> {
         // close batch
         try {
             this.batch.close();
+            this.metaBatch.close();
             logger.info("*** batch closed ....");
         } finally {
             this.isClosed = true;
@@ -44,22 +72,79 @@ public class LdbBatchOperation implements BatchOperation<ByteString, KVValue> {
     }
 
     @Override
-    public void put(ByteString key, KVValue value) {
+    public synchronized void put(ByteString key, KVValue value) {
         // put entry in batch
-        this.batch.put(key.toByteArray(), value.toByteArray());
+        this.keys.add(key.toByteArray());
+        this.values.add(value);
     }
 
     @Override
-    public void delete(ByteString key) {
+    public synchronized void delete(ByteString key) {
         // delte key in batch
-        this.batch.delete(key.toByteArray());
+        this.keys.add(key.toByteArray());
+        this.values.add(null);
     }
 
     @Override
     public synchronized void commit() {
 
         try {
+
+            // true if a value was appended to the value log
+            boolean hasValueLogEntries = false;
+
+            // range of the written keys
+            byte[] minKey = null;
+            byte[] maxKey = null;
+
+            for (int i = 0; i < keys.size(); i++) {
+
+                byte[] key = keys.get(i);
+                KVValue value = values.get(i);
+
+                if (minKey == null || LevelDbStore.compare(key, minKey) < 0) {
+                    minKey = key;
+                }
+
+                if (maxKey == null || LevelDbStore.compare(key, maxKey) > 0) {
+                    maxKey = key;
+                }
+
+                if (value == null) {
+                    this.batch.delete(key);
+                    this.metaBatch.delete(key);
+                    continue;
+                }
+
+                // value log is synced once below
+                byte[] record = store.toRecord(key, value,
+                        PersistOption.ASYNC);
+
+                if (ValuePointer.isPointerRecord(record)) {
+                    hasValueLogEntries = true;
+                }
+
+                this.batch.put(key, record);
+                this.metaBatch.put(key, value.toMetadataByteArray());
+            }
+
+            // values must be persisted before the pointers
+            if (hasValueLogEntries) {
+                store.syncValueLog();
+            }
+
             db.write(batch, SYNC);
+
+            if (minKey != null) {
+                store.invalidateCursors(minKey, maxKey);
+            }
+
+            // index is rebuilt on restart if not closed cleanly
+            metaDb.write(metaBatch, ASYNC);
+        } catch (KVStoreException e) {
+            throw new RuntimeException(e);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
         } finally {
             this.isClosed = true;
         }
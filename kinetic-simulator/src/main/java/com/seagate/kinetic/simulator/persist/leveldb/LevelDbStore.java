@@ -30,6 +30,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
 import java.util.SortedMap;
+import java.util.Timer;
 import java.util.TreeMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -48,18 +49,47 @@ import com.seagate.kinetic.simulator.internal.KVStoreNotFound;
 import com.seagate.kinetic.simulator.internal.KVStoreVersionMismatch;
 import com.seagate.kinetic.simulator.internal.SimulatorEngine;
 import com.seagate.kinetic.simulator.persist.BatchOperation;
+import com.seagate.kinetic.simulator.persist.CursorStore;
 import com.seagate.kinetic.simulator.persist.KVKey;
 import com.seagate.kinetic.simulator.persist.KVValue;
 import com.seagate.kinetic.simulator.persist.PersistOption;
 import com.seagate.kinetic.simulator.persist.Store;
+import com.seagate.kinetic.simulator.persist.StoreStatistics;
 
 /**
  * LevelDb store for Kinetic simulator.
+ * <p>
+ * The store keeps a metadata index next to the data db. The index maps each
+ * key to its metadata (version, tag and algorithm) without the value, so that
+ * version checks and metadata only requests never read the value.
+ * <p>
+ * The data db is the source of truth. The index is written asynchronously
+ * and is rebuilt from the data db when the store was not closed cleanly.
+ * <p>
+ * If the value log is enabled in the simulator configuration, values equal to
+ * or larger than the value log threshold are appended to a {@link ValueLog}
+ * and the data db only holds the key, the metadata and a
+ * {@link ValuePointer}. LevelDB compactions then no longer rewrite large
+ * values. Unreferenced values are reclaimed by the {@link ValueLogCleaner}.
+ * <p>
+ * SYNC writes from concurrent requests are merged by the
+ * {@link GroupCommitter} into one LevelDB write batch with a single sync.
+ * <p>
+ * LevelDB supports concurrent readers and writers, reads are not serialized.
+ * Only the read-compare-write of a write is serialized, by a lock striped by
+ * key hash. Closing or resetting the store waits for all the operations in
+ * progress, through a read-write lock striped by thread so that concurrent
+ * reads do not share a lock state.
+ * <p>
+ * The GETNEXT and GETPREVIOUS cursors of each connection are kept open in a
+ * {@link CursorCache}, so that a sequential traversal advances the open
+ * cursor instead of seeking for each key.
  *
  * @author chiaming
  *
  */
-public class LevelDbStore implements Store<ByteString, ByteString, KVValue> {
+public class LevelDbStore implements Store<ByteString, ByteString, KVValue>,
+        CursorStore, StoreStatistics {
 
     private final static java.util.logging.Logger logger = Logger
             .getLogger(LevelDbStore.class.getName());
@@ -70,9 +100,48 @@ public class LevelDbStore implements Store<ByteString, ByteString, KVValue> {
     // level db file
     private String dbFile = null;
 
+    // metadata index db instance, key -> Versioned without value
+    private DB metaDb = null;
+
+    // metadata index db file
+    private String metaDbFile = null;
+
+    // marker file, exists if the metadata index was closed cleanly
+    private File metaCleanFile = null;
+
     // simulator config
     private SimulatorConfiguration config = null;
 
+    // value log, null if disabled and there is no segment to read from
+    private ValueLog valueLog = null;
+
+    // value log folder
+    private File valueLogFolder = null;
+
+    // true if large values are written to the value log
+    private boolean useValueLog = false;
+
+    // min value size to be written to the value log
+    private int valueLogThreshold = 4096;
+
+    // value log garbage collection timer
+    private Timer valueLogTimer = null;
+
+    // group committer for SYNC writes, null if disabled
+    private GroupCommitter committer = null;
+
+    // open GETNEXT/GETPREVIOUS cursors, null if disabled
+    private CursorCache cursors = null;
+
+    // number of key lock stripes, power of 2
+    private static final int KEY_LOCK_STRIPES = 1024;
+
+    // key locks, serialize the version check and the write of a key
+    private final Object[] keyLocks = new Object[KEY_LOCK_STRIPES];
+
+    // shared by all operations, exclusive for close and reset
+    private final StripedReadWriteLock dbLock = new StripedReadWriteLock();
+
     // sync write option
     private static final WriteOptions SYNC_WRITE_OPTION = new WriteOptions()
             .sync(true);
@@ -83,7 +152,22 @@ public class LevelDbStore implements Store<ByteString, ByteString, KVValue> {
 
     // default no-arg constructor
     public LevelDbStore() {
-        ;
+        for (int i = 0; i < KEY_LOCK_STRIPES; i++) {
+            keyLocks[i] = new Object();
+        }
+    }
+
+    /**
+     * Get the lock stripe of the specified key.
+     */
+    private Object lockOf(ByteString key) {
+
+        int h = key.hashCode();
+
+        // spread the hash bits
+        h ^= (h >>> 16);
+
+        return keyLocks[h & (KEY_LOCK_STRIPES - 1)];
     }
 
     @Override
@@ -153,6 +237,25 @@ public class LevelDbStore implements Store<ByteString, ByteString, KVValue> {
             // init write option
             // this.syncWriteOption.sync(true);
 
+            // open value log
+            this.openValueLog(persistFolder);
+
+            // open (or rebuild) metadata index
+            this.openMetadataIndex(persistFolder);
+
+            // group commit is disabled if max group size is less than 2
+            if (config.getGroupCommitMaxSize() > 1) {
+                this.committer = new GroupCommitter(this, db, metaDb,
+                        config.getGroupCommitMaxDelay(),
+                        config.getGroupCommitMaxSize());
+            }
+
+            if (config.getMaxCursorsPerConnection() > 0) {
+                this.cursors = new CursorCache(db,
+                        config.getMaxCursorsPerConnection(),
+                        config.getCursorIdleTimeout());
+            }
+
         } catch (IOException e) {
 
             logger.log(Level.SEVERE, e.getMessage(), e);
@@ -163,135 +266,490 @@ public class LevelDbStore implements Store<ByteString, ByteString, KVValue> {
         logger.info("Level db created, db =" + dbFile);
     }
 
-    @Override
-    public synchronized void put(ByteString key, ByteString oldVersion,
-            KVValue value, PersistOption pOption) throws KVStoreException {
+    /**
+     * Open the value log and start the value log garbage collector. The
+     * value log is only opened if it is enabled or if segments exist from a
+     * previous run with the value log enabled, so that existing pointer
+     * records can be read.
+     */
+    private void openValueLog(String persistFolder) throws IOException {
 
-        ByteString version = null;
+        this.useValueLog = config.getUseValueLog();
+        this.valueLogThreshold = config.getValueLogThreshold();
 
-        byte[] keyArray = key.toByteArray();
+        this.valueLogFolder = new File(persistFolder, "vlog");
 
-        byte[] data = null;
+        this.valueLog = null;
 
-        data = db.get(keyArray);
+        if (this.useValueLog || ValueLog.hasSegments(valueLogFolder)) {
 
-        KVValue obj = null;
+            this.valueLog = new ValueLog(valueLogFolder,
+                    config.getValueLogSegmentSize());
 
-        if (data != null) {
-            obj = new KVValue(data);
+            long period = config.getValueLogGcPeriod();
 
-            version = obj.getVersion();
+            this.valueLogTimer = new Timer("leveldb-vlog-cleaner", true);
+            this.valueLogTimer.schedule(new ValueLogCleaner(this, valueLog),
+                    period, period);
         }
 
-        SimulatorEngine.logBytes("put, key", KvkOf(key).getKey());
+        logger.info("value log enabled=" + useValueLog + ", threshold="
+                + valueLogThreshold);
+    }
 
-        checkVersion(version, oldVersion);
-        value.setKeyOf(key);
+    /**
+     * Open the metadata index. The index is destroyed and rebuilt from the
+     * data db if it was not closed cleanly.
+     */
+    private void openMetadataIndex(String persistFolder) throws IOException {
 
-        // write options
-        WriteOptions writeOptions = getWriteOption(pOption);
-        // put with write options
-        db.put(keyArray, value.toByteArray(), writeOptions);
+        metaDbFile = persistFolder + "/leveldb-meta.ldb";
+
+        metaCleanFile = new File(persistFolder, "leveldb-meta.clean");
+
+        Options options = new Options();
+        options.comparator(new KineticComparator());
+        options.cacheSize(8 * 1048576);
+        options.createIfMissing(true);
+
+        boolean isClean = metaCleanFile.exists()
+                && new File(metaDbFile).exists();
+
+        if (isClean == false) {
+            factory.destroy(new File(metaDbFile), options);
+        }
+
+        metaDb = factory.open(new File(metaDbFile), options);
+
+        // the index is not clean until it is closed
+        metaCleanFile.delete();
+
+        if (isClean == false) {
+            this.rebuildMetadataIndex();
+        }
+
+        logger.info("Level db metadata index opened, db =" + metaDbFile
+                + ", rebuilt=" + (isClean == false));
+    }
+
+    /**
+     * Rebuild the metadata index from the entries in the data db.
+     */
+    private void rebuildMetadataIndex() throws IOException {
+
+        long count = 0;
+
+        DBIterator cursor = db.iterator();
+
+        WriteBatch batch = metaDb.createWriteBatch();
+
+        try {
+
+            cursor.seekToFirst();
+
+            while (cursor.hasNext()) {
+
+                Entry<byte[], byte[]> e = cursor.next();
+
+                KVValue metadata = null;
+
+                try {
+                    metadata = KVValue.parseMetadata(ValuePointer
+                            .getMetadata(e.getValue()));
+                } catch (KVStoreException kvse) {
+                    throw new IOException(kvse.getMessage());
+                }
+
+                batch.put(e.getKey(), metadata.toByteArray());
+
+                if (++count % 1000 == 0) {
+                    metaDb.write(batch, asyncWriteOption);
+                    batch.close();
+                    batch = metaDb.createWriteBatch();
+                }
+            }
+
+            metaDb.write(batch, SYNC_WRITE_OPTION);
+        } finally {
+            batch.close();
+            cursor.close();
+        }
+
+        logger.info("Level db metadata index rebuilt, entry count=" + count);
     }
 
     @Override
-    public synchronized void putForced(ByteString key, KVValue value,
+    public void put(ByteString key, ByteString oldVersion, KVValue value,
             PersistOption pOption) throws KVStoreException {
 
-        byte[] keyArray = key.toByteArray();
+        dbLock.readLock().lock();
 
-        value.setKeyOf(key);
+        try {
+            this.doPut(key, oldVersion, value, pOption);
+        } finally {
+            dbLock.readLock().unlock();
+        }
+    }
 
-        // write options
-        WriteOptions writeOptions = getWriteOption(pOption);
-        // logger.info ("****** put writing option: " + wOptions.sync());
-        db.put(keyArray, value.toByteArray(), writeOptions);
+    private void doPut(ByteString key, ByteString oldVersion, KVValue value,
+            PersistOption pOption) throws KVStoreException {
+
+        GroupCommitter.Write write = null;
+
+        // read-compare-write is serialized per key
+        synchronized (lockOf(key)) {
+
+            ByteString version = null;
+
+            // version check reads the metadata index only
+            byte[] meta = getStoredMetadata(key);
+
+            if (meta != null) {
+                version = new KVValue(meta).getVersion();
+            }
+
+            SimulatorEngine.logBytes("put, key", KvkOf(key).getKey());
+
+            checkVersion(version, oldVersion);
+            value.setKeyOf(key);
+
+            write = this.write(key, value, pOption);
+        }
+
+        // wait for group commit outside the key lock
+        if (write != null) {
+            committer.await(write);
+        }
     }
 
     @Override
-    public synchronized void delete(ByteString key, ByteString oldVersion,
+    public void putForced(ByteString key, KVValue value,
+            PersistOption pOption) throws KVStoreException {
+
+        dbLock.readLock().lock();
+
+        try {
+            this.doPutForced(key, value, pOption);
+        } finally {
+            dbLock.readLock().unlock();
+        }
+    }
+
+    private void doPutForced(ByteString key, KVValue value,
+            PersistOption pOption) throws KVStoreException {
+
+        GroupCommitter.Write write = null;
+
+        // writes of the same key are queued in order
+        synchronized (lockOf(key)) {
+
+            value.setKeyOf(key);
+
+            write = this.write(key, value, pOption);
+        }
+
+        if (write != null) {
+            committer.await(write);
+        }
+    }
+
+    @Override
+    public void delete(ByteString key, ByteString oldVersion,
             PersistOption option) throws KVStoreException {
 
-        ByteString prevVersion = getVersion(key);
+        dbLock.readLock().lock();
+
+        try {
+            this.doDelete(key, oldVersion, option);
+        } finally {
+            dbLock.readLock().unlock();
+        }
+    }
 
-        checkVersion(prevVersion, oldVersion);
+    private void doDelete(ByteString key, ByteString oldVersion,
+            PersistOption option) throws KVStoreException {
 
-        // write options
-        WriteOptions writeOptions = getWriteOption(option);
-        // delete with write options
-        db.delete(key.toByteArray(), writeOptions);
+        GroupCommitter.Write write = null;
+
+        // read-compare-write is serialized per key
+        synchronized (lockOf(key)) {
+
+            byte[] meta = getStoredMetadata(key);
+
+            if (meta == null) {
+                throw new KVStoreNotFound();
+            }
+
+            KVValue obj = new KVValue(meta);
+
+            ByteString prevVersion = obj.hasVersion() ? obj.getVersion()
+                    : ByteString.EMPTY;
+
+            checkVersion(prevVersion, oldVersion);
+
+            write = this.write(key, null, option);
+        }
+
+        if (write != null) {
+            committer.await(write);
+        }
     }
 
     @Override
-    public synchronized void deleteForced(ByteString key, PersistOption option)
+    public void deleteForced(ByteString key, PersistOption option)
+            throws KVStoreException {
+
+        dbLock.readLock().lock();
+
+        try {
+            this.doDeleteForced(key, option);
+        } finally {
+            dbLock.readLock().unlock();
+        }
+    }
+
+    private void doDeleteForced(ByteString key, PersistOption option)
             throws KVStoreException {
         // forced delete
 
-        // write options
-        WriteOptions writeOptions = getWriteOption(option);
-        // delete with write option
-        db.delete(key.toByteArray(), writeOptions);
+        GroupCommitter.Write write = null;
+
+        synchronized (lockOf(key)) {
+            write = this.write(key, null, option);
+        }
+
+        if (write != null) {
+            committer.await(write);
+        }
     }
 
-    @Override
-    public synchronized KVValue get(ByteString key) throws KVStoreException {
+    /**
+     * Get the stored metadata of the key. Writes pending in the group
+     * committer are taken into account. Called with the key lock held.
+     *
+     * @return the metadata, or null if the key is not found.
+     */
+    private byte[] getStoredMetadata(ByteString key) {
+
+        if (committer != null) {
+
+            GroupCommitter.Write pending = committer.getPending(key);
+
+            if (pending != null) {
+                return pending.getMetadata();
+            }
+        }
+
+        return metaDb.get(key.toByteArray());
+    }
+
+    /**
+     * Write (or delete if value is null) the entry. Called with the key lock
+     * held.
+     * <p>
+     * SYNC and FLUSH writes are queued to the group committer. ASYNC writes
+     * are written directly, unless a write of the same key is pending in the
+     * group committer.
+     *
+     * @return the queued write to wait for, or null if written directly.
+     */
+    private GroupCommitter.Write write(ByteString key, KVValue value,
+            PersistOption pOption) throws KVStoreException {
 
         byte[] keyArray = key.toByteArray();
-        byte[] data = db.get(keyArray);
 
-        if (data == null) {
-            throw new KVStoreNotFound();
+        boolean isGroupCommit = (committer != null)
+                && (pOption != PersistOption.ASYNC || committer
+                        .getPending(key) != null);
+
+        if (isGroupCommit) {
+
+            if (value == null) {
+                return committer.enqueue(key, null, null,
+                        pOption != PersistOption.ASYNC);
+            }
+
+            // value log is synced once by the group leader
+            byte[] record = toRecord(keyArray, value, PersistOption.ASYNC);
+
+            return committer.enqueue(key, record,
+                    value.toMetadataByteArray(),
+                    pOption != PersistOption.ASYNC);
         }
 
-        return new KVValue(data);
+        // write options
+        WriteOptions writeOptions = getWriteOption(pOption);
+
+        if (value == null) {
+            // delete with write options
+            db.delete(keyArray, writeOptions);
+
+            // update index
+            metaDb.delete(keyArray, asyncWriteOption);
+        } else {
+            // record to be written, value may be appended to the value log
+            byte[] record = toRecord(keyArray, value, pOption);
+
+            // put with write options
+            db.put(keyArray, record, writeOptions);
+
+            // update index, rebuilt on restart if not closed cleanly
+            metaDb.put(keyArray, value.toMetadataByteArray(),
+                    asyncWriteOption);
+        }
+
+        this.invalidateCursors(keyArray, keyArray);
+
+        return null;
+    }
+
+    @Override
+    public KVValue get(ByteString key) throws KVStoreException {
+
+        dbLock.readLock().lock();
+
+        try {
+            byte[] keyArray = key.toByteArray();
+            byte[] data = db.get(keyArray);
+
+            if (data == null) {
+                throw new KVStoreNotFound();
+            }
+
+            return toKVValue(keyArray, data);
+        } finally {
+            dbLock.readLock().unlock();
+        }
     }
 
     @Override
-    public synchronized KVValue getPrevious(ByteString key)
+    public KVValue getMetadata(ByteString key)
             throws KVStoreException {
+
+        dbLock.readLock().lock();
+
+        try {
+            byte[] meta = metaDb.get(key.toByteArray());
+
+            if (meta == null) {
+                throw new KVStoreNotFound();
+            }
+
+            return new KVValue(meta);
+        } finally {
+            dbLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public KVValue getPrevious(ByteString key) throws KVStoreException {
+
+        dbLock.readLock().lock();
+
+        try {
+            return this.doGetPrevious(key);
+        } finally {
+            dbLock.readLock().unlock();
+        }
+    }
+
+    private KVValue doGetPrevious(ByteString key) throws KVStoreException {
         // get iterator
         DBIterator dbit = db.iterator();
 
-        // get byte[]
-        byte[] kbytes = key.toByteArray();
+        try {
+            Map.Entry<byte[], byte[]> entry = seekPrevious(dbit,
+                    key.toByteArray());
+
+            // return value
+            return toKVValue(entry.getKey(), entry.getValue());
+        } catch (NoSuchElementException ne) {
+            throw new KVStoreNotFound();
+        } finally {
+            try {
+                dbit.close();
+            } catch (Exception e) {
+                logger.log(Level.WARNING, e.getMessage(), e);
+            }
+        }
+    }
+
+    @Override
+    public KVValue getPrevious(long cid, ByteString key)
+            throws KVStoreException {
 
-        KVValue value = null;
+        dbLock.readLock().lock();
 
         try {
-            // move to closest key
-            dbit.seek(kbytes);
 
-            // if there is a key smaller
-            if (dbit.hasPrev()) {
-                // get entry
-                Map.Entry<byte[], byte[]> entry = dbit.prev();
+            if (cursors == null) {
+                return this.doGetPrevious(key);
+            }
+
+            return this.doGetWithCursor(cid, key, false);
+        } finally {
+            dbLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Move the iterator to the entry previous to the key. The iterator is
+     * left positioned at the returned entry.
+     *
+     * @return the previous entry.
+     * @throws KVStoreNotFound
+     *             if there is no previous entry.
+     */
+    private static Map.Entry<byte[], byte[]> seekPrevious(DBIterator dbit,
+            byte[] kbytes) throws KVStoreNotFound {
 
-                // return value
-                value = new KVValue(entry.getValue());
+        // move to closest key
+        dbit.seek(kbytes);
 
-            } else {
-                // go to the last key
-                dbit.seekToLast();
-
-                // check if there is an entry
-                if (dbit.hasNext()) {
-                    // get entry
-                    Map.Entry<byte[], byte[]> entry = dbit.next();
-
-                    // logger.info("key=" + new String(entry.getKey()));
-                    // compare last
-                    int cv = compare(entry.getKey(), kbytes);
-
-                    if (cv < 0) {
-                        // return value
-                        value = new KVValue(entry.getValue());
-                    } else {
-                        throw new KVStoreNotFound();
-                    }
-                }
+        // if there is a key smaller
+        if (dbit.hasPrev()) {
+            // get entry
+            return dbit.prev();
+        }
+
+        // go to the last key
+        dbit.seekToLast();
+
+        // check if there is an entry
+        if (dbit.hasNext()) {
+            // get entry, the iterator stays at the entry
+            Map.Entry<byte[], byte[]> entry = dbit.peekNext();
+
+            // compare last
+            if (compare(entry.getKey(), kbytes) < 0) {
+                return entry;
             }
-        } catch (Exception e) {
-            //
+        }
+
+        throw new KVStoreNotFound();
+    }
+
+    @Override
+    public KVValue getNext(ByteString key) throws KVStoreException {
+
+        dbLock.readLock().lock();
+
+        try {
+            return this.doGetNext(key);
+        } finally {
+            dbLock.readLock().unlock();
+        }
+    }
+
+    private KVValue doGetNext(ByteString key) throws KVStoreException {
+        DBIterator dbit = db.iterator();
+
+        try {
+            Map.Entry<byte[], byte[]> entry = seekNext(dbit,
+                    key.toByteArray());
+
+            return toKVValue(entry.getKey(), entry.getValue());
+        } catch (NoSuchElementException ne) {
             throw new KVStoreNotFound();
         } finally {
             try {
@@ -300,71 +758,221 @@ public class LevelDbStore implements Store<ByteString, ByteString, KVValue> {
                 logger.log(Level.WARNING, e.getMessage(), e);
             }
         }
+    }
 
-        if (value == null) {
+    @Override
+    public KVValue getNext(long cid, ByteString key) throws KVStoreException {
+
+        dbLock.readLock().lock();
+
+        try {
+
+            if (cursors == null) {
+                return this.doGetNext(key);
+            }
+
+            return this.doGetWithCursor(cid, key, true);
+        } finally {
+            dbLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Move the iterator past the entry next to the key.
+     *
+     * @return the next entry.
+     * @throws KVStoreNotFound
+     *             if there is no next entry.
+     */
+    private static Map.Entry<byte[], byte[]> seekNext(DBIterator dbit,
+            byte[] kbytes) throws KVStoreNotFound {
+
+        dbit.seek(kbytes);
+
+        if (dbit.hasNext() == false) {
             throw new KVStoreNotFound();
         }
 
-        return value;
-    }
+        // get next element
+        Map.Entry<byte[], byte[]> entry = dbit.next();
 
-    @Override
-    public synchronized KVValue getNext(ByteString key) throws KVStoreException {
-        DBIterator dbit = db.iterator();
+        if (compare(entry.getKey(), kbytes) == 0) {
+            // get next
+            entry = dbit.next();
+        }
 
-        KVValue value = null;
+        return entry;
+    }
+
+    /**
+     * Get the next (or previous) entry with the open cursor of the
+     * connection that returned the key. A new cursor is opened if there is
+     * none. The cursor is kept open if an entry is returned.
+     */
+    private KVValue doGetWithCursor(long cid, ByteString key,
+            boolean isForward) throws KVStoreException {
 
         byte[] kbytes = key.toByteArray();
 
+        CursorCache.Cursor cursor = cursors.take(cid, kbytes, isForward);
+
         try {
 
-            dbit.seek(kbytes);
+            Map.Entry<byte[], byte[]> entry = null;
 
-            if (dbit.hasNext()) {
-                // get next element
-                Map.Entry<byte[], byte[]> entry = dbit.next();
+            if (cursor == null) {
 
-                if (compare(entry.getKey(), kbytes) == 0) {
-                    // get next
-                    entry = dbit.next();
-                }
+                cursor = cursors.open(cid, isForward);
+
+                entry = isForward ? seekNext(cursor.getIterator(), kbytes)
+                        : seekPrevious(cursor.getIterator(), kbytes);
 
-                value = new KVValue(entry.getValue());
+            } else if (isForward) {
+
+                // positioned past the last returned entry
+                entry = cursor.getIterator().next();
 
             } else {
-                throw new KVStoreNotFound();
+
+                // positioned at the last returned entry
+                if (cursor.getIterator().hasPrev() == false) {
+                    throw new KVStoreNotFound();
+                }
+
+                entry = cursor.getIterator().prev();
             }
-        } catch (NoSuchElementException ne) {
+
+            KVValue value = toKVValue(entry.getKey(), entry.getValue());
+
+            cursor.setLastKey(entry.getKey());
+
+            cursors.release(cursor);
+            cursor = null;
+
+            return value;
+
+        } catch (KVStoreException e) {
+            throw e;
+        } catch (Exception e) {
+            // end of db
             throw new KVStoreNotFound();
         } finally {
-            try {
-                dbit.close();
-            } catch (Exception e) {
-                logger.log(Level.WARNING, e.getMessage(), e);
+            if (cursor != null) {
+                cursors.close(cursor);
             }
         }
+    }
 
-        return value;
+    /**
+     * Invalidate the open cursors that may return a written key. Called
+     * after each write to the data db.
+     *
+     * @param minKey
+     *            the smallest written key.
+     * @param maxKey
+     *            the largest written key.
+     */
+    void invalidateCursors(byte[] minKey, byte[] maxKey) {
+        if (cursors != null) {
+            cursors.invalidate(minKey, maxKey);
+        }
+    }
+
+    /**
+     * Get the group committer.
+     *
+     * @return the group committer, or null if group commit is disabled.
+     */
+    GroupCommitter getGroupCommitter() {
+        return this.committer;
     }
 
     @Override
-    public synchronized SortedMap<?, ?> getRange(ByteString startKey,
+    public void getStatistics(Map<String, Object> statistics) {
+
+        dbLock.readLock().lock();
+
+        try {
+
+            if (cursors == null) {
+                return;
+            }
+
+            statistics.put("cursor.open", cursors.getOpenCount());
+            statistics.put("cursor.hits", cursors.getHits());
+            statistics.put("cursor.misses", cursors.getMisses());
+        } finally {
+            dbLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public SortedMap<?, ?> getRange(ByteString startKey,
             boolean startKeyInclusive, ByteString endKey,
             boolean endKeyInclusive, int max) throws KVStoreException {
 
-        SortedMap<KVKey, KVValue> map = new TreeMap<KVKey, KVValue>();
+        dbLock.readLock().lock();
 
-        byte[] start = startKey.toByteArray();
-        byte[] end = endKey.toByteArray();
+        try {
+            SortedMap<KVKey, KVValue> map = new TreeMap<KVKey, KVValue>();
+
+            List<Entry<byte[], byte[]>> entries = scan(startKey.toByteArray(),
+                    startKeyInclusive, endKey.toByteArray(), endKeyInclusive, max);
+
+            for (Entry<byte[], byte[]> e : entries) {
+                map.put(new KVKey(e.getKey()), toKVValue(e.getKey(), e.getValue()));
+            }
+
+            return map;
+
+        } finally {
+            dbLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<?> getKeyRange(ByteString startKey,
+            boolean startKeyInclusive, ByteString endKey,
+            boolean endKeyInclusive, int max) throws KVStoreException {
+
+        dbLock.readLock().lock();
+
+        try {
+            List<KVKey> listOfKVKey = new ArrayList<KVKey>();
+
+            List<Entry<byte[], byte[]>> entries = scan(startKey.toByteArray(),
+                    startKeyInclusive, endKey.toByteArray(), endKeyInclusive, max);
+
+            // only the keys are used, stored values are never deserialized
+            for (Entry<byte[], byte[]> e : entries) {
+                listOfKVKey.add(new KVKey(e.getKey()));
+            }
+
+            return listOfKVKey;
+        } finally {
+            dbLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Scan the db forward from the start key and collect at most max raw
+     * entries in the specified range. The scan stops at the first key after
+     * the end key.
+     */
+    private List<Entry<byte[], byte[]>> scan(byte[] start,
+            boolean startKeyInclusive, byte[] end, boolean endKeyInclusive,
+            int max) throws KVStoreException {
+
+        List<Entry<byte[], byte[]>> entries = new ArrayList<Entry<byte[], byte[]>>();
 
         // Short-circuit when the start key comes after the end key.
         if (compare(start, end) > 0) {
-            return map;
+            return entries;
         }
 
         if ((compare(start, end) == 0)
                 && ((startKeyInclusive && endKeyInclusive) == false)) {
-            return map;
+            return entries;
         }
 
         DBIterator cursor = null;
@@ -375,35 +983,21 @@ public class LevelDbStore implements Store<ByteString, ByteString, KVValue> {
 
             cursor.seek(start);
 
-            if (cursor.hasNext()) {
-                Entry<byte[], byte[]> e = cursor.next();
+            while (cursor.hasNext() && entries.size() < max) {
 
-                int cv = compare(e.getKey(), start);
+                Entry<byte[], byte[]> pair = cursor.next();
 
-                if (cv == 0) {
-                    if (startKeyInclusive) {
-                        map.put(new KVKey(e.getKey()),
-                                new KVValue(e.getValue()));
-                    }
-                } else {
-                    // check if should include
-                    if (shouldInclude(e.getKey(), end, endKeyInclusive, false)) {
-                        map.put(new KVKey(e.getKey()),
-                                new KVValue(e.getValue()));
-                    }
+                if (startKeyInclusive == false
+                        && compare(pair.getKey(), start) == 0) {
+                    continue;
                 }
-            }
-
-            while (cursor.hasNext() && map.size() < max) {
-
-                Entry<byte[], byte[]> pair = cursor.next();
 
-                // check should we put the pair in the map
-                if (shouldInclude(pair.getKey(), end, endKeyInclusive, false)) {
-                    map.put(new KVKey(pair.getKey()),
-                            new KVValue(pair.getValue()));
+                // keys are ordered, nothing to include after the end key
+                if (shouldInclude(pair.getKey(), end, endKeyInclusive, false) == false) {
+                    break;
                 }
 
+                entries.add(pair);
             }
         } catch (Exception e) {
             logger.log(Level.WARNING, e.getMessage(), e);
@@ -418,12 +1012,25 @@ public class LevelDbStore implements Store<ByteString, ByteString, KVValue> {
             }
         }
 
-        return map;
-
+        return entries;
     }
 
     @Override
-    public synchronized List<?> getRangeReversed(ByteString startKey,
+    public List<?> getRangeReversed(ByteString startKey,
+            boolean startKeyInclusive, ByteString endKey,
+            boolean endKeyInclusive, int max) throws KVStoreException {
+
+        dbLock.readLock().lock();
+
+        try {
+            return this.doGetRangeReversed(startKey, startKeyInclusive,
+                    endKey, endKeyInclusive, max);
+        } finally {
+            dbLock.readLock().unlock();
+        }
+    }
+
+    private List<?> doGetRangeReversed(ByteString startKey,
             boolean startKeyInclusive, ByteString endKey,
             boolean endKeyInclusive, int max) throws KVStoreException {
 
@@ -521,7 +1128,32 @@ public class LevelDbStore implements Store<ByteString, ByteString, KVValue> {
     }
 
     @Override
-    public synchronized void close() {
+    public void close() {
+
+        dbLock.writeLock().lock();
+
+        try {
+            this.doClose();
+        } finally {
+            dbLock.writeLock().unlock();
+        }
+    }
+
+    private void doClose() {
+
+        if (this.cursors != null) {
+            this.cursors.close();
+        }
+
+        if (this.valueLogTimer != null) {
+            this.valueLogTimer.cancel();
+            this.valueLogTimer = null;
+        }
+
+        // values must be on disk before the pointers
+        if (this.valueLog != null) {
+            this.valueLog.close();
+        }
 
         try {
             this.db.close();
@@ -531,12 +1163,35 @@ public class LevelDbStore implements Store<ByteString, ByteString, KVValue> {
 
             logger.log(Level.WARNING, e.getMessage(), e);
         }
+
+        try {
+            this.metaDb.close();
+
+            // mark the index as clean so it is not rebuilt on next open
+            this.metaCleanFile.createNewFile();
+
+            logger.info("leveldb metadata index closed ...");
+        } catch (IOException e) {
+
+            logger.log(Level.WARNING, e.getMessage(), e);
+        }
     }
 
     @Override
     public void reset() throws KVStoreException {
 
-        this.close();
+        dbLock.writeLock().lock();
+
+        try {
+            this.doReset();
+        } finally {
+            dbLock.writeLock().unlock();
+        }
+    }
+
+    private void doReset() throws KVStoreException {
+
+        this.doClose();
 
         // delete db file
         File ldb = new File(this.dbFile);
@@ -545,6 +1200,13 @@ public class LevelDbStore implements Store<ByteString, ByteString, KVValue> {
 
         try {
             factory.destroy(ldb, options);
+
+            // remove metadata index
+            factory.destroy(new File(this.metaDbFile), options);
+            this.metaCleanFile.delete();
+
+            // remove value log
+            deleteDirectory(this.valueLogFolder);
         } catch (IOException e) {
             throw new KVStoreException(e.getMessage());
         }
@@ -628,7 +1290,7 @@ public class LevelDbStore implements Store<ByteString, ByteString, KVValue> {
     // returns the version if it is in the db. Null otherwise.
     ByteString getVersion(ByteString key) throws KVStoreException {
 
-        KVValue obj = get(key);
+        KVValue obj = getMetadata(key);
 
         if (obj == null)
             throw new KVStoreNotFound();
@@ -697,16 +1359,21 @@ public class LevelDbStore implements Store<ByteString, ByteString, KVValue> {
     @Override
     public BatchOperation<ByteString, KVValue> createBatchOperation()
             throws KVStoreException {
-        return new LdbBatchOperation(db);
+        return new LdbBatchOperation(this, db, metaDb);
     }
 
     @Override
     public void flush() throws KVStoreException {
+
+        dbLock.readLock().lock();
+
         try {
             doFlush();
         } catch (Exception e) {
             KVStoreException kvse = new KVStoreException(e.getMessage());
             throw kvse;
+        } finally {
+            dbLock.readLock().unlock();
         }
     }
 
@@ -751,11 +1418,193 @@ public class LevelDbStore implements Store<ByteString, ByteString, KVValue> {
         }
     }
 
+    /**
+     * Convert the entry to the record stored in the data db. The value is
+     * appended to the value log if the value log is enabled and the value is
+     * not smaller than the threshold.
+     *
+     * @param key
+     *            the entry key
+     * @param value
+     *            the entry
+     * @param pOption
+     *            persist option. The value log is synced for SYNC and FLUSH.
+     * @return the data db record.
+     * @throws KVStoreException
+     *             if the value cannot be written to the value log.
+     */
+    byte[] toRecord(byte[] key, KVValue value, PersistOption pOption)
+            throws KVStoreException {
+
+        if (this.useValueLog == false || value.hasData() == false
+                || value.getData().size() < this.valueLogThreshold) {
+            return value.toByteArray();
+        }
+
+        try {
+
+            ValuePointer pointer = valueLog.append(key, value.getData());
+
+            // the value must be persisted before the pointer
+            if (pOption != PersistOption.ASYNC) {
+                valueLog.sync();
+            }
+
+            return pointer.toRecord(value.toMetadataByteArray());
+
+        } catch (IOException e) {
+            logger.log(Level.WARNING, e.getMessage(), e);
+            throw new KVStoreException(e.getMessage());
+        }
+    }
+
+    /**
+     * Sync the value log. Called before a batch with value log entries is
+     * committed.
+     */
+    void syncValueLog() throws IOException {
+        if (this.valueLog != null) {
+            this.valueLog.sync();
+        }
+    }
+
+    /**
+     * Convert the data db record to an entry. The value is read from the
+     * value log for pointer records.
+     */
+    private KVValue toKVValue(byte[] key, byte[] record)
+            throws KVStoreException {
+
+        if (ValuePointer.isPointerRecord(record) == false) {
+            return new KVValue(record);
+        }
+
+        if (this.valueLog == null) {
+            throw new KVStoreException("value log not found, "
+                    + ValuePointer.fromRecord(record));
+        }
+
+        try {
+
+            ByteString data = valueLog.read(ValuePointer.fromRecord(record),
+                    key);
+
+            if (data == null) {
+
+                // segment was cleaned after the record was read, re-read
+                byte[] current = db.get(key);
+
+                if (current == null) {
+                    throw new KVStoreNotFound();
+                }
+
+                if (Arrays.equals(current, record)) {
+                    throw new KVStoreException(
+                            "value log segment not found, "
+                                    + ValuePointer.fromRecord(record));
+                }
+
+                return toKVValue(key, current);
+            }
+
+            KVValue value = new KVValue(ValuePointer.getMetadata(record));
+            value.setData(data);
+
+            return value;
+
+        } catch (IOException e) {
+            logger.log(Level.WARNING, e.getMessage(), e);
+            throw new KVStoreException(e.getMessage());
+        }
+    }
+
+    /**
+     * Get the value pointer of the specified key.
+     *
+     * @return the value pointer, or null if the key does not exist or the
+     *         value is not in the value log.
+     */
+    ValuePointer getValuePointer(byte[] key) {
+
+        byte[] record = null;
+
+        dbLock.readLock().lock();
+
+        try {
+            record = db.get(key);
+        } finally {
+            dbLock.readLock().unlock();
+        }
+
+        if (record == null || ValuePointer.isPointerRecord(record) == false) {
+            return null;
+        }
+
+        return ValuePointer.fromRecord(record);
+    }
+
+    /**
+     * Move a value to the active value log segment. The pointer is only
+     * updated if the key still points to the old location.
+     *
+     * @param key
+     *            the entry key
+     * @param oldPointer
+     *            current location of the value
+     * @param value
+     *            the value
+     */
+    void relocate(byte[] key, ValuePointer oldPointer, ByteString value)
+            throws IOException {
+
+        ByteString keyString = ByteString.copyFrom(key);
+
+        dbLock.readLock().lock();
+
+        try {
+            // serialized with the writes of the key
+            synchronized (lockOf(keyString)) {
+                this.doRelocate(keyString, key, oldPointer, value);
+            }
+        } finally {
+            dbLock.readLock().unlock();
+        }
+    }
+
+    private void doRelocate(ByteString keyString, byte[] key,
+            ValuePointer oldPointer, ByteString value) throws IOException {
+
+        // the pending write will replace the pointer
+        if (committer != null && committer.getPending(keyString) != null) {
+            return;
+        }
+
+        byte[] record = db.get(key);
+
+        if (record == null || ValuePointer.isPointerRecord(record) == false
+                || oldPointer.equals(ValuePointer.fromRecord(record)) == false) {
+            // entry was updated or deleted
+            return;
+        }
+
+        ValuePointer pointer = valueLog.append(key, value);
+
+        valueLog.sync();
+
+        // metadata is unchanged, the metadata index is not updated
+        db.put(key, pointer.toRecord(ValuePointer.getMetadata(record)),
+                SYNC_WRITE_OPTION);
+
+        // open cursors may still point to the old segment
+        this.invalidateCursors(key, key);
+    }
 
     @Override
     public void compactRange(ByteString startKey, ByteString endKey)
             throws KVStoreException {
 
+        dbLock.readLock().lock();
+
         try {
 
             // start key
@@ -777,6 +1626,8 @@ public class LevelDbStore implements Store<ByteString, ByteString, KVValue> {
 
         } catch (Exception e) {
             throw new KVStoreException(e.getMessage());
+        } finally {
+            dbLock.readLock().unlock();
         }
     }
 
@@ -0,0 +1,89 @@
+/**
+ * 
+ * Copyright (C) 2014 Seagate Technology.
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.seagate.kinetic.simulator.persist.leveldb;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Read-write lock striped by thread.
+ * <p>
+ * A reader only locks the read lock of the stripe of its thread, so that
+ * concurrent readers on different threads do not update a shared lock
+ * state. The writer locks the write locks of all the stripes, in order.
+ * <p>
+ * The lock is used to guard the lifecycle of the store: all the operations
+ * are readers, and only close and reset are writers.
+ *
+ * @see LevelDbStore
+ */
+class StripedReadWriteLock {
+
+    // number of stripes, power of 2
+    private static final int STRIPES = 64;
+
+    private final ReentrantReadWriteLock[] stripes = new ReentrantReadWriteLock[STRIPES];
+
+    private final WriteLock writeLock = new WriteLock();
+
+    /**
+     * Write lock of all the stripes.
+     */
+    class WriteLock {
+
+        /**
+         * Lock the write locks of all the stripes. Waits for the readers of
+         * all the threads.
+         */
+        void lock() {
+            for (int i = 0; i < STRIPES; i++) {
+                stripes[i].writeLock().lock();
+            }
+        }
+
+        void unlock() {
+            for (int i = STRIPES - 1; i >= 0; i--) {
+                stripes[i].writeLock().unlock();
+            }
+        }
+    }
+
+    StripedReadWriteLock() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantReadWriteLock();
+        }
+    }
+
+    /**
+     * Get the read lock of the calling thread. The lock must be unlocked by
+     * the same thread.
+     */
+    Lock readLock() {
+        return stripes[(int) Thread.currentThread().getId() & (STRIPES - 1)]
+                .readLock();
+    }
+
+    /**
+     * Get the write lock.
+     */
+    WriteLock writeLock() {
+        return this.writeLock;
+    }
+}
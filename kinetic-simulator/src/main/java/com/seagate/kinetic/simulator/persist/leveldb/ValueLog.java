@@ -0,0 +1,508 @@
+/**
+ * 
+ * Copyright (C) 2014 Seagate Technology.
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.seagate.kinetic.simulator.persist.leveldb;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import com.google.protobuf.ByteString;
+
+/**
+ * Append-only value log for the LevelDB store (key/value separation).
+ * <p>
+ * Large values are appended to segment files in the value log folder, and
+ * LevelDB only keeps the key, the metadata and a {@link ValuePointer} to the
+ * value. LevelDB compactions therefore no longer rewrite the values.
+ * <p>
+ * Each log record has the following format:
+ * <p>
+ * <code>[crc32 (4)][key length (4)][value length (4)][key][value]</code>
+ * <p>
+ * The crc covers all the bytes after the crc field. The key is kept in the
+ * record so that the garbage collector can check if the record is still
+ * referenced by LevelDB.
+ * <p>
+ * A new segment is started each time the log is opened and when the active
+ * segment reaches the configured segment size. Only sealed segments (all
+ * segments except the active one) are garbage collected.
+ *
+ * @see ValueLogCleaner
+ * @see ValuePointer
+ */
+public class ValueLog {
+
+    private final static Logger logger = Logger.getLogger(ValueLog.class
+            .getName());
+
+    // log record header size
+    private static final int RECORD_HEADER_SIZE = 4 + 4 + 4;
+
+    // segment file name suffix
+    private static final String SEGMENT_SUFFIX = ".vlog";
+
+    // value log folder
+    private final File folder;
+
+    // max segment size before a new segment is started
+    private final long segmentSize;
+
+    // open segments, id -> segment
+    private final ConcurrentHashMap<Long, Segment> segments = new ConcurrentHashMap<Long, Segment>();
+
+    // active segment, created on first append
+    private Segment active = null;
+
+    // last segment id
+    private long lastSegmentId = 0;
+
+    // true if data was appended since last sync
+    private boolean dirty = false;
+
+    /**
+     * A value log segment file.
+     */
+    private static class Segment {
+
+        private final long id;
+
+        private final File file;
+
+        private final RandomAccessFile raf;
+
+        private final FileChannel channel;
+
+        // append position
+        private long position = 0;
+
+        Segment(long id, File file) throws IOException {
+            this.id = id;
+            this.file = file;
+            this.raf = new RandomAccessFile(file, "rw");
+            this.channel = raf.getChannel();
+            this.position = channel.size();
+        }
+
+        void close() {
+            try {
+                this.raf.close();
+            } catch (IOException e) {
+                logger.log(Level.WARNING, e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * A record read from the value log.
+     */
+    public static class Record {
+
+        private final ValuePointer pointer;
+
+        private final byte[] bytes;
+
+        private final int keyLength;
+
+        private final int valueLength;
+
+        Record(ValuePointer pointer, byte[] bytes, int keyLength,
+                int valueLength) {
+            this.pointer = pointer;
+            this.bytes = bytes;
+            this.keyLength = keyLength;
+            this.valueLength = valueLength;
+        }
+
+        public ValuePointer getPointer() {
+            return pointer;
+        }
+
+        public byte[] getKey() {
+            return Arrays.copyOfRange(bytes, RECORD_HEADER_SIZE,
+                    RECORD_HEADER_SIZE + keyLength);
+        }
+
+        public ByteString getValue() {
+            return ByteString.copyFrom(bytes, RECORD_HEADER_SIZE + keyLength,
+                    valueLength);
+        }
+    }
+
+    /**
+     * Open the value log in the specified folder.
+     *
+     * @param folder
+     *            value log folder, created if not there.
+     * @param segmentSize
+     *            max size of a segment file in bytes.
+     * @throws IOException
+     *             if any IO error occurred.
+     */
+    public ValueLog(File folder, long segmentSize) throws IOException {
+
+        this.folder = folder;
+        this.segmentSize = segmentSize;
+
+        if (folder.exists() == false) {
+            boolean created = folder.mkdirs();
+            logger.info("create value log folder: " + folder + ", created="
+                    + created);
+        }
+
+        File[] files = folder.listFiles();
+
+        for (File file : files) {
+
+            String name = file.getName();
+
+            if (name.endsWith(SEGMENT_SUFFIX) == false) {
+                continue;
+            }
+
+            long id = Long.parseLong(name.substring(0, name.length()
+                    - SEGMENT_SUFFIX.length()));
+
+            segments.put(id, new Segment(id, file));
+
+            lastSegmentId = Math.max(lastSegmentId, id);
+        }
+
+        logger.info("value log opened, folder=" + folder + ", segments="
+                + segments.size());
+    }
+
+    /**
+     * Append a value to the log. The record is not synced to the device
+     * until {@link #sync()} is called.
+     *
+     * @param key
+     *            the key of the entry
+     * @param value
+     *            the value of the entry
+     * @return pointer to the appended record.
+     * @throws IOException
+     *             if any IO error occurred.
+     */
+    public synchronized ValuePointer append(byte[] key, ByteString value)
+            throws IOException {
+
+        int length = RECORD_HEADER_SIZE + key.length + value.size();
+
+        // one copy of the value into the record buffer
+        byte[] bytes = new byte[length];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+
+        buffer.position(4);
+        buffer.putInt(key.length);
+        buffer.putInt(value.size());
+        buffer.put(key);
+        value.copyTo(bytes, buffer.position());
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 4, length - 4);
+        buffer.putInt(0, (int) crc.getValue());
+
+        Segment segment = this.getActiveSegment();
+
+        long offset = segment.position;
+
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            segment.channel.write(buffer, offset + buffer.position());
+        }
+
+        segment.position = offset + length;
+
+        this.dirty = true;
+
+        return new ValuePointer(segment.id, offset, length);
+    }
+
+    /**
+     * Force appended records to the storage device.
+     *
+     * @throws IOException
+     *             if any IO error occurred.
+     */
+    public synchronized void sync() throws IOException {
+
+        if (this.dirty && this.active != null) {
+            this.active.channel.force(false);
+        }
+
+        this.dirty = false;
+    }
+
+    /**
+     * Read the value at the specified location.
+     *
+     * @param pointer
+     *            location of the value.
+     * @param key
+     *            the key the value belongs to.
+     * @return the value, or null if the segment was garbage collected.
+     * @throws IOException
+     *             if the record cannot be read or is corrupted.
+     */
+    public ByteString read(ValuePointer pointer, byte[] key)
+            throws IOException {
+
+        Record record = this.readRecord(pointer.getSegmentId(),
+                pointer.getOffset());
+
+        if (record == null) {
+            if (segments.containsKey(pointer.getSegmentId()) == false) {
+                return null;
+            }
+
+            throw new IOException("invalid value log record, " + pointer);
+        }
+
+        if (record.pointer.getLength() != pointer.getLength()
+                || Arrays.equals(record.getKey(), key) == false) {
+            throw new IOException("value log record mismatch, " + pointer);
+        }
+
+        return record.getValue();
+    }
+
+    /**
+     * Read the record at the specified segment offset.
+     *
+     * @param segmentId
+     *            segment id
+     * @param offset
+     *            record offset in the segment.
+     * @return the record, or null if there is no valid record at the offset
+     *         (end of segment, torn write, or segment removed).
+     * @throws IOException
+     *             if any IO error occurred.
+     */
+    public Record readRecord(long segmentId, long offset) throws IOException {
+
+        Segment segment = segments.get(segmentId);
+
+        if (segment == null) {
+            return null;
+        }
+
+        try {
+
+            ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+
+            if (readFully(segment.channel, header, offset) == false) {
+                return null;
+            }
+
+            int keyLength = header.getInt(4);
+            int valueLength = header.getInt(8);
+
+            if (keyLength < 0 || valueLength < 0) {
+                return null;
+            }
+
+            int length = RECORD_HEADER_SIZE + keyLength + valueLength;
+
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+
+            if (readFully(segment.channel, buffer, offset) == false) {
+                return null;
+            }
+
+            byte[] bytes = buffer.array();
+
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 4, length - 4);
+
+            if ((int) crc.getValue() != header.getInt(0)) {
+                return null;
+            }
+
+            return new Record(new ValuePointer(segmentId, offset, length),
+                    bytes, keyLength, valueLength);
+
+        } catch (ClosedChannelException e) {
+            // segment was removed while reading
+            return null;
+        }
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer,
+            long offset) throws IOException {
+
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, offset + buffer.position());
+
+            if (n < 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Get the ids of the sealed segments (all but the active segment),
+     * oldest first.
+     *
+     * @return sealed segment ids in ascending order.
+     */
+    public synchronized List<Long> getSealedSegments() {
+
+        List<Long> ids = new ArrayList<Long>();
+
+        for (Long id : segments.keySet()) {
+            if (active == null || id.longValue() != active.id) {
+                ids.add(id);
+            }
+        }
+
+        Collections.sort(ids);
+
+        return ids;
+    }
+
+    /**
+     * Remove a sealed segment from the log and delete its file.
+     *
+     * @param segmentId
+     *            the segment to be removed.
+     */
+    public synchronized void removeSegment(long segmentId) {
+
+        if (active != null && active.id == segmentId) {
+            throw new IllegalArgumentException(
+                    "active segment cannot be removed");
+        }
+
+        Segment segment = segments.remove(segmentId);
+
+        if (segment != null) {
+            segment.close();
+
+            boolean deleted = segment.file.delete();
+
+            logger.info("value log segment removed, id=" + segmentId
+                    + ", deleted=" + deleted);
+        }
+    }
+
+    /**
+     * Get if the specified folder holds value log segment files.
+     *
+     * @param folder
+     *            value log folder.
+     * @return true if there is at least one segment file.
+     */
+    public static boolean hasSegments(File folder) {
+
+        String[] names = folder.list();
+
+        if (names != null) {
+            for (String name : names) {
+                if (name.endsWith(SEGMENT_SUFFIX)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Get the total size of the segment files in bytes.
+     *
+     * @return total size of the value log.
+     */
+    public long size() {
+
+        long size = 0;
+
+        for (Segment segment : segments.values()) {
+            size += segment.file.length();
+        }
+
+        return size;
+    }
+
+    /**
+     * Sync and close all segments.
+     */
+    public synchronized void close() {
+
+        try {
+            this.sync();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, e.getMessage(), e);
+        }
+
+        for (Segment segment : segments.values()) {
+            segment.close();
+        }
+
+        segments.clear();
+
+        this.active = null;
+
+        logger.info("value log closed, folder=" + folder);
+    }
+
+    /**
+     * Get the active segment. A new segment is started if there is none or
+     * if the active segment is full.
+     */
+    private Segment getActiveSegment() throws IOException {
+
+        if (this.active != null && this.active.position < this.segmentSize) {
+            return this.active;
+        }
+
+        if (this.active != null) {
+            // seal the full segment
+            this.active.channel.force(false);
+        }
+
+        long id = ++lastSegmentId;
+
+        File file = new File(folder, String.format("%016d", id)
+                + SEGMENT_SUFFIX);
+
+        Segment segment = new Segment(id, file);
+
+        segments.put(id, segment);
+
+        this.active = segment;
+
+        logger.info("value log segment started, id=" + id);
+
+        return segment;
+    }
+}
@@ -0,0 +1,135 @@
+/**
+ * 
+ * Copyright (C) 2014 Seagate Technology.
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.seagate.kinetic.simulator.persist.leveldb;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimerTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Value log garbage collector.
+ * <p>
+ * Each run picks the next sealed segment (round robin, oldest first) and
+ * computes the number of bytes still referenced by LevelDB. If less than half
+ * of the segment is live, the live values are appended to the active segment,
+ * their pointers are updated and the segment file is removed.
+ *
+ * @see ValueLog
+ */
+class ValueLogCleaner extends TimerTask {
+
+    private final static Logger logger = Logger.getLogger(ValueLogCleaner.class
+            .getName());
+
+    // segments with less live bytes than this ratio are cleaned
+    private static final double LIVE_RATIO_THRESHOLD = 0.5;
+
+    private final LevelDbStore store;
+
+    private final ValueLog valueLog;
+
+    // last inspected segment id
+    private long lastSegmentId = 0;
+
+    ValueLogCleaner(LevelDbStore store, ValueLog valueLog) {
+        this.store = store;
+        this.valueLog = valueLog;
+    }
+
+    @Override
+    public void run() {
+
+        try {
+
+            List<Long> sealed = valueLog.getSealedSegments();
+
+            if (sealed.isEmpty()) {
+                return;
+            }
+
+            // next segment after the last inspected one, wrap around
+            long segmentId = sealed.get(0);
+            for (Long id : sealed) {
+                if (id.longValue() > lastSegmentId) {
+                    segmentId = id;
+                    break;
+                }
+            }
+
+            lastSegmentId = segmentId;
+
+            clean(segmentId);
+
+        } catch (Exception e) {
+            logger.log(Level.WARNING, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Clean the specified segment if its live ratio is below the threshold.
+     */
+    private void clean(long segmentId) throws Exception {
+
+        long total = 0;
+        long live = 0;
+
+        // offsets of the live records
+        List<Long> liveOffsets = new ArrayList<Long>();
+
+        long offset = 0;
+        ValueLog.Record record = null;
+
+        while ((record = valueLog.readRecord(segmentId, offset)) != null) {
+
+            ValuePointer pointer = record.getPointer();
+
+            if (pointer.equals(store.getValuePointer(record.getKey()))) {
+                live += pointer.getLength();
+                liveOffsets.add(offset);
+            }
+
+            total += pointer.getLength();
+            offset += pointer.getLength();
+        }
+
+        if (total > 0 && live >= total * LIVE_RATIO_THRESHOLD) {
+            logger.fine("value log segment not cleaned, id=" + segmentId
+                    + ", live=" + live + ", total=" + total);
+            return;
+        }
+
+        // move live values to the active segment
+        for (Long liveOffset : liveOffsets) {
+
+            record = valueLog.readRecord(segmentId, liveOffset);
+
+            store.relocate(record.getKey(), record.getPointer(),
+                    record.getValue());
+        }
+
+        valueLog.removeSegment(segmentId);
+
+        logger.info("value log segment cleaned, id=" + segmentId
+                + ", relocated=" + liveOffsets.size() + ", live=" + live
+                + ", total=" + total);
+    }
+}
@@ -0,0 +1,164 @@
+/**
+ * 
+ * Copyright (C) 2014 Seagate Technology.
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.seagate.kinetic.simulator.persist.leveldb;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Location of a value in the value log.
+ * <p>
+ * When a value is stored in the value log, the LevelDB record for the key
+ * holds a pointer record instead of the serialized <code>Versioned</code>
+ * entry:
+ * <p>
+ * <code>[0x00][segment id (8)][offset (8)][length (4)][metadata]</code>
+ * <p>
+ * where metadata is the serialized <code>Versioned</code> entry without the
+ * value. A serialized <code>Versioned</code> entry never starts with 0x00
+ * (field number 0 is not a valid protocol buffer tag), so pointer records
+ * and regular records can be told apart by the first byte.
+ *
+ * @see ValueLog
+ */
+public class ValuePointer {
+
+    // first byte of a pointer record
+    private static final byte POINTER_RECORD_TAG = 0;
+
+    // pointer record header size
+    private static final int HEADER_SIZE = 1 + 8 + 8 + 4;
+
+    // segment id
+    private final long segmentId;
+
+    // offset of the log record in the segment
+    private final long offset;
+
+    // length of the log record
+    private final int length;
+
+    public ValuePointer(long segmentId, long offset, int length) {
+        this.segmentId = segmentId;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    public long getSegmentId() {
+        return segmentId;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Build a LevelDB pointer record with the specified metadata.
+     *
+     * @param metadata
+     *            serialized <code>Versioned</code> entry without value.
+     * @return the pointer record.
+     */
+    public byte[] toRecord(byte[] metadata) {
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + metadata.length);
+
+        buffer.put(POINTER_RECORD_TAG);
+        buffer.putLong(segmentId);
+        buffer.putLong(offset);
+        buffer.putInt(length);
+        buffer.put(metadata);
+
+        return buffer.array();
+    }
+
+    /**
+     * Check if the LevelDB record is a pointer record.
+     *
+     * @param record
+     *            LevelDB record
+     * @return true if the record points to the value log.
+     */
+    public static boolean isPointerRecord(byte[] record) {
+        return record.length >= HEADER_SIZE
+                && record[0] == POINTER_RECORD_TAG;
+    }
+
+    /**
+     * Get the value pointer from a pointer record.
+     *
+     * @param record
+     *            LevelDB pointer record
+     * @return the value pointer.
+     */
+    public static ValuePointer fromRecord(byte[] record) {
+
+        ByteBuffer buffer = ByteBuffer.wrap(record, 1, HEADER_SIZE - 1);
+
+        return new ValuePointer(buffer.getLong(), buffer.getLong(),
+                buffer.getInt());
+    }
+
+    /**
+     * Get the serialized metadata of a LevelDB record. For a regular record,
+     * the record itself is returned.
+     *
+     * @param record
+     *            LevelDB record
+     * @return serialized <code>Versioned</code> entry (without value for
+     *         pointer records).
+     */
+    public static byte[] getMetadata(byte[] record) {
+
+        if (isPointerRecord(record) == false) {
+            return record;
+        }
+
+        return Arrays.copyOfRange(record, HEADER_SIZE, record.length);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+
+        if ((o instanceof ValuePointer) == false) {
+            return false;
+        }
+
+        ValuePointer p = (ValuePointer) o;
+
+        return p.segmentId == segmentId && p.offset == offset
+                && p.length == length;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (segmentId * 31 + offset);
+    }
+
+    @Override
+    public String toString() {
+        return "segment=" + segmentId + ", offset=" + offset + ", length="
+                + length;
+    }
+}
@@ -0,0 +1,274 @@
+/**
+ * 
+ * Copyright (C) 2014 Seagate Technology.
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.seagate.kinetic.simulator.persist.memory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Memory store checkpoint file.
+ * <p>
+ * A checkpoint is written by streaming the sorted memory tree:
+ * <p>
+ * magic (4 bytes), then for each entry key length (4 bytes), value length (4
+ * bytes), key and value, then an end marker (key length -1), the entry count
+ * (8 bytes) and the crc of the entries (4 bytes).
+ * <p>
+ * The checkpoint is written to a temporary file and renamed once it is
+ * complete and forced to the storage device, so that a checkpoint file is
+ * always complete. Checkpoints are loaded through read-only memory mapped
+ * windows of the file.
+ *
+ * @see WriteAheadLog
+ * @see MemoryStore
+ */
+class Checkpoint {
+
+    // checkpoint file name suffix
+    static final String SUFFIX = ".ckpt";
+
+    // temporary file suffix
+    static final String TMP_SUFFIX = ".tmp";
+
+    private static final int MAGIC = 0x4B4D4331;
+
+    // end of entries marker
+    private static final int END = -1;
+
+    // mapped window size used for loading
+    private static final int WINDOW_SIZE = 256 * 1024 * 1024;
+
+    private Checkpoint() {
+        ;
+    }
+
+    static File fileOf(File folder, long generation) {
+        return new File(folder, String.format("%016d", generation) + SUFFIX);
+    }
+
+    /**
+     * Write a checkpoint of the entries, in key order.
+     * <p>
+     * The entries may be modified while they are written. Entries modified during
+     * the checkpoint are also in the write-ahead log of the same generation
+     * and are replayed on recovery.
+     * 
+     * @return number of entries written.
+     */
+    static long write(File folder, long generation,
+            Iterator<Map.Entry<byte[], byte[]>> entries) throws IOException {
+
+        File file = fileOf(folder, generation);
+        File tmp = new File(file.getPath() + TMP_SUFFIX);
+
+        CRC32 crc = new CRC32();
+        byte[] lengths = new byte[8];
+
+        long count = 0;
+
+        FileOutputStream fos = new FileOutputStream(tmp);
+
+        try {
+
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(fos, 1024 * 1024));
+
+            out.writeInt(MAGIC);
+
+            while (entries.hasNext()) {
+
+                Map.Entry<byte[], byte[]> e = entries.next();
+
+                byte[] key = e.getKey();
+                byte[] value = e.getValue();
+
+                ByteBuffer.wrap(lengths).putInt(key.length)
+                        .putInt(value.length);
+
+                crc.update(lengths);
+                crc.update(key);
+                crc.update(value);
+
+                out.write(lengths);
+                out.write(key);
+                out.write(value);
+
+                count++;
+            }
+
+            out.writeInt(END);
+            out.writeLong(count);
+            out.writeInt((int) crc.getValue());
+
+            out.flush();
+
+            fos.getChannel().force(false);
+
+        } finally {
+            fos.close();
+        }
+
+        if (tmp.renameTo(file) == false) {
+            throw new IOException("unable to rename checkpoint file, " + tmp);
+        }
+
+        return count;
+    }
+
+    /**
+     * Load the checkpoint file entries to the loader.
+     * 
+     * @return number of entries loaded.
+     */
+    static long load(File file, EntryLoader loader) throws IOException {
+
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+
+        try {
+
+            Reader reader = new Reader(raf.getChannel());
+
+            if (reader.readInt() != MAGIC) {
+                throw new IOException("not a checkpoint file, " + file);
+            }
+
+            CRC32 crc = new CRC32();
+            byte[] lengths = new byte[8];
+
+            long count = 0;
+
+            while (true) {
+
+                reader.read(lengths, 0, 4);
+
+                int keyLength = ByteBuffer.wrap(lengths).getInt(0);
+
+                if (keyLength == END) {
+                    break;
+                }
+
+                reader.read(lengths, 4, 4);
+
+                int valueLength = ByteBuffer.wrap(lengths).getInt(4);
+
+                if (keyLength < 0 || valueLength < 0) {
+                    throw new IOException("corrupted checkpoint file, " + file);
+                }
+
+                byte[] key = new byte[keyLength];
+                byte[] value = new byte[valueLength];
+
+                reader.read(key, 0, keyLength);
+                reader.read(value, 0, valueLength);
+
+                crc.update(lengths);
+                crc.update(key);
+                crc.update(value);
+
+                loader.put(key, value);
+
+                count++;
+            }
+
+            long expectedCount = reader.readLong();
+            int expectedCrc = reader.readInt();
+
+            if (count != expectedCount || (int) crc.getValue() != expectedCrc) {
+                throw new IOException("corrupted checkpoint file, " + file);
+            }
+
+            return count;
+
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Sequential reader over read-only mapped windows of a file.
+     */
+    private static class Reader {
+
+        private final FileChannel channel;
+
+        private final long size;
+
+        // file position of the current window
+        private long base = 0;
+
+        private MappedByteBuffer window = null;
+
+        Reader(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+            this.map(0, 0);
+        }
+
+        /**
+         * Map the window at the specified file position, large enough for the
+         * specified number of bytes.
+         */
+        private void map(long position, int length) throws IOException {
+
+            long windowSize = Math.min(Math.max(WINDOW_SIZE, length), size
+                    - position);
+
+            if (windowSize < length) {
+                throw new EOFException("unexpected end of checkpoint file");
+            }
+
+            this.base = position;
+            this.window = channel.map(FileChannel.MapMode.READ_ONLY,
+                    position, windowSize);
+        }
+
+        private void ensure(int length) throws IOException {
+            if (window.remaining() < length) {
+                this.map(base + window.position(), length);
+            }
+        }
+
+        void read(byte[] to, int offset, int length) throws IOException {
+            this.ensure(length);
+            window.get(to, offset, length);
+        }
+
+        int readInt() throws IOException {
+            this.ensure(4);
+            return window.getInt();
+        }
+
+        long readLong() throws IOException {
+            this.ensure(8);
+            return window.getLong();
+        }
+    }
+}
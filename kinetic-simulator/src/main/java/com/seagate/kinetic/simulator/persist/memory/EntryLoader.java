@@ -0,0 +1,42 @@
+/**
+ * 
+ * Copyright (C) 2014 Seagate Technology.
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.seagate.kinetic.simulator.persist.memory;
+
+import java.io.IOException;
+
+/**
+ * Receives the entries loaded from a checkpoint or replayed from a
+ * write-ahead log.
+ *
+ * @see Checkpoint
+ * @see WriteAheadLog
+ */
+interface EntryLoader {
+
+    /**
+     * Put the entry, replacing the current entry of the key if any.
+     */
+    void put(byte[] key, byte[] value) throws IOException;
+
+    /**
+     * Remove the entry of the key if any.
+     */
+    void remove(byte[] key) throws IOException;
+}
@@ -21,14 +21,24 @@ package com.seagate.kinetic.simulator.persist.memory;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NoSuchElementException;
 import java.util.SortedMap;
+import java.util.Timer;
+import java.util.TimerTask;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -36,6 +46,7 @@ import kinetic.simulator.SimulatorConfiguration;
 
 import com.google.protobuf.ByteString;
 import com.seagate.kinetic.simulator.internal.KVStoreException;
+import com.seagate.kinetic.simulator.internal.KVStoreNoSpace;
 import com.seagate.kinetic.simulator.internal.KVStoreNotFound;
 import com.seagate.kinetic.simulator.internal.KVStoreVersionMismatch;
 import com.seagate.kinetic.simulator.persist.BatchOperation;
@@ -48,9 +59,27 @@ import com.seagate.kinetic.simulator.persist.Store;
  *
  * Memory store implementation for the Kinetic simulator.
  * <p>
- * All entries are stored in memory. When a Kinetic server is closed, the memory
- * tree is saved to the disk. When a kinetic server is crashed, all data updated
- * to memory store between start server to crash is lost.
+ * All entries are stored in memory. Each put and delete is appended to a
+ * write-ahead log ({@link WriteAheadLog}) before the memory tree is updated.
+ * SYNC and FLUSH writes return after the log is forced to the disk, ASYNC
+ * writes are forced by a later sync.
+ * <p>
+ * The memory tree is periodically saved to a checkpoint file ({@link Checkpoint})
+ * in the background, and the log before the checkpoint is removed. On start
+ * up, the latest checkpoint is loaded and the log written after the
+ * checkpoint is replayed. Closing the store only syncs the log.
+ * <p>
+ * Entries are kept in a <code>ConcurrentSkipListMap</code>. The version
+ * check, the log append and the update of a key are serialized by a key lock
+ * stripe so that the log records of a key are in the same order as the
+ * updates. Reads (get, getNext, getPrevious and range scans) do not take any
+ * lock.
+ * <p>
+ * If the off heap mode is set in the simulator configuration, the values are
+ * kept in a direct memory {@link SlabArena} of the configured budget and the
+ * map only holds the value addresses. In this mode, a value is read under
+ * its key lock so that its chunk is not freed while it is read. Sparse slabs
+ * are compacted in the background after the checkpoints.
  *
  * @author chiaming
  *
@@ -60,11 +89,39 @@ public class MemoryStore implements Store<ByteString, ByteString, KVValue> {
     private final static java.util.logging.Logger logger = Logger
             .getLogger(MemoryStore.class.getName());
 
-    // memory tree map
-    private TreeMap<byte[], byte[]> sortedMap = null;
+    // memory tree map, key -> value reference (the value bytes on heap, or
+    // the value address in the off heap arena)
+    private volatile ConcurrentNavigableMap<byte[], Object> sortedMap = null;
+
+    // off heap value arena, null if values are kept on heap
+    private SlabArena arena = null;
+
+    // legacy file of the serialized tree
+    private static final String LEGACY_DB_FILE = "memStore.ser";
+
+    // number of key lock stripes, must be a power of 2
+    private static final int KEY_LOCK_STRIPES = 1024;
+
+    // key locks, serialize the version check, log append and update of a key
+    private final Object[] keyLocks = new Object[KEY_LOCK_STRIPES];
 
-    // file to store the tree
-    private String dbFile = null;
+    // shared by writes, exclusive to switch to a new log
+    private final ReentrantReadWriteLock logLock = new ReentrantReadWriteLock();
+
+    // serializes checkpoints
+    private final Object checkpointLock = new Object();
+
+    // folder of the log and checkpoint files
+    private File folder = null;
+
+    // current write-ahead log
+    private WriteAheadLog wal = null;
+
+    // generation of the latest checkpoint
+    private volatile long checkpointGeneration = 0;
+
+    // checkpoint timer
+    private volatile Timer checkpointTimer = null;
 
     // server config
     private SimulatorConfiguration config = null;
@@ -73,73 +130,283 @@ public class MemoryStore implements Store<ByteString, ByteString, KVValue> {
      * default constructor
      */
     public MemoryStore() {
-        ;
+        for (int i = 0; i < KEY_LOCK_STRIPES; i++) {
+            keyLocks[i] = new Object();
+        }
     }
 
-    @Override
-    public synchronized void put(ByteString key, ByteString oldVersion,
-            KVValue value, PersistOption pOption) throws KVStoreException {
+    /**
+     * Get the lock stripe of the specified key.
+     */
+    private Object lockOf(byte[] key) {
 
-        ByteString version = null;
+        int h = Arrays.hashCode(key);
+
+        // spread the hash bits
+        h ^= (h >>> 16);
+
+        return keyLocks[h & (KEY_LOCK_STRIPES - 1)];
+    }
+
+    @Override
+    public void put(ByteString key, ByteString oldVersion, KVValue value,
+            PersistOption pOption) throws KVStoreException {
 
         byte[] keyArray = key.toByteArray();
 
-        KVValue obj = null;
-        byte[] valueInStore = this.sortedMap.get(keyArray);
+        value.setKeyOf(key);
+
+        byte[] newValue = value.toByteArray();
+
+        logLock.readLock().lock();
+
+        try {
 
-        if (valueInStore != null) {
-            obj = new KVValue(valueInStore);
-            version = obj.getVersion();
+            long position = 0;
+
+            synchronized (lockOf(keyArray)) {
+
+                ByteString version = null;
+
+                byte[] valueInStore = this.valueOf(this.sortedMap
+                        .get(keyArray));
+
+                if (valueInStore != null) {
+                    version = KVValue.parseMetadata(valueInStore)
+                            .getVersion();
+                }
+
+                checkVersion(version, oldVersion);
+
+                position = this.write(keyArray, newValue);
+            }
+
+            this.sync(position, pOption);
+
+        } finally {
+            logLock.readLock().unlock();
         }
+    }
+
+    @Override
+    public void putForced(ByteString key, KVValue value, PersistOption pOption)
+            throws KVStoreException {
 
-        checkVersion(version, oldVersion);
+        byte[] keyArray = key.toByteArray();
 
         value.setKeyOf(key);
 
-        this.sortedMap.put(keyArray, value.toByteArray());
+        byte[] newValue = value.toByteArray();
+
+        logLock.readLock().lock();
+
+        try {
+
+            long position = 0;
+
+            synchronized (lockOf(keyArray)) {
+                position = this.write(keyArray, newValue);
+            }
+
+            this.sync(position, pOption);
+
+        } finally {
+            logLock.readLock().unlock();
+        }
     }
 
     @Override
-    public synchronized void putForced(ByteString key, KVValue value,
+    public void delete(ByteString key, ByteString oldVersion,
             PersistOption pOption) throws KVStoreException {
 
+        byte[] keyArray = key.toByteArray();
+
+        logLock.readLock().lock();
+
         try {
 
-            value.setKeyOf(key);
+            long position = 0;
 
-            this.sortedMap.put(key.toByteArray(), value.toByteArray());
-        } catch (Exception e) {
-            throw new KVStoreException("DB internal exception");
-        }
+            synchronized (lockOf(keyArray)) {
+
+                byte[] valueInStore = this.valueOf(this.sortedMap
+                        .get(keyArray));
+
+                if (valueInStore == null) {
+                    throw new KVStoreNotFound();
+                }
 
+                checkVersion(getVersion(KVValue.parseMetadata(valueInStore)),
+                        oldVersion);
+
+                position = this.write(keyArray, null);
+            }
+
+            this.sync(position, pOption);
+
+        } finally {
+            logLock.readLock().unlock();
+        }
     }
 
     @Override
-    public synchronized void delete(ByteString key, ByteString oldVersion,
-            PersistOption pOption) throws KVStoreException {
+    public void deleteForced(ByteString key, PersistOption pOption)
+            throws KVStoreException {
+
+        byte[] keyArray = key.toByteArray();
+
+        logLock.readLock().lock();
+
+        try {
+
+            long position = 0;
+
+            synchronized (lockOf(keyArray)) {
+
+                if (this.sortedMap.containsKey(keyArray) == false) {
+                    return;
+                }
+
+                position = this.write(keyArray, null);
+            }
+
+            this.sync(position, pOption);
 
-        ByteString prevVersion = getVersion(key);
+        } finally {
+            logLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Append the update to the log and apply it to the memory tree. Called
+     * with the log read lock and the key lock held.
+     * 
+     * @param value
+     *            the new value, null for a delete.
+     * @return the log position after the update.
+     */
+    private long write(byte[] key, byte[] value) throws KVStoreException {
+
+        if (this.wal == null) {
+            throw new KVStoreException("memory store is closed");
+        }
+
+        Object reference = (value == null) ? null : this.toReference(value);
+
+        long position = 0;
+
+        try {
+            position = this.wal.append(key, value);
+        } catch (IOException e) {
+
+            this.release(reference);
 
-        checkVersion(prevVersion, oldVersion);
+            logger.log(Level.WARNING, e.getMessage(), e);
+            throw new KVStoreException("DB internal exception");
+        }
 
-        sortedMap.remove(key.toByteArray());
+        if (value == null) {
+            this.release(this.sortedMap.remove(key));
+        } else {
+            this.release(this.sortedMap.put(key, reference));
+        }
+
+        return position;
     }
 
-    @Override
-    public synchronized void deleteForced(ByteString key, PersistOption pOption)
+    /**
+     * Sync the log up to the specified position unless the write is
+     * asynchronous. Called with the log read lock held.
+     */
+    private void sync(long position, PersistOption pOption)
             throws KVStoreException {
 
+        if (pOption == PersistOption.ASYNC || this.wal == null) {
+            return;
+        }
+
         try {
-            sortedMap.remove(key.toByteArray());
-        } catch (Exception e) {
+            this.wal.sync(position);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, e.getMessage(), e);
             throw new KVStoreException("DB internal exception");
         }
     }
 
+    /**
+     * Get the reference of a value to be put in the map. The value is copied
+     * to the arena in off heap mode.
+     */
+    private Object toReference(byte[] value) throws KVStoreNoSpace {
+
+        if (this.arena == null) {
+            return value;
+        }
+
+        return Long.valueOf(this.arena.allocate(value));
+    }
+
+    /**
+     * Get the value of a reference. Called with the key lock held in off heap
+     * mode.
+     * 
+     * @return the value, or null if the reference is null.
+     */
+    private byte[] valueOf(Object reference) {
+
+        if (reference == null || this.arena == null) {
+            return (byte[]) reference;
+        }
+
+        return this.arena.read(((Long) reference).longValue());
+    }
+
+    /**
+     * Release a reference that was replaced or removed from the map. Called
+     * with the key lock held.
+     */
+    private void release(Object reference) {
+        if (reference != null && this.arena != null) {
+            this.arena.free(((Long) reference).longValue());
+        }
+    }
+
+    /**
+     * Get the value of the specified key.
+     * 
+     * @return the value, or null if not found.
+     */
+    private byte[] getValue(byte[] key) {
+
+        if (this.arena == null) {
+            return (byte[]) this.sortedMap.get(key);
+        }
+
+        synchronized (lockOf(key)) {
+            return this.valueOf(this.sortedMap.get(key));
+        }
+    }
+
+    /**
+     * Get the value of a map entry.
+     * 
+     * @return the value, or null if the entry was removed after it was
+     *         obtained.
+     */
+    private byte[] getValue(Map.Entry<byte[], Object> entry) {
+
+        if (this.arena == null) {
+            // entry is obtained atomically, key and value are consistent
+            return (byte[]) entry.getValue();
+        }
+
+        return this.getValue(entry.getKey());
+    }
+
     @Override
-    public synchronized KVValue get(ByteString key) throws KVStoreException {
+    public KVValue get(ByteString key) throws KVStoreException {
 
-        byte[] object = this.sortedMap.get(key.toByteArray());
+        byte[] object = this.getValue(key.toByteArray());
 
         if (object == null)
             throw new KVStoreNotFound();
@@ -148,44 +415,71 @@ public class MemoryStore implements Store<ByteString, ByteString, KVValue> {
     }
 
     @Override
-    public synchronized KVValue getPrevious(ByteString key)
-            throws KVStoreException {
+    public KVValue getMetadata(ByteString key) throws KVStoreException {
 
-        byte[] key1 = sortedMap.lowerKey(key.toByteArray());
+        byte[] object = this.getValue(key.toByteArray());
 
-        if (key1 == null)
+        if (object == null)
             throw new KVStoreNotFound();
 
-        return new KVValue(sortedMap.get(key1));
+        // value bytes are skipped, not copied
+        return KVValue.parseMetadata(object);
     }
 
     @Override
-    public synchronized KVValue getNext(ByteString key) throws KVStoreException {
+    public KVValue getPrevious(ByteString key) throws KVStoreException {
 
-        // logger.info("getNext key=" + key.toStringUtf8());
+        byte[] from = key.toByteArray();
 
-        byte[] key1 = sortedMap.higherKey(key.toByteArray());
+        while (true) {
 
-        if (key1 == null) {
-            throw new KVStoreNotFound();
+            Map.Entry<byte[], Object> entry = sortedMap.lowerEntry(from);
+
+            if (entry == null)
+                throw new KVStoreNotFound();
+
+            byte[] value = this.getValue(entry);
+
+            if (value != null) {
+                return new KVValue(value);
+            }
+
+            // removed concurrently, try the previous one
+            from = entry.getKey();
         }
+    }
+
+    @Override
+    public KVValue getNext(ByteString key) throws KVStoreException {
+
+        byte[] from = key.toByteArray();
+
+        while (true) {
+
+            Map.Entry<byte[], Object> entry = sortedMap.higherEntry(from);
+
+            if (entry == null) {
+                throw new KVStoreNotFound();
+            }
+
+            byte[] value = this.getValue(entry);
 
-        return new KVValue(sortedMap.get(key1));
+            if (value != null) {
+                return new KVValue(value);
+            }
+
+            // removed concurrently, try the next one
+            from = entry.getKey();
+        }
     }
 
     @Override
-    public synchronized SortedMap<?, ?> getRange(ByteString startKey,
+    public SortedMap<?, ?> getRange(ByteString startKey,
             boolean startKeyInclusive, ByteString endKey,
             boolean endKeyInclusive, int n) throws KVStoreException {
 
-        SortedMap<byte[], byte[]> bmap;
-
-        if (endKey.size() == 0) {
-            bmap = sortedMap.tailMap(startKey.toByteArray(), startKeyInclusive);
-        } else {
-            bmap = sortedMap.subMap(startKey.toByteArray(), startKeyInclusive,
-                    endKey.toByteArray(), endKeyInclusive);
-        }
+        ConcurrentNavigableMap<byte[], Object> bmap = subMap(startKey,
+                startKeyInclusive, endKey, endKeyInclusive);
 
         // logger.fine("Number of entries: " + bmap.size() + " requesting " +
         // n);
@@ -193,9 +487,14 @@ public class MemoryStore implements Store<ByteString, ByteString, KVValue> {
         // convert type
         SortedMap<KVKey, KVValue> kvmap = new TreeMap<KVKey, KVValue>();
 
-        for (Entry<byte[], byte[]> e : bmap.entrySet()) {
+        for (Entry<byte[], Object> e : bmap.entrySet()) {
             if (n-- > 0) {
-                kvmap.put(new KVKey(e.getKey()), new KVValue(e.getValue()));
+
+                byte[] value = this.getValue(e);
+
+                if (value != null) {
+                    kvmap.put(new KVKey(e.getKey()), new KVValue(value));
+                }
             } else {
                 // return kvmap;
                 break;
@@ -206,74 +505,98 @@ public class MemoryStore implements Store<ByteString, ByteString, KVValue> {
     }
 
     @Override
-    public synchronized List<?> getRangeReversed(ByteString startKey,
-            boolean startKeyInclusive, ByteString endKey,
-            boolean endKeyInclusive, int n) throws KVStoreException {
+    public List<?> getKeyRange(ByteString startKey, boolean startKeyInclusive,
+            ByteString endKey, boolean endKeyInclusive, int n)
+            throws KVStoreException {
 
-        SortedMap<byte[], byte[]> bmap;
+        ConcurrentNavigableMap<byte[], Object> bmap = subMap(startKey,
+                startKeyInclusive, endKey, endKeyInclusive);
 
-        if (endKey.size() == 0) {
-            bmap = sortedMap.tailMap(startKey.toByteArray(), startKeyInclusive);
-        } else {
-            bmap = sortedMap.subMap(startKey.toByteArray(), startKeyInclusive,
-                    endKey.toByteArray(), endKeyInclusive);
+        List<KVKey> kvKeyOfList = new ArrayList<KVKey>();
+
+        // key set only, values are not deserialized
+        for (byte[] k : bmap.keySet()) {
+            if (n-- > 0) {
+                kvKeyOfList.add(new KVKey(k));
+            } else {
+                break;
+            }
         }
 
+        return kvKeyOfList;
+    }
+
+    @Override
+    public List<?> getRangeReversed(ByteString startKey,
+            boolean startKeyInclusive, ByteString endKey,
+            boolean endKeyInclusive, int n) throws KVStoreException {
+
+        ConcurrentNavigableMap<byte[], Object> bmap = subMap(startKey,
+                startKeyInclusive, endKey, endKeyInclusive);
+
         // logger.fine("Number of entries: " + bmap.size() + " requesting " +
         // n);
 
         List<KVKey> kvKeyOfList = new ArrayList<KVKey>();
-        int i = 0, j = 0;
-        int size = bmap.size() > n ? n : bmap.size();
-        byte[][] keys = new byte[size][];
-        if (bmap.size() > n) {
-            for (Entry<byte[], byte[]> e : bmap.entrySet()) {
-                if (i++ >= bmap.size() - n)
-                    keys[j++] = e.getKey();
-            }
-        } else {
-            for (Entry<byte[], byte[]> e : bmap.entrySet()) {
-                keys[i++] = e.getKey();
+
+        // walk the view backward, the last n keys in reversed order
+        for (byte[] k : bmap.descendingKeySet()) {
+            if (n-- > 0) {
+                kvKeyOfList.add(new KVKey(k));
+            } else {
+                break;
             }
         }
-        for (i = size - 1; i >= 0; i--) {
-            kvKeyOfList.add(new KVKey(keys[i]));
-        }
 
         return kvKeyOfList;
 
     }
 
-    @Override
-    public void close() {
+    /**
+     * Get a (weakly consistent) view of the map for the specified key range.
+     * An empty end key means there is no upper bound.
+     */
+    private ConcurrentNavigableMap<byte[], Object> subMap(ByteString startKey,
+            boolean startKeyInclusive, ByteString endKey,
+            boolean endKeyInclusive) {
 
-        FileOutputStream fos = null;
-        ObjectOutputStream oos = null;
+        if (endKey.size() == 0) {
+            return sortedMap.tailMap(startKey.toByteArray(),
+                    startKeyInclusive);
+        }
 
-        try {
-            // get out put stream
-            fos = new FileOutputStream(dbFile);
-            oos = new ObjectOutputStream(fos);
+        byte[] start = startKey.toByteArray();
+        byte[] end = endKey.toByteArray();
 
-            // write to file.
-            oos.writeObject(this.sortedMap);
-            oos.flush();
-            fos.flush();
+        if (sortedMap.comparator().compare(start, end) > 0) {
+            // start key after the end key, empty range
+            return sortedMap.subMap(start, true, start, false);
+        }
 
-            logger.info("saved memory file, path=" + dbFile + ", entry count="
-                    + this.sortedMap.size());
+        return sortedMap.subMap(start, startKeyInclusive, end,
+                endKeyInclusive);
+    }
 
-        } catch (Exception e) {
+    @Override
+    public void close() {
 
-            logger.log(Level.WARNING, e.getMessage(), e);
+        if (this.checkpointTimer != null) {
+            this.checkpointTimer.cancel();
+            this.checkpointTimer = null;
+        }
 
-        } finally {
-            try {
-                oos.close();
-                fos.close();
-            } catch (Exception e2) {
-                ;
+        logLock.writeLock().lock();
+
+        try {
+            if (this.wal != null) {
+                // the log is replayed on start up, no checkpoint is needed
+                this.wal.close();
+                this.wal = null;
             }
+        } catch (Exception e) {
+            logger.log(Level.WARNING, e.getMessage(), e);
+        } finally {
+            logLock.writeLock().unlock();
         }
 
         logger.info("memory store closed ...");
@@ -281,16 +604,236 @@ public class MemoryStore implements Store<ByteString, ByteString, KVValue> {
 
     @Override
     public void reset() throws KVStoreException {
-        // clean data
-        this.sortedMap.clear();
 
-        // this will write the reset map to file.
         this.close();
 
-        // reopen the file
+        synchronized (checkpointLock) {
+
+            // clean data
+            this.sortedMap.clear();
+
+            // remove the log, checkpoint and legacy files
+            File[] files = folder.listFiles();
+
+            if (files != null) {
+                for (File file : files) {
+                    if (file.delete() == false) {
+                        throw new KVStoreException("unable to delete " + file);
+                    }
+                }
+            }
+        }
+
+        // reopen
         this.init(config);
     }
 
+    /**
+     * Save the memory tree to a new checkpoint. A new log is started, and the
+     * logs and checkpoints before the new checkpoint are removed once the
+     * checkpoint is complete.
+     */
+    private void checkpoint() throws IOException {
+
+        synchronized (checkpointLock) {
+
+            long generation = 0;
+
+            WriteAheadLog previous = null;
+
+            // updates before the switch are in the tree before it is saved
+            logLock.writeLock().lock();
+
+            try {
+
+                if (this.wal == null) {
+                    // closed
+                    return;
+                }
+
+                previous = this.wal;
+
+                generation = previous.getGeneration() + 1;
+
+                this.wal = new WriteAheadLog(folder, generation);
+
+            } finally {
+                logLock.writeLock().unlock();
+            }
+
+            previous.close();
+
+            long start = System.currentTimeMillis();
+
+            long count = Checkpoint.write(folder, generation,
+                    this.entryIterator());
+
+            this.checkpointGeneration = generation;
+
+            // everything before the checkpoint is obsolete
+            for (Long g : listGenerations(Checkpoint.SUFFIX)) {
+                if (g.longValue() < generation) {
+                    Checkpoint.fileOf(folder, g).delete();
+                }
+            }
+
+            for (Long g : listGenerations(WriteAheadLog.SUFFIX)) {
+                if (g.longValue() < generation) {
+                    WriteAheadLog.fileOf(folder, g).delete();
+                }
+            }
+
+            new File(folder, LEGACY_DB_FILE).delete();
+
+            logger.info("memory store checkpoint saved, generation="
+                    + generation + ", entry count=" + count + ", time="
+                    + (System.currentTimeMillis() - start) + "ms");
+        }
+    }
+
+    /**
+     * Get an iterator over the map entries and their values, in key order.
+     * Entries removed while iterating are skipped.
+     */
+    private Iterator<Map.Entry<byte[], byte[]>> entryIterator() {
+
+        final Iterator<Map.Entry<byte[], Object>> it = this.sortedMap
+                .entrySet().iterator();
+
+        return new Iterator<Map.Entry<byte[], byte[]>>() {
+
+            private Map.Entry<byte[], byte[]> next = null;
+
+            @Override
+            public boolean hasNext() {
+
+                while (next == null && it.hasNext()) {
+
+                    Map.Entry<byte[], Object> entry = it.next();
+
+                    byte[] value = getValue(entry);
+
+                    if (value != null) {
+                        next = new AbstractMap.SimpleImmutableEntry<byte[], byte[]>(
+                                entry.getKey(), value);
+                    }
+                }
+
+                return next != null;
+            }
+
+            @Override
+            public Map.Entry<byte[], byte[]> next() {
+
+                if (hasNext() == false) {
+                    throw new NoSuchElementException();
+                }
+
+                Map.Entry<byte[], byte[]> entry = next;
+                next = null;
+
+                return entry;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Move the values of sparse arena slabs to other slabs so that the
+     * emptied slabs can be used by other size classes. The values of all the
+     * selected slabs are moved in a single pass over the keys.
+     * 
+     * @param maxSlabs
+     *            max number of slabs to compact.
+     * @return number of slabs compacted.
+     */
+    private int compact(int maxSlabs) throws KVStoreNoSpace {
+
+        if (this.arena == null) {
+            return 0;
+        }
+
+        List<Integer> selected = new ArrayList<Integer>();
+
+        boolean[] isDraining = new boolean[arena.getMaxSlabs()];
+
+        while (selected.size() < maxSlabs) {
+
+            int slab = arena.beginCompaction();
+
+            if (slab < 0) {
+                break;
+            }
+
+            selected.add(slab);
+            isDraining[slab] = true;
+        }
+
+        if (selected.isEmpty()) {
+            return 0;
+        }
+
+        int moved = 0;
+
+        try {
+            for (byte[] key : this.sortedMap.keySet()) {
+
+                synchronized (lockOf(key)) {
+
+                    Long address = (Long) this.sortedMap.get(key);
+
+                    if (address != null
+                            && isDraining[SlabArena.slabOf(address.longValue())]) {
+
+                        this.sortedMap.put(key, this.toReference(arena
+                                .read(address.longValue())));
+
+                        this.release(address);
+
+                        moved++;
+                    }
+                }
+            }
+        } finally {
+            for (Integer slab : selected) {
+                arena.endCompaction(slab.intValue());
+            }
+        }
+
+        logger.fine("memory store slabs compacted, slabs=" + selected
+                + ", moved=" + moved);
+
+        return selected.size();
+    }
+
+    /**
+     * Get the generations of the files with the specified suffix, in
+     * ascending order.
+     */
+    private List<Long> listGenerations(String suffix) {
+
+        List<Long> generations = new ArrayList<Long>();
+
+        String[] names = folder.list();
+
+        if (names != null) {
+            for (String name : names) {
+                if (name.endsWith(suffix)) {
+                    generations.add(Long.parseLong(name.substring(0,
+                            name.length() - suffix.length())));
+                }
+            }
+        }
+
+        Collections.sort(generations);
+
+        return generations;
+    }
+
     private static int mySize(ByteString s) {
         if (s == null)
             return 0;
@@ -316,15 +859,46 @@ public class MemoryStore implements Store<ByteString, ByteString, KVValue> {
     // }
 
     ByteString getVersion(ByteString key) throws KVStoreException {
-        KVValue obj = get(key);
+        KVValue obj = getMetadata(key);
         if (obj == null)
             throw new KVStoreNotFound();
+        return getVersion(obj);
+    }
+
+    private static ByteString getVersion(KVValue obj) {
         if (!obj.hasVersion())
             return ByteString.EMPTY;
         return obj.getVersion();
     }
 
-    @SuppressWarnings("unchecked")
+    /**
+     * Get if the values are kept off heap.
+     * 
+     * @return true if the values are kept off heap.
+     */
+    public boolean isOffHeap() {
+        return this.arena != null;
+    }
+
+    /**
+     * Get the off heap memory budget in bytes.
+     * 
+     * @return the off heap memory budget, or 0 if the values are kept on heap.
+     */
+    public long getOffHeapBudget() {
+        return (this.arena == null) ? 0 : this.arena.getBudget();
+    }
+
+    /**
+     * Get the off heap memory in use (bytes of the arena chunks holding a
+     * value).
+     * 
+     * @return the off heap memory in use, or 0 if the values are kept on heap.
+     */
+    public long getOffHeapUsedBytes() {
+        return (this.arena == null) ? 0 : this.arena.getUsedBytes();
+    }
+
     @Override
     public void init(SimulatorConfiguration config) {
 
@@ -365,8 +939,146 @@ public class MemoryStore implements Store<ByteString, ByteString, KVValue> {
                     + ", created=" + created);
         }
 
-        // db file
-        dbFile = persistFolder + "/memStore.ser";
+        this.folder = f;
+
+        if (config.getUseOffHeapMemoryStore() && this.arena == null) {
+
+            this.arena = new SlabArena(config.getOffHeapMemoryBudget());
+
+            if (arena.getBudget() != config.getOffHeapMemoryBudget()) {
+                logger.warning("off heap memory budget rounded up to whole slabs, budget="
+                        + arena.getBudget());
+            }
+
+            logger.info("memory store values are kept off heap, budget="
+                    + arena.getBudget());
+        }
+
+        try {
+            this.recover();
+        } catch (IOException e) {
+
+            logger.log(Level.SEVERE, e.getMessage(), e);
+
+            throw new RuntimeException(e);
+        }
+
+        long period = config.getMemoryCheckpointPeriod();
+
+        this.checkpointTimer = new Timer("memory-checkpoint", true);
+
+        this.checkpointTimer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                try {
+                    if (isCheckpointNeeded()) {
+                        checkpoint();
+                    }
+
+                    compact(1);
+                } catch (Exception e) {
+                    logger.log(Level.WARNING, e.getMessage(), e);
+                }
+            }
+        }, period, period);
+    }
+
+    /**
+     * Load the latest checkpoint and replay the logs written after it, then
+     * start a new log.
+     */
+    private void recover() throws IOException {
+
+        long start = System.currentTimeMillis();
+
+        // incomplete checkpoint
+        for (File file : folder.listFiles()) {
+            if (file.getName().endsWith(Checkpoint.TMP_SUFFIX)) {
+                file.delete();
+            }
+        }
+
+        this.sortedMap = newSortedMap();
+        this.checkpointGeneration = 0;
+
+        if (this.arena != null) {
+            this.arena.clear();
+        }
+
+        EntryLoader loader = new EntryLoader() {
+
+            @Override
+            public void put(byte[] key, byte[] value) throws IOException {
+                try {
+                    release(sortedMap.put(key, toReference(value)));
+                } catch (KVStoreNoSpace e) {
+                    throw new IOException(e.getMessage());
+                }
+            }
+
+            @Override
+            public void remove(byte[] key) {
+                release(sortedMap.remove(key));
+            }
+        };
+
+        List<Long> checkpoints = listGenerations(Checkpoint.SUFFIX);
+
+        boolean isLegacy = false;
+
+        if (checkpoints.isEmpty() == false) {
+
+            this.checkpointGeneration = checkpoints.get(checkpoints.size() - 1);
+
+            long count = Checkpoint.load(
+                    Checkpoint.fileOf(folder, checkpointGeneration), loader);
+
+            logger.info("loaded memory store checkpoint, generation="
+                    + checkpointGeneration + ", entry count=" + count);
+
+        } else if (new File(folder, LEGACY_DB_FILE).exists()) {
+            isLegacy = this.loadLegacyFile(loader);
+        }
+
+        long lastGeneration = this.checkpointGeneration;
+
+        for (Long g : listGenerations(WriteAheadLog.SUFFIX)) {
+
+            if (g.longValue() < this.checkpointGeneration) {
+                // obsolete
+                continue;
+            }
+
+            long count = WriteAheadLog.replay(
+                    WriteAheadLog.fileOf(folder, g), loader);
+
+            logger.info("replayed write-ahead log, generation=" + g
+                    + ", record count=" + count);
+
+            lastGeneration = g;
+        }
+
+        this.wal = new WriteAheadLog(folder, lastGeneration + 1);
+
+        logger.info("memory store opened, path=" + folder + ", entry count="
+                + this.sortedMap.size() + ", time="
+                + (System.currentTimeMillis() - start) + "ms");
+
+        if (isLegacy) {
+            // convert to the checkpoint format
+            this.checkpoint();
+        }
+    }
+
+    /**
+     * Load the memory tree saved by an earlier version of the store.
+     * 
+     * @return true if loaded.
+     */
+    @SuppressWarnings("unchecked")
+    private boolean loadLegacyFile(EntryLoader loader) {
+
+        File dbFile = new File(folder, LEGACY_DB_FILE);
 
         FileInputStream fis = null;
         ObjectInputStream ois = null;
@@ -375,19 +1087,23 @@ public class MemoryStore implements Store<ByteString, ByteString, KVValue> {
             // read memory tree
             fis = new FileInputStream(dbFile);
             ois = new ObjectInputStream(fis);
-            this.sortedMap = (TreeMap<byte[], byte[]>) ois.readObject();
+            Map<byte[], byte[]> map = (Map<byte[], byte[]>) ois.readObject();
+
+            for (Map.Entry<byte[], byte[]> e : map.entrySet()) {
+                loader.put(e.getKey(), e.getValue());
+            }
 
             logger.info("loaded memory file, path=" + dbFile + ", size="
                     + this.sortedMap.size());
 
+            return true;
+
         } catch (Exception e) {
 
-            // logger.log(Level.WARNING, e.getMessage(), e);
-            logger.fine("unable to load memory store from file, using a new store, path="
-                    + dbFile);
+            logger.log(Level.WARNING,
+                    "unable to load memory store from file, path=" + dbFile, e);
 
-            // start a new one if unable to read from one on disk
-            this.sortedMap = new TreeMap<byte[], byte[]>(new KeyComparator());
+            return false;
 
         } finally {
             try {
@@ -397,7 +1113,29 @@ public class MemoryStore implements Store<ByteString, ByteString, KVValue> {
                 ;
             }
         }
+    }
 
+    /**
+     * A checkpoint is needed if entries were written or logs were replayed
+     * since the latest checkpoint.
+     */
+    private boolean isCheckpointNeeded() {
+
+        logLock.readLock().lock();
+
+        try {
+            return this.wal != null
+                    && (this.wal.getSize() > 0 || this.wal.getGeneration() != this.checkpointGeneration);
+        } finally {
+            logLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Create a new empty sorted map ordered by the kinetic key comparator.
+     */
+    private static ConcurrentSkipListMap<byte[], Object> newSortedMap() {
+        return new ConcurrentSkipListMap<byte[], Object>(new KeyComparator());
     }
 
     @Override
@@ -409,15 +1147,48 @@ public class MemoryStore implements Store<ByteString, ByteString, KVValue> {
 
     @Override
     public void flush() throws KVStoreException {
-        // no op for mem store
-        ;
+
+        logLock.readLock().lock();
+
+        try {
+            this.sync(Long.MAX_VALUE, PersistOption.FLUSH);
+        } finally {
+            logLock.readLock().unlock();
+        }
     }
 
+    /**
+     * Save a checkpoint and compact the sparse arena slabs. The checkpoint
+     * covers all key ranges. Both run on the checkpoint thread, the request
+     * returns once they are scheduled.
+     */
     @Override
     public void compactRange(ByteString startKey, ByteString endKey)
             throws KVStoreException {
-        // no op
-        ;
+
+        Timer timer = this.checkpointTimer;
+
+        if (timer == null) {
+            throw new KVStoreException("memory store is closed");
+        }
+
+        try {
+            timer.schedule(new TimerTask() {
+                @Override
+                public void run() {
+                    try {
+                        checkpoint();
+
+                        compact(Integer.MAX_VALUE);
+                    } catch (Exception e) {
+                        logger.log(Level.WARNING, e.getMessage(), e);
+                    }
+                }
+            }, 0);
+        } catch (IllegalStateException e) {
+            // cancelled by close
+            throw new KVStoreException("memory store is closed");
+        }
     }
 
 }
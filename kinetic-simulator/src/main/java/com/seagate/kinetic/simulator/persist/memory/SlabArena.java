@@ -0,0 +1,457 @@
+/**
+ * 
+ * Copyright (C) 2014 Seagate Technology.
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.seagate.kinetic.simulator.persist.memory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.seagate.kinetic.simulator.internal.KVStoreNoSpace;
+
+/**
+ * Off heap slab arena for the memory store values.
+ * <p>
+ * The arena budget is divided in slabs of 4M direct memory, allocated on
+ * demand. The budget is rounded up to a whole number of slabs. A slab is assigned to a size class when it is first used and is
+ * divided in chunks of the class size. Size classes grow by a factor of 1.25
+ * from 64 bytes up to the slab size. A value is stored in a chunk of the
+ * smallest class that fits the value.
+ * <p>
+ * A slab is returned to the arena when all its chunks are freed, so that it
+ * can be assigned to another size class. Sparse slabs are compacted by the
+ * store: {@link #beginCompaction()} selects one or more slabs, the store
+ * moves the live values of the selected slabs to other slabs of the same
+ * class in a single pass over its keys, and {@link #endCompaction(int)}
+ * returns each emptied slab.
+ * <p>
+ * A value is addressed by a long (slab index, chunk offset and value length).
+ * The caller must ensure that a chunk is not read after it is freed.
+ *
+ * @see MemoryStore
+ */
+class SlabArena {
+
+    // slab size, 4M
+    static final int SLAB_SIZE = 1 << 22;
+
+    // max value length
+    static final int MAX_LENGTH = SLAB_SIZE - 1;
+
+    // smallest chunk size
+    private static final int MIN_CHUNK_SIZE = 64;
+
+    // size class growth factor
+    private static final double GROWTH_FACTOR = 1.25;
+
+    // slabs with a lower live ratio are compacted
+    private static final double COMPACTION_THRESHOLD = 0.5;
+
+    private static final int OFFSET_BITS = 22;
+
+    private static final int LENGTH_BITS = 22;
+
+    private static final long MASK = (1L << 22) - 1;
+
+    // chunk size of each size class
+    private static final int[] CHUNK_SIZES = chunkSizes();
+
+    /**
+     * A slab of direct memory.
+     */
+    private static class Slab {
+
+        private final int index;
+
+        private final ByteBuffer buffer;
+
+        // assigned size class, -1 if not assigned
+        private int sizeClass = -1;
+
+        private int chunkSize = 0;
+
+        private int chunkCount = 0;
+
+        // number of chunks handed out from the slab end
+        private int bumped = 0;
+
+        // freed chunk offsets
+        private int[] free = new int[16];
+
+        private int freeCount = 0;
+
+        // number of chunks in use
+        private int live = 0;
+
+        // true if selected for compaction
+        private boolean isDraining = false;
+
+        Slab(int index) {
+            this.index = index;
+            this.buffer = ByteBuffer.allocateDirect(SLAB_SIZE);
+        }
+
+        void assign(int sizeClass) {
+            this.sizeClass = sizeClass;
+            this.chunkSize = CHUNK_SIZES[sizeClass];
+            this.chunkCount = SLAB_SIZE / chunkSize;
+            this.bumped = 0;
+            this.freeCount = 0;
+            this.live = 0;
+        }
+
+        boolean hasFreeChunk() {
+            return freeCount > 0 || bumped < chunkCount;
+        }
+
+        int take() {
+
+            live++;
+
+            if (freeCount > 0) {
+                return free[--freeCount];
+            }
+
+            return (bumped++) * chunkSize;
+        }
+
+        void release(int offset) {
+
+            live--;
+
+            if (freeCount == free.length) {
+                free = Arrays.copyOf(free, free.length * 2);
+            }
+
+            free[freeCount++] = offset;
+        }
+    }
+
+    private final long budget;
+
+    private final Slab[] slabs;
+
+    // number of slabs created
+    private int slabCount = 0;
+
+    // empty slabs, not assigned to a size class
+    private final ArrayDeque<Slab> emptySlabs = new ArrayDeque<Slab>();
+
+    // slabs with free chunks, per size class
+    private final List<ArrayDeque<Slab>> partialSlabs = new ArrayList<ArrayDeque<Slab>>();
+
+    // bytes of the chunks in use
+    private long usedBytes = 0;
+
+    /**
+     * Constructor.
+     * 
+     * @param budget
+     *            max direct memory used by the arena, in bytes. Rounded up to
+     *            a whole number of slabs.
+     */
+    SlabArena(long budget) {
+
+        long count = Math.max(1, (budget + SLAB_SIZE - 1) / SLAB_SIZE);
+
+        this.slabs = new Slab[(int) Math.min(count,
+                1 << (64 - OFFSET_BITS - LENGTH_BITS))];
+
+        this.budget = (long) slabs.length * SLAB_SIZE;
+
+        for (int i = 0; i < CHUNK_SIZES.length; i++) {
+            partialSlabs.add(new ArrayDeque<Slab>());
+        }
+    }
+
+    private static int[] chunkSizes() {
+
+        List<Integer> sizes = new ArrayList<Integer>();
+
+        int size = MIN_CHUNK_SIZE;
+
+        while (size < SLAB_SIZE) {
+            sizes.add(size);
+
+            // 8 bytes aligned
+            size = (((int) (size * GROWTH_FACTOR)) + 7) & ~7;
+        }
+
+        sizes.add(SLAB_SIZE);
+
+        int[] result = new int[sizes.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = sizes.get(i);
+        }
+
+        return result;
+    }
+
+    private static int sizeClassOf(int length) {
+
+        int index = Arrays.binarySearch(CHUNK_SIZES, length);
+
+        return (index >= 0) ? index : -(index + 1);
+    }
+
+    /**
+     * Copy the value to a new chunk.
+     * 
+     * @return address of the value.
+     * @throws KVStoreNoSpace
+     *             if the value is too large or the budget is exhausted.
+     */
+    long allocate(byte[] value) throws KVStoreNoSpace {
+
+        if (value.length > MAX_LENGTH) {
+            throw new KVStoreNoSpace("value too large for the off heap store: "
+                    + value.length);
+        }
+
+        Slab slab = null;
+        int offset = 0;
+
+        synchronized (this) {
+            slab = this.getSlab(sizeClassOf(value.length));
+            offset = slab.take();
+            usedBytes += slab.chunkSize;
+        }
+
+        // the chunk is owned by the caller, copied without the lock
+        ByteBuffer bb = slab.buffer.duplicate();
+        bb.position(offset);
+        bb.put(value);
+
+        return (((long) slab.index) << (OFFSET_BITS + LENGTH_BITS))
+                | (((long) offset) << LENGTH_BITS) | value.length;
+    }
+
+    /**
+     * Get a slab with a free chunk of the specified class. Called with the
+     * arena lock held.
+     */
+    private Slab getSlab(int sizeClass) throws KVStoreNoSpace {
+
+        ArrayDeque<Slab> partial = partialSlabs.get(sizeClass);
+
+        Slab slab = partial.peekFirst();
+
+        if (slab != null) {
+
+            if (slab.freeCount + slab.chunkCount - slab.bumped == 1) {
+                // last free chunk
+                partial.removeFirst();
+            }
+
+            return slab;
+        }
+
+        slab = emptySlabs.pollFirst();
+
+        if (slab == null) {
+
+            if (slabCount == slabs.length) {
+                throw new KVStoreNoSpace("off heap memory budget exhausted: "
+                        + budget);
+            }
+
+            slab = new Slab(slabCount);
+            slabs[slabCount++] = slab;
+        }
+
+        slab.assign(sizeClass);
+
+        if (slab.chunkCount > 1) {
+            partial.addFirst(slab);
+        }
+
+        return slab;
+    }
+
+    /**
+     * Read the value at the specified address.
+     */
+    byte[] read(long address) {
+
+        Slab slab = slabs[slabOf(address)];
+
+        byte[] value = new byte[(int) (address & MASK)];
+
+        ByteBuffer bb = slab.buffer.duplicate();
+        bb.position((int) ((address >>> LENGTH_BITS) & MASK));
+        bb.get(value);
+
+        return value;
+    }
+
+    /**
+     * Free the chunk at the specified address.
+     */
+    synchronized void free(long address) {
+
+        Slab slab = slabs[slabOf(address)];
+
+        boolean wasFull = (slab.hasFreeChunk() == false);
+
+        slab.release((int) ((address >>> LENGTH_BITS) & MASK));
+
+        usedBytes -= slab.chunkSize;
+
+        if (slab.isDraining) {
+            return;
+        }
+
+        ArrayDeque<Slab> partial = partialSlabs.get(slab.sizeClass);
+
+        if (slab.live == 0) {
+            // return the slab to the arena
+            partial.remove(slab);
+            slab.sizeClass = -1;
+            emptySlabs.addFirst(slab);
+        } else if (wasFull) {
+            partial.addLast(slab);
+        }
+    }
+
+    static int slabOf(long address) {
+        return (int) (address >>> (OFFSET_BITS + LENGTH_BITS));
+    }
+
+    /**
+     * Select a sparse slab for compaction. The selected slab is no longer
+     * used for new values. The live values of a slab are moved only if the
+     * other slabs of its class have enough free chunks, after the values of
+     * the slabs already selected are moved.
+     * 
+     * @return the index of the selected slab, or -1 if there is none.
+     */
+    synchronized int beginCompaction() {
+
+        Slab selected = null;
+        double lowest = COMPACTION_THRESHOLD;
+
+        // free chunks reserved for the slabs being compacted
+        long[] reserved = new long[CHUNK_SIZES.length];
+
+        for (int i = 0; i < slabCount; i++) {
+            if (slabs[i].isDraining) {
+                reserved[slabs[i].sizeClass] += slabs[i].live;
+            }
+        }
+
+        for (int sizeClass = 0; sizeClass < CHUNK_SIZES.length; sizeClass++) {
+
+            ArrayDeque<Slab> partial = partialSlabs.get(sizeClass);
+
+            long freeChunks = -reserved[sizeClass];
+
+            for (Slab slab : partial) {
+                freeChunks += slab.chunkCount - slab.live;
+            }
+
+            for (Slab slab : partial) {
+
+                double ratio = (double) slab.live / slab.chunkCount;
+
+                if (ratio < lowest
+                        && freeChunks - (slab.chunkCount - slab.live) >= slab.live) {
+                    lowest = ratio;
+                    selected = slab;
+                }
+            }
+        }
+
+        if (selected == null) {
+            return -1;
+        }
+
+        selected.isDraining = true;
+        partialSlabs.get(selected.sizeClass).remove(selected);
+
+        return selected.index;
+    }
+
+    /**
+     * End the compaction of the specified slab. The slab is returned to the
+     * arena if it is empty.
+     */
+    synchronized void endCompaction(int index) {
+
+        Slab slab = slabs[index];
+
+        slab.isDraining = false;
+
+        if (slab.live == 0) {
+            slab.sizeClass = -1;
+            emptySlabs.addFirst(slab);
+        } else if (slab.hasFreeChunk()) {
+            partialSlabs.get(slab.sizeClass).addLast(slab);
+        }
+    }
+
+    /**
+     * Free all the chunks. The slabs are kept for reuse.
+     */
+    synchronized void clear() {
+
+        for (ArrayDeque<Slab> partial : partialSlabs) {
+            partial.clear();
+        }
+
+        emptySlabs.clear();
+
+        for (int i = 0; i < slabCount; i++) {
+            slabs[i].sizeClass = -1;
+            slabs[i].isDraining = false;
+            emptySlabs.addLast(slabs[i]);
+        }
+
+        usedBytes = 0;
+    }
+
+    /**
+     * Get the arena budget in bytes.
+     */
+    long getBudget() {
+        return this.budget;
+    }
+
+    /**
+     * Get the bytes of the chunks in use.
+     */
+    synchronized long getUsedBytes() {
+        return this.usedBytes;
+    }
+
+    /**
+     * Get the max number of slabs of the arena.
+     */
+    int getMaxSlabs() {
+        return this.slabs.length;
+    }
+
+    /**
+     * Get the bytes of direct memory allocated by the arena.
+     */
+    synchronized long getAllocatedBytes() {
+        return (long) slabCount * SLAB_SIZE;
+    }
+}
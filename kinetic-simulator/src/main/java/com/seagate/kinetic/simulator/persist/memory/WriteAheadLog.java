@@ -0,0 +1,331 @@
+/**
+ * 
+ * Copyright (C) 2014 Seagate Technology.
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.seagate.kinetic.simulator.persist.memory;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Memory store write-ahead log.
+ * <p>
+ * Each put or delete is appended as a record:
+ * <p>
+ * crc (4 bytes, over the rest of the record), key length (4 bytes), value
+ * length (4 bytes, -1 for a delete), key, value.
+ * <p>
+ * Records are buffered and written to the log file when the buffer is full or
+ * on {@link #sync(long)}. Syncs are grouped: a writer waiting for a sync
+ * returns without forcing the file if another writer forced it past its
+ * record.
+ * <p>
+ * A new log file is started for each checkpoint. The log files are named by
+ * the checkpoint generation, so that the log files to be replayed after a
+ * checkpoint are those with the same or a greater generation.
+ *
+ * @see Checkpoint
+ * @see MemoryStore
+ */
+class WriteAheadLog {
+
+    private final static Logger logger = Logger.getLogger(WriteAheadLog.class
+            .getName());
+
+    // log file name suffix
+    static final String SUFFIX = ".log";
+
+    // record header size
+    private static final int HEADER_SIZE = 4 + 4 + 4;
+
+    // value length of a delete record
+    private static final int DELETE = -1;
+
+    // write buffer size
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private final long generation;
+
+    private final RandomAccessFile raf;
+
+    private final FileChannel channel;
+
+    // records not yet written to the file
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+    // position after the last appended record
+    private long appendPosition = 0;
+
+    // position after the last record forced to the device
+    private volatile long syncPosition = 0;
+
+    // serializes the syncs
+    private final Object syncLock = new Object();
+
+    /**
+     * Open (or create) the log file of the specified generation. New records
+     * are appended at the end of the file.
+     */
+    WriteAheadLog(File folder, long generation) throws IOException {
+
+        this.generation = generation;
+
+        this.raf = new RandomAccessFile(fileOf(folder, generation), "rw");
+        this.channel = raf.getChannel();
+
+        this.appendPosition = channel.size();
+        this.syncPosition = this.appendPosition;
+
+        channel.position(this.appendPosition);
+    }
+
+    static File fileOf(File folder, long generation) {
+        return new File(folder, String.format("%016d", generation) + SUFFIX);
+    }
+
+    long getGeneration() {
+        return this.generation;
+    }
+
+    /**
+     * Get the log size in bytes, including the buffered records.
+     */
+    synchronized long getSize() {
+        return this.appendPosition;
+    }
+
+    /**
+     * Append a record.
+     * 
+     * @param value
+     *            the value, null for a delete.
+     * @return the log position after the record, to be passed to
+     *         {@link #sync(long)}.
+     */
+    synchronized long append(byte[] key, byte[] value) throws IOException {
+
+        int valueLength = (value == null) ? DELETE : value.length;
+
+        int size = HEADER_SIZE + key.length
+                + ((value == null) ? 0 : value.length);
+
+        CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(8).putInt(key.length)
+                .putInt(valueLength).array());
+        crc.update(key);
+        if (value != null) {
+            crc.update(value);
+        }
+
+        if (size > buffer.remaining()) {
+            this.flushBuffer();
+        }
+
+        if (size > buffer.capacity()) {
+
+            // large record, written directly
+            ByteBuffer record = ByteBuffer.allocate(size);
+            encode(record, (int) crc.getValue(), key, value, valueLength);
+            record.flip();
+
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+        } else {
+            encode(buffer, (int) crc.getValue(), key, value, valueLength);
+        }
+
+        this.appendPosition += size;
+
+        return this.appendPosition;
+    }
+
+    private static void encode(ByteBuffer to, int crc, byte[] key,
+            byte[] value, int valueLength) {
+
+        to.putInt(crc).putInt(key.length).putInt(valueLength).put(key);
+
+        if (value != null) {
+            to.put(value);
+        }
+    }
+
+    /**
+     * Write the buffered records to the file. Called with the log lock held.
+     */
+    private void flushBuffer() throws IOException {
+
+        buffer.flip();
+
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+
+        buffer.clear();
+    }
+
+    /**
+     * Write the buffered records to the file without forcing the file.
+     */
+    synchronized void flush() throws IOException {
+        this.flushBuffer();
+    }
+
+    /**
+     * Force the log to the storage device up to (at least) the specified
+     * position.
+     */
+    void sync(long position) throws IOException {
+
+        if (this.syncPosition >= position) {
+            return;
+        }
+
+        synchronized (syncLock) {
+
+            // forced by another writer while waiting
+            if (this.syncPosition >= position) {
+                return;
+            }
+
+            long target = 0;
+
+            synchronized (this) {
+                this.flushBuffer();
+                target = this.appendPosition;
+            }
+
+            channel.force(false);
+
+            this.syncPosition = target;
+        }
+    }
+
+    /**
+     * Sync and close the log.
+     */
+    void close() throws IOException {
+
+        try {
+            this.sync(Long.MAX_VALUE);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Replay the records of the specified log file to the loader. The log is
+     * truncated at the first incomplete or corrupted record (torn write).
+     * 
+     * @return number of records replayed.
+     */
+    static long replay(File file, EntryLoader loader) throws IOException {
+
+        long count = 0;
+
+        long length = file.length();
+        long offset = 0;
+
+        // sequential read, records are small
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file), BUFFER_SIZE));
+
+        try {
+
+            byte[] header = new byte[HEADER_SIZE];
+
+            while (offset + HEADER_SIZE <= length) {
+
+                in.readFully(header);
+
+                ByteBuffer bb = ByteBuffer.wrap(header);
+
+                int crc = bb.getInt();
+                int keyLength = bb.getInt();
+                int valueLength = bb.getInt();
+
+                if (keyLength < 0 || valueLength < DELETE) {
+                    break;
+                }
+
+                long size = (long) HEADER_SIZE + keyLength
+                        + Math.max(valueLength, 0);
+
+                if (offset + size > length) {
+                    break;
+                }
+
+                byte[] key = new byte[keyLength];
+                in.readFully(key);
+
+                byte[] value = null;
+                if (valueLength != DELETE) {
+                    value = new byte[valueLength];
+                    in.readFully(value);
+                }
+
+                CRC32 crc32 = new CRC32();
+                crc32.update(header, 4, 8);
+                crc32.update(key);
+                if (value != null) {
+                    crc32.update(value);
+                }
+
+                if ((int) crc32.getValue() != crc) {
+                    break;
+                }
+
+                if (value == null) {
+                    loader.remove(key);
+                } else {
+                    loader.put(key, value);
+                }
+
+                count++;
+                offset += size;
+            }
+
+        } finally {
+            in.close();
+        }
+
+        if (offset < length) {
+
+            logger.warning("truncating write-ahead log, file=" + file
+                    + ", size=" + length + ", new size=" + offset);
+
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+
+            try {
+                raf.setLength(offset);
+            } finally {
+                raf.close();
+            }
+        }
+
+        return count;
+    }
+}
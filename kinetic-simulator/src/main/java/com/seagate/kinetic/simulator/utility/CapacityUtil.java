@@ -24,6 +24,9 @@ import java.io.File;
 import java.util.logging.Logger;
 
 import com.seagate.kinetic.proto.Kinetic.Command.GetLog.Capacity;
+import com.seagate.kinetic.simulator.persist.ForwardingStore;
+import com.seagate.kinetic.simulator.persist.Store;
+import com.seagate.kinetic.simulator.persist.memory.MemoryStore;
 
 /**
  *
@@ -42,6 +45,39 @@ public abstract class CapacityUtil {
 
     //private static long MB = 1000000;
 
+    /**
+     * Get the capacity of the specified store. The off heap memory store
+     * reports its memory budget and the memory in use. Otherwise, the disk
+     * capacity is reported.
+     * 
+     * @param store
+     *            the simulator store
+     * @return the store capacity.
+     */
+    @SuppressWarnings("rawtypes")
+    public static Capacity getCapacity(Store store) {
+
+        // the store wrapped by a cache
+        while (store instanceof ForwardingStore) {
+            store = ((ForwardingStore) store).getStore();
+        }
+
+        if (store instanceof MemoryStore && ((MemoryStore) store).isOffHeap()) {
+
+            MemoryStore memoryStore = (MemoryStore) store;
+
+            long total = memoryStore.getOffHeapBudget();
+
+            float portionFull = (float) memoryStore.getOffHeapUsedBytes()
+                    / total;
+
+            return Capacity.newBuilder().setNominalCapacityInBytes(total)
+                    .setPortionFull(portionFull).build();
+        }
+
+        return getCapacity();
+    }
+
     public static Capacity getCapacity() {
 
         Capacity capacity = null;
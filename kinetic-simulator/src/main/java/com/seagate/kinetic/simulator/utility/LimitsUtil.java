@@ -47,6 +47,8 @@ public abstract class LimitsUtil {
         
         limits.setMaxIdentityCount(config.getMaxIdentityCount());
 
+        limits.setMaxOperationCountPerBatch(config.getMaxCommandsPerBatch());
+
         return limits.build();
     }
 }
@@ -118,11 +118,121 @@ public class SimulatorConfiguration extends Properties {
     private int nioEventLoopWorkerThreads = Integer
             .parseInt(DEFAULT_NIO_EVENT_LOOP_THREADS);
 
+    /**
+     * Socket send buffer size, 0 to use the system default.
+     */
+    private int socketSendBufferSize = 0;
+
+    /**
+     * Socket receive buffer size, 0 to use the system default.
+     */
+    private int socketReceiveBufferSize = 0;
+
+    /**
+     * Write buffer high water mark of the nio connections.
+     */
+    private int writeBufferHighWaterMark = 64 * 1024;
+
+    /**
+     * Write buffer low water mark of the nio connections.
+     */
+    private int writeBufferLowWaterMark = 32 * 1024;
+
     /**
      * flag to indicate if memory store is used for the simulator
      */
     private volatile boolean useMemoryStore = false;
 
+    /**
+     * flag to indicate if the bitcask store is used for the simulator
+     */
+    private volatile boolean useBitcaskStore = false;
+
+    /**
+     * flag to indicate if the LevelDB store keeps large values in a separate
+     * value log.
+     */
+    private volatile boolean useValueLog = Boolean
+            .getBoolean("kinetic.leveldb.valueLog");
+
+    /**
+     * min value size in bytes to be stored in the value log.
+     */
+    private int valueLogThreshold = 4096;
+
+    /**
+     * max value log segment size in bytes.
+     */
+    private long valueLogSegmentSize = 64 * 1024 * 1024;
+
+    /**
+     * value log garbage collection period in milli-seconds.
+     */
+    private long valueLogGcPeriod = 60000;
+
+    /**
+     * max time in milli-seconds a group commit leader waits for more writes.
+     */
+    private long groupCommitMaxDelay = 0;
+
+    /**
+     * max number of writes committed in one group commit.
+     */
+    private int groupCommitMaxSize = 128;
+
+    /**
+     * max bitcask store segment size in bytes.
+     */
+    private long bitcaskSegmentSize = 64 * 1024 * 1024;
+
+    /**
+     * bitcask store segment merge period in milli-seconds.
+     */
+    private long bitcaskMergePeriod = 60000;
+
+    /**
+     * memory store checkpoint period in milli-seconds.
+     */
+    private long memoryCheckpointPeriod = 300000;
+
+    /**
+     * flag to indicate if the memory store keeps the values off heap.
+     */
+    private volatile boolean useOffHeapMemoryStore = Boolean
+            .getBoolean("kinetic.memory.offHeap");
+
+    /**
+     * off heap memory store budget in bytes.
+     */
+    private long offHeapMemoryBudget = 1024L * 1024 * 1024;
+
+    /**
+     * store read cache size in bytes, 0 if disabled.
+     */
+    private long storeCacheSize = Long.getLong("kinetic.store.cacheSize", 0);
+
+    /**
+     * flag to indicate if a Bloom filter of the store keys is used.
+     */
+    private volatile boolean useBloomFilter = Boolean
+            .getBoolean("kinetic.store.bloomFilter");
+
+    /**
+     * min number of keys the Bloom filter is sized for.
+     */
+    private long bloomFilterExpectedKeys = 1000000;
+
+    /**
+     * max number of open GETNEXT/GETPREVIOUS cursors per connection, 0 if
+     * disabled.
+     */
+    private int maxCursorsPerConnection = 4;
+
+    /**
+     * idle time in milli-seconds after which an open cursor is closed.
+     */
+    private long cursorIdleTimeout = 10000;
+
     /**
      * heartbeat tick time in milli-seconds.
      */
@@ -526,6 +636,101 @@ public class SimulatorConfiguration extends Properties {
         return this.nioEventLoopWorkerThreads;
     }
 
+    /**
+     * Set the socket send buffer size (SO_SNDBUF) of the simulator TCP
+     * connections. Default is set to 0, the operating system default is used.
+     * 
+     * @param size
+     *            socket send buffer size in bytes, 0 to use the system
+     *            default.
+     */
+    public void setSocketSendBufferSize(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException(
+                    "socket send buffer size must not be negative: " + size);
+        }
+
+        this.socketSendBufferSize = size;
+    }
+
+    /**
+     * Get the socket send buffer size (SO_SNDBUF) of the simulator TCP
+     * connections.
+     * 
+     * @return socket send buffer size in bytes, 0 if the system default is
+     *         used.
+     */
+    public int getSocketSendBufferSize() {
+        return this.socketSendBufferSize;
+    }
+
+    /**
+     * Set the socket receive buffer size (SO_RCVBUF) of the simulator TCP
+     * connections. Default is set to 0, the operating system default is used.
+     * 
+     * @param size
+     *            socket receive buffer size in bytes, 0 to use the system
+     *            default.
+     */
+    public void setSocketReceiveBufferSize(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException(
+                    "socket receive buffer size must not be negative: " + size);
+        }
+
+        this.socketReceiveBufferSize = size;
+    }
+
+    /**
+     * Get the socket receive buffer size (SO_RCVBUF) of the simulator TCP
+     * connections.
+     * 
+     * @return socket receive buffer size in bytes, 0 if the system default
+     *         is used.
+     */
+    public int getSocketReceiveBufferSize() {
+        return this.socketReceiveBufferSize;
+    }
+
+    /**
+     * Set the write buffer water marks of the simulator TCP connections. A
+     * connection becomes not writable when its queued outbound bytes exceed
+     * the high water mark, and writable again when they drop below the low
+     * water mark. Default is set to 65536 and 32768 bytes.
+     * 
+     * @param high
+     *            write buffer high water mark in bytes.
+     * @param low
+     *            write buffer low water mark in bytes.
+     */
+    public void setWriteBufferWaterMarks(int high, int low) {
+        if (low < 0 || high < low) {
+            throw new IllegalArgumentException("invalid water marks, high="
+                    + high + ", low=" + low);
+        }
+
+        this.writeBufferHighWaterMark = high;
+        this.writeBufferLowWaterMark = low;
+    }
+
+    /**
+     * Get the write buffer high water mark of the simulator TCP connections.
+     * 
+     * @return write buffer high water mark in bytes.
+     */
+    public int getWriteBufferHighWaterMark() {
+        return this.writeBufferHighWaterMark;
+    }
+
+    /**
+     * Get the write buffer low water mark of the simulator TCP connections.
+     * 
+     * @return write buffer low water mark in bytes.
+     */
+    public int getWriteBufferLowWaterMark() {
+        return this.writeBufferLowWaterMark;
+    }
+
     /**
      * Set to true to instruct the simulator to use memory store.
      * <p>
@@ -547,6 +752,28 @@ public class SimulatorConfiguration extends Properties {
         return this.useMemoryStore;
     }
 
+    /**
+     * Set to true to instruct the simulator to use the bitcask store. The
+     * memory store takes precedence if both are set.
+     * <p>
+     * The default is set to false. LevelDB is used by default.
+     * 
+     * @param useBitcaskStore
+     *            set to true to instruct the simulator to use bitcask store.
+     */
+    public void setUseBitcaskStore(boolean useBitcaskStore) {
+        this.useBitcaskStore = useBitcaskStore;
+    }
+
+    /**
+     * Get if the bitcask store is (will be used) used by the simulator.
+     * 
+     * @return true to use the bitcask store.
+     */
+    public boolean getUseBitcaskStore() {
+        return this.useBitcaskStore;
+    }
+
     /**
      * Set heart beat tick time for the simulator (in milli-seconds).
      * <p>
@@ -1071,4 +1298,374 @@ public class SimulatorConfiguration extends Properties {
         return maxOutstandingBatches;
     }
 
+    /**
+     * Set if the LevelDB store keeps values equal to or larger than the value
+     * log threshold in a separate append-only value log. LevelDB then holds
+     * only the key, the metadata and a pointer to the value.
+     * <p>
+     * Default is set to false.
+     * 
+     * @param useValueLog
+     *            set to true to use the value log.
+     */
+    public void setUseValueLog(boolean useValueLog) {
+        this.useValueLog = useValueLog;
+    }
+
+    /**
+     * Get if the LevelDB store keeps large values in a value log.
+     * 
+     * @return true if the value log is used.
+     */
+    public boolean getUseValueLog() {
+        return this.useValueLog;
+    }
+
+    /**
+     * Set the min value size in bytes for a value to be stored in the value
+     * log.
+     * <p>
+     * Default is set to 4096 bytes.
+     * 
+     * @param valueLogThreshold
+     *            min value size in bytes.
+     */
+    public void setValueLogThreshold(int valueLogThreshold) {
+        this.valueLogThreshold = valueLogThreshold;
+    }
+
+    /**
+     * Get the min value size in bytes for a value to be stored in the value
+     * log.
+     * 
+     * @return min value size in bytes.
+     */
+    public int getValueLogThreshold() {
+        return this.valueLogThreshold;
+    }
+
+    /**
+     * Set the max size in bytes of a value log segment file.
+     * <p>
+     * Default is set to 64 MB.
+     * 
+     * @param valueLogSegmentSize
+     *            max segment size in bytes.
+     */
+    public void setValueLogSegmentSize(long valueLogSegmentSize) {
+        this.valueLogSegmentSize = valueLogSegmentSize;
+    }
+
+    /**
+     * Get the max size in bytes of a value log segment file.
+     * 
+     * @return max segment size in bytes.
+     */
+    public long getValueLogSegmentSize() {
+        return this.valueLogSegmentSize;
+    }
+
+    /**
+     * Set the value log garbage collection period (in milli-seconds).
+     * <p>
+     * Default is set to 60000 milli-seconds.
+     * 
+     * @param valueLogGcPeriod
+     *            garbage collection period in milli-seconds.
+     */
+    public void setValueLogGcPeriod(long valueLogGcPeriod) {
+        this.valueLogGcPeriod = valueLogGcPeriod;
+    }
+
+    /**
+     * Get the value log garbage collection period (in milli-seconds).
+     * 
+     * @return garbage collection period in milli-seconds.
+     */
+    public long getValueLogGcPeriod() {
+        return this.valueLogGcPeriod;
+    }
+
+    /**
+     * Set the max time (in milli-seconds) the LevelDB store waits for more
+     * SYNC writes to join a group commit.
+     * <p>
+     * Default is set to 0. Writes that arrive while a group is being synced
+     * are still committed together in the next group.
+     * 
+     * @param groupCommitMaxDelay
+     *            max group commit delay in milli-seconds.
+     */
+    public void setGroupCommitMaxDelay(long groupCommitMaxDelay) {
+        this.groupCommitMaxDelay = groupCommitMaxDelay;
+    }
+
+    /**
+     * Get the max time (in milli-seconds) the LevelDB store waits for more
+     * SYNC writes to join a group commit.
+     * 
+     * @return max group commit delay in milli-seconds.
+     */
+    public long getGroupCommitMaxDelay() {
+        return this.groupCommitMaxDelay;
+    }
+
+    /**
+     * Set the max number of writes committed with a single sync in a group
+     * commit. Group commit is disabled if set to less than 2.
+     * <p>
+     * Default is set to 128.
+     * 
+     * @param groupCommitMaxSize
+     *            max number of writes in a group commit.
+     */
+    public void setGroupCommitMaxSize(int groupCommitMaxSize) {
+        this.groupCommitMaxSize = groupCommitMaxSize;
+    }
+
+    /**
+     * Get the max number of writes committed with a single sync in a group
+     * commit.
+     * 
+     * @return max number of writes in a group commit.
+     */
+    public int getGroupCommitMaxSize() {
+        return this.groupCommitMaxSize;
+    }
+
+    /**
+     * Set the max segment file size (in bytes) of the bitcask store. The
+     * active segment is sealed and a new segment is started when the active
+     * segment reaches this size.
+     * <p>
+     * Default is set to 64M.
+     * 
+     * @param bitcaskSegmentSize
+     *            max segment size in bytes.
+     */
+    public void setBitcaskSegmentSize(long bitcaskSegmentSize) {
+        this.bitcaskSegmentSize = bitcaskSegmentSize;
+    }
+
+    /**
+     * Get the max segment file size (in bytes) of the bitcask store.
+     * 
+     * @return max segment size in bytes.
+     */
+    public long getBitcaskSegmentSize() {
+        return this.bitcaskSegmentSize;
+    }
+
+    /**
+     * Set the bitcask store merge period (in milli-seconds). Each period, hint
+     * files are written for the sealed segments and one sealed segment with
+     * mostly overwritten or deleted records is merged.
+     * <p>
+     * Default is set to 60000.
+     * 
+     * @param bitcaskMergePeriod
+     *            merge period in milli-seconds.
+     */
+    public void setBitcaskMergePeriod(long bitcaskMergePeriod) {
+        this.bitcaskMergePeriod = bitcaskMergePeriod;
+    }
+
+    /**
+     * Get the bitcask store merge period (in milli-seconds).
+     * 
+     * @return merge period in milli-seconds.
+     */
+    public long getBitcaskMergePeriod() {
+        return this.bitcaskMergePeriod;
+    }
+
+    /**
+     * Set the memory store checkpoint period (in milli-seconds). Each period,
+     * if entries were written since the last checkpoint, the memory tree is
+     * saved to a new checkpoint and the write-ahead log before the checkpoint
+     * is removed.
+     * <p>
+     * Default is set to 300000.
+     * 
+     * @param memoryCheckpointPeriod
+     *            checkpoint period in milli-seconds.
+     */
+    public void setMemoryCheckpointPeriod(long memoryCheckpointPeriod) {
+        this.memoryCheckpointPeriod = memoryCheckpointPeriod;
+    }
+
+    /**
+     * Get the memory store checkpoint period (in milli-seconds).
+     * 
+     * @return checkpoint period in milli-seconds.
+     */
+    public long getMemoryCheckpointPeriod() {
+        return this.memoryCheckpointPeriod;
+    }
+
+    /**
+     * Set to true to keep the memory store values off heap, in direct memory
+     * slab arenas. Only the key index is kept on the Java heap. Only used if
+     * the memory store is used.
+     * <p>
+     * The JVM max direct memory size (-XX:MaxDirectMemorySize) must be at
+     * least the off heap memory budget.
+     * <p>
+     * The default is set to false, or to the value of the
+     * "kinetic.memory.offHeap" Java System property.
+     * 
+     * @param useOffHeapMemoryStore
+     *            true to keep the memory store values off heap.
+     */
+    public void setUseOffHeapMemoryStore(boolean useOffHeapMemoryStore) {
+        this.useOffHeapMemoryStore = useOffHeapMemoryStore;
+    }
+
+    /**
+     * Get if the memory store keeps the values off heap.
+     * 
+     * @return true if the memory store values are kept off heap.
+     */
+    public boolean getUseOffHeapMemoryStore() {
+        return this.useOffHeapMemoryStore;
+    }
+
+    /**
+     * Set the off heap memory store budget (in bytes). Writes that need more
+     * memory than the budget fail with NO_SPACE. The budget is rounded up to
+     * a multiple of the 4M slab size.
+     * <p>
+     * Default is set to 1G.
+     * 
+     * @param offHeapMemoryBudget
+     *            off heap memory budget in bytes.
+     */
+    public void setOffHeapMemoryBudget(long offHeapMemoryBudget) {
+        this.offHeapMemoryBudget = offHeapMemoryBudget;
+    }
+
+    /**
+     * Get the off heap memory store budget (in bytes).
+     * 
+     * @return off heap memory budget in bytes.
+     */
+    public long getOffHeapMemoryBudget() {
+        return this.offHeapMemoryBudget;
+    }
+
+    /**
+     * Set the store read cache size (in bytes). If greater than 0, the
+     * entries read by GET are cached in front of the store, up to the
+     * specified size.
+     * <p>
+     * The default is set to 0 (disabled), or to the value of the
+     * "kinetic.store.cacheSize" Java System property.
+     * 
+     * @param storeCacheSize
+     *            store read cache size in bytes.
+     */
+    public void setStoreCacheSize(long storeCacheSize) {
+        this.storeCacheSize = storeCacheSize;
+    }
+
+    /**
+     * Get the store read cache size (in bytes).
+     * 
+     * @return store read cache size in bytes, 0 if disabled.
+     */
+    public long getStoreCacheSize() {
+        return this.storeCacheSize;
+    }
+
+    /**
+     * Set to true to keep a Bloom filter of the store keys in memory, so that
+     * requests on keys that are definitely not in the store are answered
+     * without reading the store.
+     * <p>
+     * The default is set to false, or to the value of the
+     * "kinetic.store.bloomFilter" Java System property.
+     * 
+     * @param useBloomFilter
+     *            true to use a Bloom filter of the store keys.
+     */
+    public void setUseBloomFilter(boolean useBloomFilter) {
+        this.useBloomFilter = useBloomFilter;
+    }
+
+    /**
+     * Get if a Bloom filter of the store keys is used.
+     * 
+     * @return true if a Bloom filter of the store keys is used.
+     */
+    public boolean getUseBloomFilter() {
+        return this.useBloomFilter;
+    }
+
+    /**
+     * Set the min number of keys the Bloom filter is sized for. The filter
+     * is resized when it is rebuilt if the store has more keys.
+     * <p>
+     * Default is set to 1000000.
+     * 
+     * @param bloomFilterExpectedKeys
+     *            min number of keys the Bloom filter is sized for.
+     */
+    public void setBloomFilterExpectedKeys(long bloomFilterExpectedKeys) {
+        this.bloomFilterExpectedKeys = bloomFilterExpectedKeys;
+    }
+
+    /**
+     * Get the min number of keys the Bloom filter is sized for.
+     * 
+     * @return min number of keys the Bloom filter is sized for.
+     */
+    public long getBloomFilterExpectedKeys() {
+        return this.bloomFilterExpectedKeys;
+    }
+
+    /**
+     * Set the max number of open cursors kept per connection by the store
+     * for sequential GETNEXT and GETPREVIOUS traversal. A GETNEXT (or
+     * GETPREVIOUS) from the key returned by the previous one advances the
+     * open cursor instead of seeking again. Set to 0 to disable.
+     * <p>
+     * Default is set to 4.
+     * 
+     * @param maxCursorsPerConnection
+     *            max number of open cursors per connection.
+     */
+    public void setMaxCursorsPerConnection(int maxCursorsPerConnection) {
+        this.maxCursorsPerConnection = maxCursorsPerConnection;
+    }
+
+    /**
+     * Get the max number of open cursors kept per connection.
+     * 
+     * @return max number of open cursors per connection, 0 if disabled.
+     */
+    public int getMaxCursorsPerConnection() {
+        return this.maxCursorsPerConnection;
+    }
+
+    /**
+     * Set the idle time after which an open cursor is closed.
+     * <p>
+     * Default is set to 10000 milli-seconds.
+     * 
+     * @param cursorIdleTimeout
+     *            idle time in milli-seconds.
+     */
+    public void setCursorIdleTimeout(long cursorIdleTimeout) {
+        this.cursorIdleTimeout = cursorIdleTimeout;
+    }
+
+    /**
+     * Get the idle time after which an open cursor is closed.
+     * 
+     * @return idle time in milli-seconds.
+     */
+    public long getCursorIdleTimeout() {
+        return this.cursorIdleTimeout;
+    }
+
 }
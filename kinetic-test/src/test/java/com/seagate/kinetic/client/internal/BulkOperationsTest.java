@@ -0,0 +1,357 @@
+/**
+ * 
+ * Copyright (C) 2014 Seagate Technology.
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.seagate.kinetic.client.internal;
+
+import static com.seagate.kinetic.KineticTestHelpers.toByteArray;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import kinetic.client.AsyncKineticException;
+import kinetic.client.BatchOperation;
+import kinetic.client.BulkResult;
+import kinetic.client.CallbackHandler;
+import kinetic.client.Entry;
+import kinetic.client.KineticClient;
+import kinetic.client.KineticException;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Batched putAll/deleteAll tests, against a client that records the batches.
+ */
+@Test(groups = { "simulator" })
+public class BulkOperationsTest {
+
+	private static final int BATCH_SIZE = 15;
+
+	private static final long TIMEOUT = 1000;
+
+	// keys of each committed batch, in commit order
+	private List<List<String>> committed;
+
+	// index of the aborted batches
+	private List<Integer> aborted;
+
+	// index of the batches failing to start or to commit
+	private Set<Integer> failedStarts;
+	private Set<Integer> failedCommits;
+
+	// keys rejected when sent, or failed by their callback
+	private Set<String> rejectedKeys;
+	private Set<String> failedKeys;
+
+	private int batchCount;
+	private int openBatches;
+	private int maxOpenBatches;
+
+	private KineticClient client;
+
+	@BeforeMethod
+	public void setUp() {
+
+		committed = new ArrayList<List<String>>();
+		aborted = new ArrayList<Integer>();
+
+		failedStarts = new HashSet<Integer>();
+		failedCommits = new HashSet<Integer>();
+
+		rejectedKeys = new HashSet<String>();
+		failedKeys = new HashSet<String>();
+
+		batchCount = 0;
+		openBatches = 0;
+		maxOpenBatches = 0;
+
+		client = (KineticClient) Proxy.newProxyInstance(
+				KineticClient.class.getClassLoader(),
+				new Class<?>[] { KineticClient.class },
+				new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method,
+							Object[] args) throws Exception {
+
+						if (method.getName().equals("createBatchOperation")) {
+							return newBatch(batchCount++);
+						}
+
+						throw new UnsupportedOperationException(
+								method.getName());
+					}
+				});
+	}
+
+	private BatchOperation newBatch(final int index) throws KineticException {
+
+		if (failedStarts.contains(index)) {
+			throw new KineticException("start failed");
+		}
+
+		maxOpenBatches = Math.max(maxOpenBatches, ++openBatches);
+
+		final List<String> keys = new ArrayList<String>();
+
+		return (BatchOperation) Proxy.newProxyInstance(
+				BatchOperation.class.getClassLoader(),
+				new Class<?>[] { BatchOperation.class },
+				new InvocationHandler() {
+
+					private boolean isClosed = false;
+
+					@Override
+					public Object invoke(Object proxy, Method method,
+							Object[] args) throws Exception {
+
+						String name = method.getName();
+
+						if (isClosed) {
+							throw new KineticException("batch closed");
+						}
+
+						if (name.equals("commit") || name.equals("abort")) {
+
+							isClosed = true;
+							openBatches--;
+
+							if (name.equals("abort")) {
+								aborted.add(index);
+							} else if (failedCommits.contains(index)) {
+								throw new KineticException("commit failed");
+							} else {
+								committed.add(keys);
+							}
+
+							return null;
+						}
+
+						byte[] key = (args[0] instanceof Entry) ? ((Entry) args[0])
+								.getKey() : (byte[]) args[0];
+
+						String s = new String(key, "UTF-8");
+
+						if (rejectedKeys.contains(s)) {
+							throw new KineticException("rejected " + s);
+						}
+
+						keys.add(s);
+
+						if (failedKeys.contains(s)) {
+							((CallbackHandler<?>) args[1])
+									.onError(new AsyncKineticException(
+											"failed " + s));
+						}
+
+						return null;
+					}
+				});
+	}
+
+	private static List<Entry> entries(int count) {
+
+		List<Entry> entries = new ArrayList<Entry>();
+
+		for (int i = 0; i < count; i++) {
+			entries.add(new Entry(toByteArray("key" + i), toByteArray("value"
+					+ i)));
+		}
+
+		return entries;
+	}
+
+	private static List<byte[]> keys(int count) {
+
+		List<byte[]> keys = new ArrayList<byte[]>();
+
+		for (int i = 0; i < count; i++) {
+			keys.add(toByteArray("key" + i));
+		}
+
+		return keys;
+	}
+
+	private void assertCommitted(int batch, int start, int end) {
+
+		List<String> keys = committed.get(batch);
+
+		assertEquals(end - start, keys.size());
+
+		for (int i = start; i < end; i++) {
+			assertEquals("key" + i, keys.get(i - start));
+		}
+	}
+
+	private static void assertFailed(BulkResult<?> result, int start, int end,
+			String message) {
+
+		KineticException error = result.getError(start);
+
+		for (int i = start; i < end; i++) {
+			assertNull(result.get(i));
+			// the same failure for all entries of the batch
+			assertSame(error, result.getError(i));
+		}
+
+		assertEquals(message, error.getMessage());
+	}
+
+	@Test
+	public void testPutAllBatched() throws Exception {
+
+		List<Entry> entries = entries(40);
+
+		BulkResult<Entry> result = BulkOperations.putAllBatched(client,
+				entries, BATCH_SIZE, TIMEOUT);
+
+		assertFalse(result.hasErrors());
+
+		for (int i = 0; i < entries.size(); i++) {
+			assertSame(entries.get(i), result.get(i));
+		}
+
+		// batch boundaries, in order
+		assertEquals(3, committed.size());
+		assertCommitted(0, 0, 15);
+		assertCommitted(1, 15, 30);
+		assertCommitted(2, 30, 40);
+
+		// committed one after the other
+		assertEquals(1, maxOpenBatches);
+		assertTrue(aborted.isEmpty());
+	}
+
+	@Test
+	public void testDeleteAllBatched() throws Exception {
+
+		BulkResult<Boolean> result = BulkOperations.deleteAllBatched(client,
+				keys(30), BATCH_SIZE, TIMEOUT);
+
+		assertFalse(result.hasErrors());
+
+		for (Boolean deleted : result.getResults()) {
+			assertTrue(deleted);
+		}
+
+		assertEquals(2, committed.size());
+		assertCommitted(0, 0, 15);
+		assertCommitted(1, 15, 30);
+
+		assertEquals(1, maxOpenBatches);
+	}
+
+	@Test
+	public void testFailedCommitFailsBatch() throws Exception {
+
+		failedCommits.add(1);
+
+		BulkResult<Entry> result = BulkOperations.putAllBatched(client,
+				entries(40), BATCH_SIZE, TIMEOUT);
+
+		assertTrue(result.hasErrors());
+
+		assertFailed(result, 15, 30, "commit failed");
+
+		// the other batches are committed
+		for (int i = 0; i < 15; i++) {
+			assertNull(result.getError(i));
+		}
+
+		for (int i = 30; i < 40; i++) {
+			assertNull(result.getError(i));
+		}
+
+		assertEquals(2, committed.size());
+		assertCommitted(0, 0, 15);
+		assertCommitted(1, 30, 40);
+	}
+
+	@Test
+	public void testFailedCommandFailsBatch() throws Exception {
+
+		// a failed command fails the commit of its batch
+		failedKeys.add("key5");
+		failedCommits.add(0);
+
+		BulkResult<Boolean> result = BulkOperations.deleteAllBatched(client,
+				keys(20), BATCH_SIZE, TIMEOUT);
+
+		// the failure of the command is kept
+		assertTrue(result.getError(5) instanceof AsyncKineticException);
+		assertEquals("failed key5", result.getError(5).getMessage());
+
+		assertFailed(result, 0, 5, "commit failed");
+		assertFailed(result, 6, 15, "commit failed");
+
+		for (int i = 15; i < 20; i++) {
+			assertEquals(Boolean.TRUE, result.get(i));
+			assertNull(result.getError(i));
+		}
+	}
+
+	@Test
+	public void testRejectedCommandAbortsBatch() throws Exception {
+
+		rejectedKeys.add("key20");
+
+		BulkResult<Entry> result = BulkOperations.putAllBatched(client,
+				entries(40), BATCH_SIZE, TIMEOUT);
+
+		assertFailed(result, 15, 30, "rejected key20");
+
+		// not committed, aborted
+		assertEquals(2, committed.size());
+		assertCommitted(0, 0, 15);
+		assertCommitted(1, 30, 40);
+
+		assertEquals(1, aborted.size());
+		assertEquals(1, aborted.get(0).intValue());
+
+		assertEquals(1, maxOpenBatches);
+	}
+
+	@Test
+	public void testFailedStartFailsBatch() throws Exception {
+
+		failedStarts.add(0);
+
+		BulkResult<Boolean> result = BulkOperations.deleteAllBatched(client,
+				keys(20), BATCH_SIZE, TIMEOUT);
+
+		assertFailed(result, 0, 15, "start failed");
+
+		for (int i = 15; i < 20; i++) {
+			assertEquals(Boolean.TRUE, result.get(i));
+		}
+
+		assertEquals(1, committed.size());
+		assertCommitted(0, 15, 20);
+		assertTrue(aborted.isEmpty());
+	}
+}
@@ -0,0 +1,351 @@
+/**
+ * 
+ * Copyright (C) 2014 Seagate Technology.
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.seagate.kinetic.client.internal.util.bigobject;
+
+import static com.seagate.kinetic.KineticTestHelpers.toByteArray;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import kinetic.client.AsyncKineticException;
+import kinetic.client.CallbackResult;
+import kinetic.client.ClientConfiguration;
+import kinetic.client.Entry;
+import kinetic.client.KineticClient;
+import kinetic.client.KineticClientFactory;
+import kinetic.client.KineticException;
+
+import org.testng.annotations.Test;
+
+import com.seagate.kinetic.IntegrationTestCase;
+import com.seagate.kinetic.client.internal.util.bigobject.PutxCallbackHandler.ChunkCallbackHandler;
+import com.seagate.kinetic.common.lib.KineticMessage;
+
+/**
+ * Big object tests: pipelined chunk puts and gets completed out of order,
+ * reuse of the pooled chunk buffers, and transfers aborted by a failed
+ * chunk.
+ */
+@Test(groups = { "simulator" })
+public class BigObjectTest extends IntegrationTestCase {
+
+	private static final int CHUNK_SIZE = 1024;
+
+	private static final int MAX_IN_FLIGHT = 4;
+
+	/**
+	 * Result of a chunk get.
+	 */
+	private static CallbackResult<Entry> result(final byte[] requestKey,
+			final Entry entry) {
+
+		return new CallbackResult<Entry>() {
+
+			@Override
+			public KineticMessage getRequestMessage() {
+				return null;
+			}
+
+			@Override
+			public KineticMessage getResponseMessage() {
+				return null;
+			}
+
+			@Override
+			public Entry getResult() {
+				return entry;
+			}
+
+			@Override
+			public byte[] getRequestKey() {
+				return requestKey;
+			}
+		};
+	}
+
+	private static byte[] chunkKey(int kseq) {
+		return BigObject.getKeyInSequence(toByteArray("big"), kseq);
+	}
+
+	private static byte[] data(int size) {
+
+		byte[] data = new byte[size];
+
+		new Random(size).nextBytes(data);
+
+		return data;
+	}
+
+	@Test
+	public void testPoolReusesBuffers() throws Exception {
+
+		ChunkBufferPool pool = new ChunkBufferPool(CHUNK_SIZE, 2);
+
+		byte[] first = pool.take(1000);
+		byte[] second = pool.take(1000);
+
+		assertEquals(CHUNK_SIZE, first.length);
+
+		// all the buffers are in use
+		try {
+			pool.take(50);
+			fail("no buffer must be available");
+		} catch (KineticException e) {
+			// expected
+		}
+
+		pool.release(first);
+
+		assertSame(first, pool.take(1000));
+
+		pool.release(first);
+		pool.release(second);
+
+		Set<byte[]> buffers = new HashSet<byte[]>();
+
+		buffers.add(pool.take(1000));
+		buffers.add(pool.take(1000));
+
+		// no buffer allocated beyond the capacity
+		assertTrue(buffers.contains(first));
+		assertTrue(buffers.contains(second));
+	}
+
+	@Test
+	public void testPoolWakesUpWaiter() throws Exception {
+
+		final ChunkBufferPool pool = new ChunkBufferPool(CHUNK_SIZE, 1);
+
+		final byte[] buffer = pool.take(1000);
+
+		Thread releaser = new Thread() {
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(100);
+				} catch (InterruptedException e) {
+					;
+				}
+
+				pool.release(buffer);
+			}
+		};
+
+		releaser.start();
+
+		assertSame(buffer, pool.take(10000));
+
+		releaser.join();
+	}
+
+	@Test
+	public void testGetxChunksOutOfOrder() throws Exception {
+
+		GetxCallbackHandler handler = new GetxCallbackHandler();
+
+		// completed in reverse order
+		for (int kseq = 3; kseq >= 0; kseq--) {
+			handler.onSuccess(result(chunkKey(kseq), new Entry(chunkKey(kseq),
+					toByteArray("chunk" + kseq))));
+		}
+
+		for (int kseq = 0; kseq < 4; kseq++) {
+			assertTrue(Arrays.equals(toByteArray("chunk" + kseq),
+					handler.take(kseq, 1000)));
+		}
+	}
+
+	@Test
+	public void testGetxChunkNotFound() throws Exception {
+
+		GetxCallbackHandler handler = new GetxCallbackHandler();
+
+		handler.onSuccess(result(chunkKey(0), new Entry(chunkKey(0),
+				toByteArray("chunk0"))));
+
+		// chunk 1 deleted
+		handler.onSuccess(result(chunkKey(1), null));
+
+		handler.onSuccess(result(chunkKey(2), new Entry(chunkKey(2),
+				toByteArray("chunk2"))));
+
+		assertTrue(Arrays.equals(toByteArray("chunk0"), handler.take(0, 1000)));
+
+		// the transfer is aborted at the missing chunk
+		try {
+			handler.take(1, 1000);
+			fail("chunk 1 must not be found");
+		} catch (KineticException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testPutxChunksOutOfOrder() throws Exception {
+
+		ChunkBufferPool pool = new ChunkBufferPool(CHUNK_SIZE, 3);
+
+		PutxCallbackHandler handler = new PutxCallbackHandler(pool);
+
+		byte[][] buffers = new byte[3][];
+		ChunkCallbackHandler[] chunks = new ChunkCallbackHandler[3];
+
+		for (int i = 0; i < 3; i++) {
+			buffers[i] = pool.take(1000);
+			chunks[i] = handler.newChunk(buffers[i]);
+		}
+
+		chunks[2].onSuccess(null);
+		chunks[0].onSuccess(null);
+		chunks[1].onSuccess(null);
+
+		// completed more than once, released once
+		chunks[1].onError(new AsyncKineticException("late"));
+
+		handler.waitForFinish(1000);
+
+		assertPoolHolds(pool, buffers);
+	}
+
+	@Test
+	public void testPutxFailedChunk() throws Exception {
+
+		ChunkBufferPool pool = new ChunkBufferPool(CHUNK_SIZE, 3);
+
+		PutxCallbackHandler handler = new PutxCallbackHandler(pool);
+
+		byte[][] buffers = new byte[3][];
+		ChunkCallbackHandler[] chunks = new ChunkCallbackHandler[3];
+
+		for (int i = 0; i < 3; i++) {
+			buffers[i] = pool.take(1000);
+			chunks[i] = handler.newChunk(buffers[i]);
+		}
+
+		chunks[0].onSuccess(null);
+		chunks[1].onError(new AsyncKineticException("chunk put failed"));
+
+		// not sent
+		chunks[2].notSent();
+
+		try {
+			handler.waitForFinish(1000);
+			fail("the failed chunk must fail the transfer");
+		} catch (KineticException e) {
+			// expected
+		}
+
+		// the buffer of the failed chunk is released too
+		assertPoolHolds(pool, buffers);
+	}
+
+	/**
+	 * All the buffers were released to the pool, each once.
+	 */
+	private static void assertPoolHolds(ChunkBufferPool pool,
+			byte[][] buffers) throws Exception {
+
+		Set<byte[]> taken = new HashSet<byte[]>();
+
+		for (int i = 0; i < buffers.length; i++) {
+			taken.add(pool.take(1000));
+		}
+
+		assertEquals(buffers.length, taken.size());
+
+		for (byte[] buffer : buffers) {
+			assertTrue(taken.contains(buffer));
+		}
+	}
+
+	@Test
+	public void testPutxGetxPipelined() throws Exception {
+
+		ClientConfiguration config = getClientConfig();
+
+		// chunks striped across two connections
+		BigObject bigObject = new BigObject(new ClientConfiguration[] {
+				config, getClientConfig() }, CHUNK_SIZE, MAX_IN_FLIGHT);
+
+		try {
+			// more chunks than in flight, last chunk not full
+			byte[] data = data(10 * CHUNK_SIZE + 100);
+
+			byte[] key = toByteArray("bigobject-pipelined");
+
+			assertEquals(data.length,
+					bigObject.putx(key, new ByteArrayInputStream(data)));
+
+			ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+			assertEquals(data.length, bigObject.getx(key, os));
+
+			assertTrue(Arrays.equals(data, os.toByteArray()));
+
+			// a chunk deleted aborts the transfer
+			KineticClient client = KineticClientFactory.createInstance(config);
+
+			try {
+				client.deleteForced(BigObject.getKeyInSequence(key, 5));
+			} finally {
+				client.close();
+			}
+
+			try {
+				bigObject.getx(key, new ByteArrayOutputStream());
+				fail("the missing chunk must fail the transfer");
+			} catch (KineticException e) {
+				// expected
+			}
+
+			bigObject.deletex(key);
+		} finally {
+			bigObject.close();
+		}
+	}
+
+	@Test
+	public void testPutxFailedChunkAborts() throws Exception {
+
+		// chunks larger than the max value size are rejected
+		BigObject bigObject = new BigObject(
+				new ClientConfiguration[] { getClientConfig() },
+				2 * 1024 * 1024, MAX_IN_FLIGHT);
+
+		try {
+			bigObject.putx(toByteArray("bigobject-failed"),
+					new ByteArrayInputStream(data(5 * 1024 * 1024)));
+
+			fail("the failed chunks must fail the transfer");
+		} catch (KineticException e) {
+			// expected
+		} finally {
+			bigObject.close();
+		}
+	}
+}
@@ -0,0 +1,134 @@
+/**
+ * 
+ * Copyright (C) 2014 Seagate Technology.
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.seagate.kinetic.client.io;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+import org.testng.annotations.Test;
+
+/**
+ * Asynchronous request window tests.
+ */
+@Test(groups = { "simulator" })
+public class InFlightWindowTest {
+
+	// response latency in nano seconds
+	private static final long LATENCY = 1000000;
+
+	@Test
+	public void testFixedWindow() throws Exception {
+
+		InFlightWindow window = new InFlightWindow(10, 0);
+
+		for (int i = 0; i < 100; i++) {
+			window.acquire();
+			window.onComplete(LATENCY, false);
+		}
+
+		assertEquals(10, window.getSize());
+
+		// busy responses do not change a fixed window
+		window.acquire();
+		window.onComplete(LATENCY, true);
+
+		assertEquals(10, window.getSize());
+	}
+
+	@Test
+	public void testGrow() throws Exception {
+
+		InFlightWindow window = new InFlightWindow(2, 4);
+
+		// one more after a full window of completions
+		window.acquire();
+		window.onComplete(LATENCY, false);
+		assertEquals(2, window.getSize());
+
+		window.acquire();
+		window.onComplete(LATENCY, false);
+		assertEquals(3, window.getSize());
+
+		// up to the max size
+		for (int i = 0; i < 100; i++) {
+			window.acquire();
+			window.onComplete(LATENCY, false);
+		}
+
+		assertEquals(4, window.getSize());
+
+		// all permits of the grown window can be taken
+		for (int i = 0; i < 4; i++) {
+			window.acquire();
+		}
+	}
+
+	@Test
+	public void testHalveOnError() throws Exception {
+
+		InFlightWindow window = new InFlightWindow(8, 16);
+
+		window.acquire();
+		window.onComplete(LATENCY, true);
+
+		assertEquals(4, window.getSize());
+
+		// halved at most once per round trip, down to one
+		for (int i = 0; i < 10; i++) {
+
+			Thread.sleep(5);
+
+			window.acquire();
+			window.onComplete(LATENCY, true);
+		}
+
+		assertEquals(1, window.getSize());
+	}
+
+	@Test
+	public void testCloseWakesUpWaiters() throws Exception {
+
+		final InFlightWindow window = new InFlightWindow(1, 0);
+
+		window.acquire();
+
+		Thread waiter = new Thread() {
+			@Override
+			public void run() {
+				try {
+					window.acquire();
+				} catch (InterruptedException e) {
+					;
+				}
+			}
+		};
+
+		waiter.start();
+
+		waiter.join(200);
+		assertTrue(waiter.isAlive());
+
+		window.close();
+
+		waiter.join(5000);
+		assertFalse(waiter.isAlive());
+	}
+}
@@ -0,0 +1,208 @@
+/**
+ * 
+ * Copyright (C) 2014 Seagate Technology.
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.seagate.kinetic.client.io;
+
+import static com.seagate.kinetic.KineticTestHelpers.toByteArray;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import kinetic.client.AsyncKineticException;
+import kinetic.client.CallbackHandler;
+import kinetic.client.CallbackResult;
+import kinetic.client.ClientConfiguration;
+import kinetic.client.Entry;
+import kinetic.client.KineticClient;
+import kinetic.client.KineticClientFactory;
+
+import org.testng.annotations.Test;
+
+import com.seagate.kinetic.IntegrationTestCase;
+import com.seagate.kinetic.client.io.provider.nio.tcp.TcpNioTransportProvider;
+import com.seagate.kinetic.common.lib.KineticMessage;
+
+/**
+ * I/O handler send queue tests. Messages written by many threads at the same
+ * time are written to the transport by one thread at a time, each exactly
+ * once, and none is left in the queue.
+ */
+@Test(groups = { "simulator" })
+public class SendQueueTest extends IntegrationTestCase {
+
+	private static final int THREADS = 16;
+
+	private static final int OPERATIONS = 200;
+
+	/**
+	 * Transport plug-in that records the written messages.
+	 */
+	public static class RecordingTransportProvider extends
+			TcpNioTransportProvider {
+
+		// sequences of the written messages
+		static final Set<Long> sequences = Collections
+				.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+
+		static final AtomicInteger writes = new AtomicInteger();
+
+		static final AtomicInteger writing = new AtomicInteger();
+
+		static final AtomicInteger overlaps = new AtomicInteger();
+
+		static void clear() {
+			sequences.clear();
+			writes.set(0);
+			writing.set(0);
+			overlaps.set(0);
+		}
+
+		@Override
+		public void write(KineticMessage message) throws IOException {
+
+			if (writing.incrementAndGet() > 1) {
+				overlaps.incrementAndGet();
+			}
+
+			try {
+				writes.incrementAndGet();
+				sequences.add(message.getCommand().getHeader().getSequence());
+
+				// widen the window for the other writers
+				Thread.yield();
+
+				super.write(message);
+			} finally {
+				writing.decrementAndGet();
+			}
+		}
+	}
+
+	private KineticClient newRecordingClient() throws Exception {
+
+		ClientConfiguration config = getClientConfig();
+
+		config.setProperty("kinetic.client.io.plugin.class",
+				RecordingTransportProvider.class.getName());
+
+		// read when the I/O handler is created
+		System.setProperty("kinetic.client.io.plugin", "true");
+
+		try {
+			return KineticClientFactory.createInstance(config);
+		} finally {
+			System.clearProperty("kinetic.client.io.plugin");
+		}
+	}
+
+	@Test
+	public void testConcurrentWriters() throws Exception {
+
+		RecordingTransportProvider.clear();
+
+		final KineticClient client = newRecordingClient();
+
+		final CountDownLatch start = new CountDownLatch(1);
+
+		final CountDownLatch responses = new CountDownLatch(THREADS / 2
+				* OPERATIONS);
+
+		final AtomicInteger failures = new AtomicInteger();
+
+		Thread[] threads = new Thread[THREADS];
+
+		try {
+			for (int t = 0; t < THREADS; t++) {
+
+				final int id = t;
+
+				// half synchronous, half asynchronous writers
+				final boolean isAsync = (t % 2 == 1);
+
+				threads[t] = new Thread() {
+					@Override
+					public void run() {
+						try {
+							start.await();
+
+							for (int i = 0; i < OPERATIONS; i++) {
+
+								Entry entry = new Entry(toByteArray("send-queue-"
+										+ id + "-" + i), toByteArray("value"));
+
+								if (isAsync) {
+									client.putAsync(entry, toByteArray("v1"),
+											new CallbackHandler<Entry>() {
+
+												@Override
+												public void onSuccess(
+														CallbackResult<Entry> result) {
+													responses.countDown();
+												}
+
+												@Override
+												public void onError(
+														AsyncKineticException exception) {
+													failures.incrementAndGet();
+													responses.countDown();
+												}
+											});
+								} else {
+									client.putForced(entry);
+								}
+							}
+						} catch (Exception e) {
+							failures.incrementAndGet();
+						}
+					}
+				};
+
+				threads[t].start();
+			}
+
+			start.countDown();
+
+			for (Thread t : threads) {
+				t.join();
+			}
+
+			// a message left in the queue is never answered
+			assertTrue("asynchronous responses missing",
+					responses.await(30, TimeUnit.SECONDS));
+
+			assertEquals(0, failures.get());
+
+			int count = THREADS * OPERATIONS;
+
+			// each message written once, by one thread at a time
+			assertEquals(count, RecordingTransportProvider.writes.get());
+			assertEquals(count, RecordingTransportProvider.sequences.size());
+			assertEquals(0, RecordingTransportProvider.overlaps.get());
+		} finally {
+			client.close();
+		}
+	}
+}
@@ -0,0 +1,306 @@
+/**
+ * 
+ * Copyright (C) 2014 Seagate Technology.
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.seagate.kinetic.client.io;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.testng.annotations.Test;
+
+import com.seagate.kinetic.common.lib.KineticMessage;
+
+/**
+ * Synchronous request slot tests: the open addressing table after resizes
+ * and removals in the middle of probe sequences, and the delivery of
+ * responses to a slot.
+ */
+@Test(groups = { "simulator" })
+public class SyncSlotTableTest {
+
+	// number of distinct slots, one per thread
+	private static final int SLOT_COUNT = 64;
+
+	/**
+	 * Get the slots of new threads.
+	 */
+	private static SyncSlot[] newSlots(int count) throws Exception {
+
+		final SyncSlot[] slots = new SyncSlot[count];
+
+		for (int i = 0; i < count; i++) {
+
+			final int index = i;
+
+			Thread t = new Thread() {
+				@Override
+				public void run() {
+					slots[index] = SyncSlot.get();
+				}
+			};
+
+			t.start();
+			t.join();
+		}
+
+		return slots;
+	}
+
+	private static void assertTable(Map<Long, SyncSlot> expected,
+			SyncSlotTable table, long maxSequence) {
+
+		for (long sequence = 0; sequence < maxSequence; sequence++) {
+
+			SyncSlot slot = table.get(sequence);
+
+			if (expected.containsKey(sequence)) {
+				assertSame(expected.get(sequence), slot);
+			} else {
+				assertNull(slot);
+			}
+		}
+
+		assertEquals(expected.size(), table.values().size());
+	}
+
+	@Test
+	public void testPutGetResize() throws Exception {
+
+		SyncSlot[] slots = newSlots(SLOT_COUNT);
+
+		SyncSlotTable table = new SyncSlotTable();
+
+		Map<Long, SyncSlot> expected = new HashMap<Long, SyncSlot>();
+
+		// each stripe is resized several times
+		for (long sequence = 0; sequence < 10000; sequence++) {
+
+			SyncSlot slot = slots[(int) (sequence % SLOT_COUNT)];
+
+			table.put(sequence, slot);
+			expected.put(sequence, slot);
+		}
+
+		assertTable(expected, table, 10000);
+
+		// replaced
+		table.put(5, slots[0]);
+		expected.put(5L, slots[0]);
+
+		assertTable(expected, table, 10000);
+	}
+
+	@Test
+	public void testRemoveInProbeSequence() throws Exception {
+
+		SyncSlot[] slots = newSlots(SLOT_COUNT);
+
+		SyncSlotTable table = new SyncSlotTable();
+
+		Map<Long, SyncSlot> expected = new HashMap<Long, SyncSlot>();
+
+		for (long sequence = 0; sequence < 5000; sequence++) {
+
+			SyncSlot slot = slots[(int) (sequence % SLOT_COUNT)];
+
+			table.put(sequence, slot);
+			expected.put(sequence, slot);
+		}
+
+		// colliding entries are moved back into the holes
+		for (long sequence = 0; sequence < 5000; sequence += 3) {
+			table.remove(sequence);
+			expected.remove(sequence);
+		}
+
+		assertTable(expected, table, 5000);
+
+		// removing an absent sequence is a no-op
+		table.remove(0);
+		table.remove(100000);
+
+		assertTable(expected, table, 5000);
+
+		// removed and re-inserted
+		for (long sequence = 0; sequence < 5000; sequence += 6) {
+			table.put(sequence, slots[0]);
+			expected.put(sequence, slots[0]);
+		}
+
+		assertTable(expected, table, 5000);
+	}
+
+	@Test
+	public void testRandomOperations() throws Exception {
+
+		SyncSlot[] slots = newSlots(SLOT_COUNT);
+
+		SyncSlotTable table = new SyncSlotTable();
+
+		Map<Long, SyncSlot> expected = new HashMap<Long, SyncSlot>();
+
+		Random random = new Random(1);
+
+		// few distinct sequences so that most removals hit an entry
+		for (int i = 0; i < 100000; i++) {
+
+			long sequence = random.nextInt(512);
+
+			if (random.nextBoolean()) {
+				SyncSlot slot = slots[random.nextInt(SLOT_COUNT)];
+				table.put(sequence, slot);
+				expected.put(sequence, slot);
+			} else {
+				table.remove(sequence);
+				expected.remove(sequence);
+			}
+
+			if (i % 1000 == 0) {
+				assertTable(expected, table, 512);
+			}
+		}
+
+		assertTable(expected, table, 512);
+
+		for (long sequence = 0; sequence < 512; sequence++) {
+			table.remove(sequence);
+		}
+
+		assertTrue(table.values().isEmpty());
+	}
+
+	@Test
+	public void testStripesUsedConcurrently() throws Exception {
+
+		final SyncSlot[] slots = newSlots(SLOT_COUNT);
+
+		final SyncSlotTable table = new SyncSlotTable();
+
+		final Set<Throwable> errors = new HashSet<Throwable>();
+
+		Thread[] threads = new Thread[8];
+
+		for (int t = 0; t < threads.length; t++) {
+
+			final long base = t * 100000L;
+
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						for (int round = 0; round < 100; round++) {
+
+							for (long s = base; s < base + 100; s++) {
+								table.put(s, slots[(int) (s % SLOT_COUNT)]);
+							}
+
+							for (long s = base; s < base + 100; s++) {
+
+								assertSame(slots[(int) (s % SLOT_COUNT)],
+										table.get(s));
+
+								table.remove(s);
+
+								assertNull(table.get(s));
+							}
+						}
+					} catch (Throwable e) {
+						synchronized (errors) {
+							errors.add(e);
+						}
+					}
+				}
+			};
+
+			threads[t].start();
+		}
+
+		for (Thread t : threads) {
+			t.join();
+		}
+
+		assertTrue(errors.toString(), errors.isEmpty());
+		assertTrue(table.values().isEmpty());
+	}
+
+	@Test
+	public void testDeliver() throws Exception {
+
+		SyncSlot slot = SyncSlot.get();
+
+		Object owner = new Object();
+
+		KineticMessage response = new KineticMessage();
+
+		slot.reset(owner, 1);
+
+		// another handler or request
+		assertFalse(slot.deliver(new Object(), 1, response));
+		assertFalse(slot.deliver(owner, 2, response));
+
+		assertTrue(slot.deliver(owner, 1, response));
+
+		// delivered once
+		assertFalse(slot.deliver(owner, 1, new KineticMessage()));
+
+		assertSame(response, slot.await(1000));
+
+		// late response after the request completed
+		assertFalse(slot.deliver(owner, 1, response));
+
+		slot.reset(owner, 3);
+
+		// timed out
+		assertNull(slot.await(10));
+
+		assertFalse(slot.deliver(owner, 3, response));
+	}
+
+	@Test
+	public void testSlotsOfThreads() throws Exception {
+
+		SyncSlot[] slots = newSlots(2);
+
+		assertFalse(slots[0] == slots[1]);
+		assertSame(SyncSlot.get(), SyncSlot.get());
+
+		List<SyncSlot> values = null;
+
+		SyncSlotTable table = new SyncSlotTable();
+
+		table.put(1, slots[0]);
+		table.put(2, slots[1]);
+
+		values = table.values();
+
+		assertEquals(2, values.size());
+		assertTrue(values.contains(slots[0]));
+		assertTrue(values.contains(slots[1]));
+	}
+}
@@ -0,0 +1,345 @@
+/**
+ * 
+ * Copyright (C) 2014 Seagate Technology.
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.seagate.kinetic.simulator.client.async;
+
+import static com.seagate.kinetic.KineticTestHelpers.toByteArray;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+import kinetic.client.AsyncKineticException;
+import kinetic.client.BatchOperation;
+import kinetic.client.CallbackHandler;
+import kinetic.client.CallbackResult;
+import kinetic.client.Entry;
+import kinetic.client.KineticClient;
+import kinetic.client.KineticClientFactory;
+import kinetic.client.KineticException;
+import kinetic.client.VersionMismatchException;
+import kinetic.simulator.SimulatorConfiguration;
+
+import org.testng.annotations.Test;
+
+import com.seagate.kinetic.IntegrationTestCase;
+import com.seagate.kinetic.common.lib.KineticMessage;
+import com.seagate.kinetic.proto.Kinetic.Command.Status.StatusCode;
+
+/**
+ * Concurrent batch tests: batches of different connections are validated at
+ * commit time, the simulator batch limits are enforced, and open batches do
+ * not block other requests.
+ */
+@Test(groups = { "simulator" })
+public class BatchConcurrencyTest extends IntegrationTestCase {
+
+	Logger logger = Logger.getLogger(BatchConcurrencyTest.class.getName());
+
+	private final SimulatorConfiguration simulatorConfig = new SimulatorConfiguration();
+
+	/**
+	 * Callback handler that records if a VERSION_MISMATCH was reported.
+	 */
+	private static class MismatchHandler implements CallbackHandler<Entry> {
+
+		final AtomicBoolean mismatch = new AtomicBoolean();
+
+		@Override
+		public void onSuccess(CallbackResult<Entry> result) {
+		}
+
+		@Override
+		public void onError(AsyncKineticException exception) {
+			if (isVersionMismatch(exception)) {
+				mismatch.set(true);
+			}
+		}
+	}
+
+	private static boolean isVersionMismatch(KineticException e) {
+
+		if (e instanceof VersionMismatchException) {
+			return true;
+		}
+
+		KineticMessage response = e.getResponseMessage();
+
+		return response != null
+				&& response.getCommand().getStatus().getCode() == StatusCode.VERSION_MISMATCH;
+	}
+
+	private KineticClient newClient() throws KineticException {
+		return KineticClientFactory.createInstance(getClientConfig());
+	}
+
+	@Test
+	public void testOverlappingBatchesOneWinner() throws Exception {
+
+		final byte[] key = toByteArray("batch-overlap-key");
+
+		KineticClient client1 = newClient();
+		KineticClient client2 = newClient();
+
+		try {
+			for (int round = 0; round < 20; round++) {
+
+				client1.deleteForced(key);
+
+				Entry entry = new Entry(key, toByteArray("initial"));
+				entry.getEntryMetadata().setVersion(toByteArray("v0"));
+				client1.putForced(entry);
+
+				final KineticClient[] clients = { client1, client2 };
+
+				final BatchOperation[] batches = new BatchOperation[2];
+				final MismatchHandler[] handlers = new MismatchHandler[2];
+				final KineticException[] errors = new KineticException[2];
+
+				// both batches read version v0
+				for (int i = 0; i < 2; i++) {
+
+					batches[i] = clients[i].createBatchOperation();
+					handlers[i] = new MismatchHandler();
+
+					Entry update = new Entry(key, toByteArray("value" + i));
+					update.getEntryMetadata().setVersion(toByteArray("v0"));
+
+					batches[i].putAsync(update, toByteArray("v" + (i + 1)),
+							handlers[i]);
+				}
+
+				final CountDownLatch start = new CountDownLatch(1);
+
+				Thread[] committers = new Thread[2];
+
+				for (int i = 0; i < 2; i++) {
+
+					final int id = i;
+
+					committers[i] = new Thread() {
+						@Override
+						public void run() {
+							try {
+								start.await();
+								batches[id].commit();
+							} catch (KineticException e) {
+								errors[id] = e;
+							} catch (InterruptedException e) {
+								errors[id] = new KineticException(e);
+							}
+						}
+					};
+
+					committers[i].start();
+				}
+
+				start.countDown();
+
+				for (Thread committer : committers) {
+					committer.join();
+				}
+
+				// exactly one batch is committed
+				assertTrue("round " + round, (errors[0] == null)
+						^ (errors[1] == null));
+
+				int winner = (errors[0] == null) ? 0 : 1;
+				int loser = 1 - winner;
+
+				// the loser is told that the version changed, either when its
+				// put is replayed or when its batch is validated
+				assertTrue("round " + round, isVersionMismatch(errors[loser])
+						|| handlers[loser].mismatch.get());
+
+				Entry result = client1.get(key);
+
+				assertTrue(Arrays.equals(toByteArray("value" + winner),
+						result.getValue()));
+				assertTrue(Arrays.equals(toByteArray("v" + (winner + 1)),
+						result.getEntryMetadata().getVersion()));
+			}
+
+			client1.deleteForced(key);
+		} finally {
+			client1.close();
+			client2.close();
+		}
+
+		logger.info(this.testEndInfo());
+	}
+
+	@Test
+	public void testMaxOutstandingBatches() throws Exception {
+
+		int max = simulatorConfig.getMaxOutstandingBatches();
+
+		KineticClient client = newClient();
+
+		List<BatchOperation> batches = new ArrayList<BatchOperation>();
+
+		try {
+			for (int i = 0; i < max; i++) {
+				batches.add(client.createBatchOperation());
+			}
+
+			try {
+				client.createBatchOperation();
+				fail("max outstanding batches must be enforced");
+			} catch (KineticException e) {
+				// expected
+			}
+
+			// a batch slot is released when a batch is aborted
+			batches.remove(0).abort();
+
+			batches.add(client.createBatchOperation());
+
+			// and when a batch is committed
+			BatchOperation batch = batches.remove(0);
+
+			batch.putForcedAsync(new Entry(toByteArray("batch-max-key"),
+					toByteArray("value")), new MismatchHandler());
+
+			batch.commit();
+
+			batches.add(client.createBatchOperation());
+
+			client.deleteForced(toByteArray("batch-max-key"));
+		} finally {
+			for (BatchOperation batch : batches) {
+				batch.abort();
+			}
+
+			client.close();
+		}
+
+		logger.info(this.testEndInfo());
+	}
+
+	@Test
+	public void testMaxCommandsPerBatch() throws Exception {
+
+		int max = simulatorConfig.getMaxCommandsPerBatch();
+
+		KineticClient client = newClient();
+
+		try {
+			// a full batch is committed
+			BatchOperation batch = client.createBatchOperation();
+
+			for (int i = 0; i < max; i++) {
+				batch.putForcedAsync(new Entry(toByteArray("batch-cmd-key-"
+						+ i), toByteArray("value" + i)), new MismatchHandler());
+			}
+
+			batch.commit();
+
+			for (int i = 0; i < max; i++) {
+				assertTrue(Arrays.equals(toByteArray("value" + i), client
+						.get(toByteArray("batch-cmd-key-" + i)).getValue()));
+			}
+
+			// one command too many, nothing is committed
+			batch = client.createBatchOperation();
+
+			for (int i = 0; i <= max; i++) {
+				batch.putForcedAsync(new Entry(toByteArray("batch-cmd-key-"
+						+ i), toByteArray("updated" + i)), new MismatchHandler());
+			}
+
+			try {
+				batch.commit();
+				fail("max commands per batch must be enforced");
+			} catch (KineticException e) {
+				// expected
+			}
+
+			for (int i = 0; i < max; i++) {
+				assertTrue(Arrays.equals(toByteArray("value" + i), client
+						.get(toByteArray("batch-cmd-key-" + i)).getValue()));
+			}
+
+			assertNull(client.get(toByteArray("batch-cmd-key-" + max)));
+
+			for (int i = 0; i <= max; i++) {
+				client.deleteForced(toByteArray("batch-cmd-key-" + i));
+			}
+		} finally {
+			client.close();
+		}
+
+		logger.info(this.testEndInfo());
+	}
+
+	@Test
+	public void testPutNotBlockedByOpenBatch() throws Exception {
+
+		byte[] batchKey = toByteArray("batch-open-key");
+		byte[] key = toByteArray("batch-open-other-key");
+
+		KineticClient batchClient = newClient();
+		KineticClient client = newClient();
+
+		try {
+			BatchOperation batch = batchClient.createBatchOperation();
+
+			batch.putForcedAsync(new Entry(batchKey, toByteArray("batch")),
+					new MismatchHandler());
+
+			// the batch stays open while the other connection writes
+			long start = System.currentTimeMillis();
+
+			for (int i = 0; i < 10; i++) {
+				client.putForced(new Entry(key, toByteArray("value" + i)));
+				client.putForced(new Entry(batchKey, toByteArray("plain")));
+			}
+
+			client.deleteForced(key);
+
+			long elapsed = System.currentTimeMillis() - start;
+
+			assertTrue("writes waited for the open batch, elapsed=" + elapsed,
+					elapsed < 5000);
+
+			// not visible until committed
+			assertTrue(Arrays.equals(toByteArray("plain"),
+					client.get(batchKey).getValue()));
+
+			batch.commit();
+
+			assertTrue(Arrays.equals(toByteArray("batch"),
+					client.get(batchKey).getValue()));
+
+			assertEquals(true, client.deleteForced(batchKey));
+		} finally {
+			batchClient.close();
+			client.close();
+		}
+
+		logger.info(this.testEndInfo());
+	}
+}
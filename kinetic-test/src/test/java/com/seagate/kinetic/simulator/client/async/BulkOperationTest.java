@@ -0,0 +1,111 @@
+/**
+ * 
+ * Copyright (C) 2014 Seagate Technology.
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.seagate.kinetic.simulator.client.async;
+
+import static com.seagate.kinetic.KineticTestHelpers.toByteArray;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+
+import kinetic.client.BulkResult;
+import kinetic.client.Entry;
+import kinetic.client.KineticClient;
+
+import org.testng.annotations.Test;
+
+import com.seagate.kinetic.IntegrationTestCase;
+
+/**
+ * Bulk getAll/putAll/deleteAll tests.
+ */
+@Test(groups = { "simulator" })
+public class BulkOperationTest extends IntegrationTestCase {
+
+	Logger logger = Logger.getLogger(BulkOperationTest.class.getName());
+
+	private final int max = 40;
+
+	@Test(dataProvider = "transportProtocolOptions")
+	public void testBulkOperations(String clientName) throws Exception {
+		this.runBulkOperations(getClient(clientName), false);
+
+		logger.info(this.testEndInfo());
+	}
+
+	@Test(dataProvider = "transportProtocolOptions")
+	public void testBatchedBulkOperations(String clientName) throws Exception {
+		this.runBulkOperations(getClient(clientName), true);
+
+		logger.info(this.testEndInfo());
+	}
+
+	private void runBulkOperations(KineticClient client, boolean isBatched)
+			throws Exception {
+
+		List<Entry> entries = new ArrayList<Entry>();
+		List<byte[]> keys = new ArrayList<byte[]>();
+
+		for (int i = 0; i < max; i++) {
+			entries.add(new Entry(toByteArray("bulk-key-" + i),
+					toByteArray("bulk-value-" + i)));
+			keys.add(toByteArray("bulk-key-" + i));
+		}
+
+		// put
+		BulkResult<Entry> putResult = client.putAll(entries, isBatched);
+		assertEquals(max, putResult.size());
+		assertFalse(putResult.hasErrors());
+
+		// get, with a missing key at the end
+		keys.add(toByteArray("bulk-key-missing"));
+
+		BulkResult<Entry> getResult = client.getAll(keys);
+		assertEquals(max + 1, getResult.size());
+		assertFalse(getResult.hasErrors());
+
+		// results in request order
+		for (int i = 0; i < max; i++) {
+			assertTrue(Arrays.equals(toByteArray("bulk-value-" + i), getResult
+					.get(i).getValue()));
+		}
+
+		assertNull(getResult.get(max));
+
+		keys.remove(max);
+
+		// delete
+		BulkResult<Boolean> deleteResult = client.deleteAll(keys, isBatched);
+		assertFalse(deleteResult.hasErrors());
+
+		for (Boolean deleted : deleteResult.getResults()) {
+			assertTrue(deleted);
+		}
+
+		for (Entry entry : client.getAll(keys).getResults()) {
+			assertNull(entry);
+		}
+	}
+}
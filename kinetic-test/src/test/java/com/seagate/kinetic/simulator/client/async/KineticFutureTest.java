@@ -0,0 +1,202 @@
+/**
+ * 
+ * Copyright (C) 2014 Seagate Technology.
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.seagate.kinetic.simulator.client.async;
+
+import static com.seagate.kinetic.KineticTestHelpers.toByteArray;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import kinetic.client.AsyncKineticException;
+import kinetic.client.CallbackHandler;
+import kinetic.client.CallbackResult;
+import kinetic.client.ClientConfiguration;
+import kinetic.client.Entry;
+import kinetic.client.EntryMetadata;
+import kinetic.client.KineticClient;
+import kinetic.client.KineticClientFactory;
+import kinetic.client.KineticFuture;
+
+import org.testng.annotations.Test;
+
+import com.seagate.kinetic.IntegrationTestCase;
+
+/**
+ * Kinetic future and callback thread pool tests.
+ */
+@Test(groups = { "simulator" })
+public class KineticFutureTest extends IntegrationTestCase {
+
+	Logger logger = Logger.getLogger(KineticFutureTest.class.getName());
+
+	@Test(dataProvider = "transportProtocolOptions")
+	public void testFutureOperations(String clientName) throws Exception {
+
+		KineticClient client = getClient(clientName);
+
+		Entry entry = new Entry(toByteArray("future-key"),
+				toByteArray("future-value"));
+
+		// put
+		Entry putEntry = client.putForcedAsync(entry).get();
+		assertTrue(Arrays.equals(entry.getKey(), putEntry.getKey()));
+
+		// get
+		Entry getEntry = client.getAsync(entry.getKey()).getResult();
+		assertTrue(Arrays.equals(entry.getValue(), getEntry.getValue()));
+
+		// get metadata
+		EntryMetadata metadata = client.getMetadataAsync(entry.getKey())
+				.get(30, TimeUnit.SECONDS);
+		assertTrue(metadata != null);
+
+		// get key range
+		List<byte[]> keys = client.getKeyRangeAsync(entry.getKey(), true,
+				entry.getKey(), true, 10).getResult();
+		assertEquals(1, keys.size());
+
+		// delete
+		assertTrue(client.deleteForcedAsync(entry.getKey()).getResult());
+
+		// not found
+		assertNull(client.getAsync(entry.getKey()).getResult());
+
+		logger.info(this.testEndInfo());
+	}
+
+	@Test(dataProvider = "transportProtocolOptions")
+	public void testFutureCallback(String clientName) throws Exception {
+
+		KineticClient client = getClient(clientName);
+
+		Entry entry = new Entry(toByteArray("future-callback-key"),
+				toByteArray("future-callback-value"));
+
+		KineticFuture<Entry> future = client.putForcedAsync(entry);
+
+		final CountDownLatch latch = new CountDownLatch(2);
+
+		CallbackHandler<Entry> handler = new CallbackHandler<Entry>() {
+
+			@Override
+			public void onSuccess(CallbackResult<Entry> result) {
+				latch.countDown();
+			}
+
+			@Override
+			public void onError(AsyncKineticException exception) {
+				;
+			}
+		};
+
+		// before and after completion
+		future.addCallback(handler);
+		future.get();
+		future.addCallback(handler);
+
+		assertTrue(latch.await(30, TimeUnit.SECONDS));
+		assertTrue(future.isDone());
+
+		client.deleteForced(entry.getKey());
+
+		logger.info(this.testEndInfo());
+	}
+
+	@Test
+	public void testCallbackThreadsOrderedByKey() throws Exception {
+
+		ClientConfiguration config = getClientConfig();
+		config.setCallbackThreads(4);
+		config.setCallbackOrderedByKey(true);
+		config.setAsyncQueueSize(100);
+
+		KineticClient client = KineticClientFactory.createInstance(config);
+
+		try {
+			int max = 100;
+
+			// per key, the request index of each callback in invocation order
+			final List<List<Integer>> completions = new ArrayList<List<Integer>>();
+
+			for (int i = 0; i < 4; i++) {
+				completions.add(Collections
+						.synchronizedList(new ArrayList<Integer>()));
+			}
+
+			final CountDownLatch latch = new CountDownLatch(max);
+
+			for (int i = 0; i < max; i++) {
+				Entry entry = new Entry(toByteArray("callback-key-" + i % 4),
+						toByteArray("callback-value-" + i));
+
+				final List<Integer> sequence = completions.get(i % 4);
+				final int index = i;
+
+				client.putForcedAsync(entry, new CallbackHandler<Entry>() {
+
+					@Override
+					public void onSuccess(CallbackResult<Entry> result) {
+						sequence.add(index);
+						latch.countDown();
+					}
+
+					@Override
+					public void onError(AsyncKineticException exception) {
+						latch.countDown();
+					}
+				});
+			}
+
+			assertTrue(latch.await(30, TimeUnit.SECONDS));
+
+			// callbacks of each key are invoked in request order
+			for (int i = 0; i < 4; i++) {
+
+				List<Integer> sequence = completions.get(i);
+
+				assertEquals(max / 4, sequence.size());
+
+				for (int j = 0; j < sequence.size(); j++) {
+					assertEquals(i + j * 4, sequence.get(j).intValue());
+				}
+			}
+
+			for (int i = 0; i < 4; i++) {
+				assertTrue(client.get(toByteArray("callback-key-" + i)) != null);
+			}
+
+			for (int i = 0; i < 4; i++) {
+				client.deleteForced(toByteArray("callback-key-" + i));
+			}
+		} finally {
+			client.close();
+		}
+
+		logger.info(this.testEndInfo());
+	}
+}
@@ -0,0 +1,212 @@
+/**
+ * 
+ * Copyright (C) 2014 Seagate Technology.
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.seagate.kinetic.simulator.client.internal;
+
+import static com.seagate.kinetic.KineticTestHelpers.toByteArray;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+
+import kinetic.client.ClientConfiguration;
+import kinetic.client.Entry;
+import kinetic.client.KineticClient;
+import kinetic.client.KineticClientFactory;
+import kinetic.simulator.KineticSimulator;
+import kinetic.simulator.SimulatorConfiguration;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.seagate.kinetic.client.internal.ClusterKineticClient;
+
+/**
+ * Cluster kinetic client tests.
+ */
+@Test(groups = { "simulator" })
+public class ClusterKineticClientTest {
+
+	Logger logger = Logger.getLogger(ClusterKineticClientTest.class.getName());
+
+	private final int max = 3;
+	private final int portbase = 18223;
+	private final int sslPortbase = 18543;
+
+	private final int keys = 50;
+
+	private final ClientConfiguration[] cconfigs = new ClientConfiguration[max];
+
+	private final KineticSimulator[] servers = new KineticSimulator[max];
+
+	@BeforeMethod
+	public void setUp() throws Exception {
+
+		for (int i = 0; i < max; i++) {
+
+			int myport = portbase + i;
+
+			cconfigs[i] = new ClientConfiguration();
+			cconfigs[i].setPort(myport);
+
+			SimulatorConfiguration sconfig = new SimulatorConfiguration();
+			sconfig.setPort(myport);
+			sconfig.setSslPort(sslPortbase + i);
+			sconfig.put(SimulatorConfiguration.PERSIST_HOME, "cluster_"
+					+ myport);
+
+			servers[i] = new KineticSimulator(sconfig);
+		}
+	}
+
+	@Test
+	public void testClusterOperations() throws Exception {
+
+		KineticClient client = KineticClientFactory.createInstance(Arrays
+				.asList(cconfigs[0], cconfigs[1]));
+
+		try {
+			this.putKeys(client);
+
+			// keys are spread over the drives
+			for (int i = 0; i < 2; i++) {
+				KineticClient drive = KineticClientFactory
+						.createInstance(cconfigs[i]);
+				try {
+					List<byte[]> driveKeys = drive.getKeyRange(
+							toByteArray("cluster-key-"), true,
+							toByteArray("cluster-key-z"), true, keys);
+					assertTrue(driveKeys.size() > 0);
+					assertTrue(driveKeys.size() < keys);
+				} finally {
+					drive.close();
+				}
+			}
+
+			this.verifyKeys(client);
+
+			assertTrue(Arrays.equals(toByteArray("cluster-key-11"), client
+					.getNext(toByteArray("cluster-key-10")).getKey()));
+			assertTrue(Arrays.equals(toByteArray("cluster-key-09"), client
+					.getPrevious(toByteArray("cluster-key-10")).getKey()));
+
+			this.deleteKeys(client);
+		} finally {
+			client.close();
+		}
+
+		logger.info("cluster operations test passed");
+	}
+
+	@Test
+	public void testClusterMembershipChange() throws Exception {
+
+		List<ClientConfiguration> configs = new ArrayList<ClientConfiguration>();
+		configs.add(cconfigs[0]);
+		configs.add(cconfigs[1]);
+
+		ClusterKineticClient client = new ClusterKineticClient(configs);
+
+		try {
+			this.putKeys(client);
+
+			client.addDrive(cconfigs[2]);
+			assertEquals(3, client.getDriveCount());
+			this.verifyKeys(client);
+
+			client.removeDrive(cconfigs[0]);
+			assertEquals(2, client.getDriveCount());
+			this.verifyKeys(client);
+
+			// removed drive holds no keys
+			KineticClient drive = KineticClientFactory
+					.createInstance(cconfigs[0]);
+			try {
+				assertEquals(
+						0,
+						drive.getKeyRange(toByteArray("cluster-key-"), true,
+								toByteArray("cluster-key-z"), true, keys)
+								.size());
+			} finally {
+				drive.close();
+			}
+
+			this.deleteKeys(client);
+		} finally {
+			client.close();
+		}
+
+		logger.info("cluster membership change test passed");
+	}
+
+	private void putKeys(KineticClient client) throws Exception {
+		for (int i = 0; i < keys; i++) {
+			client.putForced(new Entry(toByteArray(key(i)),
+					toByteArray("cluster-value-" + i)));
+		}
+	}
+
+	private void verifyKeys(KineticClient client) throws Exception {
+
+		for (int i = 0; i < keys; i++) {
+			Entry entry = client.get(toByteArray(key(i)));
+			assertTrue(Arrays.equals(toByteArray("cluster-value-" + i),
+					entry.getValue()));
+		}
+
+		// merged in key order
+		List<byte[]> range = client.getKeyRange(toByteArray("cluster-key-"),
+				true, toByteArray("cluster-key-z"), true, keys);
+		assertEquals(keys, range.size());
+
+		for (int i = 0; i < keys; i++) {
+			assertTrue(Arrays.equals(toByteArray(key(i)), range.get(i)));
+		}
+
+		List<byte[]> reversed = client.getKeyRangeReversed(
+				toByteArray("cluster-key-"), true,
+				toByteArray("cluster-key-z"), true, 10);
+		assertEquals(10, reversed.size());
+		assertTrue(Arrays.equals(toByteArray(key(keys - 1)), reversed.get(0)));
+	}
+
+	private void deleteKeys(KineticClient client) throws Exception {
+		for (int i = 0; i < keys; i++) {
+			assertTrue(client.deleteForced(toByteArray(key(i))));
+		}
+
+		assertNull(client.get(toByteArray(key(0))));
+	}
+
+	private static String key(int i) {
+		return String.format("cluster-key-%02d", i);
+	}
+
+	@AfterMethod
+	public void tearDown() throws Exception {
+		for (int i = 0; i < max; i++) {
+			servers[i].close();
+		}
+	}
+}
@@ -0,0 +1,225 @@
+/**
+ * 
+ * Copyright (C) 2014 Seagate Technology.
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.seagate.kinetic.simulator.client.internal;
+
+import static com.seagate.kinetic.KineticTestHelpers.toByteArray;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import kinetic.client.ClientConfiguration;
+import kinetic.client.Entry;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.seagate.kinetic.IntegrationTestCase;
+import com.seagate.kinetic.client.internal.DefaultKineticClient;
+
+/**
+ * Key range iterator tests: the next page is prefetched while the current
+ * page is consumed, including at the page boundary, at the end of the range
+ * and when keys of the prefetched page are deleted.
+ */
+@Test(groups = { "simulator" })
+public class KineticIteratorTest extends IntegrationTestCase {
+
+	private static final int PAGE_SIZE = 5;
+
+	private static final String PREFIX = "iterator-prefetch-";
+
+	private final List<DefaultKineticClient> clients = new ArrayList<DefaultKineticClient>();
+
+	private DefaultKineticClient writer = null;
+
+	@BeforeMethod
+	public void setUp() throws Exception {
+
+		writer = newClient(false);
+
+		// keys of the previous test
+		for (int i = 0; i < 100; i++) {
+			writer.deleteForced(key(i));
+		}
+	}
+
+	@AfterMethod
+	public void tearDown() throws Exception {
+
+		for (DefaultKineticClient client : clients) {
+			client.close();
+		}
+
+		clients.clear();
+	}
+
+	@DataProvider(name = "prefetchValues")
+	public Object[][] prefetchValues() {
+		return new Object[][] { { false }, { true } };
+	}
+
+	private DefaultKineticClient newClient(boolean prefetchValues)
+			throws Exception {
+
+		ClientConfiguration config = getClientConfig();
+
+		config.setRangePageSize(PAGE_SIZE);
+		config.setRangePrefetchValues(prefetchValues);
+
+		DefaultKineticClient client = new DefaultKineticClient(config);
+
+		clients.add(client);
+
+		return client;
+	}
+
+	private static byte[] key(int i) {
+		return toByteArray(PREFIX + (i < 10 ? "0" : "") + i);
+	}
+
+	private void putKeys(int count) throws Exception {
+		for (int i = 0; i < count; i++) {
+			writer.putForced(new Entry(key(i), toByteArray("value" + i)));
+		}
+	}
+
+	/**
+	 * Iterate and check the returned keys, in order.
+	 */
+	private static void assertNextKeys(Iterator<Entry> it,
+			List<Integer> expected) {
+
+		for (int i : expected) {
+
+			assertTrue(it.hasNext());
+
+			Entry entry = it.next();
+
+			assertTrue(Arrays.equals(key(i), entry.getKey()));
+			assertTrue(Arrays.equals(toByteArray("value" + i),
+					entry.getValue()));
+		}
+	}
+
+	/**
+	 * Iterate and check the returned keys, up to the end of the range.
+	 */
+	private static void assertKeys(Iterator<Entry> it, List<Integer> expected) {
+
+		assertNextKeys(it, expected);
+
+		assertFalse(it.hasNext());
+
+		try {
+			it.next();
+			fail("iterator must be exhausted");
+		} catch (NoSuchElementException e) {
+			// expected
+		}
+	}
+
+	private static List<Integer> range(int from, int to) {
+
+		List<Integer> list = new ArrayList<Integer>();
+
+		for (int i = from; i < to; i++) {
+			list.add(i);
+		}
+
+		return list;
+	}
+
+	@Test(dataProvider = "prefetchValues")
+	public void testPageBoundary(boolean prefetchValues) throws Exception {
+
+		// two full pages, the prefetched third page is empty
+		putKeys(2 * PAGE_SIZE);
+
+		DefaultKineticClient client = newClient(prefetchValues);
+
+		assertKeys(
+				client.getRange(key(0), true, key(99), true).iterator(),
+				range(0, 2 * PAGE_SIZE));
+
+		// starts at the first key of the second page
+		assertKeys(client.getRange(key(PAGE_SIZE - 1), false, key(99), true)
+				.iterator(), range(PAGE_SIZE, 2 * PAGE_SIZE));
+	}
+
+	@Test(dataProvider = "prefetchValues")
+	public void testEndOfRange(boolean prefetchValues) throws Exception {
+
+		putKeys(3 * PAGE_SIZE);
+
+		DefaultKineticClient client = newClient(prefetchValues);
+
+		// the last page is not full
+		assertKeys(client.getRange(key(0), true, key(11), false).iterator(),
+				range(0, 11));
+
+		assertKeys(client.getRange(key(0), true, key(11), true).iterator(),
+				range(0, 12));
+
+		// the range ends at the end of a page
+		assertKeys(client.getRange(key(0), false, key(10), true).iterator(),
+				range(1, 11));
+
+		// empty range
+		assertKeys(client.getRange(key(50), true, key(60), true).iterator(),
+				new ArrayList<Integer>());
+	}
+
+	@Test(dataProvider = "prefetchValues")
+	public void testKeysDeletedBetweenPages(boolean prefetchValues)
+			throws Exception {
+
+		putKeys(3 * PAGE_SIZE);
+
+		DefaultKineticClient client = newClient(prefetchValues);
+
+		Iterator<Entry> it = client.getRange(key(0), true, key(99), true)
+				.iterator();
+
+		// first page consumed, second page prefetched
+		assertNextKeys(it, range(0, 2));
+
+		// keys of the next pages, including the first key of a page
+		writer.deleteForced(key(PAGE_SIZE));
+		writer.deleteForced(key(PAGE_SIZE + 2));
+		writer.deleteForced(key(2 * PAGE_SIZE));
+
+		List<Integer> expected = range(2, 3 * PAGE_SIZE);
+
+		expected.remove(Integer.valueOf(PAGE_SIZE));
+		expected.remove(Integer.valueOf(PAGE_SIZE + 2));
+		expected.remove(Integer.valueOf(2 * PAGE_SIZE));
+
+		assertKeys(it, expected);
+	}
+}
@@ -0,0 +1,84 @@
+/**
+ * 
+ * Copyright (C) 2014 Seagate Technology.
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.seagate.kinetic.simulator.client.internal;
+
+import static com.seagate.kinetic.KineticTestHelpers.toByteArray;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+import kinetic.client.ClientConfiguration;
+import kinetic.client.Entry;
+import kinetic.client.KineticClient;
+import kinetic.client.KineticClientFactory;
+
+import org.testng.annotations.Test;
+
+import com.seagate.kinetic.IntegrationTestCase;
+
+/**
+ * Nio transport socket option tests.
+ */
+@Test(groups = { "simulator" })
+public class NioTransportOptionsTest extends IntegrationTestCase {
+
+	Logger logger = Logger.getLogger(NioTransportOptionsTest.class.getName());
+
+	@Test
+	public void testSocketOptions() throws Exception {
+
+		ClientConfiguration config = getClientConfig();
+
+		config.setSocketSendBufferSize(256 * 1024);
+		config.setSocketReceiveBufferSize(256 * 1024);
+
+		// high water mark below the default low water mark
+		config.setWriteBufferWaterMarks(16 * 1024, 8 * 1024);
+
+		KineticClient client = KineticClientFactory.createInstance(config);
+
+		try {
+			byte[] value = new byte[128 * 1024];
+			for (int i = 0; i < value.length; i++) {
+				value[i] = (byte) i;
+			}
+
+			client.putForced(new Entry(toByteArray("nio-options-key"), value));
+
+			Entry entry = client.get(toByteArray("nio-options-key"));
+			assertTrue(Arrays.equals(value, entry.getValue()));
+
+			assertTrue(client.deleteForced(toByteArray("nio-options-key")));
+
+			assertNull(client.get(toByteArray("nio-options-key")));
+		} finally {
+			client.close();
+		}
+
+		logger.info(this.testEndInfo());
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void testInvalidWaterMarks() {
+		getClientConfig().setWriteBufferWaterMarks(8 * 1024, 16 * 1024);
+	}
+}
@@ -0,0 +1,141 @@
+/**
+ * 
+ * Copyright (C) 2014 Seagate Technology.
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.seagate.kinetic.simulator.client.internal;
+
+import static com.seagate.kinetic.KineticTestHelpers.toByteArray;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+
+import kinetic.client.ClientConfiguration;
+import kinetic.client.Entry;
+import kinetic.client.KineticClient;
+import kinetic.client.KineticClientFactory;
+import kinetic.client.KineticFuture;
+
+import org.testng.annotations.Test;
+
+import com.seagate.kinetic.IntegrationTestCase;
+import com.seagate.kinetic.client.internal.PooledKineticClient;
+
+/**
+ * Pooled kinetic client tests.
+ */
+@Test(groups = { "simulator" })
+public class PooledKineticClientTest extends IntegrationTestCase {
+
+	Logger logger = Logger.getLogger(PooledKineticClientTest.class.getName());
+
+	@Test
+	public void testPooledClientOperations() throws Exception {
+
+		ClientConfiguration config = getClientConfig();
+		config.setConnectionPoolSize(4);
+
+		KineticClient client = KineticClientFactory.createInstance(config);
+
+		try {
+			assertTrue(client instanceof PooledKineticClient);
+			assertEquals(4, ((PooledKineticClient) client).getConnectionCount());
+
+			int max = 20;
+
+			for (int i = 0; i < max; i++) {
+				client.putForced(new Entry(toByteArray("pool-key-" + i),
+						toByteArray("pool-value-" + i)));
+			}
+
+			for (int i = 0; i < max; i++) {
+				Entry entry = client.get(toByteArray("pool-key-" + i));
+				assertTrue(Arrays.equals(toByteArray("pool-value-" + i),
+						entry.getValue()));
+			}
+
+			List<byte[]> keys = client.getKeyRange(toByteArray("pool-key-"),
+					true, toByteArray("pool-key-z"), true, 100);
+			assertEquals(max, keys.size());
+
+			client.noop();
+
+			for (int i = 0; i < max; i++) {
+				assertTrue(client.deleteForced(toByteArray("pool-key-" + i)));
+			}
+
+			assertNull(client.get(toByteArray("pool-key-0")));
+		} finally {
+			client.close();
+		}
+
+		logger.info(this.testEndInfo());
+	}
+
+	@Test
+	public void testPooledClientAsync() throws Exception {
+
+		ClientConfiguration config = getClientConfig();
+		config.setConnectionPoolSize(4);
+
+		KineticClient client = KineticClientFactory.createInstance(config);
+
+		try {
+			int max = 100;
+
+			List<KineticFuture<Entry>> futures = new ArrayList<KineticFuture<Entry>>(
+					max);
+
+			// last value issued for each key
+			byte[][] lastValues = new byte[4][];
+
+			// requests of the same key are sent on the same connection
+			for (int i = 0; i < max; i++) {
+				Entry entry = new Entry(toByteArray("pool-order-key-" + i % 4),
+						toByteArray("pool-order-value-" + i));
+
+				futures.add(client.putForcedAsync(entry));
+
+				lastValues[i % 4] = entry.getValue();
+			}
+
+			for (KineticFuture<Entry> future : futures) {
+				assertTrue(future.getResult() != null);
+			}
+
+			// the requests of a key are applied in the order issued
+			for (int i = 0; i < 4; i++) {
+				Entry entry = client.get(toByteArray("pool-order-key-" + i));
+
+				assertTrue(Arrays.equals(lastValues[i], entry.getValue()));
+			}
+
+			for (int i = 0; i < 4; i++) {
+				client.deleteForced(toByteArray("pool-order-key-" + i));
+			}
+		} finally {
+			client.close();
+		}
+
+		logger.info(this.testEndInfo());
+	}
+}
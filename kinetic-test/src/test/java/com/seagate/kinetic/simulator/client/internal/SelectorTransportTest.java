@@ -0,0 +1,110 @@
+/**
+ * 
+ * Copyright (C) 2014 Seagate Technology.
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.seagate.kinetic.simulator.client.internal;
+
+import static com.seagate.kinetic.KineticTestHelpers.toByteArray;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+
+import kinetic.client.ClientConfiguration;
+import kinetic.client.Entry;
+import kinetic.client.KineticClient;
+import kinetic.client.KineticClientFactory;
+import kinetic.client.KineticFuture;
+
+import org.testng.annotations.Test;
+
+import com.seagate.kinetic.IntegrationTestCase;
+
+/**
+ * Selector TCP transport tests.
+ */
+@Test(groups = { "simulator" })
+public class SelectorTransportTest extends IntegrationTestCase {
+
+	Logger logger = Logger.getLogger(SelectorTransportTest.class.getName());
+
+	@Test
+	public void testSelectorTransportOperations() throws Exception {
+
+		ClientConfiguration config = getClientConfig();
+
+		if (config.getUseSsl()) {
+			// selector transport is not used for SSL/TLS
+			return;
+		}
+
+		config.setUseSelectorTransport(true);
+
+		KineticClient client = KineticClientFactory.createInstance(config);
+
+		try {
+			// value larger than the selector read buffer
+			byte[] value = new byte[256 * 1024];
+			for (int i = 0; i < value.length; i++) {
+				value[i] = (byte) i;
+			}
+
+			client.putForced(new Entry(toByteArray("selector-key-large"),
+					value));
+
+			Entry entry = client.get(toByteArray("selector-key-large"));
+			assertTrue(Arrays.equals(value, entry.getValue()));
+
+			int max = 100;
+
+			List<KineticFuture<Entry>> futures = new ArrayList<KineticFuture<Entry>>(
+					max);
+
+			for (int i = 0; i < max; i++) {
+				futures.add(client.putForcedAsync(new Entry(
+						toByteArray("selector-key-" + i),
+						toByteArray("selector-value-" + i))));
+			}
+
+			for (KineticFuture<Entry> future : futures) {
+				assertTrue(future.getResult() != null);
+			}
+
+			for (int i = 0; i < max; i++) {
+				entry = client.get(toByteArray("selector-key-" + i));
+				assertTrue(Arrays.equals(toByteArray("selector-value-" + i),
+						entry.getValue()));
+			}
+
+			for (int i = 0; i < max; i++) {
+				assertTrue(client.deleteForced(toByteArray("selector-key-" + i)));
+			}
+
+			assertTrue(client.deleteForced(toByteArray("selector-key-large")));
+
+			assertNull(client.get(toByteArray("selector-key-0")));
+		} finally {
+			client.close();
+		}
+
+		logger.info(this.testEndInfo());
+	}
+}
@@ -0,0 +1,330 @@
+/**
+ * 
+ * Copyright (C) 2014 Seagate Technology.
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.seagate.kinetic.simulator.common.codec;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+import java.util.Arrays;
+
+import org.testng.annotations.Test;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.ZeroCopyByteString;
+import com.seagate.kinetic.common.lib.KineticMessage;
+import com.seagate.kinetic.common.protocol.codec.KineticDecoder;
+import com.seagate.kinetic.common.protocol.codec.KineticEncoder;
+import com.seagate.kinetic.proto.Kinetic.Command;
+import com.seagate.kinetic.proto.Kinetic.Command.MessageType;
+import com.seagate.kinetic.proto.Kinetic.Message;
+
+/**
+ * Kinetic message encoder/decoder round trip tests, for heap, direct and
+ * composite frames.
+ */
+@Test(groups = { "simulator" })
+public class CodecRoundTripTest {
+
+    // larger than the decoder reused message array
+    private static final int LARGE = 80 * 1024;
+
+    private static KineticMessage newMessage(String key, int keySize,
+            byte[] value) {
+
+        StringBuilder sb = new StringBuilder(key);
+
+        while (sb.length() < keySize) {
+            sb.append('k');
+        }
+
+        Command.Builder command = Command.newBuilder();
+
+        command.getHeaderBuilder().setSequence(7)
+                .setMessageType(MessageType.PUT);
+        command.getBodyBuilder().getKeyValueBuilder()
+                .setKey(ByteString.copyFromUtf8(sb.toString()))
+                .setNewVersion(ByteString.copyFromUtf8("v1"));
+
+        Message.Builder message = Message.newBuilder();
+        message.setCommandBytes(command.build().toByteString());
+
+        KineticMessage km = new KineticMessage();
+        km.setMessage(message);
+        km.setValue(value);
+
+        return km;
+    }
+
+    private static byte[] value(int size) {
+
+        byte[] value = new byte[size];
+
+        for (int i = 0; i < size; i++) {
+            value[i] = (byte) i;
+        }
+
+        return value;
+    }
+
+    private static ByteBuf encode(KineticMessage km) {
+
+        EmbeddedChannel channel = new EmbeddedChannel(new KineticEncoder());
+
+        assertTrue(channel.writeOutbound(km));
+
+        ByteBuf frame = (ByteBuf) channel.readOutbound();
+
+        assertNull(channel.readOutbound());
+        channel.finish();
+
+        return frame;
+    }
+
+    private static ByteBuf toDirect(ByteBuf frame) {
+
+        ByteBuf direct = Unpooled.directBuffer(frame.readableBytes());
+        direct.writeBytes(frame);
+        frame.release();
+
+        assertTrue(!direct.hasArray());
+
+        return direct;
+    }
+
+    private static KineticMessage decode(EmbeddedChannel channel,
+            ByteBuf... parts) {
+
+        for (ByteBuf part : parts) {
+            channel.writeInbound(part);
+        }
+
+        return (KineticMessage) channel.readInbound();
+    }
+
+    private static void assertMessage(KineticMessage expected,
+            KineticMessage actual) {
+
+        Message message = ((Message.Builder) expected.getMessage()).build();
+
+        assertEquals(message, actual.getMessage());
+        assertEquals(message.getCommandBytes(),
+                ((Command) actual.getCommand()).toByteString());
+
+        Command command = (Command) actual.getCommand();
+
+        assertEquals(7, command.getHeader().getSequence());
+        assertEquals(MessageType.PUT, command.getHeader().getMessageType());
+
+        if (expected.getValue() == null || expected.getValue().length == 0) {
+            assertNull(actual.getValue());
+        } else {
+            assertTrue(Arrays.equals(expected.getValue(), actual.getValue()));
+        }
+    }
+
+    @Test
+    public void testHeapFrame() {
+
+        KineticMessage km = newMessage("heap", 0, value(1024));
+
+        ByteBuf frame = encode(km);
+        ByteBuf heap = Unpooled.copiedBuffer(frame);
+        frame.release();
+
+        assertTrue(heap.hasArray());
+
+        EmbeddedChannel channel = new EmbeddedChannel(new KineticDecoder());
+
+        assertMessage(km, decode(channel, heap));
+        assertTrue(!channel.finish());
+    }
+
+    @Test
+    public void testHeapFrameWithOffset() {
+
+        KineticMessage km = newMessage("offset", 0, value(100));
+
+        ByteBuf frame = encode(km);
+
+        // the frame does not start at the beginning of the backing array
+        ByteBuf heap = Unpooled.buffer(frame.readableBytes() + 16);
+        heap.writeBytes(new byte[16]);
+        heap.writeBytes(frame);
+        frame.release();
+
+        ByteBuf slice = heap.slice(16, heap.readableBytes() - 16);
+
+        assertTrue(slice.arrayOffset() > 0);
+
+        EmbeddedChannel channel = new EmbeddedChannel(new KineticDecoder());
+
+        assertMessage(km, decode(channel, slice));
+        assertTrue(!channel.finish());
+    }
+
+    @Test
+    public void testDirectFrame() {
+
+        KineticMessage km = newMessage("direct", 0, value(1024));
+
+        EmbeddedChannel channel = new EmbeddedChannel(new KineticDecoder());
+
+        assertMessage(km, decode(channel, toDirect(encode(km))));
+        assertTrue(!channel.finish());
+    }
+
+    @Test
+    public void testDirectFramesReuseScratch() {
+
+        EmbeddedChannel channel = new EmbeddedChannel(new KineticDecoder());
+
+        // growing, shrinking and over the reused array size, on one decoder
+        int[] keySizes = { 10, 1000, 100, LARGE, 20, 5000 };
+
+        for (int i = 0; i < keySizes.length; i++) {
+
+            KineticMessage km = newMessage("key" + i, keySizes[i], value(i));
+
+            KineticMessage decoded = decode(channel, toDirect(encode(km)));
+
+            assertMessage(km, decoded);
+
+            // the whole key is parsed, whatever the reused array size
+            assertEquals(keySizes[i],
+                    ((Command) decoded.getCommand()).getBody().getKeyValue()
+                            .getKey().size());
+        }
+
+        assertTrue(!channel.finish());
+    }
+
+    @Test
+    public void testDirectFrameParsedFieldsNotShared() {
+
+        EmbeddedChannel channel = new EmbeddedChannel(new KineticDecoder());
+
+        KineticMessage first = newMessage("first", 100, value(10));
+        KineticMessage decoded = decode(channel, toDirect(encode(first)));
+
+        // a second message of the same size overwrites the reused array
+        KineticMessage second = newMessage("other", 100, value(10));
+        decode(channel, toDirect(encode(second)));
+
+        assertMessage(first, decoded);
+        assertTrue(!channel.finish());
+    }
+
+    @Test
+    public void testCompositeFrame() {
+
+        KineticMessage km = newMessage("composite", 0, value(4096));
+
+        ByteBuf frame = encode(km);
+
+        // header and value, the value is not copied by the encoder
+        assertTrue(frame instanceof CompositeByteBuf);
+
+        EmbeddedChannel channel = new EmbeddedChannel(new KineticDecoder());
+
+        assertMessage(km, decode(channel, frame));
+        assertTrue(!channel.finish());
+    }
+
+    @Test
+    public void testFragmentedFrame() {
+
+        KineticMessage km = newMessage("fragmented", 0, value(LARGE));
+
+        ByteBuf frame = toDirect(encode(km));
+        int length = frame.readableBytes();
+
+        EmbeddedChannel channel = new EmbeddedChannel(new KineticDecoder());
+
+        // length prefix incomplete, then value incomplete
+        assertNull(decode(channel, frame.copy(0, 5)));
+        assertNull(decode(channel, frame.copy(5, length / 2 - 5)));
+
+        KineticMessage decoded = decode(channel,
+                frame.copy(length / 2, length - length / 2));
+        frame.release();
+
+        assertMessage(km, decoded);
+        assertTrue(!channel.finish());
+    }
+
+    @Test
+    public void testNoValue() {
+
+        KineticMessage km = newMessage("novalue", 0, null);
+
+        ByteBuf frame = encode(km);
+
+        assertTrue(!(frame instanceof CompositeByteBuf));
+
+        EmbeddedChannel channel = new EmbeddedChannel(new KineticDecoder());
+
+        assertMessage(km, decode(channel, toDirect(frame)));
+        assertTrue(!channel.finish());
+    }
+
+    @Test
+    public void testWrapEmpty() {
+        assertSame(ByteString.EMPTY, ZeroCopyByteString.wrap(null));
+        assertSame(ByteString.EMPTY, ZeroCopyByteString.wrap(new byte[0]));
+    }
+
+    @Test
+    public void testWrapSharesArray() {
+
+        byte[] bytes = value(10);
+
+        ByteString bs = ZeroCopyByteString.wrap(bytes);
+
+        assertEquals(ByteString.copyFrom(bytes), bs);
+
+        // not copied
+        bytes[0] = 100;
+        assertEquals(100, bs.byteAt(0));
+
+        assertSame(bytes, ZeroCopyByteString.unwrap(bs));
+    }
+
+    @Test
+    public void testUnwrapCopiesSubstring() {
+
+        byte[] bytes = value(10);
+
+        ByteString sub = ZeroCopyByteString.wrap(bytes).substring(2, 6);
+
+        byte[] unwrapped = ZeroCopyByteString.unwrap(sub);
+
+        assertTrue(Arrays.equals(Arrays.copyOfRange(bytes, 2, 6), unwrapped));
+
+        // a copy, the backing array of a substring is larger
+        unwrapped[0] = 100;
+        assertEquals(2, bytes[2]);
+    }
+}
@@ -168,6 +168,29 @@ public class HmacTest {
         assertTrue(Arrays.equals(hmac1.toByteArray(), hmac2.toByteArray()));
     }
 
+    @Test
+    public void testCalcByteString() throws HmacException {
+        byte[] bytes1 = "abc".getBytes();
+        byte[] bytes2 = "cdf".getBytes();
+
+        // byte string and byte[] calculation must match
+        assertTrue(Hmac.calc(ByteString.copyFrom(bytes1), key).equals(
+                Hmac.calc(bytes1, key)));
+
+        // sub string views are calculated over the viewed bytes only
+        ByteString view = ByteString.copyFromUtf8("xabcx").substring(1, 4);
+        assertTrue(Hmac.calc(view, key).equals(Hmac.calc(bytes1, key)));
+
+        // cached mac instances must not leak state between keys
+        ByteString hmac1 = Hmac.calc(ByteString.copyFrom(bytes2), key);
+        ByteString hmac2 = Hmac.calc(ByteString.copyFrom(bytes2), key1);
+        assertFalse(hmac1.equals(hmac2));
+        assertTrue(hmac1.equals(Hmac.calc(bytes2, key)));
+
+        assertTrue(Hmac.check(ByteString.copyFrom(bytes2), key1, hmac2));
+        assertFalse(Hmac.check(ByteString.copyFrom(bytes2), key1, hmac1));
+    }
+
     @Test
     public void testCheck() throws HmacException {
 
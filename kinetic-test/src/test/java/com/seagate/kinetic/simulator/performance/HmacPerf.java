@@ -0,0 +1,163 @@
+/**
+ * 
+ * Copyright (C) 2014 Seagate Technology.
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.seagate.kinetic.simulator.performance;
+
+import java.nio.ByteBuffer;
+import java.security.Key;
+import java.util.Random;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import com.google.protobuf.ByteString;
+import com.seagate.kinetic.common.lib.Hmac;
+
+/**
+ *
+ * Hmac calculation performance test
+ * <p>
+ * Compares the per message cost of the HMAC calculation before the Mac
+ * caching (a new Mac instance and a byte[] copy of the command for each
+ * message, as <code>Hmac.calc(byte[], Key)</code> did) with the cached Mac
+ * calculated directly over the command byte string (
+ * <code>Hmac.calc(ByteString, Key)</code>).
+ * <p>
+ * Usage: HmacPerf [Command_Size] [Operation_Count] [Repeat_Count]
+ *
+ */
+public class HmacPerf {
+
+	private static final Key KEY = new SecretKeySpec(
+			ByteString.copyFromUtf8("asdfasdf").toByteArray(), "HmacSHA1");
+
+	private static int COMMAND_SIZE = 128;
+	private static int OPERATE_COUNT = 1000000;
+	private static int REPEAT_COUNT = 5;
+
+	// prevents dead code elimination
+	private static int sink = 0;
+
+	public static void main(String[] args) throws Exception {
+
+		if (args.length != 0 && args.length != 3) {
+			System.out.println("Parameters error!!!");
+			System.out.println("Usage:");
+			System.out
+			.println("HmacPerf [Command_Size] [Operation_Count] [Repeat_Count]");
+			System.out.println("Welcome to try again.");
+			return;
+		}
+
+		if (args.length == 3) {
+			COMMAND_SIZE = Integer.parseInt(args[0]);
+			OPERATE_COUNT = Integer.parseInt(args[1]);
+			REPEAT_COUNT = Integer.parseInt(args[2]);
+		}
+
+		System.out.println("Command_Size=" + COMMAND_SIZE);
+		System.out.println("Operation_Count=" + OPERATE_COUNT);
+		System.out.println("Repeat_Count=" + REPEAT_COUNT);
+
+		byte[] bytes = new byte[COMMAND_SIZE];
+		new Random(COMMAND_SIZE).nextBytes(bytes);
+
+		ByteString command = ByteString.copyFrom(bytes);
+
+		// warm up
+		runUncached(command, OPERATE_COUNT / 10);
+		runCachedBytes(command, OPERATE_COUNT / 10);
+		runCachedByteString(command, OPERATE_COUNT / 10);
+
+		long uncached = 0;
+		long cachedBytes = 0;
+		long cachedByteString = 0;
+
+		for (int i = 0; i < REPEAT_COUNT; i++) {
+			uncached += runUncached(command, OPERATE_COUNT);
+			cachedBytes += runCachedBytes(command, OPERATE_COUNT);
+			cachedByteString += runCachedByteString(command, OPERATE_COUNT);
+		}
+
+		long total = (long) OPERATE_COUNT * REPEAT_COUNT;
+
+		System.out.println("calc(byte[]) before, new Mac and copy : "
+				+ (uncached / total) + " ns/message");
+		System.out.println("calc(byte[]) cached Mac and copy      : "
+				+ (cachedBytes / total) + " ns/message");
+		System.out.println("calc(ByteString) cached Mac, no copy  : "
+				+ (cachedByteString / total) + " ns/message");
+
+		System.out.println("sink=" + sink);
+	}
+
+	/**
+	 * HMAC calculation as performed by calc(byte[], Key) before the Mac
+	 * caching.
+	 */
+	private static long runUncached(ByteString command, int count)
+			throws Exception {
+
+		long start = System.nanoTime();
+
+		for (int i = 0; i < count; i++) {
+
+			byte[] bytes = command.toByteArray();
+
+			Mac mac = Hmac.getMacInstance(KEY);
+
+			mac.update(ByteBuffer.allocate(4).putInt(bytes.length).array());
+			mac.update(bytes);
+
+			sink += ByteString.copyFrom(mac.doFinal()).byteAt(0);
+		}
+
+		return System.nanoTime() - start;
+	}
+
+	/**
+	 * HMAC calculation with the cached Mac over a copy of the command.
+	 */
+	private static long runCachedBytes(ByteString command, int count)
+			throws Exception {
+
+		long start = System.nanoTime();
+
+		for (int i = 0; i < count; i++) {
+			sink += Hmac.calc(command.toByteArray(), KEY).byteAt(0);
+		}
+
+		return System.nanoTime() - start;
+	}
+
+	/**
+	 * HMAC calculation with the cached Mac directly over the byte string.
+	 */
+	private static long runCachedByteString(ByteString command, int count)
+			throws Exception {
+
+		long start = System.nanoTime();
+
+		for (int i = 0; i < count; i++) {
+			sink += Hmac.calc(command, KEY).byteAt(0);
+		}
+
+		return System.nanoTime() - start;
+	}
+}
@@ -0,0 +1,175 @@
+/**
+ * 
+ * Copyright (C) 2014 Seagate Technology.
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.seagate.kinetic.simulator.persist;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+
+import java.util.List;
+
+import kinetic.simulator.SimulatorConfiguration;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.google.protobuf.ByteString;
+import com.seagate.kinetic.simulator.internal.KVStoreNotFound;
+import com.seagate.kinetic.simulator.persist.bdb.BdbStore;
+import com.seagate.kinetic.simulator.persist.leveldb.LevelDbStore;
+import com.seagate.kinetic.simulator.persist.memory.MemoryStore;
+
+/**
+ * Key range and metadata only reads of the memory, BDB and LevelDB stores.
+ */
+@Test(groups = { "simulator" })
+public class StoreRangeTest extends
+        StoreTestCase<Store<ByteString, ByteString, KVValue>> {
+
+    private static final int KEY_COUNT = 10;
+
+    private static final ByteString TAG = ByteString.copyFromUtf8("tag");
+
+    @DataProvider(name = "stores")
+    public Object[][] stores() {
+        return new Object[][] { { "memory" }, { "bdb" }, { "leveldb" } };
+    }
+
+    private void open(String type) throws Exception {
+
+        SimulatorConfiguration config = newConfiguration(type);
+
+        if ("memory".equals(type)) {
+            // checkpoints are only taken on request
+            config.setMemoryCheckpointPeriod(3600000);
+            store = new MemoryStore();
+        } else if ("bdb".equals(type)) {
+            store = new BdbStore();
+        } else {
+            store = new LevelDbStore();
+        }
+
+        store.init(config);
+
+        for (int i = 0; i < KEY_COUNT; i++) {
+            put(i, "value" + i);
+        }
+    }
+
+    private void assertKeyRange(int start, boolean startInclusive, int end,
+            boolean endInclusive, int max, int from, int to) throws Exception {
+
+        List<?> keys = store.getKeyRange(key(start), startInclusive, key(end),
+                endInclusive, max);
+
+        assertEquals(to - from, keys.size());
+
+        for (int i = from; i < to; i++) {
+            assertEquals(key(i), ((KVKey) keys.get(i - from)).toByteString());
+        }
+    }
+
+    @Test(dataProvider = "stores")
+    public void testKeyRange(String type) throws Exception {
+
+        open(type);
+
+        assertKeyRange(0, true, 9, true, 100, 0, 10);
+        assertKeyRange(0, false, 9, true, 100, 1, 10);
+        assertKeyRange(0, true, 9, false, 100, 0, 9);
+        assertKeyRange(2, false, 7, false, 100, 3, 7);
+
+        // at most max keys
+        assertKeyRange(0, true, 9, true, 4, 0, 4);
+        assertKeyRange(3, false, 9, true, 1, 4, 5);
+
+        // single key
+        assertKeyRange(5, true, 5, true, 100, 5, 6);
+        assertKeyRange(5, true, 5, false, 100, 5, 5);
+
+        // start after end
+        assertKeyRange(7, true, 2, true, 100, 0, 0);
+
+        // bounds not stored
+        List<?> keys = store.getKeyRange(ByteString.copyFromUtf8("a"), true,
+                ByteString.copyFromUtf8("key45"), true, 100);
+
+        assertEquals(5, keys.size());
+        assertEquals(key(4), ((KVKey) keys.get(4)).toByteString());
+
+        // deleted keys are not returned
+        store.deleteForced(key(4), PersistOption.SYNC);
+
+        assertKeyRange(3, true, 5, true, 100, 3, 4);
+    }
+
+    @Test(dataProvider = "stores")
+    public void testMetadata(String type) throws Exception {
+
+        open(type);
+
+        StringBuilder sb = new StringBuilder();
+
+        // larger than the metadata read prefix
+        while (sb.length() < 20 * 1024) {
+            sb.append("large");
+        }
+
+        KVValue value = new KVValue(null, ByteString.copyFromUtf8("v2"), TAG,
+                null, ByteString.copyFromUtf8(sb.toString()));
+
+        store.putForced(key(KEY_COUNT), value, PersistOption.SYNC);
+
+        for (int i = 0; i <= KEY_COUNT; i++) {
+
+            KVValue metadata = store.getMetadata(key(i));
+
+            if (i < KEY_COUNT) {
+                assertEquals(ByteString.copyFromUtf8("v1"),
+                        metadata.getVersion());
+            } else {
+                assertEquals(ByteString.copyFromUtf8("v2"),
+                        metadata.getVersion());
+                assertEquals(TAG, metadata.getTag());
+            }
+
+            // metadata only
+            assertTrue(metadata.getData() == null
+                    || metadata.getData().isEmpty());
+        }
+
+        // updated and deleted entries
+        store.put(key(0), ByteString.copyFromUtf8("v1"), new KVValue(null,
+                ByteString.copyFromUtf8("v3"), null, null,
+                ByteString.copyFromUtf8("updated")), PersistOption.SYNC);
+
+        assertEquals(ByteString.copyFromUtf8("v3"), store.getMetadata(key(0))
+                .getVersion());
+
+        store.deleteForced(key(1), PersistOption.SYNC);
+
+        try {
+            store.getMetadata(key(1));
+            fail("deleted key must not be found");
+        } catch (KVStoreNotFound e) {
+            // expected
+        }
+    }
+}
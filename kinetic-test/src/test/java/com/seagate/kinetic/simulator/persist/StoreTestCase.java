@@ -0,0 +1,157 @@
+/**
+ * 
+ * Copyright (C) 2014 Seagate Technology.
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.seagate.kinetic.simulator.persist;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.fail;
+
+import java.io.File;
+
+import kinetic.simulator.SimulatorConfiguration;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+
+import com.google.protobuf.ByteString;
+import com.seagate.kinetic.simulator.internal.KVStoreNotFound;
+
+/**
+ * Base class of the store tests.
+ * <p>
+ * Each test runs against a store persisted in a new temporary kinetic home
+ * folder. The store opened by the test in {@link #store} is closed and the
+ * folder is deleted after each test.
+ *
+ * @param <S>
+ *            store type under test.
+ */
+public abstract class StoreTestCase<S extends Store<ByteString, ByteString, KVValue>> {
+
+    // temporary kinetic home of the test
+    protected File home = null;
+
+    // store under test, closed after the test
+    protected S store = null;
+
+    @BeforeMethod
+    public void createHome() throws Exception {
+
+        home = File.createTempFile("kinetic-" + getClass().getSimpleName(),
+                "");
+        home.delete();
+        home.mkdir();
+    }
+
+    @AfterMethod
+    public void deleteHome() throws Exception {
+
+        closeStore();
+
+        delete(home);
+    }
+
+    /**
+     * Close the store under test, if any.
+     */
+    protected void closeStore() {
+
+        if (store != null) {
+            store.close();
+            store = null;
+        }
+    }
+
+    /**
+     * Create a configuration that persists the store in the specified folder
+     * of the test home.
+     *
+     * @param persistHome
+     *            persist folder name.
+     * @return a new configuration.
+     */
+    protected SimulatorConfiguration newConfiguration(String persistHome) {
+
+        SimulatorConfiguration config = new SimulatorConfiguration();
+
+        config.put(SimulatorConfiguration.KINETIC_HOME, home.getPath());
+        config.put(SimulatorConfiguration.PERSIST_HOME, persistHome);
+
+        return config;
+    }
+
+    protected static void delete(File file) {
+
+        File[] files = file.listFiles();
+
+        if (files != null) {
+            for (File f : files) {
+                delete(f);
+            }
+        }
+
+        file.delete();
+    }
+
+    protected static ByteString key(int i) {
+        return ByteString.copyFromUtf8("key" + i);
+    }
+
+    protected static KVValue value(ByteString data) {
+        return new KVValue(null, ByteString.copyFromUtf8("v1"), null, null,
+                data);
+    }
+
+    protected static KVValue value(String data) {
+        return value(ByteString.copyFromUtf8(data));
+    }
+
+    protected void put(int i, String data) throws Exception {
+        put(store, i, data);
+    }
+
+    protected void assertValue(int i, String data) throws Exception {
+        assertValue(store, i, data);
+    }
+
+    protected void assertNotFound(int i) throws Exception {
+        assertNotFound(store, i);
+    }
+
+    protected static void put(Store<ByteString, ByteString, KVValue> s,
+            int i, String data) throws Exception {
+        s.putForced(key(i), value(data), PersistOption.SYNC);
+    }
+
+    protected static void assertValue(
+            Store<ByteString, ByteString, KVValue> s, int i, String data)
+            throws Exception {
+        assertEquals(ByteString.copyFromUtf8(data), s.get(key(i)).getData());
+    }
+
+    protected static void assertNotFound(
+            Store<ByteString, ByteString, KVValue> s, int i) throws Exception {
+        try {
+            s.get(key(i));
+            fail("key" + i + " must not be found");
+        } catch (KVStoreNotFound e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,232 @@
+/**
+ * 
+ * Copyright (C) 2014 Seagate Technology.
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.seagate.kinetic.simulator.persist.bitcask;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.io.File;
+
+import kinetic.simulator.SimulatorConfiguration;
+
+import org.testng.annotations.Test;
+
+import com.seagate.kinetic.simulator.persist.PersistOption;
+import com.seagate.kinetic.simulator.persist.StoreTestCase;
+
+/**
+ * Bitcask store segment roll, hint file reload and merge tests.
+ * <p>
+ * A new segment is started each time the store is opened, so that the tests
+ * control which records are in each segment.
+ */
+@Test(groups = { "simulator" })
+public class BitcaskStoreTest extends StoreTestCase<BitcaskStore> {
+
+    private static final int KEY_COUNT = 10;
+
+    private File folder() {
+        return new File(home, "bitcask");
+    }
+
+    private void reopen(long segmentSize) {
+
+        closeStore();
+
+        SimulatorConfiguration config = newConfiguration("bitcask");
+
+        config.setBitcaskSegmentSize(segmentSize);
+
+        // segments are only merged on request
+        config.setBitcaskMergePeriod(3600000);
+
+        store = new BitcaskStore();
+        store.init(config);
+    }
+
+    private void reopen() {
+        reopen(64 * 1024 * 1024);
+    }
+
+    private File dataFile(long id) {
+        return new File(folder(), String.format("%016d", id)
+                + Segment.DATA_SUFFIX);
+    }
+
+    private File hintFile(long id) {
+        return new File(folder(), String.format("%016d", id)
+                + Segment.HINT_SUFFIX);
+    }
+
+    private int countFiles(String suffix) {
+
+        int count = 0;
+
+        for (String name : folder().list()) {
+            if (name.endsWith(suffix)) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    @Test
+    public void testSegmentRoll() throws Exception {
+
+        reopen(1024);
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            sb.append('x');
+        }
+
+        for (int i = 0; i < KEY_COUNT * 3; i++) {
+            put(i, sb.toString() + i);
+        }
+
+        // about 7K of records in segments of 1K
+        assertTrue(countFiles(Segment.DATA_SUFFIX) >= 5);
+        assertTrue(store.getSealedSegments().size() >= 4);
+
+        for (int i = 0; i < KEY_COUNT * 3; i++) {
+            assertValue(i, sb.toString() + i);
+        }
+
+        reopen(1024);
+
+        for (int i = 0; i < KEY_COUNT * 3; i++) {
+            assertValue(i, sb.toString() + i);
+        }
+    }
+
+    @Test
+    public void testHintReload() throws Exception {
+
+        reopen();
+
+        for (int i = 0; i < KEY_COUNT; i++) {
+            put(i, "value" + i);
+        }
+
+        store.deleteForced(key(3), PersistOption.SYNC);
+        put(5, "updated");
+
+        // hint files are written on close
+        closeStore();
+
+        assertTrue(hintFile(1).exists());
+
+        reopen();
+
+        assertHintContent();
+
+        // a segment without a hint file is scanned
+        closeStore();
+
+        assertTrue(hintFile(1).delete());
+        assertTrue(hintFile(2).delete());
+
+        reopen();
+
+        assertHintContent();
+    }
+
+    private void assertHintContent() throws Exception {
+
+        for (int i = 0; i < KEY_COUNT; i++) {
+            if (i == 3) {
+                assertNotFound(i);
+            } else if (i == 5) {
+                assertValue(i, "updated");
+            } else {
+                assertValue(i, "value" + i);
+            }
+        }
+
+        assertEquals(key(4), store.getNext(key(2)).getKeyOf());
+    }
+
+    @Test
+    public void testMergeDropsOverwrittenSegment() throws Exception {
+
+        reopen();
+
+        for (int i = 0; i < KEY_COUNT; i++) {
+            put(i, "value" + i);
+        }
+
+        reopen();
+
+        for (int i = 0; i < KEY_COUNT; i++) {
+            put(i, "updated" + i);
+        }
+
+        // segments 1 and 2 are sealed
+        reopen();
+
+        store.compactRange(null, null);
+
+        // no live record in segment 1
+        assertFalse(dataFile(1).exists());
+        assertTrue(dataFile(2).exists());
+
+        reopen();
+
+        for (int i = 0; i < KEY_COUNT; i++) {
+            assertValue(i, "updated" + i);
+        }
+    }
+
+    @Test
+    public void testMergeKeepsTombstones() throws Exception {
+
+        reopen();
+
+        for (int i = 0; i < KEY_COUNT; i++) {
+            put(i, "value" + i);
+        }
+
+        reopen();
+
+        // segment 2 holds delete records only
+        store.deleteForced(key(0), PersistOption.SYNC);
+        store.deleteForced(key(1), PersistOption.SYNC);
+
+        reopen();
+
+        store.compactRange(null, null);
+
+        // segment 1 is mostly live and kept, segment 2 is merged
+        assertTrue(dataFile(1).exists());
+        assertFalse(dataFile(2).exists());
+
+        // the delete records still hide the records of segment 1
+        reopen();
+
+        assertNotFound(0);
+        assertNotFound(1);
+
+        for (int i = 2; i < KEY_COUNT; i++) {
+            assertValue(i, "value" + i);
+        }
+    }
+}
@@ -0,0 +1,354 @@
+/**
+ * 
+ * Copyright (C) 2014 Seagate Technology.
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.seagate.kinetic.simulator.persist.cache;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import kinetic.simulator.SimulatorConfiguration;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.protobuf.ByteString;
+import com.seagate.kinetic.simulator.internal.KVStoreException;
+import com.seagate.kinetic.simulator.internal.KVStoreVersionMismatch;
+import com.seagate.kinetic.simulator.persist.BatchOperation;
+import com.seagate.kinetic.simulator.persist.ForwardingStore;
+import com.seagate.kinetic.simulator.persist.KVValue;
+import com.seagate.kinetic.simulator.persist.PersistOption;
+import com.seagate.kinetic.simulator.persist.Store;
+import com.seagate.kinetic.simulator.persist.StoreTestCase;
+import com.seagate.kinetic.simulator.persist.memory.MemoryStore;
+
+/**
+ * Caching store tests. A cached entry is never returned after its key was
+ * written, including an entry read from the store while the key was
+ * written.
+ */
+@Test(groups = { "simulator" })
+public class CachingStoreTest extends StoreTestCase<CachingStore> {
+
+    private static final int KEY_COUNT = 10;
+
+    private static final ByteString VERSION = ByteString.copyFromUtf8("v1");
+
+    // cached store
+    private TestStore inner = null;
+
+    /**
+     * Cached store that counts reads and can hold a read after it read the
+     * entry, as if a write had raced with the read.
+     */
+    private static class TestStore extends ForwardingStore {
+
+        final AtomicInteger reads = new AtomicInteger();
+
+        volatile CountDownLatch reading = null;
+
+        volatile CountDownLatch resume = null;
+
+        TestStore(Store<ByteString, ByteString, KVValue> store) {
+            super(store);
+        }
+
+        @Override
+        public KVValue get(ByteString key) throws KVStoreException {
+
+            reads.incrementAndGet();
+
+            KVValue value = super.get(key);
+
+            CountDownLatch latch = this.resume;
+
+            if (latch != null) {
+
+                // only the first read is held
+                this.resume = null;
+
+                this.reading.countDown();
+
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    throw new KVStoreException(e.getMessage());
+                }
+            }
+
+            return value;
+        }
+    }
+
+    @BeforeMethod
+    public void open() throws Exception {
+        open(1024 * 1024);
+    }
+
+    private void open(long capacity) throws Exception {
+
+        closeStore();
+
+        SimulatorConfiguration config = newConfiguration("memory");
+
+        // checkpoints are only taken on request
+        config.setMemoryCheckpointPeriod(3600000);
+
+        MemoryStore memoryStore = new MemoryStore();
+        memoryStore.init(config);
+
+        inner = new TestStore(memoryStore);
+
+        store = new CachingStore(inner, capacity);
+    }
+
+    private long statistic(String name) {
+
+        Map<String, Object> statistics = new HashMap<String, Object>();
+
+        store.getStatistics(statistics);
+
+        return ((Number) statistics.get(name)).longValue();
+    }
+
+    /**
+     * Read the key twice, the second read is served by the cache.
+     */
+    private void cache(int i, String data) throws Exception {
+
+        assertValue(i, data);
+
+        int reads = inner.reads.get();
+
+        assertValue(i, data);
+
+        assertEquals(reads, inner.reads.get());
+    }
+
+    /**
+     * The key is read from the store.
+     */
+    private void assertRead(int i, String data) throws Exception {
+
+        int reads = inner.reads.get();
+
+        assertValue(i, data);
+
+        assertEquals(reads + 1, inner.reads.get());
+    }
+
+    @Test
+    public void testHitsAndMisses() throws Exception {
+
+        for (int i = 0; i < KEY_COUNT; i++) {
+            put(i, "value" + i);
+        }
+
+        for (int i = 0; i < KEY_COUNT; i++) {
+            assertValue(i, "value" + i);
+        }
+
+        assertEquals(KEY_COUNT, inner.reads.get());
+        assertEquals(0, statistic("cache.hits"));
+        assertEquals(KEY_COUNT, statistic("cache.misses"));
+        assertEquals(KEY_COUNT, statistic("cache.entries"));
+
+        for (int i = 0; i < KEY_COUNT; i++) {
+            assertValue(i, "value" + i);
+            assertEquals(VERSION, store.getMetadata(key(i)).getVersion());
+        }
+
+        assertEquals(KEY_COUNT, inner.reads.get());
+        assertEquals(2 * KEY_COUNT, statistic("cache.hits"));
+        assertEquals(KEY_COUNT, statistic("cache.misses"));
+
+        // metadata only entries are not cached
+        put(KEY_COUNT, "metadata");
+
+        assertEquals(VERSION, store.getMetadata(key(KEY_COUNT)).getVersion());
+        assertEquals(VERSION, store.getMetadata(key(KEY_COUNT)).getVersion());
+
+        assertEquals(KEY_COUNT + 2, statistic("cache.misses"));
+        assertEquals(KEY_COUNT, statistic("cache.entries"));
+        assertEquals(0, statistic("cache.evictions"));
+    }
+
+    @Test
+    public void testWritesInvalidate() throws Exception {
+
+        for (int i = 0; i < 4; i++) {
+            put(i, "value" + i);
+            cache(i, "value" + i);
+        }
+
+        store.put(key(0), VERSION, value("put"), PersistOption.SYNC);
+        assertRead(0, "put");
+
+        store.putForced(key(1), value("putForced"), PersistOption.SYNC);
+        assertRead(1, "putForced");
+
+        store.delete(key(2), VERSION, PersistOption.SYNC);
+        assertNotFound(2);
+
+        store.deleteForced(key(3), PersistOption.SYNC);
+        assertNotFound(3);
+
+        assertEquals(2, statistic("cache.entries"));
+    }
+
+    @Test
+    public void testFailedWriteInvalidates() throws Exception {
+
+        put(0, "value0");
+        cache(0, "value0");
+
+        try {
+            store.put(key(0), ByteString.copyFromUtf8("other"),
+                    value("mismatch"), PersistOption.SYNC);
+            fail("version mismatch expected");
+        } catch (KVStoreVersionMismatch e) {
+            // expected
+        }
+
+        assertRead(0, "value0");
+    }
+
+    @Test
+    public void testBatchCommitInvalidates() throws Exception {
+
+        for (int i = 0; i < 3; i++) {
+            put(i, "value" + i);
+            cache(i, "value" + i);
+        }
+
+        BatchOperation<ByteString, KVValue> batch = store
+                .createBatchOperation();
+
+        batch.put(key(0), value("batch0"));
+        batch.delete(key(1));
+
+        // not committed yet
+        cache(0, "value0");
+
+        batch.commit();
+        batch.close();
+
+        assertRead(0, "batch0");
+        assertNotFound(1);
+
+        // not in the batch
+        cache(2, "value2");
+    }
+
+    @Test
+    public void testWriteDuringReadNotCached() throws Exception {
+
+        put(0, "value0");
+
+        // the read holds after it read the entry
+        inner.reading = new CountDownLatch(1);
+        inner.resume = new CountDownLatch(1);
+
+        final AtomicReference<Object> result = new AtomicReference<Object>();
+
+        Thread reader = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    result.set(store.get(key(0)).getData());
+                } catch (Exception e) {
+                    result.set(e);
+                }
+            }
+        };
+
+        reader.start();
+
+        inner.reading.await();
+
+        // written between the store read and the cache put
+        put(0, "updated");
+
+        inner.resume.countDown();
+
+        reader.join();
+
+        // the read is ordered before the write
+        assertEquals(ByteString.copyFromUtf8("value0"), result.get());
+
+        // the entry read before the write was not cached
+        assertRead(0, "updated");
+
+        cache(0, "updated");
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+
+        // about two entries per shard
+        open(16 * 1024);
+
+        int count = 20 * KEY_COUNT;
+
+        StringBuilder sb = new StringBuilder();
+
+        while (sb.length() < 300) {
+            sb.append('x');
+        }
+
+        String data = sb.toString();
+
+        for (int i = 0; i < count; i++) {
+            put(i, data + i);
+            assertValue(i, data + i);
+        }
+
+        long evictions = statistic("cache.evictions");
+
+        assertTrue(evictions > 0);
+        assertTrue(statistic("cache.size") <= 16 * 1024);
+        assertEquals(count - evictions, statistic("cache.entries"));
+
+        // evicted entries are read again
+        for (int i = 0; i < count; i++) {
+            assertValue(i, data + i);
+        }
+    }
+
+    @Test
+    public void testResetClearsCache() throws Exception {
+
+        put(0, "value0");
+        cache(0, "value0");
+
+        store.reset();
+
+        assertEquals(0, statistic("cache.entries"));
+        assertEquals(0, statistic("cache.size"));
+
+        assertNotFound(0);
+    }
+}
@@ -0,0 +1,165 @@
+/**
+ * 
+ * Copyright (C) 2014 Seagate Technology.
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.seagate.kinetic.simulator.persist.cache;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+import org.testng.annotations.Test;
+
+import com.google.protobuf.ByteString;
+import com.seagate.kinetic.simulator.persist.KVValue;
+
+/**
+ * Segmented LRU cache tests: invalidation stamps, promotion of the entries
+ * hit again, and the byte budget.
+ */
+@Test(groups = { "simulator" })
+public class SegmentedLruCacheTest {
+
+    // 16 shards of 1KB
+    private static final long CAPACITY = 16 * 1024;
+
+    private static ByteString key(String name) {
+        return ByteString.copyFromUtf8(name);
+    }
+
+    private static KVValue value(int size) {
+
+        byte[] data = new byte[size];
+
+        return new KVValue(null, ByteString.copyFromUtf8("v1"), null, null,
+                ByteString.copyFrom(data));
+    }
+
+    private static void put(SegmentedLruCache cache, ByteString key,
+            KVValue value) {
+        cache.put(key, value, cache.getStamp(key));
+    }
+
+    @Test
+    public void testStamp() {
+
+        SegmentedLruCache cache = new SegmentedLruCache(CAPACITY);
+
+        ByteString key = key("key");
+
+        // invalidated while the entry was read
+        long stamp = cache.getStamp(key);
+        cache.invalidate(key);
+        cache.put(key, value(10), stamp);
+
+        assertNull(cache.get(key));
+
+        // cleared while the entry was read
+        stamp = cache.getStamp(key);
+        cache.clear();
+        cache.put(key, value(10), stamp);
+
+        assertNull(cache.get(key));
+
+        stamp = cache.getStamp(key);
+        cache.put(key, value(10), stamp);
+
+        assertNotNull(cache.get(key));
+
+        // stamp obtained before the last invalidation
+        cache.invalidate(key);
+        cache.put(key, value(10), stamp);
+
+        assertNull(cache.get(key));
+        assertEquals(0, cache.getCount());
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testCounters() {
+
+        SegmentedLruCache cache = new SegmentedLruCache(CAPACITY);
+
+        assertNull(cache.get(key("a")));
+
+        put(cache, key("a"), value(10));
+
+        assertNotNull(cache.get(key("a")));
+        assertNotNull(cache.get(key("a")));
+
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getCount());
+        assertEquals(0, cache.getEvictions());
+
+        // larger than a shard, never cached
+        put(cache, key("large"), value(2048));
+
+        assertNull(cache.get(key("large")));
+        assertEquals(1, cache.getCount());
+        assertEquals(0, cache.getEvictions());
+    }
+
+    @Test
+    public void testScanResistance() {
+
+        SegmentedLruCache cache = new SegmentedLruCache(CAPACITY);
+
+        ByteString hot = key("hot");
+
+        put(cache, hot, value(300));
+
+        // hit again, promoted
+        assertNotNull(cache.get(hot));
+
+        // each key is read once
+        for (int i = 0; i < 1000; i++) {
+
+            ByteString key = key("scan" + i);
+
+            assertNull(cache.get(key));
+
+            put(cache, key, value(300));
+        }
+
+        assertTrue(cache.getEvictions() > 0);
+        assertTrue(cache.getSize() <= CAPACITY);
+
+        assertNotNull(cache.get(hot));
+    }
+
+    @Test
+    public void testBudget() {
+
+        SegmentedLruCache cache = new SegmentedLruCache(CAPACITY);
+
+        for (int i = 0; i < 1000; i++) {
+
+            ByteString key = key("key" + i);
+
+            put(cache, key, value(300));
+
+            // promoted, the protected segment is over its share
+            cache.get(key);
+        }
+
+        assertTrue(cache.getSize() <= CAPACITY);
+        assertEquals(1000 - cache.getEvictions(), cache.getCount());
+    }
+}
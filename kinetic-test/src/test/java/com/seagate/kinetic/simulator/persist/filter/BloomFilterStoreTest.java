@@ -0,0 +1,460 @@
+/**
+ * 
+ * Copyright (C) 2014 Seagate Technology.
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.seagate.kinetic.simulator.persist.filter;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import kinetic.admin.AdminClientConfiguration;
+import kinetic.admin.KineticAdminClient;
+import kinetic.admin.KineticAdminClientFactory;
+import kinetic.simulator.KineticSimulator;
+import kinetic.simulator.SimulatorConfiguration;
+
+import org.testng.annotations.Test;
+
+import com.google.protobuf.ByteString;
+import com.seagate.kinetic.simulator.internal.GetLogHandler;
+import com.seagate.kinetic.simulator.internal.KVStoreException;
+import com.seagate.kinetic.simulator.internal.KVStoreNotFound;
+import com.seagate.kinetic.simulator.internal.KVStoreVersionMismatch;
+import com.seagate.kinetic.simulator.persist.BatchOperation;
+import com.seagate.kinetic.simulator.persist.ForwardingStore;
+import com.seagate.kinetic.simulator.persist.KVValue;
+import com.seagate.kinetic.simulator.persist.PersistOption;
+import com.seagate.kinetic.simulator.persist.Store;
+import com.seagate.kinetic.simulator.persist.StoreTestCase;
+import com.seagate.kinetic.simulator.persist.memory.MemoryStore;
+
+/**
+ * Bloom filter store tests. An existing key must never be reported absent:
+ * keys written while the filter is rebuilt or by a batch are added to the
+ * filter, and the filter is cleared when the store is reset or re-opened.
+ */
+@Test(groups = { "simulator" })
+public class BloomFilterStoreTest extends StoreTestCase<BloomFilterStore> {
+
+    private static final int KEY_COUNT = 10;
+
+    // filtered store
+    private TestStore inner = null;
+
+    /**
+     * Filtered store that counts forced deletes and can hold a key scan after
+     * it read its page, as if the scan had passed the keys written
+     * afterwards.
+     */
+    private static class TestStore extends ForwardingStore {
+
+        final AtomicInteger deletes = new AtomicInteger();
+
+        volatile CountDownLatch scanning = null;
+
+        volatile CountDownLatch resume = null;
+
+        TestStore(Store<ByteString, ByteString, KVValue> store) {
+            super(store);
+        }
+
+        @Override
+        public void deleteForced(ByteString key, PersistOption option)
+                throws KVStoreException {
+
+            deletes.incrementAndGet();
+
+            super.deleteForced(key, option);
+        }
+
+        @Override
+        public List<?> getKeyRange(ByteString startKey,
+                boolean startKeyInclusive, ByteString endKey,
+                boolean endKeyInclusive, int n) throws KVStoreException {
+
+            List<?> keys = super.getKeyRange(startKey, startKeyInclusive,
+                    endKey, endKeyInclusive, n);
+
+            CountDownLatch latch = this.resume;
+
+            if (latch != null) {
+
+                this.scanning.countDown();
+
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    throw new KVStoreException(e.getMessage());
+                }
+            }
+
+            return keys;
+        }
+    }
+
+    private SimulatorConfiguration newMemoryConfiguration(File kineticHome) {
+
+        SimulatorConfiguration config = newConfiguration("memory");
+
+        config.put(SimulatorConfiguration.KINETIC_HOME, kineticHome.getPath());
+
+        // checkpoints are only taken on request
+        config.setMemoryCheckpointPeriod(3600000);
+
+        return config;
+    }
+
+    private void open() throws Exception {
+
+        MemoryStore memoryStore = new MemoryStore();
+        memoryStore.init(newMemoryConfiguration(home));
+
+        inner = new TestStore(memoryStore);
+
+        store = new BloomFilterStore(inner, 1000);
+    }
+
+    private Map<String, Object> getStatistics() {
+
+        Map<String, Object> statistics = new HashMap<String, Object>();
+
+        store.getStatistics(statistics);
+
+        return statistics;
+    }
+
+    /**
+     * Wait until the filter was built the specified number of times.
+     */
+    private void awaitRebuilds(long rebuilds) throws Exception {
+
+        long deadline = System.currentTimeMillis() + 10000;
+
+        while (((Long) getStatistics().get("bloomFilter.rebuilds")) < rebuilds) {
+
+            assertTrue("bloom filter not built",
+                    System.currentTimeMillis() < deadline);
+
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * The key exists for reads and versioned writes.
+     */
+    private void assertPresent(int i, String data) throws Exception {
+
+        assertValue(i, data);
+
+        assertEquals(ByteString.copyFromUtf8("v1"), store.getMetadata(key(i))
+                .getVersion());
+
+        store.put(key(i), ByteString.copyFromUtf8("v1"), value(data),
+                PersistOption.SYNC);
+    }
+
+    @Test
+    public void testNegativeLookups() throws Exception {
+
+        open();
+
+        for (int i = 0; i < KEY_COUNT; i++) {
+            put(i, "value" + i);
+        }
+
+        awaitRebuilds(1);
+
+        assertEquals(Boolean.TRUE, getStatistics().get("bloomFilter.ready"));
+
+        ByteString absent = ByteString.copyFromUtf8("absent");
+
+        try {
+            store.get(absent);
+            fail("absent key must not be found");
+        } catch (KVStoreNotFound e) {
+            // expected
+        }
+
+        try {
+            store.delete(absent, ByteString.copyFromUtf8("v1"),
+                    PersistOption.SYNC);
+            fail("absent key must not be found");
+        } catch (KVStoreNotFound e) {
+            // expected
+        }
+
+        try {
+            store.put(absent, ByteString.copyFromUtf8("v1"), value("x"),
+                    PersistOption.SYNC);
+            fail("absent key has no version");
+        } catch (KVStoreVersionMismatch e) {
+            // expected
+        }
+
+        // forced delete of an absent key does not reach the store
+        store.deleteForced(absent, PersistOption.SYNC);
+
+        assertEquals(0, inner.deletes.get());
+
+        assertTrue(((Long) getStatistics().get("bloomFilter.negatives")) >= 3);
+
+        for (int i = 0; i < KEY_COUNT; i++) {
+            assertPresent(i, "value" + i);
+        }
+
+        store.deleteForced(key(0), PersistOption.SYNC);
+
+        assertEquals(1, inner.deletes.get());
+        assertNotFound(0);
+    }
+
+    @Test
+    public void testWritesDuringRebuild() throws Exception {
+
+        open();
+
+        for (int i = 0; i < KEY_COUNT; i++) {
+            put(i, "value" + i);
+        }
+
+        awaitRebuilds(1);
+
+        // the rebuild scan holds after it read all the current keys
+        inner.scanning = new CountDownLatch(1);
+        inner.resume = new CountDownLatch(1);
+
+        final AtomicInteger failures = new AtomicInteger();
+
+        Thread rebuilder = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    store.rebuild();
+                } catch (Exception e) {
+                    failures.incrementAndGet();
+                }
+            }
+        };
+
+        rebuilder.start();
+
+        inner.scanning.await();
+
+        // keys missed by the scan
+        for (int i = KEY_COUNT; i < 2 * KEY_COUNT; i++) {
+            put(i, "value" + i);
+        }
+
+        BatchOperation<ByteString, KVValue> batch = store
+                .createBatchOperation();
+
+        for (int i = 2 * KEY_COUNT; i < 3 * KEY_COUNT; i++) {
+            batch.put(key(i), value("batch" + i));
+        }
+
+        batch.commit();
+        batch.close();
+
+        inner.resume.countDown();
+
+        rebuilder.join();
+
+        inner.resume = null;
+
+        assertEquals(0, failures.get());
+        assertEquals(2L, getStatistics().get("bloomFilter.rebuilds"));
+
+        for (int i = 0; i < 2 * KEY_COUNT; i++) {
+            assertPresent(i, "value" + i);
+        }
+
+        for (int i = 2 * KEY_COUNT; i < 3 * KEY_COUNT; i++) {
+            assertPresent(i, "batch" + i);
+        }
+    }
+
+    @Test
+    public void testBatchCommitAddsKeys() throws Exception {
+
+        open();
+
+        awaitRebuilds(1);
+
+        BatchOperation<ByteString, KVValue> batch = store
+                .createBatchOperation();
+
+        for (int i = 0; i < KEY_COUNT; i++) {
+            batch.put(key(i), value("batch" + i));
+        }
+
+        // not added to the filter until committed
+        batch.close();
+
+        for (int i = 0; i < KEY_COUNT; i++) {
+            assertNotFound(i);
+        }
+
+        batch = store.createBatchOperation();
+
+        for (int i = 0; i < KEY_COUNT; i++) {
+            batch.put(key(i), value("batch" + i));
+        }
+
+        batch.commit();
+        batch.close();
+
+        for (int i = 0; i < KEY_COUNT; i++) {
+            assertPresent(i, "batch" + i);
+        }
+    }
+
+    @Test
+    public void testResetClearsFilter() throws Exception {
+
+        open();
+
+        for (int i = 0; i < KEY_COUNT; i++) {
+            put(i, "value" + i);
+        }
+
+        awaitRebuilds(1);
+
+        store.reset();
+
+        for (int i = 0; i < KEY_COUNT; i++) {
+            assertNotFound(i);
+        }
+
+        put(KEY_COUNT, "reset");
+
+        assertPresent(KEY_COUNT, "reset");
+
+        awaitRebuilds(2);
+
+        assertPresent(KEY_COUNT, "reset");
+    }
+
+    @Test
+    public void testInitClearsFilter() throws Exception {
+
+        // another store with a key the filter has not seen
+        File other = new File(home, "other");
+
+        MemoryStore otherStore = new MemoryStore();
+        otherStore.init(newMemoryConfiguration(other));
+
+        put(otherStore, 100, "other");
+
+        otherStore.close();
+
+        open();
+
+        for (int i = 0; i < KEY_COUNT; i++) {
+            put(i, "value" + i);
+        }
+
+        awaitRebuilds(1);
+
+        store.close();
+
+        // the filter of the previous store is not used
+        store.init(newMemoryConfiguration(other));
+
+        assertPresent(100, "other");
+    }
+
+    @Test
+    public void testStatistics() throws Exception {
+
+        open();
+
+        for (int i = 0; i < KEY_COUNT; i++) {
+            put(i, "value" + i);
+        }
+
+        awaitRebuilds(1);
+
+        try {
+            store.get(ByteString.copyFromUtf8("absent"));
+            fail("absent key must not be found");
+        } catch (KVStoreNotFound e) {
+            // expected
+        }
+
+        Map<String, Object> statistics = getStatistics();
+
+        assertEquals(Boolean.TRUE, statistics.get("bloomFilter.ready"));
+        assertEquals(1L, statistics.get("bloomFilter.rebuilds"));
+        assertEquals(1L, statistics.get("bloomFilter.negatives"));
+        assertTrue(((Long) statistics.get("bloomFilter.keys")) >= KEY_COUNT);
+        assertTrue(((Long) statistics.get("bloomFilter.size")) > 0);
+        assertTrue(statistics.containsKey("bloomFilter.falsePositives"));
+        assertTrue(statistics
+                .containsKey("bloomFilter.expectedFalsePositiveRate"));
+        assertTrue(statistics
+                .containsKey("bloomFilter.observedFalsePositiveRate"));
+    }
+
+    @Test
+    public void testStatisticsInDeviceLog() throws Exception {
+
+        SimulatorConfiguration config = newConfiguration("memory");
+
+        config.setPort(18323);
+        config.setSslPort(18643);
+        config.setUseMemoryStore(true);
+        config.setUseBloomFilter(true);
+
+        KineticSimulator simulator = new KineticSimulator(config);
+
+        try {
+            AdminClientConfiguration adminConfig = new AdminClientConfiguration();
+            adminConfig.setPort(18643);
+
+            KineticAdminClient adminClient = KineticAdminClientFactory
+                    .createInstance(adminConfig);
+
+            try {
+                String log = new String(adminClient
+                        .getVendorSpecificDeviceLog(
+                                GetLogHandler.SIMULATOR_STORE_LOG_NAME
+                                        .getBytes("UTF-8")).getValue(),
+                        "UTF-8");
+
+                assertTrue(log, log.contains("bloomFilter.ready="));
+                assertTrue(log, log.contains("bloomFilter.size="));
+                assertTrue(log, log.contains("bloomFilter.keys="));
+                assertTrue(log, log.contains("bloomFilter.negatives="));
+                assertTrue(log, log.contains("bloomFilter.falsePositives="));
+                assertTrue(log, log.contains("bloomFilter.rebuilds="));
+            } finally {
+                adminClient.close();
+            }
+        } finally {
+            simulator.close();
+        }
+    }
+}
@@ -0,0 +1,212 @@
+/**
+ * 
+ * Copyright (C) 2014 Seagate Technology.
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.seagate.kinetic.simulator.persist.leveldb;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.protobuf.ByteString;
+import com.seagate.kinetic.simulator.persist.BatchOperation;
+import com.seagate.kinetic.simulator.persist.KVValue;
+import com.seagate.kinetic.simulator.persist.PersistOption;
+import com.seagate.kinetic.simulator.persist.StoreTestCase;
+
+/**
+ * LevelDB store GETNEXT and GETPREVIOUS cursor tests: a write only closes
+ * the cursors that may return the written keys.
+ */
+@Test(groups = { "simulator" })
+public class CursorCacheTest extends StoreTestCase<LevelDbStore> {
+
+    private static final int KEY_COUNT = 10;
+
+    private static final long CID = 1;
+
+    @BeforeMethod
+    public void open() throws Exception {
+
+        store = new LevelDbStore();
+        store.init(newConfiguration("leveldb"));
+
+        for (int i = 0; i < KEY_COUNT; i++) {
+            put(i, "value" + i);
+        }
+    }
+
+    private long statistic(String name) {
+
+        Map<String, Object> statistics = new HashMap<String, Object>();
+
+        store.getStatistics(statistics);
+
+        return ((Number) statistics.get(name)).longValue();
+    }
+
+    private void assertNext(int from, int expected, String data)
+            throws Exception {
+
+        KVValue value = store.getNext(CID, key(from));
+
+        assertEquals(key(expected), value.getKeyOf());
+        assertEquals(ByteString.copyFromUtf8(data), value.getData());
+    }
+
+    private void assertPrevious(int from, int expected, String data)
+            throws Exception {
+
+        KVValue value = store.getPrevious(CID, key(from));
+
+        assertEquals(key(expected), value.getKeyOf());
+        assertEquals(ByteString.copyFromUtf8(data), value.getData());
+    }
+
+    private static KVValue batchValue(int i) {
+
+        KVValue value = value("batch" + i);
+
+        value.setKeyOf(key(i));
+
+        return value;
+    }
+
+    @Test
+    public void testForwardCursorKeptAfterWriteBehind() throws Exception {
+
+        assertNext(0, 1, "value1");
+        assertNext(1, 2, "value2");
+
+        long hits = statistic("cursor.hits");
+        long misses = statistic("cursor.misses");
+
+        // before the last returned key
+        put(0, "updated0");
+        put(2, "updated2");
+        store.deleteForced(key(1), PersistOption.SYNC);
+
+        assertNext(2, 3, "value3");
+        assertNext(3, 4, "value4");
+
+        assertEquals(hits + 2, statistic("cursor.hits"));
+        assertEquals(misses, statistic("cursor.misses"));
+        assertEquals(1, statistic("cursor.open"));
+    }
+
+    @Test
+    public void testForwardCursorClosedAfterWriteAhead() throws Exception {
+
+        assertNext(0, 1, "value1");
+        assertNext(1, 2, "value2");
+
+        long misses = statistic("cursor.misses");
+
+        // after the last returned key
+        put(3, "updated3");
+        store.deleteForced(key(4), PersistOption.SYNC);
+
+        assertEquals(0, statistic("cursor.open"));
+
+        assertNext(2, 3, "updated3");
+        assertNext(3, 5, "value5");
+
+        assertEquals(misses + 1, statistic("cursor.misses"));
+    }
+
+    @Test
+    public void testBackwardCursorKeptAfterWriteBehind() throws Exception {
+
+        assertPrevious(9, 8, "value8");
+        assertPrevious(8, 7, "value7");
+
+        long hits = statistic("cursor.hits");
+
+        // after the last returned key
+        put(9, "updated9");
+        put(7, "updated7");
+
+        assertPrevious(7, 6, "value6");
+
+        assertEquals(hits + 1, statistic("cursor.hits"));
+
+        // before the last returned key
+        put(5, "updated5");
+
+        assertPrevious(6, 5, "updated5");
+
+        assertEquals(hits + 1, statistic("cursor.hits"));
+    }
+
+    @Test
+    public void testBatchCommit() throws Exception {
+
+        assertNext(4, 5, "value5");
+
+        long hits = statistic("cursor.hits");
+
+        BatchOperation<ByteString, KVValue> batch = store
+                .createBatchOperation();
+
+        batch.put(key(0), batchValue(0));
+        batch.delete(key(3));
+
+        batch.commit();
+        batch.close();
+
+        // all the batch keys are before the cursor
+        assertNext(5, 6, "value6");
+
+        assertEquals(hits + 1, statistic("cursor.hits"));
+
+        batch = store.createBatchOperation();
+
+        batch.put(key(2), batchValue(2));
+        batch.put(key(8), batchValue(8));
+
+        batch.commit();
+        batch.close();
+
+        // the batch range covers the cursor
+        assertNext(6, 7, "value7");
+        assertNext(7, 8, "batch8");
+
+        assertEquals(hits + 2, statistic("cursor.hits"));
+    }
+
+    @Test
+    public void testCursorOfOtherConnection() throws Exception {
+
+        assertNext(0, 1, "value1");
+
+        long hits = statistic("cursor.hits");
+
+        // another connection does not use the cursor
+        assertEquals(key(2), store.getNext(CID + 1, key(1)).getKeyOf());
+
+        assertEquals(hits, statistic("cursor.hits"));
+
+        assertNext(1, 2, "value2");
+
+        assertEquals(hits + 1, statistic("cursor.hits"));
+    }
+}
@@ -0,0 +1,324 @@
+/**
+ * 
+ * Copyright (C) 2014 Seagate Technology.
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.seagate.kinetic.simulator.persist.leveldb;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import kinetic.simulator.SimulatorConfiguration;
+
+import org.iq80.leveldb.DB;
+import org.iq80.leveldb.DBException;
+import org.iq80.leveldb.WriteBatch;
+import org.testng.annotations.Test;
+
+import com.google.protobuf.ByteString;
+import com.seagate.kinetic.simulator.internal.KVStoreException;
+import com.seagate.kinetic.simulator.internal.KVStoreVersionMismatch;
+import com.seagate.kinetic.simulator.persist.KVValue;
+import com.seagate.kinetic.simulator.persist.PersistOption;
+import com.seagate.kinetic.simulator.persist.StoreTestCase;
+
+/**
+ * LevelDB group commit tests.
+ */
+@Test(groups = { "simulator" })
+public class GroupCommitterTest extends StoreTestCase<LevelDbStore> {
+
+    private void open(int maxSize, long maxDelay) {
+
+        SimulatorConfiguration config = newConfiguration("leveldb");
+
+        config.setGroupCommitMaxSize(maxSize);
+        config.setGroupCommitMaxDelay(maxDelay);
+
+        store = new LevelDbStore();
+        store.init(config);
+    }
+
+    private static ByteString bytes(String s) {
+        return ByteString.copyFromUtf8(s);
+    }
+
+    private static KVValue value(String version, String data) {
+        return new KVValue(null, bytes(version), null, null, bytes(data));
+    }
+
+    /**
+     * Wait until the pending write of the key has the specified version.
+     */
+    private void awaitPending(ByteString key, String version)
+            throws Exception {
+
+        long deadline = System.currentTimeMillis() + 10000;
+
+        while (true) {
+
+            GroupCommitter.Write pending = store.getGroupCommitter()
+                    .getPending(key);
+
+            if (pending != null
+                    && new KVValue(pending.getMetadata()).getVersion().equals(
+                            bytes(version))) {
+                return;
+            }
+
+            assertTrue("write not queued",
+                    System.currentTimeMillis() < deadline);
+
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    public void testConcurrentWritersAllLand() throws Exception {
+
+        open(16, 2);
+
+        final int threadCount = 8;
+        final int writeCount = 100;
+
+        final List<Throwable> errors = Collections
+                .synchronizedList(new ArrayList<Throwable>());
+
+        Thread[] threads = new Thread[threadCount];
+
+        for (int t = 0; t < threadCount; t++) {
+
+            final int id = t;
+
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < writeCount; i++) {
+
+                            ByteString key = bytes("key-" + id + "-" + i);
+
+                            store.put(key, null, value("v1", "value" + i),
+                                    PersistOption.SYNC);
+
+                            // the version of the previous write is enforced
+                            store.put(key, bytes("v1"),
+                                    value("v2", "updated" + i),
+                                    PersistOption.SYNC);
+                        }
+                    } catch (Throwable e) {
+                        errors.add(e);
+                    }
+                }
+            };
+
+            threads[t].start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue(errors.toString(), errors.isEmpty());
+
+        for (int t = 0; t < threadCount; t++) {
+            for (int i = 0; i < writeCount; i++) {
+
+                KVValue v = store.get(bytes("key-" + t + "-" + i));
+
+                assertEquals(bytes("v2"), v.getVersion());
+                assertEquals(bytes("updated" + i), v.getData());
+            }
+        }
+    }
+
+    @Test
+    public void testPendingVersionEnforced() throws Exception {
+
+        // a group is only committed once three writes are queued
+        open(3, 60000);
+
+        final ByteString key = bytes("key");
+
+        final List<Throwable> errors = Collections
+                .synchronizedList(new ArrayList<Throwable>());
+
+        Thread first = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    store.put(key, null, value("v1", "first"),
+                            PersistOption.SYNC);
+                } catch (Throwable e) {
+                    errors.add(e);
+                }
+            }
+        };
+
+        first.start();
+
+        awaitPending(key, "v1");
+
+        // the key exists once its first write is queued
+        try {
+            store.put(key, null, value("v9", "stale"), PersistOption.SYNC);
+            fail("version of the pending write must be enforced");
+        } catch (KVStoreVersionMismatch e) {
+            // expected
+        }
+
+        Thread second = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    store.put(key, bytes("v1"), value("v2", "second"),
+                            PersistOption.SYNC);
+                } catch (Throwable e) {
+                    errors.add(e);
+                }
+            }
+        };
+
+        second.start();
+
+        awaitPending(key, "v2");
+
+        try {
+            store.put(key, bytes("v1"), value("v9", "stale"),
+                    PersistOption.SYNC);
+            fail("version of the pending write must be enforced");
+        } catch (KVStoreVersionMismatch e) {
+            // expected
+        }
+
+        // third write, the group is committed
+        store.put(bytes("other"), null, value("v1", "other"),
+                PersistOption.SYNC);
+
+        first.join();
+        second.join();
+
+        assertTrue(errors.toString(), errors.isEmpty());
+
+        assertNull(store.getGroupCommitter().getPending(key));
+
+        KVValue v = store.get(key);
+
+        assertEquals(bytes("v2"), v.getVersion());
+        assertEquals(bytes("second"), v.getData());
+    }
+
+    @Test
+    public void testFailedBatchFailsAllWriters() throws Exception {
+
+        final int writerCount = 4;
+
+        final AtomicInteger writes = new AtomicInteger();
+
+        // data db that fails every batch
+        DB db = newDb(new DBException("injected write failure"), writes);
+        DB metaDb = newDb(null, new AtomicInteger());
+
+        // one group of all the writers
+        final GroupCommitter committer = new GroupCommitter(
+                new LevelDbStore(), db, metaDb, 60000, writerCount);
+
+        final AtomicInteger failures = new AtomicInteger();
+
+        final CountDownLatch done = new CountDownLatch(writerCount);
+
+        for (int i = 0; i < writerCount; i++) {
+
+            final ByteString key = bytes("key" + i);
+
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        committer.await(committer.enqueue(key,
+                                key.toByteArray(), key.toByteArray(), true));
+                    } catch (KVStoreException e) {
+                        failures.incrementAndGet();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+
+        done.await();
+
+        assertEquals(writerCount, failures.get());
+        assertEquals(1, writes.get());
+
+        for (int i = 0; i < writerCount; i++) {
+            assertNull(committer.getPending(bytes("key" + i)));
+        }
+    }
+
+    /**
+     * Create a db whose writes fail with the specified error, or succeed if
+     * the error is null.
+     */
+    private static DB newDb(final Exception error, final AtomicInteger writes) {
+
+        final WriteBatch batch = (WriteBatch) Proxy.newProxyInstance(
+                WriteBatch.class.getClassLoader(),
+                new Class<?>[] { WriteBatch.class }, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method,
+                            Object[] args) {
+                        return (method.getReturnType() == WriteBatch.class) ? proxy
+                                : null;
+                    }
+                });
+
+        return (DB) Proxy.newProxyInstance(DB.class.getClassLoader(),
+                new Class<?>[] { DB.class }, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method,
+                            Object[] args) throws Exception {
+
+                        if (method.getName().equals("createWriteBatch")) {
+                            return batch;
+                        }
+
+                        if (method.getName().equals("write")) {
+
+                            writes.incrementAndGet();
+
+                            if (error != null) {
+                                throw error;
+                            }
+                        }
+
+                        return null;
+                    }
+                });
+    }
+}
@@ -0,0 +1,268 @@
+/**
+ * 
+ * Copyright (C) 2014 Seagate Technology.
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.seagate.kinetic.simulator.persist.leveldb;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.testng.annotations.Test;
+
+import com.google.protobuf.ByteString;
+import com.seagate.kinetic.simulator.internal.KVStoreVersionMismatch;
+import com.seagate.kinetic.simulator.persist.KVValue;
+import com.seagate.kinetic.simulator.persist.PersistOption;
+import com.seagate.kinetic.simulator.persist.StoreTestCase;
+
+/**
+ * LevelDB store concurrency tests: versioned writes serialized by the key
+ * lock stripes while readers run, and the lifecycle lock.
+ */
+@Test(groups = { "simulator" })
+public class LevelDbConcurrencyTest extends StoreTestCase<LevelDbStore> {
+
+    private static final int KEY_COUNT = 8;
+
+    private static final int WRITERS = 8;
+
+    private static final int READERS = 4;
+
+    private static final int INCREMENTS = 200;
+
+    /**
+     * Counter value, the version and the data are both the counter.
+     */
+    private static KVValue counter(int n) {
+
+        ByteString s = ByteString.copyFromUtf8(Integer.toString(n));
+
+        return new KVValue(null, s, null, null, s);
+    }
+
+    private static int counterOf(KVValue value) {
+
+        int n = Integer.parseInt(value.getVersion().toStringUtf8());
+
+        // version and data written together
+        assertEquals(value.getVersion(), value.getData());
+
+        return n;
+    }
+
+    @Test
+    public void testVersionedWritesAgainstReaders() throws Exception {
+
+        store = new LevelDbStore();
+        store.init(newConfiguration("leveldb"));
+
+        for (int i = 0; i < KEY_COUNT; i++) {
+            store.putForced(key(i), counter(0), PersistOption.SYNC);
+        }
+
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+
+        final AtomicInteger mismatches = new AtomicInteger();
+
+        final AtomicBoolean done = new AtomicBoolean(false);
+
+        final CountDownLatch start = new CountDownLatch(1);
+
+        Thread[] writers = new Thread[WRITERS];
+
+        for (int t = 0; t < WRITERS; t++) {
+
+            final int id = t;
+
+            writers[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+
+                        for (int i = 0; i < INCREMENTS; i++) {
+
+                            // every writer updates every key
+                            ByteString key = key((id + i) % KEY_COUNT);
+
+                            while (true) {
+
+                                KVValue current = store.get(key);
+
+                                int n = counterOf(current);
+
+                                try {
+                                    store.put(key, current.getVersion(),
+                                            counter(n + 1), PersistOption.SYNC);
+                                    break;
+                                } catch (KVStoreVersionMismatch e) {
+                                    // lost the race, read again
+                                    mismatches.incrementAndGet();
+                                }
+                            }
+                        }
+                    } catch (Throwable e) {
+                        error.compareAndSet(null, e);
+                    }
+                }
+            };
+
+            writers[t].start();
+        }
+
+        Thread[] readers = new Thread[READERS];
+
+        for (int t = 0; t < READERS; t++) {
+
+            readers[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        int[] last = new int[KEY_COUNT];
+
+                        start.await();
+
+                        while (done.get() == false) {
+
+                            for (int i = 0; i < KEY_COUNT; i++) {
+
+                                int n = counterOf(store.get(key(i)));
+
+                                // counters never go back
+                                assertTrue(n >= last[i]);
+                                last[i] = n;
+
+                                store.getMetadata(key(i));
+
+                                if (i + 1 < KEY_COUNT) {
+                                    counterOf(store.getNext(key(i)));
+                                }
+                            }
+                        }
+                    } catch (Throwable e) {
+                        error.compareAndSet(null, e);
+                    }
+                }
+            };
+
+            readers[t].start();
+        }
+
+        start.countDown();
+
+        for (Thread t : writers) {
+            t.join();
+        }
+
+        done.set(true);
+
+        for (Thread t : readers) {
+            t.join();
+        }
+
+        assertEquals(null, error.get());
+
+        // no increment was lost
+        int total = 0;
+
+        for (int i = 0; i < KEY_COUNT; i++) {
+            total += counterOf(store.get(key(i)));
+        }
+
+        assertEquals(WRITERS * INCREMENTS, total);
+    }
+
+    @Test
+    public void testLifecycleLock() throws Exception {
+
+        final StripedReadWriteLock lock = new StripedReadWriteLock();
+
+        final CountDownLatch locked = new CountDownLatch(READERS);
+
+        final CountDownLatch release = new CountDownLatch(1);
+
+        Thread[] readers = new Thread[READERS];
+
+        // readers of different threads hold the lock at the same time
+        for (int t = 0; t < READERS; t++) {
+
+            readers[t] = new Thread() {
+                @Override
+                public void run() {
+
+                    lock.readLock().lock();
+
+                    try {
+                        locked.countDown();
+                        release.await();
+                    } catch (InterruptedException e) {
+                        ;
+                    } finally {
+                        lock.readLock().unlock();
+                    }
+                }
+            };
+
+            readers[t].start();
+        }
+
+        assertTrue(locked.await(10, TimeUnit.SECONDS));
+
+        final AtomicBoolean writing = new AtomicBoolean(false);
+
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+
+                lock.writeLock().lock();
+
+                writing.set(true);
+
+                lock.writeLock().unlock();
+            }
+        };
+
+        writer.start();
+
+        // waits for all the readers
+        Thread.sleep(100);
+        assertFalse(writing.get());
+
+        release.countDown();
+
+        writer.join(10000);
+        assertTrue(writing.get());
+
+        // the writer may read
+        lock.writeLock().lock();
+
+        try {
+            assertTrue(lock.readLock().tryLock());
+            lock.readLock().unlock();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,219 @@
+/**
+ * 
+ * Copyright (C) 2014 Seagate Technology.
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.seagate.kinetic.simulator.persist.leveldb;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.testng.annotations.Test;
+
+import com.google.protobuf.ByteString;
+import com.seagate.kinetic.simulator.internal.KVStoreNotFound;
+import com.seagate.kinetic.simulator.persist.KVValue;
+import com.seagate.kinetic.simulator.persist.PersistOption;
+import com.seagate.kinetic.simulator.persist.StoreTestCase;
+
+/**
+ * LevelDB metadata index tests: the index is trusted on open only if it was
+ * closed cleanly, and is otherwise rebuilt from the data db.
+ */
+@Test(groups = { "simulator" })
+public class MetadataIndexTest extends StoreTestCase<LevelDbStore> {
+
+    private static final int KEY_COUNT = 10;
+
+    private File persistFolder() {
+        return new File(home, "leveldb");
+    }
+
+    private File cleanFile() {
+        return new File(persistFolder(), "leveldb-meta.clean");
+    }
+
+    private File indexFolder() {
+        return new File(persistFolder(), "leveldb-meta.ldb");
+    }
+
+    private void reopen() {
+
+        closeStore();
+
+        store = new LevelDbStore();
+        store.init(newConfiguration("leveldb"));
+    }
+
+    private static KVValue versioned(String version) {
+        return new KVValue(null, ByteString.copyFromUtf8(version), null, null,
+                ByteString.copyFromUtf8("value"));
+    }
+
+    private void assertVersion(int i, String version) throws Exception {
+        assertEquals(ByteString.copyFromUtf8(version), store.getMetadata(key(i))
+                .getVersion());
+    }
+
+    private void assertMetadataNotFound(int i) throws Exception {
+        try {
+            store.getMetadata(key(i));
+            fail("key" + i + " must not be found");
+        } catch (KVStoreNotFound e) {
+            // expected
+        }
+    }
+
+    private static void copy(File from, File to) throws IOException {
+
+        if (from.isDirectory()) {
+
+            to.mkdirs();
+
+            for (String name : from.list()) {
+                copy(new File(from, name), new File(to, name));
+            }
+
+            return;
+        }
+
+        InputStream in = new FileInputStream(from);
+
+        try {
+            OutputStream out = new FileOutputStream(to);
+
+            try {
+                byte[] buffer = new byte[8192];
+                int n = 0;
+
+                while ((n = in.read(buffer)) > 0) {
+                    out.write(buffer, 0, n);
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void testCleanMarker() throws Exception {
+
+        reopen();
+
+        // not clean while open
+        assertFalse(cleanFile().exists());
+
+        for (int i = 0; i < KEY_COUNT; i++) {
+            store.putForced(key(i), versioned("v1"), PersistOption.SYNC);
+        }
+
+        closeStore();
+
+        assertTrue(cleanFile().exists());
+
+        reopen();
+
+        assertFalse(cleanFile().exists());
+
+        for (int i = 0; i < KEY_COUNT; i++) {
+            assertVersion(i, "v1");
+        }
+    }
+
+    @Test
+    public void testRebuildStaleIndex() throws Exception {
+
+        reopen();
+
+        for (int i = 0; i < KEY_COUNT; i++) {
+            store.putForced(key(i), versioned("v1"), PersistOption.SYNC);
+        }
+
+        closeStore();
+
+        // index as of the first close
+        File stale = new File(home, "stale-index");
+        copy(indexFolder(), stale);
+
+        reopen();
+
+        store.putForced(key(0), versioned("v2"), PersistOption.SYNC);
+        store.deleteForced(key(1), PersistOption.SYNC);
+        store.putForced(key(KEY_COUNT), versioned("v1"), PersistOption.SYNC);
+
+        closeStore();
+
+        // the index of an unclean close may miss the last writes
+        delete(indexFolder());
+        copy(stale, indexFolder());
+
+        assertTrue(cleanFile().delete());
+
+        reopen();
+
+        assertVersion(0, "v2");
+        assertMetadataNotFound(1);
+        assertVersion(KEY_COUNT, "v1");
+
+        for (int i = 2; i < KEY_COUNT; i++) {
+            assertVersion(i, "v1");
+        }
+
+        // rebuilt index is used for versioned writes
+        store.put(key(0), ByteString.copyFromUtf8("v2"), versioned("v3"),
+                PersistOption.SYNC);
+
+        assertVersion(0, "v3");
+    }
+
+    @Test
+    public void testRebuildMissingIndex() throws Exception {
+
+        reopen();
+
+        for (int i = 0; i < KEY_COUNT; i++) {
+            store.putForced(key(i), versioned("v" + i), PersistOption.SYNC);
+        }
+
+        closeStore();
+
+        delete(indexFolder());
+        assertTrue(cleanFile().delete());
+
+        reopen();
+
+        for (int i = 0; i < KEY_COUNT; i++) {
+            assertVersion(i, "v" + i);
+        }
+
+        // the rebuilt index is clean after close
+        closeStore();
+
+        assertTrue(cleanFile().exists());
+    }
+}
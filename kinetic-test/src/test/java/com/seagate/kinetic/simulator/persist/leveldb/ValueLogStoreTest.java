@@ -0,0 +1,226 @@
+/**
+ * 
+ * Copyright (C) 2014 Seagate Technology.
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.seagate.kinetic.simulator.persist.leveldb;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.io.File;
+
+import kinetic.simulator.SimulatorConfiguration;
+
+import org.testng.annotations.Test;
+
+import com.google.protobuf.ByteString;
+import com.seagate.kinetic.simulator.persist.BatchOperation;
+import com.seagate.kinetic.simulator.persist.KVValue;
+import com.seagate.kinetic.simulator.persist.StoreTestCase;
+
+/**
+ * LevelDB store value log tests: restart, garbage collection and batches.
+ */
+@Test(groups = { "simulator" })
+public class ValueLogStoreTest extends StoreTestCase<LevelDbStore> {
+
+    private static final int KEY_COUNT = 10;
+
+    // values of this size are written to the value log
+    private static final int LARGE = 4096;
+
+    // about four large values per segment
+    private static final long SEGMENT_SIZE = 16 * 1024;
+
+    private File valueLogFolder() {
+        return new File(new File(home, "leveldb"), "vlog");
+    }
+
+    private void reopen(boolean useValueLog, long gcPeriod) {
+
+        closeStore();
+
+        SimulatorConfiguration config = newConfiguration("leveldb");
+
+        config.setUseValueLog(useValueLog);
+        config.setValueLogThreshold(1024);
+        config.setValueLogSegmentSize(SEGMENT_SIZE);
+        config.setValueLogGcPeriod(gcPeriod);
+
+        store = new LevelDbStore();
+        store.init(config);
+    }
+
+    private static String data(String prefix, int i, int size) {
+
+        StringBuilder sb = new StringBuilder(prefix).append(i);
+
+        while (sb.length() < size) {
+            sb.append('x');
+        }
+
+        return sb.toString();
+    }
+
+    private int countSegments() {
+
+        int count = 0;
+
+        String[] names = valueLogFolder().list();
+
+        if (names != null) {
+            for (String name : names) {
+                if (name.endsWith(".vlog")) {
+                    count++;
+                }
+            }
+        }
+
+        return count;
+    }
+
+    @Test
+    public void testValueLogNotOpenedIfDisabled() throws Exception {
+
+        reopen(false, 3600000);
+
+        put(0, data("value", 0, LARGE));
+
+        assertValue(0, data("value", 0, LARGE));
+        assertNull(store.getValuePointer(key(0).toByteArray()));
+
+        assertFalse(valueLogFolder().exists());
+    }
+
+    @Test
+    public void testRestart() throws Exception {
+
+        reopen(true, 3600000);
+
+        for (int i = 0; i < KEY_COUNT; i++) {
+            put(i, data("value", i, LARGE));
+        }
+
+        // below the threshold, kept in LevelDB
+        put(KEY_COUNT, data("small", 0, 10));
+
+        assertNotNull(store.getValuePointer(key(0).toByteArray()));
+        assertNull(store.getValuePointer(key(KEY_COUNT).toByteArray()));
+
+        // existing segments are read after the value log is disabled
+        reopen(false, 3600000);
+
+        for (int i = 0; i < KEY_COUNT; i++) {
+            assertValue(i, data("value", i, LARGE));
+        }
+
+        assertValue(KEY_COUNT, data("small", 0, 10));
+
+        assertEquals(ByteString.copyFromUtf8(data("value", 1, LARGE)), store
+                .getPrevious(key(2)).getData());
+        assertEquals(ByteString.copyFromUtf8(data("value", 1, LARGE)), store
+                .getNext(key(0)).getData());
+    }
+
+    @Test
+    public void testGarbageCollection() throws Exception {
+
+        reopen(true, 3600000);
+
+        for (int i = 0; i < KEY_COUNT; i++) {
+            put(i, data("value", i, LARGE));
+        }
+
+        for (int i = 0; i < KEY_COUNT; i++) {
+            put(i, data("updated", i, LARGE));
+        }
+
+        int before = countSegments();
+
+        // the first segments only hold overwritten values
+        reopen(true, 50);
+
+        long deadline = System.currentTimeMillis() + 10000;
+
+        while (countSegments() > before - 2) {
+
+            assertTrue("value log segments not cleaned",
+                    System.currentTimeMillis() < deadline);
+
+            Thread.sleep(50);
+        }
+
+        for (int i = 0; i < KEY_COUNT; i++) {
+            assertValue(i, data("updated", i, LARGE));
+        }
+
+        // relocated pointers are durable
+        reopen(true, 3600000);
+
+        for (int i = 0; i < KEY_COUNT; i++) {
+            assertValue(i, data("updated", i, LARGE));
+        }
+    }
+
+    @Test
+    public void testAbortedBatchLeavesNoValue() throws Exception {
+
+        reopen(true, 3600000);
+
+        put(0, data("value", 0, LARGE));
+
+        long size = countBytes();
+
+        BatchOperation<ByteString, KVValue> batch = store
+                .createBatchOperation();
+
+        batch.put(key(1), value(data("batch", 1, LARGE)));
+        batch.put(key(2), value(data("batch", 2, LARGE)));
+
+        // aborted
+        batch.close();
+
+        assertEquals(size, countBytes());
+
+        batch = store.createBatchOperation();
+
+        batch.put(key(1), value(data("batch", 1, LARGE)));
+        batch.delete(key(0));
+
+        batch.commit();
+        batch.close();
+
+        assertTrue(countBytes() > size);
+        assertValue(1, data("batch", 1, LARGE));
+        assertNotNull(store.getValuePointer(key(1).toByteArray()));
+    }
+
+    private long countBytes() {
+
+        long size = 0;
+
+        for (File file : valueLogFolder().listFiles()) {
+            size += file.length();
+        }
+
+        return size;
+    }
+}
@@ -0,0 +1,219 @@
+/**
+ * 
+ * Copyright (C) 2014 Seagate Technology.
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.seagate.kinetic.simulator.persist.memory;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import kinetic.simulator.SimulatorConfiguration;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.google.protobuf.ByteString;
+import com.seagate.kinetic.simulator.internal.KVStoreNotFound;
+import com.seagate.kinetic.simulator.internal.KVStoreVersionMismatch;
+import com.seagate.kinetic.simulator.persist.KVValue;
+import com.seagate.kinetic.simulator.persist.PersistOption;
+import com.seagate.kinetic.simulator.persist.StoreTestCase;
+
+/**
+ * Memory store concurrency tests. Versioned puts and deletes compete for one
+ * key, exactly one of them wins each round.
+ */
+@Test(groups = { "simulator" })
+public class MemoryStoreConcurrencyTest extends StoreTestCase<MemoryStore> {
+
+    private static final int CONTENDERS = 8;
+
+    private static final int ROUNDS = 100;
+
+    private static final ByteString KEY = key(0);
+
+    private static final ByteString V1 = ByteString.copyFromUtf8("v1");
+
+    private ExecutorService executor = null;
+
+    @AfterMethod
+    public void shutdown() {
+
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    @DataProvider(name = "memoryModes")
+    public Object[][] memoryModes() {
+        return new Object[][] { { "heap" }, { "offheap" } };
+    }
+
+    private void open(String mode) {
+
+        SimulatorConfiguration config = newConfiguration("memory");
+
+        // checkpoints are only taken on request
+        config.setMemoryCheckpointPeriod(3600000);
+        config.setUseOffHeapMemoryStore(mode.equals("offheap"));
+
+        store = new MemoryStore();
+        store.init(config);
+
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(CONTENDERS);
+        }
+    }
+
+    private static ByteString version(int round, int contender) {
+        return ByteString.copyFromUtf8("r" + round + "-c" + contender);
+    }
+
+    private static KVValue versioned(ByteString version) {
+        return new KVValue(null, version, null, null, version);
+    }
+
+    /**
+     * Run one round, the contenders start together.
+     *
+     * @return the contender that succeeded, or -1 if none.
+     */
+    private int race(final int round, final ByteString oldVersion,
+            final boolean withDeletes) throws Exception {
+
+        final CountDownLatch start = new CountDownLatch(1);
+
+        List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+
+        for (int t = 0; t < CONTENDERS; t++) {
+
+            final int id = t;
+
+            futures.add(executor.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+
+                    start.await();
+
+                    try {
+                        if (withDeletes && id % 2 == 1) {
+                            store.delete(KEY, oldVersion, PersistOption.SYNC);
+                        } else {
+                            store.put(KEY, oldVersion,
+                                    versioned(version(round, id)),
+                                    PersistOption.SYNC);
+                        }
+
+                        return Boolean.TRUE;
+                    } catch (KVStoreVersionMismatch e) {
+                        return Boolean.FALSE;
+                    } catch (KVStoreNotFound e) {
+                        // deleted by the winner
+                        return Boolean.FALSE;
+                    }
+                }
+            }));
+        }
+
+        start.countDown();
+
+        int winner = -1;
+
+        for (int t = 0; t < CONTENDERS; t++) {
+
+            // any other failure is thrown here
+            if (futures.get(t).get().booleanValue()) {
+
+                assertEquals("more than one winner in round " + round, -1,
+                        winner);
+
+                winner = t;
+            }
+        }
+
+        return winner;
+    }
+
+    @Test(dataProvider = "memoryModes")
+    public void testCompetingCreates(String mode) throws Exception {
+
+        open(mode);
+
+        for (int round = 0; round < ROUNDS; round++) {
+
+            store.deleteForced(KEY, PersistOption.ASYNC);
+
+            // no version, the key must not exist
+            int winner = race(round, ByteString.EMPTY, false);
+
+            assertTrue("no winner in round " + round, winner >= 0);
+            assertEquals(version(round, winner), store.get(KEY).getVersion());
+            assertEquals(version(round, winner), store.get(KEY).getData());
+        }
+    }
+
+    @Test(dataProvider = "memoryModes")
+    public void testCompetingPutsAndDeletes(String mode) throws Exception {
+
+        open(mode);
+
+        int winner = -1;
+
+        for (int round = 0; round < ROUNDS; round++) {
+
+            store.putForced(KEY, versioned(V1), PersistOption.ASYNC);
+
+            winner = race(round, V1, true);
+
+            assertTrue("no winner in round " + round, winner >= 0);
+
+            assertWinner(round, winner);
+        }
+
+        // the log holds the updates in the order they were applied
+        closeStore();
+        open(mode);
+
+        assertWinner(ROUNDS - 1, winner);
+    }
+
+    private void assertWinner(int round, int winner) throws Exception {
+
+        if (winner % 2 == 1) {
+            // a delete won
+            assertNotFound(0);
+        } else {
+            KVValue value = store.get(KEY);
+
+            assertNotNull(value);
+            assertEquals(version(round, winner), value.getVersion());
+            assertEquals(version(round, winner), value.getData());
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/**
+ * 
+ * Copyright (C) 2014 Seagate Technology.
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.seagate.kinetic.simulator.persist.memory;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+import kinetic.simulator.SimulatorConfiguration;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import com.seagate.kinetic.simulator.persist.PersistOption;
+import com.seagate.kinetic.simulator.persist.StoreTestCase;
+
+/**
+ * Memory store recovery tests. A store is abandoned without being closed (as
+ * if the simulator was killed), the tail of its write-ahead log is torn or
+ * corrupted, and the store is reopened from the checkpoint and the log.
+ */
+@Test(groups = { "simulator" })
+public class MemoryStoreRecoveryTest extends StoreTestCase<MemoryStore> {
+
+    private static final int KEY_COUNT = 10;
+
+    // abandoned store, never closed
+    private MemoryStore crashed = null;
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        crashed = null;
+    }
+
+    private File folder() {
+        return new File(home, "memory");
+    }
+
+    private MemoryStore open() {
+
+        SimulatorConfiguration config = newConfiguration("memory");
+
+        // checkpoints are only taken on request
+        config.setMemoryCheckpointPeriod(3600000);
+
+        MemoryStore memoryStore = new MemoryStore();
+        memoryStore.init(config);
+
+        return memoryStore;
+    }
+
+    /**
+     * Append an incomplete record (a header followed by a part of its key) to
+     * the log.
+     */
+    private static void tearTail(File log) throws IOException {
+
+        RandomAccessFile raf = new RandomAccessFile(log, "rw");
+
+        try {
+            raf.seek(raf.length());
+            raf.write(ByteBuffer.allocate(12 + 3).putInt(0x12345678)
+                    .putInt(16).putInt(100).array());
+        } finally {
+            raf.close();
+        }
+    }
+
+    @Test
+    public void testReplayTruncatesTornTail() throws Exception {
+
+        crashed = open();
+
+        for (int i = 0; i < KEY_COUNT; i++) {
+            put(crashed, i, "value" + i);
+        }
+
+        crashed.deleteForced(key(5), PersistOption.SYNC);
+
+        // first log of a new store
+        File log = WriteAheadLog.fileOf(folder(), 1);
+
+        long length = log.length();
+
+        tearTail(log);
+
+        store = open();
+
+        for (int i = 0; i < KEY_COUNT; i++) {
+            if (i == 5) {
+                assertNotFound(store, i);
+            } else {
+                assertValue(store, i, "value" + i);
+            }
+        }
+
+        assertEquals(length, log.length());
+    }
+
+    @Test
+    public void testReplayDropsCorruptedRecord() throws Exception {
+
+        crashed = open();
+
+        for (int i = 0; i < KEY_COUNT; i++) {
+            put(crashed, i, "value" + i);
+        }
+
+        File log = WriteAheadLog.fileOf(folder(), 1);
+
+        long length = log.length();
+
+        put(crashed, 3, "updated");
+
+        // flip the last byte of the update record
+        RandomAccessFile raf = new RandomAccessFile(log, "rw");
+
+        try {
+            raf.seek(raf.length() - 1);
+            int b = raf.read();
+            raf.seek(raf.length() - 1);
+            raf.write(b ^ 0xFF);
+        } finally {
+            raf.close();
+        }
+
+        store = open();
+
+        for (int i = 0; i < KEY_COUNT; i++) {
+            assertValue(store, i, "value" + i);
+        }
+
+        assertEquals(length, log.length());
+    }
+
+    @Test
+    public void testRecoverFromCheckpointAndLog() throws Exception {
+
+        crashed = open();
+
+        for (int i = 0; i < KEY_COUNT / 2; i++) {
+            put(crashed, i, "value" + i);
+        }
+
+        crashed.compactRange(null, null);
+
+        // the checkpoint removes the log before it once it is complete
+        long deadline = System.currentTimeMillis() + 10000;
+
+        while (WriteAheadLog.fileOf(folder(), 1).exists()) {
+
+            assertTrue("checkpoint not complete",
+                    System.currentTimeMillis() < deadline);
+
+            Thread.sleep(10);
+        }
+
+        assertTrue(Checkpoint.fileOf(folder(), 2).exists());
+
+        for (int i = KEY_COUNT / 2; i < KEY_COUNT; i++) {
+            put(crashed, i, "value" + i);
+        }
+
+        put(crashed, 1, "updated");
+        crashed.deleteForced(key(0), PersistOption.SYNC);
+
+        tearTail(WriteAheadLog.fileOf(folder(), 2));
+
+        store = open();
+
+        assertNotFound(store, 0);
+        assertValue(store, 1, "updated");
+
+        for (int i = 2; i < KEY_COUNT; i++) {
+            assertValue(store, i, "value" + i);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/**
+ * 
+ * Copyright (C) 2014 Seagate Technology.
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+package com.seagate.kinetic.simulator.persist.memory;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+
+import java.util.Arrays;
+
+import org.testng.annotations.Test;
+
+import com.seagate.kinetic.simulator.internal.KVStoreNoSpace;
+
+/**
+ * Off heap slab arena tests.
+ */
+@Test(groups = { "simulator" })
+public class SlabArenaTest {
+
+    // three values per slab
+    private static final int LARGE = 1000000;
+
+    private static byte[] value(int length, int fill) {
+        byte[] value = new byte[length];
+        Arrays.fill(value, (byte) fill);
+        return value;
+    }
+
+    @Test
+    public void testAllocateAndRead() throws Exception {
+
+        // one slab per size class
+        SlabArena arena = new SlabArena(3L * SlabArena.SLAB_SIZE);
+
+        long small = arena.allocate(value(10, 1));
+        long empty = arena.allocate(new byte[0]);
+        long large = arena.allocate(value(LARGE, 2));
+
+        assertTrue(Arrays.equals(value(10, 1), arena.read(small)));
+        assertEquals(0, arena.read(empty).length);
+        assertTrue(Arrays.equals(value(LARGE, 2), arena.read(large)));
+    }
+
+    @Test
+    public void testSmallBudgetRoundedUp() throws Exception {
+
+        SlabArena arena = new SlabArena(1024);
+
+        assertEquals(SlabArena.SLAB_SIZE, arena.getBudget());
+
+        long address = arena.allocate(value(100, 3));
+
+        assertTrue(Arrays.equals(value(100, 3), arena.read(address)));
+    }
+
+    @Test
+    public void testBudgetExhausted() throws Exception {
+
+        SlabArena arena = new SlabArena(SlabArena.SLAB_SIZE);
+
+        for (int i = 0; i < 3; i++) {
+            arena.allocate(value(LARGE, i));
+        }
+
+        try {
+            arena.allocate(value(LARGE, 4));
+            fail("allocation over the budget must fail");
+        } catch (KVStoreNoSpace e) {
+            // expected
+        }
+
+        try {
+            arena.allocate(new byte[SlabArena.MAX_LENGTH + 1]);
+            fail("value larger than a slab must fail");
+        } catch (KVStoreNoSpace e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testFreeReturnsSlab() throws Exception {
+
+        SlabArena arena = new SlabArena(SlabArena.SLAB_SIZE);
+
+        long[] addresses = new long[3];
+        for (int i = 0; i < addresses.length; i++) {
+            addresses[i] = arena.allocate(value(LARGE, i));
+        }
+
+        for (long address : addresses) {
+            arena.free(address);
+        }
+
+        assertEquals(0, arena.getUsedBytes());
+
+        // the emptied slab is reused by another size class
+        long small = arena.allocate(value(10, 5));
+
+        assertTrue(Arrays.equals(value(10, 5), arena.read(small)));
+        assertEquals(SlabArena.SLAB_SIZE, arena.getAllocatedBytes());
+    }
+
+    @Test
+    public void testCompaction() throws Exception {
+
+        SlabArena arena = new SlabArena(2L * SlabArena.SLAB_SIZE);
+
+        long[] addresses = new long[6];
+        for (int i = 0; i < addresses.length; i++) {
+            addresses[i] = arena.allocate(value(LARGE, i));
+        }
+
+        // one free chunk in the first slab, one live chunk in the second
+        arena.free(addresses[0]);
+        arena.free(addresses[3]);
+        arena.free(addresses[4]);
+
+        try {
+            arena.allocate(value(10, 9));
+            fail("no empty slab for another size class");
+        } catch (KVStoreNoSpace e) {
+            // expected
+        }
+
+        int slab = arena.beginCompaction();
+
+        assertEquals(SlabArena.slabOf(addresses[5]), slab);
+
+        // no other sparse slab
+        assertEquals(-1, arena.beginCompaction());
+
+        long moved = arena.allocate(arena.read(addresses[5]));
+        arena.free(addresses[5]);
+
+        arena.endCompaction(slab);
+
+        assertTrue(SlabArena.slabOf(moved) != slab);
+        assertTrue(Arrays.equals(value(LARGE, 5), arena.read(moved)));
+
+        // the emptied slab is reused by another size class
+        long small = arena.allocate(value(10, 9));
+
+        assertEquals(slab, SlabArena.slabOf(small));
+        assertEquals(2L * SlabArena.SLAB_SIZE, arena.getAllocatedBytes());
+    }
+}